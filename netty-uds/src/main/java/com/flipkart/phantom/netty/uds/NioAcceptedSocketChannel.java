@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.netty.uds;
+
+import org.jboss.netty.channel.*;
+import org.jboss.netty.channel.socket.SocketChannel;
+import org.jboss.netty.channel.socket.SocketChannelConfig;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.jboss.netty.channel.Channels.fireChannelBound;
+import static org.jboss.netty.channel.Channels.fireChannelOpen;
+
+/**
+ * <code>NioAcceptedSocketChannel</code> is based on org.jboss.netty.channel.socket.nio.NioAcceptedSocketChannel, but wraps a non-blocking JDK Unix
+ * Domain Socket {@link java.nio.channels.SocketChannel}. Reads and writes of the channel are performed by the {@link NioWorker} it is registered with.
+ * Unix Domain Socket addresses are not InetSocketAddress instances, hence the local and remote addresses of this channel are the local address of the
+ * server channel that accepted it (see {@link NioServerSocketChannel}).
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+class NioAcceptedSocketChannel extends AbstractChannel implements SocketChannel {
+
+	/** The JDK Unix Domain Socket channel */
+	final java.nio.channels.SocketChannel socket;
+
+	/** The worker performing I/O for this channel */
+	final NioWorker worker;
+
+	/** Lock guarding interest ops changes */
+	final Object interestOpsLock = new Object();
+
+	/** Lock guarding writes, the queue of pending writes and the write in progress */
+	final Object writeLock = new Object();
+	final Queue<MessageEvent> writeBufferQueue = new ConcurrentLinkedQueue<MessageEvent>();
+	MessageEvent currentWriteEvent;
+	ByteBuffer currentWriteBuffer;
+	long currentWritePosition;
+
+	/** Indicator that the channel has been queued for writing by its worker */
+	final AtomicBoolean writeTaskInTaskQueue = new AtomicBoolean();
+
+	/** The config for the Socket */
+	private final UDSSocketChannelConfig config = new UDSSocketChannelConfig();
+
+	/** Default constructor */
+	NioAcceptedSocketChannel(Channel parent, ChannelFactory factory, ChannelPipeline pipeline, ChannelSink sink,
+			java.nio.channels.SocketChannel socket, NioWorker worker) {
+		super(parent, factory, pipeline, sink);
+		this.socket = socket;
+		this.worker = worker;
+		fireChannelOpen(this);
+		fireChannelBound(this, getLocalAddress());
+	}
+
+	/**
+	 * Overriden super class method. Writes to the connected peer only
+	 * @see org.jboss.netty.channel.AbstractChannel#write(java.lang.Object, java.net.SocketAddress)
+	 */
+	public ChannelFuture write(Object message, SocketAddress remoteAddress) {
+		if (remoteAddress == null) {
+			return super.write(message, null);
+		} else {
+			return getUnsupportedOperationFuture();
+		}
+	}
+
+	/** Getter/Setter methods */
+	public SocketChannelConfig getConfig() {
+		return this.config;
+	}
+	public InetSocketAddress getLocalAddress() {
+		return ((NioServerSocketChannel) getParent()).getLocalAddress();
+	}
+	public InetSocketAddress getRemoteAddress() {
+		return ((NioServerSocketChannel) getParent()).getLocalAddress();
+	}
+	public boolean isBound() {
+		return isOpen();
+	}
+	public boolean isConnected() {
+		return isOpen() && this.socket.isConnected();
+	}
+	@Override
+	protected boolean setClosed() {
+		return super.setClosed();
+	}
+	@Override
+	protected void setInterestOpsNow(int interestOps) {
+		super.setInterestOpsNow(interestOps);
+	}
+	/** End Getter/Setter methods */
+}
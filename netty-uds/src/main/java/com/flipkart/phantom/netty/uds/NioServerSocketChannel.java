@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.netty.uds;
+
+import org.jboss.netty.channel.*;
+import org.jboss.netty.channel.socket.ServerSocketChannel;
+import org.jboss.netty.channel.socket.ServerSocketChannelConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.jboss.netty.channel.Channels.fireChannelOpen;
+
+/**
+ * <code>NioServerSocketChannel</code> is based on org.jboss.netty.channel.socket.nio.NioServerSocketChannel, but uses a JDK Unix Domain Socket
+ * {@link java.nio.channels.ServerSocketChannel} (JDK 16+) instead of a TCP one. The channel is bound to a socket file, see
+ * {@link NioServerSocketChannelFactory#setSocketFile(File)}. Unix Domain Socket addresses are not InetSocketAddress instances, hence the local address
+ * of this channel is an unresolved InetSocketAddress whose host name is the socket file path, as Netty treats channel state events with a null address
+ * as unbind or disconnect events. The remote address is null.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+class NioServerSocketChannel extends AbstractServerChannel implements ServerSocketChannel {
+
+	/** Lock to prevent shutting down this channel until Boss Thread exits */
+	final Lock shutdownLock = new ReentrantLock();
+
+	/** The JDK Unix Domain Socket server channel */
+	final java.nio.channels.ServerSocketChannel socket;
+
+	/** The config for the Socket */
+	private final UDSServerSocketChannelConfig config = new UDSServerSocketChannelConfig();
+
+	/** Indicator that the channel has been bound */
+	volatile boolean bound;
+
+	/** The local address, set when the channel is bound */
+	volatile InetSocketAddress localAddress;
+
+	/** Default constructor */
+	NioServerSocketChannel(ChannelFactory factory, ChannelPipeline pipeline, ChannelSink sink) {
+		super(factory, pipeline, sink);
+		try {
+			this.socket = UnixDomainSocketChannels.openServerSocketChannel();
+		} catch (IOException e) {
+			throw new ChannelException("Failed to open a server socket.", e);
+		}
+		fireChannelOpen(this);
+	}
+
+	/** Getter/Setter methods */
+	public ServerSocketChannelConfig getConfig() {
+		return this.config;
+	}
+	public InetSocketAddress getLocalAddress() {
+		return this.localAddress;
+	}
+	public InetSocketAddress getRemoteAddress() {
+		return null;
+	}
+	public boolean isBound() {
+		return isOpen() && this.bound;
+	}
+	public boolean isConnected() {
+		return false;
+	}
+	@Override
+	protected boolean setClosed() {
+		return super.setClosed();
+	}
+	/** End Getter/Setter methods */
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.netty.uds;
+
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.socket.ServerSocketChannel;
+import org.jboss.netty.channel.socket.ServerSocketChannelFactory;
+import org.jboss.netty.util.internal.ExecutorUtil;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link ServerSocketChannelFactory} which creates a server-side non-blocking I/O based {@link ServerSocketChannel} for Unix Domain Sockets, using
+ * the JDK Unix Domain Socket channels of JDK 16+ (see {@link #isSupported()}). Unlike the {@link OioServerSocketChannelFactory}, which uses a worker
+ * thread per connection, accepted connections are served by a fixed number of selector worker threads, each serving many connections.
+ *
+ * <h3>How threads work</h3>
+ * <p>
+ * Each bound {@link ServerSocketChannel} has its own boss thread, acquired from the {@code bossExecutor}, which accepts incoming connections and
+ * registers them with the worker threads in round robin order. Worker threads are acquired from the {@code workerExecutor} when the first connection
+ * is registered with them and are released when they have no connections left, hence the {@code workerExecutor} must be able to lend
+ * {@code workerCount} threads. Channel handlers are called by the worker threads and should not block, else all connections of the worker wait.
+ * Handlers that execute commands synchronously should therefore be placed behind an execution handler or be replaced by their asynchronous variants.
+ * <p>
+ * To shut down a service gracefully, unbind all channels created by the factory, close all child channels accepted by the unbound channels and call
+ * {@link #releaseExternalResources()}.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class NioServerSocketChannelFactory implements ServerSocketChannelFactory {
+
+	/** The default number of worker threads*/
+	public static final int DEFAULT_WORKER_COUNT = Runtime.getRuntime().availableProcessors() * 2;
+
+	/** Executors for running the boss and worker threads*/
+	final Executor bossExecutor;
+	private final Executor workerExecutor;
+
+	/** The sink for channels created by this factory*/
+	private final NioServerSocketPipelineSink sink;
+
+	/**
+	 * Creates a new instance with {@link #DEFAULT_WORKER_COUNT} worker threads.
+	 * @param bossExecutor the {@link Executor} which will execute the boss threads
+	 * @param workerExecutor the {@link Executor} which will execute the I/O worker threads
+	 */
+	public NioServerSocketChannelFactory(Executor bossExecutor, Executor workerExecutor) {
+		this(bossExecutor, workerExecutor, DEFAULT_WORKER_COUNT);
+	}
+
+	/**
+	 * Creates a new instance.
+	 * @param bossExecutor the {@link Executor} which will execute the boss threads
+	 * @param workerExecutor the {@link Executor} which will execute the I/O worker threads
+	 * @param workerCount the maximum number of I/O worker threads
+	 */
+	public NioServerSocketChannelFactory(Executor bossExecutor, Executor workerExecutor, int workerCount) {
+		if (bossExecutor == null) {
+			throw new NullPointerException("bossExecutor");
+		}
+		if (workerExecutor == null) {
+			throw new NullPointerException("workerExecutor");
+		}
+		if (workerCount <= 0) {
+			throw new IllegalArgumentException("workerCount (" + workerCount + ") must be a positive integer.");
+		}
+		if (!UnixDomainSocketChannels.isSupported()) {
+			throw new UnsupportedOperationException("Unix Domain Socket channels require JDK 16 or later");
+		}
+		this.bossExecutor = bossExecutor;
+		this.workerExecutor = workerExecutor;
+		this.sink = new NioServerSocketPipelineSink(workerExecutor, workerCount);
+	}
+
+	/**
+	 * Returns true if the JVM supports the channels created by this factory
+	 * @return true if Unix Domain Socket channels are supported
+	 */
+	public static boolean isSupported() {
+		return UnixDomainSocketChannels.isSupported();
+	}
+
+	public ServerSocketChannel newChannel(ChannelPipeline pipeline) {
+		return new NioServerSocketChannel(this, pipeline, this.sink);
+	}
+
+	public void releaseExternalResources() {
+		ExecutorUtil.terminate(this.bossExecutor, this.workerExecutor);
+	}
+
+	/** Getter/Setter methods */
+	public File getSocketFile() {
+		return this.sink.getSocketFile();
+	}
+	public void setSocketFile(File socketFile) {
+		this.sink.setSocketFile(socketFile);
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.netty.uds;
+
+import org.jboss.netty.channel.*;
+import org.jboss.netty.logging.InternalLogger;
+import org.jboss.netty.logging.InternalLoggerFactory;
+import org.jboss.netty.util.ThreadRenamingRunnable;
+import org.jboss.netty.util.internal.DeadLockProofWorker;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.jboss.netty.channel.Channels.*;
+
+/**
+ * Based on: org.jboss.netty.channel.socket.nio.NioServerSocketPipelineSink
+ * Binds {@link NioServerSocketChannel}s to the socket file and distributes the accepted Unix Domain Socket connections across a fixed set of
+ * {@link NioWorker}s, in round robin order. Connections are accepted by a boss thread blocking on accept, which is released by closing the server channel.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+class NioServerSocketPipelineSink extends AbstractChannelSink {
+
+	/** Log instance for this class */
+	static final InternalLogger logger = InternalLoggerFactory.getInstance(NioServerSocketPipelineSink.class);
+
+	/** The id generator for sinks, for the worker thread names */
+	private static final AtomicInteger nextId = new AtomicInteger();
+
+	/** The workers performing I/O for the accepted channels */
+	private final NioWorker[] workers;
+
+	/** The index of the worker for the next accepted channel */
+	private final AtomicInteger workerIndex = new AtomicInteger();
+
+	/** The socket file that channels are bound to */
+	private File socketFile;
+
+	/** Default Constructor */
+	NioServerSocketPipelineSink(Executor workerExecutor, int workerCount) {
+		int id = nextId.incrementAndGet();
+		this.workers = new NioWorker[workerCount];
+		for (int i = 0; i < this.workers.length; i++) {
+			this.workers[i] = new NioWorker(id, i + 1, workerExecutor);
+		}
+	}
+
+	public void eventSunk(ChannelPipeline pipeline, ChannelEvent e) throws Exception {
+		Channel channel = e.getChannel();
+		if (channel instanceof NioServerSocketChannel) {
+			handleServerSocket(e);
+		} else if (channel instanceof NioAcceptedSocketChannel) {
+			handleAcceptedSocket(e);
+		}
+	}
+
+	private void handleServerSocket(ChannelEvent e) {
+		if (!(e instanceof ChannelStateEvent)) {
+			return;
+		}
+		ChannelStateEvent event = (ChannelStateEvent) e;
+		NioServerSocketChannel channel = (NioServerSocketChannel) event.getChannel();
+		ChannelFuture future = event.getFuture();
+		ChannelState state = event.getState();
+		Object value = event.getValue();
+
+		switch (state) {
+		case OPEN:
+			if (Boolean.FALSE.equals(value)) {
+				close(channel, future);
+			}
+			break;
+		case BOUND:
+			if (value != null) {
+				bind(channel, future);
+			} else {
+				close(channel, future);
+			}
+			break;
+		}
+	}
+
+	private void handleAcceptedSocket(ChannelEvent e) {
+		if (e instanceof ChannelStateEvent) {
+			ChannelStateEvent event = (ChannelStateEvent) e;
+			NioAcceptedSocketChannel channel = (NioAcceptedSocketChannel) event.getChannel();
+			ChannelFuture future = event.getFuture();
+			ChannelState state = event.getState();
+			Object value = event.getValue();
+
+			switch (state) {
+			case OPEN:
+				if (Boolean.FALSE.equals(value)) {
+					NioWorker.close(channel, future);
+				}
+				break;
+			case BOUND:
+			case CONNECTED:
+				if (value == null) {
+					NioWorker.close(channel, future);
+				}
+				break;
+			case INTEREST_OPS:
+				channel.worker.setInterestOps(channel, future, ((Integer) value).intValue());
+				break;
+			}
+		} else if (e instanceof MessageEvent) {
+			MessageEvent event = (MessageEvent) e;
+			NioAcceptedSocketChannel channel = (NioAcceptedSocketChannel) event.getChannel();
+			channel.worker.write(channel, event);
+		}
+	}
+
+	/**
+	 * Binds the channel to the socket file. The SocketAddress of the bind request is not used, as it may be an address of another Unix Domain Socket
+	 * implementation.
+	 */
+	private void bind(NioServerSocketChannel channel, ChannelFuture future) {
+		boolean bound = false;
+		boolean bossStarted = false;
+		try {
+			if (this.socketFile == null) {
+				throw new IllegalStateException("Socket file has not been set. See NioServerSocketChannelFactory#setSocketFile(File)");
+			}
+			UnixDomainSocketChannels.bind(channel.socket, this.socketFile, channel.getConfig().getBacklog());
+			channel.localAddress = InetSocketAddress.createUnresolved(this.socketFile.getAbsolutePath(), 0);
+			channel.bound = true;
+			bound = true;
+
+			future.setSuccess();
+			fireChannelBound(channel, channel.getLocalAddress());
+
+			Executor bossExecutor = ((NioServerSocketChannelFactory) channel.getFactory()).bossExecutor;
+			DeadLockProofWorker.start(bossExecutor, new ThreadRenamingRunnable(new Boss(channel),
+					"New I/O UDS server boss (" + channel + ')'));
+			bossStarted = true;
+		} catch (Throwable t) {
+			future.setFailure(t);
+			fireExceptionCaught(channel, t);
+		} finally {
+			if (!bossStarted && bound) {
+				close(channel, future);
+			}
+		}
+	}
+
+	/**
+	 * Closes the channel, which releases the boss thread, and deletes the socket file
+	 */
+	private void close(NioServerSocketChannel channel, ChannelFuture future) {
+		boolean bound = channel.isBound();
+		try {
+			channel.socket.close();
+			// Make sure the boss thread is not running so that that the future
+			// is notified after a new connection cannot be accepted anymore.
+			channel.shutdownLock.lock();
+			try {
+				if (channel.setClosed()) {
+					future.setSuccess();
+					if (bound) {
+						if (this.socketFile != null) {
+							this.socketFile.delete();
+						}
+						fireChannelUnbound(channel);
+					}
+					fireChannelClosed(channel);
+				} else {
+					future.setSuccess();
+				}
+			} finally {
+				channel.shutdownLock.unlock();
+			}
+		} catch (Throwable t) {
+			future.setFailure(t);
+			fireExceptionCaught(channel, t);
+		}
+	}
+
+	/**
+	 * Returns the worker for the next accepted channel
+	 */
+	private NioWorker nextWorker() {
+		return this.workers[Math.abs(this.workerIndex.getAndIncrement() % this.workers.length)];
+	}
+
+	/** The class executing the Boss thread, which accepts connections and registers them with the workers */
+	private final class Boss implements Runnable {
+
+		/** The server socket channel instance for this class */
+		private final NioServerSocketChannel channel;
+
+		/** Default constructor */
+		Boss(NioServerSocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Interface method implementation.
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			this.channel.shutdownLock.lock();
+			try {
+				while (this.channel.isBound()) {
+					try {
+						this.registerAcceptedChannel(this.channel.socket.accept());
+					} catch (ClosedChannelException e) {
+						// Closed as the server channel was closed.
+						break;
+					} catch (Throwable e) {
+						if (!this.channel.socket.isOpen()) {
+							break;
+						}
+						logger.warn("Failed to accept a connection.", e);
+						try {
+							Thread.sleep(1000);
+						} catch (InterruptedException e1) {
+							// Ignore
+						}
+					}
+				}
+			} finally {
+				this.channel.shutdownLock.unlock();
+			}
+		}
+
+		/** Configures the accepted socket for non-blocking I/O and registers it with a worker */
+		private void registerAcceptedChannel(SocketChannel acceptedSocket) {
+			try {
+				acceptedSocket.configureBlocking(false);
+				ChannelPipeline pipeline = this.channel.getConfig().getPipelineFactory().getPipeline();
+				NioWorker worker = nextWorker();
+				worker.register(new NioAcceptedSocketChannel(this.channel, this.channel.getFactory(), pipeline,
+						NioServerSocketPipelineSink.this, acceptedSocket, worker));
+			} catch (Exception e) {
+				logger.warn("Failed to initialize an accepted socket.", e);
+				try {
+					acceptedSocket.close();
+				} catch (IOException e2) {
+					logger.warn("Failed to close a partially accepted socket.", e2);
+				}
+			}
+		}
+	}
+
+	/** Getter/Setter methods */
+	public File getSocketFile() {
+		return this.socketFile;
+	}
+	public void setSocketFile(File socketFile) {
+		this.socketFile = socketFile;
+	}
+}
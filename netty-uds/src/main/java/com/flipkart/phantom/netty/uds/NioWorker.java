@@ -0,0 +1,532 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.netty.uds;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelException;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.DefaultFileRegion;
+import org.jboss.netty.channel.FileRegion;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.logging.InternalLogger;
+import org.jboss.netty.logging.InternalLoggerFactory;
+import org.jboss.netty.util.ThreadRenamingRunnable;
+import org.jboss.netty.util.internal.DeadLockProofWorker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NotYetConnectedException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import static org.jboss.netty.channel.Channels.*;
+
+/**
+ * Based on: org.jboss.netty.channel.socket.nio.NioWorker
+ * A selector loop performing non-blocking reads and writes for the Unix Domain Socket channels registered with it. Reads use a direct buffer reused
+ * across reads of all channels of the worker. Writes are performed by the worker thread, writes requested from other threads being queued for it. The
+ * worker thread is acquired from the worker Executor when the first channel is registered and is released when no channels remain registered.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+class NioWorker implements Runnable {
+
+	/** Log instance for this class */
+	private static final InternalLogger logger = InternalLoggerFactory.getInstance(NioWorker.class);
+
+	/** The size of the buffer that reads are performed into */
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/** The number of attempts to complete a write before waiting for the channel to be writable */
+	private static final int WRITE_SPIN_COUNT = 16;
+
+	/** The selector timeout, after which the worker checks whether channels remain registered */
+	private static final long SELECT_TIMEOUT_MILLIS = 500;
+
+	/** The parent channel id, for the worker thread name */
+	private final int bossId;
+
+	/** The worker id, for the worker thread name */
+	private final int id;
+
+	/** Executor for running the worker thread */
+	private final Executor executor;
+
+	/** Lock guarding start and stop of the worker thread */
+	private final Object startStopLock = new Object();
+
+	/** Indicator that the worker thread has been started, guarded by startStopLock */
+	private boolean started;
+
+	/** The worker thread and its selector */
+	private volatile Thread thread;
+	private volatile Selector selector;
+
+	/** Tasks to be performed by the worker thread, such as channel registrations and interest ops changes */
+	private final Queue<Runnable> taskQueue = new ConcurrentLinkedQueue<Runnable>();
+
+	/** Channels having writes queued from other threads */
+	private final Queue<NioAcceptedSocketChannel> writeTaskQueue = new ConcurrentLinkedQueue<NioAcceptedSocketChannel>();
+
+	/** The buffer that reads are performed into, used by the worker thread only */
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+	/** Default constructor */
+	NioWorker(int bossId, int id, Executor executor) {
+		this.bossId = bossId;
+		this.id = id;
+		this.executor = executor;
+	}
+
+	/**
+	 * Registers the specified accepted channel with this worker, starting the worker thread if required. Fires the channel connected event once the
+	 * channel is registered.
+	 * @param channel the accepted channel
+	 */
+	void register(final NioAcceptedSocketChannel channel) {
+		synchronized (this.startStopLock) {
+			if (!this.started) {
+				try {
+					this.selector = Selector.open();
+				} catch (Throwable t) {
+					throw new ChannelException("Failed to create a selector.", t);
+				}
+				boolean success = false;
+				try {
+					DeadLockProofWorker.start(this.executor, new ThreadRenamingRunnable(this,
+							"New I/O UDS server worker #" + this.bossId + "-" + this.id));
+					success = true;
+				} finally {
+					if (!success) {
+						try {
+							this.selector.close();
+						} catch (Throwable t) {
+							logger.warn("Failed to close a selector.", t);
+						}
+						this.selector = null;
+					}
+				}
+				this.started = true;
+			}
+			this.taskQueue.offer(new Runnable() {
+				public void run() {
+					try {
+						channel.socket.register(NioWorker.this.selector, SelectionKey.OP_READ, channel);
+					} catch (IOException e) {
+						close(channel, succeededFuture(channel));
+						return;
+					}
+					fireChannelConnected(channel, channel.getRemoteAddress());
+				}
+			});
+		}
+		this.selector.wakeup();
+	}
+
+	/**
+	 * Interface method implementation. Runs the selector loop until no channels remain registered.
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		this.thread = Thread.currentThread();
+		Selector selector = this.selector;
+		for (;;) {
+			try {
+				selector.select(SELECT_TIMEOUT_MILLIS);
+				this.processTaskQueue();
+				this.processWriteTaskQueue();
+				this.processSelectedKeys(selector.selectedKeys());
+				if (selector.keys().isEmpty()) {
+					synchronized (this.startStopLock) {
+						if (this.taskQueue.isEmpty() && this.writeTaskQueue.isEmpty() && selector.keys().isEmpty()) {
+							this.started = false;
+							try {
+								selector.close();
+							} catch (IOException e) {
+								logger.warn("Failed to close a selector.", e);
+							} finally {
+								this.selector = null;
+								this.thread = null;
+							}
+							break;
+						}
+					}
+				}
+			} catch (Throwable t) {
+				logger.warn("Unexpected exception in the selector loop.", t);
+				try {
+					Thread.sleep(1000);
+				} catch (InterruptedException e) {
+					// Ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queues the specified message for writing on the channel and writes it if called from the worker thread.
+	 * @param channel the accepted channel
+	 * @param event the message event
+	 */
+	void write(NioAcceptedSocketChannel channel, MessageEvent event) {
+		channel.writeBufferQueue.offer(event);
+		if (!channel.isConnected()) {
+			cleanUpWriteBuffer(channel);
+			return;
+		}
+		if (Thread.currentThread() != this.thread) {
+			if (channel.writeTaskInTaskQueue.compareAndSet(false, true)) {
+				this.writeTaskQueue.offer(channel);
+				Selector selector = this.selector;
+				if (selector != null) {
+					selector.wakeup();
+				}
+			}
+			return;
+		}
+		this.write0(channel);
+	}
+
+	/**
+	 * Sets the interest ops of the channel. Only the OP_READ flag may be changed, the OP_WRITE flag being managed by this worker.
+	 * @param channel the accepted channel
+	 * @param future the future to notify
+	 * @param interestOps the interest ops
+	 */
+	void setInterestOps(final NioAcceptedSocketChannel channel, final ChannelFuture future, final int interestOps) {
+		if (Thread.currentThread() != this.thread) {
+			this.taskQueue.offer(new Runnable() {
+				public void run() {
+					setInterestOps(channel, future, interestOps);
+				}
+			});
+			Selector selector = this.selector;
+			if (selector != null) {
+				selector.wakeup();
+			} else {
+				future.setFailure(new ClosedChannelException());
+			}
+			return;
+		}
+		boolean changed = false;
+		try {
+			synchronized (channel.interestOpsLock) {
+				int newInterestOps = (interestOps & ~Channel.OP_WRITE) | (channel.getInterestOps() & Channel.OP_WRITE);
+				SelectionKey key = channel.socket.keyFor(this.selector);
+				if (key == null || !key.isValid()) {
+					future.setFailure(new ClosedChannelException());
+					return;
+				}
+				if (channel.getInterestOps() != newInterestOps) {
+					key.interestOps(newInterestOps);
+					channel.setInterestOpsNow(newInterestOps);
+					changed = true;
+				}
+			}
+			future.setSuccess();
+			if (changed) {
+				fireChannelInterestChanged(channel);
+			}
+		} catch (CancelledKeyException e) {
+			ClosedChannelException cce = new ClosedChannelException();
+			future.setFailure(cce);
+			fireExceptionCaught(channel, cce);
+		} catch (Throwable t) {
+			future.setFailure(t);
+			fireExceptionCaught(channel, t);
+		}
+	}
+
+	/**
+	 * Closes the channel, failing its pending writes
+	 * @param channel the accepted channel
+	 * @param future the future to notify
+	 */
+	static void close(NioAcceptedSocketChannel channel, ChannelFuture future) {
+		boolean connected = channel.isConnected();
+		boolean bound = channel.isBound();
+		try {
+			channel.socket.close();
+			if (channel.setClosed()) {
+				future.setSuccess();
+				if (connected) {
+					fireChannelDisconnected(channel);
+				}
+				if (bound) {
+					fireChannelUnbound(channel);
+				}
+				cleanUpWriteBuffer(channel);
+				fireChannelClosed(channel);
+			} else {
+				future.setSuccess();
+			}
+		} catch (Throwable t) {
+			future.setFailure(t);
+			fireExceptionCaught(channel, t);
+		}
+	}
+
+	/**
+	 * Helper method to perform the queued tasks
+	 */
+	private void processTaskQueue() {
+		for (;;) {
+			Runnable task = this.taskQueue.poll();
+			if (task == null) {
+				break;
+			}
+			task.run();
+		}
+	}
+
+	/**
+	 * Helper method to perform the writes queued from other threads
+	 */
+	private void processWriteTaskQueue() {
+		for (;;) {
+			NioAcceptedSocketChannel channel = this.writeTaskQueue.poll();
+			if (channel == null) {
+				break;
+			}
+			channel.writeTaskInTaskQueue.set(false);
+			this.write0(channel);
+		}
+	}
+
+	/**
+	 * Helper method to perform reads and writes on the selected channels
+	 */
+	private void processSelectedKeys(Set<SelectionKey> selectedKeys) {
+		for (Iterator<SelectionKey> i = selectedKeys.iterator(); i.hasNext();) {
+			SelectionKey key = i.next();
+			i.remove();
+			NioAcceptedSocketChannel channel = (NioAcceptedSocketChannel) key.attachment();
+			try {
+				int readyOps = key.readyOps();
+				if ((readyOps & SelectionKey.OP_READ) != 0 || readyOps == 0) {
+					if (!this.read(channel)) {
+						continue;
+					}
+				}
+				if ((readyOps & SelectionKey.OP_WRITE) != 0) {
+					this.write0(channel);
+				}
+			} catch (CancelledKeyException e) {
+				close(channel, succeededFuture(channel));
+			}
+		}
+	}
+
+	/**
+	 * Helper method to read the available bytes of the channel into the reused read buffer and fire a message received event with a copy of them.
+	 * Returns false if the channel was closed.
+	 */
+	private boolean read(NioAcceptedSocketChannel channel) {
+		ByteBuffer buffer = this.readBuffer;
+		buffer.clear();
+		int ret = 0;
+		int readBytes = 0;
+		boolean failure = true;
+		try {
+			while ((ret = channel.socket.read(buffer)) > 0) {
+				readBytes += ret;
+				if (!buffer.hasRemaining()) {
+					break;
+				}
+			}
+			failure = false;
+		} catch (ClosedChannelException e) {
+			// Can happen, and does not need a user attention.
+		} catch (Throwable t) {
+			fireExceptionCaught(channel, t);
+		}
+		if (readBytes > 0) {
+			buffer.flip();
+			ChannelBuffer message = channel.getConfig().getBufferFactory().getBuffer(readBytes);
+			message.writeBytes(buffer);
+			fireMessageReceived(channel, message);
+		}
+		if (ret < 0 || failure) {
+			close(channel, succeededFuture(channel));
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Helper method to write the queued messages of the channel, until the channel cannot accept more bytes
+	 */
+	private void write0(NioAcceptedSocketChannel channel) {
+		boolean open = true;
+		boolean addOpWrite = false;
+		boolean removeOpWrite = false;
+		long writtenBytes = 0;
+		synchronized (channel.writeLock) {
+			for (;;) {
+				MessageEvent event = channel.currentWriteEvent;
+				if (event == null) {
+					event = channel.writeBufferQueue.poll();
+					if (event == null) {
+						removeOpWrite = true;
+						break;
+					}
+					channel.currentWriteEvent = event;
+					channel.currentWritePosition = 0;
+					if (event.getMessage() instanceof ChannelBuffer) {
+						channel.currentWriteBuffer = ((ChannelBuffer) event.getMessage()).toByteBuffer();
+					}
+				}
+				ChannelFuture future = event.getFuture();
+				try {
+					boolean done;
+					if (channel.currentWriteBuffer != null) {
+						ByteBuffer buffer = channel.currentWriteBuffer;
+						for (int i = WRITE_SPIN_COUNT; i > 0 && buffer.hasRemaining(); i--) {
+							writtenBytes += channel.socket.write(buffer);
+						}
+						done = !buffer.hasRemaining();
+					} else {
+						FileRegion region = (FileRegion) event.getMessage();
+						for (int i = WRITE_SPIN_COUNT; i > 0 && channel.currentWritePosition < region.getCount(); i--) {
+							long localWrittenBytes = region.transferTo(channel.socket, channel.currentWritePosition);
+							channel.currentWritePosition += localWrittenBytes;
+							writtenBytes += localWrittenBytes;
+						}
+						done = channel.currentWritePosition >= region.getCount();
+						if (done) {
+							releaseFileRegion(region);
+						}
+					}
+					if (done) {
+						channel.currentWriteEvent = null;
+						channel.currentWriteBuffer = null;
+						future.setSuccess();
+					} else {
+						addOpWrite = true;
+						break;
+					}
+				} catch (AsynchronousCloseException e) {
+					// Doesn't need a user attention - ignore.
+				} catch (Throwable t) {
+					if (event.getMessage() instanceof FileRegion) {
+						releaseFileRegion((FileRegion) event.getMessage());
+					}
+					channel.currentWriteEvent = null;
+					channel.currentWriteBuffer = null;
+					future.setFailure(t);
+					fireExceptionCaught(channel, t);
+					if (t instanceof IOException) {
+						open = false;
+						close(channel, succeededFuture(channel));
+					}
+				}
+				if (!open) {
+					break;
+				}
+			}
+		}
+		if (writtenBytes > 0) {
+			fireWriteComplete(channel, writtenBytes);
+		}
+		if (open) {
+			if (addOpWrite) {
+				this.setOpWrite(channel, true);
+			} else if (removeOpWrite) {
+				this.setOpWrite(channel, false);
+			}
+		}
+	}
+
+	/**
+	 * Helper method to set or clear the OP_WRITE interest of the channel
+	 */
+	private void setOpWrite(NioAcceptedSocketChannel channel, boolean opWrite) {
+		SelectionKey key = channel.socket.keyFor(this.selector);
+		if (key == null || !key.isValid()) {
+			return;
+		}
+		synchronized (channel.interestOpsLock) {
+			int interestOps = channel.getInterestOps();
+			if (opWrite == ((interestOps & Channel.OP_WRITE) != 0)) {
+				return;
+			}
+			interestOps = opWrite ? interestOps | Channel.OP_WRITE : interestOps & ~Channel.OP_WRITE;
+			try {
+				key.interestOps(interestOps);
+			} catch (CancelledKeyException e) {
+				return;
+			}
+			channel.setInterestOpsNow(interestOps);
+		}
+	}
+
+	/**
+	 * Helper method to fail the queued writes of a closed channel
+	 */
+	private static void cleanUpWriteBuffer(NioAcceptedSocketChannel channel) {
+		Exception cause = null;
+		boolean fireExceptionCaught = false;
+		synchronized (channel.writeLock) {
+			MessageEvent event = channel.currentWriteEvent;
+			if (event != null) {
+				cause = channel.isOpen() ? new NotYetConnectedException() : new ClosedChannelException();
+				if (event.getMessage() instanceof FileRegion) {
+					releaseFileRegion((FileRegion) event.getMessage());
+				}
+				channel.currentWriteEvent = null;
+				channel.currentWriteBuffer = null;
+				event.getFuture().setFailure(cause);
+				fireExceptionCaught = true;
+			}
+			for (;;) {
+				event = channel.writeBufferQueue.poll();
+				if (event == null) {
+					break;
+				}
+				if (cause == null) {
+					cause = channel.isOpen() ? new NotYetConnectedException() : new ClosedChannelException();
+				}
+				if (event.getMessage() instanceof FileRegion) {
+					releaseFileRegion((FileRegion) event.getMessage());
+				}
+				event.getFuture().setFailure(cause);
+				fireExceptionCaught = true;
+			}
+		}
+		if (fireExceptionCaught) {
+			fireExceptionCaught(channel, cause);
+		}
+	}
+
+	/**
+	 * Helper method to release a written file region, if requested
+	 */
+	private static void releaseFileRegion(FileRegion region) {
+		if (region instanceof DefaultFileRegion && ((DefaultFileRegion) region).releaseAfterTransfer()) {
+			region.releaseExternalResources();
+		}
+	}
+}
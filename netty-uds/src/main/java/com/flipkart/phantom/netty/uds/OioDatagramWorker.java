@@ -16,6 +16,7 @@
 package com.flipkart.phantom.netty.uds;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ReceiveBufferSizePredictor;
@@ -31,12 +32,18 @@ import static org.jboss.netty.channel.Channels.*;
 /**
  * Based on: org.jboss.netty.channel.socket.oio.OioDatagramWorker
  * OIO package modified to work for Unix Domain Sockets instead of ServerSocket.
+ * Datagrams are received directly into a heap buffer that is reused across receives of the channel, and are passed
+ * upstream as slices of it, without copying. Slices passed upstream are never overwritten, a new buffer being
+ * allocated when the current one cannot hold the next datagram.
  * 
  * @author devashishshankar
  * @version 1.0, 19th April 2013
  */
 class OioDatagramWorker implements Runnable {
 
+    /** The minimum size of the receive buffer, which holds many small datagrams */
+    private static final int MIN_RECEIVE_BUFFER_SIZE = 16 * 1024;
+
     private final OioDatagramChannel channel;
 
     OioDatagramWorker(OioDatagramChannel channel) {
@@ -46,6 +53,8 @@ class OioDatagramWorker implements Runnable {
     public void run() {
         channel.workerThread = Thread.currentThread();
         final MulticastSocket socket = channel.socket;
+        final DatagramPacket packet = new DatagramPacket(new byte[0], 0);
+        ChannelBuffer receiveBuffer = null;
 
         while (channel.isOpen()) {
             synchronized (channel.interestOpsLock) {
@@ -65,8 +74,15 @@ class OioDatagramWorker implements Runnable {
             ReceiveBufferSizePredictor predictor =
                 channel.getConfig().getReceiveBufferSizePredictor();
 
-            byte[] buf = new byte[predictor.nextReceiveBufferSize()];
-            DatagramPacket packet = new DatagramPacket(buf, buf.length);
+            int bytesToReceive = predictor.nextReceiveBufferSize();
+            if (receiveBuffer == null || receiveBuffer.writableBytes() < bytesToReceive) {
+                // The datagram is received into the backing array, hence a heap buffer
+                receiveBuffer = ChannelBuffers.buffer(
+                        channel.getConfig().getBufferFactory().getDefaultOrder(),
+                        Math.max(bytesToReceive, MIN_RECEIVE_BUFFER_SIZE));
+            }
+            int offset = receiveBuffer.writerIndex();
+            packet.setData(receiveBuffer.array(), receiveBuffer.arrayOffset() + offset, bytesToReceive);
             try {
                 socket.receive(packet);
             } catch (InterruptedIOException e) {
@@ -80,9 +96,11 @@ class OioDatagramWorker implements Runnable {
                 break;
             }
 
+            receiveBuffer.writerIndex(offset + packet.getLength());
+            predictor.previousReceiveBufferSize(packet.getLength());
             fireMessageReceived(
                     channel,
-                    channel.getConfig().getBufferFactory().getBuffer(buf, 0, packet.getLength()),
+                    receiveBuffer.slice(offset, packet.getLength()),
                     packet.getSocketAddress());
         }
 
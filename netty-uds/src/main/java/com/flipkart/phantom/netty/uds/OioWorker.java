@@ -17,10 +17,13 @@
 package com.flipkart.phantom.netty.uds;
 
 import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.AdaptiveReceiveBufferSizePredictor;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.DefaultFileRegion;
 import org.jboss.netty.channel.FileRegion;
+import org.jboss.netty.channel.ReceiveBufferSizePredictor;
 
 import java.io.OutputStream;
 import java.io.PushbackInputStream;
@@ -35,6 +38,10 @@ import static org.jboss.netty.channel.Channels.*;
 /**
  * Based on: org.jboss.netty.channel.socket.oio.OioWorker
  * OIO package modified to work for Unix Domain Sockets instead of ServerSocket.
+ * Reads are performed directly into a read buffer that is reused across reads of the channel, sized by an adaptive
+ * predictor of the read size. Each read is passed upstream as a slice of the read buffer, without copying. Slices
+ * passed upstream are never overwritten, a new read buffer being allocated when the current one cannot hold the
+ * next read.
  * 
  * @author devashishshankar
  * @version 1.0, 19th April 2013
@@ -44,6 +51,9 @@ class OioWorker implements Runnable {
     private static final Pattern SOCKET_CLOSED_MESSAGE = Pattern.compile(
             "^.*(?:Socket.*closed).*$", Pattern.CASE_INSENSITIVE);
 
+    /** The minimum size of the read buffer, which holds the bytes of many reads of small messages */
+    private static final int MIN_READ_BUFFER_SIZE = 16 * 1024;
+
     private final OioSocketChannel channel;
 
     OioWorker(OioSocketChannel channel) {
@@ -53,6 +63,8 @@ class OioWorker implements Runnable {
     public void run() {
         channel.workerThread = Thread.currentThread();
         final PushbackInputStream in = channel.getInputStream();
+        final ReceiveBufferSizePredictor predictor = new AdaptiveReceiveBufferSizePredictor();
+        ChannelBuffer readBuffer = null;
 
         boolean fireConnected = channel instanceof OioAcceptedSocketChannel;
 
@@ -75,21 +87,26 @@ class OioWorker implements Runnable {
                 }
             }
 
-            byte[] buf;
             int readBytes;
             try {
-                int bytesToRead = in.available();
-                if (bytesToRead > 0) {
-                    buf = new byte[bytesToRead];
-                    readBytes = in.read(buf);
-                } else {
-                    int b = in.read();
-                    if (b < 0) {
-                        break;
-                    }
-                    in.unread(b);
+                int bytesToRead = predictor.nextReceiveBufferSize();
+                if (readBuffer == null || readBuffer.writableBytes() < bytesToRead) {
+                    // Bytes are read into the backing array, hence a heap buffer
+                    readBuffer = ChannelBuffers.buffer(
+                            channel.getConfig().getBufferFactory().getDefaultOrder(),
+                            Math.max(bytesToRead, MIN_READ_BUFFER_SIZE));
+                }
+                // Blocks until some bytes are available and reads the available bytes only,
+                // unlike ChannelBuffer.writeBytes(InputStream, int) which waits for all bytes
+                readBytes = in.read(readBuffer.array(),
+                        readBuffer.arrayOffset() + readBuffer.writerIndex(), bytesToRead);
+                if (readBytes < 0) {
+                    break;
+                }
+                if (readBytes == 0) {
                     continue;
                 }
+                readBuffer.writerIndex(readBuffer.writerIndex() + readBytes);
             } catch (Throwable t) {
                 if (!channel.socket.isClosed()) {
                     fireExceptionCaught(channel, t);
@@ -97,9 +114,10 @@ class OioWorker implements Runnable {
                 break;
             }
 
+            predictor.previousReceiveBufferSize(readBytes);
             fireMessageReceived(
                     channel,
-                    channel.getConfig().getBufferFactory().getBuffer(buf, 0, readBytes));
+                    readBuffer.slice(readBuffer.writerIndex() - readBytes, readBytes));
         }
 
         // Setting the workerThread to null will prevent any channel
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.netty.uds;
+
+import org.jboss.netty.channel.DefaultServerChannelConfig;
+import org.jboss.netty.channel.socket.ServerSocketChannelConfig;
+import org.jboss.netty.util.internal.ConversionUtil;
+
+/**
+ * <code>UDSServerSocketChannelConfig</code> is the {@link ServerSocketChannelConfig} of a {@link NioServerSocketChannel}. JDK Unix Domain Socket
+ * channels do not expose a ServerSocket, hence options are held here and only the backlog is applied, when the channel is bound. The remaining options
+ * do not apply to Unix Domain Sockets and are accepted so that bootstrap options shared with TCP servers do not fail.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+class UDSServerSocketChannelConfig extends DefaultServerChannelConfig implements ServerSocketChannelConfig {
+
+	/** The maximum number of pending connections, the JDK default is used if not positive*/
+	private volatile int backlog;
+
+	/** Options that are not applied to Unix Domain Sockets*/
+	private volatile boolean reuseAddress;
+	private volatile int receiveBufferSize;
+
+	/**
+	 * Overriden super class method. Sets the server socket options, in addition to the options of the super class
+	 * @see org.jboss.netty.channel.DefaultServerChannelConfig#setOption(java.lang.String, java.lang.Object)
+	 */
+	public boolean setOption(String key, Object value) {
+		if (super.setOption(key, value)) {
+			return true;
+		}
+		if (key.equals("backlog")) {
+			this.setBacklog(ConversionUtil.toInt(value));
+		} else if (key.equals("reuseAddress")) {
+			this.setReuseAddress(ConversionUtil.toBoolean(value));
+		} else if (key.equals("receiveBufferSize")) {
+			this.setReceiveBufferSize(ConversionUtil.toInt(value));
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Interface method implementation. Ignored for Unix Domain Sockets
+	 * @see org.jboss.netty.channel.socket.ServerSocketChannelConfig#setPerformancePreferences(int, int, int)
+	 */
+	public void setPerformancePreferences(int connectionTime, int latency, int bandwidth) {
+		// no-op
+	}
+
+	/** Start Getter/Setter methods */
+	public int getBacklog() {
+		return this.backlog;
+	}
+	public void setBacklog(int backlog) {
+		if (backlog < 0) {
+			throw new IllegalArgumentException("backlog: " + backlog);
+		}
+		this.backlog = backlog;
+	}
+	public boolean isReuseAddress() {
+		return this.reuseAddress;
+	}
+	public void setReuseAddress(boolean reuseAddress) {
+		this.reuseAddress = reuseAddress;
+	}
+	public int getReceiveBufferSize() {
+		return this.receiveBufferSize;
+	}
+	public void setReceiveBufferSize(int receiveBufferSize) {
+		this.receiveBufferSize = receiveBufferSize;
+	}
+	/** End Getter/Setter methods */
+
+}
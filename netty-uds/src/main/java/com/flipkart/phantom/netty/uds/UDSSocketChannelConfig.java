@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.netty.uds;
+
+import org.jboss.netty.channel.DefaultChannelConfig;
+import org.jboss.netty.channel.socket.SocketChannelConfig;
+import org.jboss.netty.util.internal.ConversionUtil;
+
+/**
+ * <code>UDSSocketChannelConfig</code> is the {@link SocketChannelConfig} of a {@link NioAcceptedSocketChannel}. JDK Unix Domain Socket channels do not
+ * expose a Socket and TCP options do not apply to them, hence socket options are held here but not applied. They are accepted so that child bootstrap
+ * options shared with TCP servers (such as "child.tcpNoDelay") do not fail.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+class UDSSocketChannelConfig extends DefaultChannelConfig implements SocketChannelConfig {
+
+	/** Options that are not applied to Unix Domain Sockets*/
+	private volatile boolean tcpNoDelay;
+	private volatile int soLinger = -1;
+	private volatile int sendBufferSize;
+	private volatile int receiveBufferSize;
+	private volatile boolean keepAlive;
+	private volatile int trafficClass;
+	private volatile boolean reuseAddress;
+
+	/**
+	 * Overriden super class method. Sets the socket options, in addition to the options of the super class
+	 * @see org.jboss.netty.channel.DefaultChannelConfig#setOption(java.lang.String, java.lang.Object)
+	 */
+	public boolean setOption(String key, Object value) {
+		if (super.setOption(key, value)) {
+			return true;
+		}
+		if (key.equals("tcpNoDelay")) {
+			this.setTcpNoDelay(ConversionUtil.toBoolean(value));
+		} else if (key.equals("soLinger")) {
+			this.setSoLinger(ConversionUtil.toInt(value));
+		} else if (key.equals("sendBufferSize")) {
+			this.setSendBufferSize(ConversionUtil.toInt(value));
+		} else if (key.equals("receiveBufferSize")) {
+			this.setReceiveBufferSize(ConversionUtil.toInt(value));
+		} else if (key.equals("keepAlive")) {
+			this.setKeepAlive(ConversionUtil.toBoolean(value));
+		} else if (key.equals("trafficClass")) {
+			this.setTrafficClass(ConversionUtil.toInt(value));
+		} else if (key.equals("reuseAddress")) {
+			this.setReuseAddress(ConversionUtil.toBoolean(value));
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Interface method implementation. Ignored for Unix Domain Sockets
+	 * @see org.jboss.netty.channel.socket.SocketChannelConfig#setPerformancePreferences(int, int, int)
+	 */
+	public void setPerformancePreferences(int connectionTime, int latency, int bandwidth) {
+		// no-op
+	}
+
+	/** Start Getter/Setter methods */
+	public boolean isTcpNoDelay() {
+		return this.tcpNoDelay;
+	}
+	public void setTcpNoDelay(boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+	public int getSoLinger() {
+		return this.soLinger;
+	}
+	public void setSoLinger(int soLinger) {
+		this.soLinger = soLinger;
+	}
+	public int getSendBufferSize() {
+		return this.sendBufferSize;
+	}
+	public void setSendBufferSize(int sendBufferSize) {
+		this.sendBufferSize = sendBufferSize;
+	}
+	public int getReceiveBufferSize() {
+		return this.receiveBufferSize;
+	}
+	public void setReceiveBufferSize(int receiveBufferSize) {
+		this.receiveBufferSize = receiveBufferSize;
+	}
+	public boolean isKeepAlive() {
+		return this.keepAlive;
+	}
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+	public int getTrafficClass() {
+		return this.trafficClass;
+	}
+	public void setTrafficClass(int trafficClass) {
+		this.trafficClass = trafficClass;
+	}
+	public boolean isReuseAddress() {
+		return this.reuseAddress;
+	}
+	public void setReuseAddress(boolean reuseAddress) {
+		this.reuseAddress = reuseAddress;
+	}
+	/** End Getter/Setter methods */
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.netty.uds;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * <code>UnixDomainSocketChannels</code> opens and binds JDK NIO channels for Unix Domain Sockets, available on JDK 16+. The JDK methods are invoked
+ * reflectively as this code is compiled for older JVMs. The returned channels are regular selectable channels and are used through the JDK 1.4 NIO API.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public final class UnixDomainSocketChannels {
+
+	/** The StandardProtocolFamily.UNIX constant, null if Unix Domain Socket channels are not supported*/
+	private static final Object UNIX_PROTOCOL_FAMILY;
+
+	/** The ServerSocketChannel.open(ProtocolFamily), ServerSocketChannel.bind(SocketAddress, int) and SocketChannel.open(ProtocolFamily) methods*/
+	private static final Method OPEN_SERVER_SOCKET_CHANNEL;
+	private static final Method BIND_SERVER_SOCKET_CHANNEL;
+	private static final Method OPEN_SOCKET_CHANNEL;
+
+	/** The UnixDomainSocketAddress.of(String) method*/
+	private static final Method NEW_ADDRESS;
+
+	static {
+		Object unixProtocolFamily = null;
+		Method openServerSocketChannel = null, bindServerSocketChannel = null, openSocketChannel = null, newAddress = null;
+		try {
+			Class<?> protocolFamilyClass = Class.forName("java.net.ProtocolFamily");
+			unixProtocolFamily = Class.forName("java.net.StandardProtocolFamily").getField("UNIX").get(null);
+			openServerSocketChannel = ServerSocketChannel.class.getMethod("open", protocolFamilyClass);
+			bindServerSocketChannel = ServerSocketChannel.class.getMethod("bind", SocketAddress.class, int.class);
+			openSocketChannel = SocketChannel.class.getMethod("open", protocolFamilyClass);
+			newAddress = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+		} catch (Exception e) {
+			unixProtocolFamily = null;
+		}
+		UNIX_PROTOCOL_FAMILY = unixProtocolFamily;
+		OPEN_SERVER_SOCKET_CHANNEL = openServerSocketChannel;
+		BIND_SERVER_SOCKET_CHANNEL = bindServerSocketChannel;
+		OPEN_SOCKET_CHANNEL = openSocketChannel;
+		NEW_ADDRESS = newAddress;
+	}
+
+	/** No instances*/
+	private UnixDomainSocketChannels() {
+	}
+
+	/**
+	 * Returns true if the JVM supports Unix Domain Socket channels
+	 * @return true if Unix Domain Socket channels are supported
+	 */
+	public static boolean isSupported() {
+		return UNIX_PROTOCOL_FAMILY != null;
+	}
+
+	/**
+	 * Returns the Unix Domain Socket address of the specified socket file
+	 * @param socketFile the socket file
+	 * @return the UnixDomainSocketAddress instance
+	 */
+	public static SocketAddress newAddress(File socketFile) {
+		try {
+			return (SocketAddress) invoke(NEW_ADDRESS, null, socketFile.getAbsolutePath());
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid socket file : " + socketFile.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Opens an unbound Unix Domain Socket server channel
+	 * @return the ServerSocketChannel
+	 * @throws IOException in case of errors opening the channel
+	 */
+	public static ServerSocketChannel openServerSocketChannel() throws IOException {
+		return (ServerSocketChannel) invoke(OPEN_SERVER_SOCKET_CHANNEL, null, UNIX_PROTOCOL_FAMILY);
+	}
+
+	/**
+	 * Binds the specified server channel to the specified socket file, deleting the file first if it remains from an earlier bind
+	 * @param serverSocketChannel the Unix Domain Socket server channel
+	 * @param socketFile the socket file
+	 * @param backlog the maximum number of pending connections
+	 * @throws IOException in case of errors binding the channel
+	 */
+	public static void bind(ServerSocketChannel serverSocketChannel, File socketFile, int backlog) throws IOException {
+		socketFile.delete();
+		invoke(BIND_SERVER_SOCKET_CHANNEL, serverSocketChannel, newAddress(socketFile), backlog);
+	}
+
+	/**
+	 * Opens a Unix Domain Socket channel connected to the specified socket file
+	 * @param socketFile the socket file
+	 * @return the connected SocketChannel
+	 * @throws IOException in case of errors connecting the channel
+	 */
+	public static SocketChannel openSocketChannel(File socketFile) throws IOException {
+		SocketChannel socketChannel = (SocketChannel) invoke(OPEN_SOCKET_CHANNEL, null, UNIX_PROTOCOL_FAMILY);
+		try {
+			socketChannel.connect(newAddress(socketFile));
+		} catch (IOException e) {
+			socketChannel.close();
+			throw e;
+		}
+		return socketChannel;
+	}
+
+	/**
+	 * Helper method to invoke a method, rethrowing the IOException or unchecked exception thrown by it
+	 */
+	private static Object invoke(Method method, Object target, Object... args) throws IOException {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Unix Domain Socket channels require JDK 16 or later");
+		}
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new UnsupportedOperationException(e.getCause());
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException(e);
+		}
+	}
+
+}
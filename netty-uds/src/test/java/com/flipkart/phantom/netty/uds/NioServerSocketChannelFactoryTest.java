@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.netty.uds;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for binding, serving and closing Unix Domain Socket channels created by {@link NioServerSocketChannelFactory}. Runs on JDK 16+ only
+ */
+public class NioServerSocketChannelFactoryTest {
+
+    private File socketFile;
+    private NioServerSocketChannelFactory factory;
+    private Channel serverChannel;
+    private SocketChannel client;
+
+    /** The accepted channels, in the order they were connected*/
+    private final LinkedBlockingQueue<Channel> acceptedChannels = new LinkedBlockingQueue<Channel>();
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(NioServerSocketChannelFactory.isSupported());
+        this.socketFile = File.createTempFile("nio-uds", ".sock");
+        this.factory = new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool(), 2);
+        this.factory.setSocketFile(this.socketFile);
+        ServerBootstrap bootstrap = new ServerBootstrap(this.factory);
+        bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(new EchoHandler());
+            }
+        });
+        // the address is not used, the channel is bound to the socket file
+        this.serverChannel = bootstrap.bind(new InetSocketAddress(0));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.client != null) {
+            this.client.close();
+        }
+        if (this.serverChannel != null) {
+            this.serverChannel.close().awaitUninterruptibly();
+        }
+        if (this.factory != null) {
+            this.factory.releaseExternalResources();
+        }
+        if (this.socketFile != null) {
+            this.socketFile.delete();
+        }
+    }
+
+    @Test
+    public void testEcho() throws Exception {
+
+        assertTrue("Channel not bound", this.serverChannel.isBound() && this.socketFile.exists());
+        this.client = UnixDomainSocketChannels.openSocketChannel(this.socketFile);
+        assertEcho("hello");
+
+        // the connection is served by a worker for consecutive messages
+        assertEcho("world");
+
+    }
+
+    @Test
+    public void testSuspendedReads() throws Exception {
+
+        this.client = UnixDomainSocketChannels.openSocketChannel(this.socketFile);
+        Channel accepted = this.acceptedChannels.poll(5, TimeUnit.SECONDS);
+        assertTrue("Connection not accepted", accepted != null);
+
+        // data is not read while reads are suspended using the interest ops
+        assertTrue("Reads not suspended", accepted.setReadable(false).awaitUninterruptibly(5000) && !accepted.isReadable());
+        this.client.write(ByteBuffer.wrap("paused".getBytes()));
+        this.client.configureBlocking(false);
+        Thread.sleep(200);
+        assertTrue("Data read while reads are suspended", this.client.read(ByteBuffer.allocate(16)) == 0);
+
+        // and is read once reads are resumed
+        this.client.configureBlocking(true);
+        assertTrue("Reads not resumed", accepted.setReadable(true).awaitUninterruptibly(5000) && accepted.isReadable());
+        assertTrue("Echo mismatch", "paused".equals(this.read(6)));
+
+    }
+
+    @Test
+    public void testCloseDeletesSocketFile() throws Exception {
+
+        this.client = UnixDomainSocketChannels.openSocketChannel(this.socketFile);
+        Channel accepted = this.acceptedChannels.poll(5, TimeUnit.SECONDS);
+        assertTrue("Connection not accepted", accepted != null);
+
+        // closing the client closes the accepted channel
+        this.client.close();
+        assertTrue("Accepted channel not closed", accepted.getCloseFuture().awaitUninterruptibly(5000));
+
+        // closing the server channel unbinds it and deletes the socket file
+        assertTrue("Server channel not closed", this.serverChannel.close().awaitUninterruptibly(5000));
+        assertTrue("Channel not unbound", !this.serverChannel.isBound());
+        assertTrue("Socket file not deleted", !this.socketFile.exists());
+
+    }
+
+    private void assertEcho(String message) throws Exception {
+        this.client.write(ByteBuffer.wrap(message.getBytes()));
+        String echo = this.read(message.length());
+        assertTrue("Echo mismatch: " + echo, message.equals(echo));
+    }
+
+    /** Reads the specified number of bytes from the client */
+    private String read(int length) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            assertTrue("Connection closed", this.client.read(buffer) != -1);
+        }
+        return new String(buffer.array());
+    }
+
+    /** Writes back the received messages and records the accepted channels */
+    private class EchoHandler extends SimpleChannelUpstreamHandler {
+        public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent event) {
+            acceptedChannels.add(event.getChannel());
+        }
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent event) {
+            event.getChannel().write(event.getMessage());
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package com.flipkart.phantom.runtime.impl.server.netty;
 
+import com.flipkart.phantom.netty.uds.NioServerSocketChannelFactory;
 import com.flipkart.phantom.netty.uds.OioServerSocketChannel;
 import com.flipkart.phantom.netty.uds.OioServerSocketChannelFactory;
 import com.flipkart.phantom.runtime.impl.server.concurrent.NamedThreadFactory;
@@ -35,7 +36,9 @@ import java.util.concurrent.Executors;
 
 /**
  * <code>UDSNetworkServer</code> is a concrete implementation of the {@link AbstractNettyNetworkServer}
- * for Unix Domain Sockets. Uses {@link OioServerSocketChannel} for UDS channels. Note that this server
+ * for Unix Domain Sockets. Uses {@link OioServerSocketChannel} for UDS channels, with a worker thread per connection. When {@link #isNioTransport()}
+ * is set and the JVM supports JDK Unix Domain Socket channels (JDK 16+), uses the non-blocking {@link NioServerSocketChannelFactory} instead, where
+ * connections are served by a fixed number of selector worker threads (the worker pool size if set). Note that this server
  * has to be initialized with a UDS socket file rather than a port no.
  *
  * @author devashishshankar
@@ -75,6 +78,9 @@ public class UDSNettyServer extends AbstractNettyNetworkServer {
     /** The socket file */
     private File socketFile;
 
+    /** Indicator to use the non-blocking Unix Domain Socket transport, when supported by the JVM */
+    private boolean nioTransport;
+
     /**
      * Interface method implementation. Returns {@link TRANSMISSION_PROTOCOL#UDS (Unix domain Sockets)
      * @see com.flipkart.sp.runtime.spi.server.NetworkServer#getTransmissionProtocol()
@@ -88,12 +94,18 @@ public class UDSNettyServer extends AbstractNettyNetworkServer {
      * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
      */
     public void afterPropertiesSet() throws Exception {
-        File[] junixDirectories = FileLocator.findDirectories(this.junixNativeLibDirectoryName,null);
-        if(junixDirectories==null || junixDirectories.length==0) {
-            throw new RuntimeException("Did not find junixDirectory: "+junixNativeLibDirectoryName);
+        if (this.nioTransport && !NioServerSocketChannelFactory.isSupported()) {
+            LOGGER.warn("NIO transport for UDS requires JDK 16 or later. Using the OIO transport");
+            this.nioTransport = false;
+        }
+        if (!this.nioTransport) { // junix native libraries are used by the OIO transport only
+            File[] junixDirectories = FileLocator.findDirectories(this.junixNativeLibDirectoryName,null);
+            if(junixDirectories==null || junixDirectories.length==0) {
+                throw new RuntimeException("Did not find junixDirectory: "+junixNativeLibDirectoryName);
+            }
+            LOGGER.info("Found junixDirectory: "+junixDirectories[0].getAbsolutePath());
+            System.setProperty(JUNIX_LIB_SYSTEM_PROPERTY,junixDirectories[0].getAbsolutePath());
         }
-        LOGGER.info("Found junixDirectory: "+junixDirectories[0].getAbsolutePath());
-        System.setProperty(JUNIX_LIB_SYSTEM_PROPERTY,junixDirectories[0].getAbsolutePath());
         //Required properties
         Assert.notNull(this.socketDir, "socketDir is a required property for UDSNetworkServer");
         Assert.notNull(this.socketName, "socketName is a required property for UDSNetworkServer");
@@ -149,6 +161,12 @@ public class UDSNettyServer extends AbstractNettyNetworkServer {
      */
     protected Bootstrap createServerBootstrap() throws RuntimeException {
         Assert.notNull(this.socketFile, "Socket File should not be null");
+        if (this.nioTransport) {
+            NioServerSocketChannelFactory serverSocketChannelFactory = new NioServerSocketChannelFactory(this.getServerExecutors(), this.getWorkerExecutors(),
+                    this.getWorkerPoolSize() != UDSNettyServer.INVALID_POOL_SIZE ? this.getWorkerPoolSize() : NioServerSocketChannelFactory.DEFAULT_WORKER_COUNT);
+            serverSocketChannelFactory.setSocketFile(this.socketFile);
+            return new ServerBootstrap(serverSocketChannelFactory);
+        }
         OioServerSocketChannelFactory serverSocketChannelFactory = new OioServerSocketChannelFactory(this.getServerExecutors(), this.getWorkerExecutors());
         serverSocketChannelFactory.setSocketFile(this.socketFile);
         return new ServerBootstrap(serverSocketChannelFactory);
@@ -209,5 +227,11 @@ public class UDSNettyServer extends AbstractNettyNetworkServer {
     public void setJunixNativeLibDirectoryName(String junixNativeLibDirectoryName) {
         this.junixNativeLibDirectoryName = junixNativeLibDirectoryName;
     }
+    public boolean isNioTransport() {
+        return nioTransport;
+    }
+    public void setNioTransport(boolean nioTransport) {
+        this.nioTransport = nioTransport;
+    }
     /** End Getter/Setter methods */
 }
@@ -23,6 +23,8 @@ import com.flipkart.phantom.task.impl.TaskHandler;
 import com.flipkart.phantom.task.impl.TaskHandlerExecutor;
 import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
 import com.flipkart.phantom.task.impl.TaskResult;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.newsclub.net.unix.AFUNIXServerSocket;
 import org.newsclub.net.unix.AFUNIXSocketAddress;
 import org.slf4j.Logger;
@@ -30,15 +32,35 @@ import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import org.trpr.platform.runtime.impl.config.FileLocator;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <code>UDSOIOServer</code> is a concrete implementation of the {@link AbstractNetworkServer} 
  * for Unix Domain Sockets. Note that this server has to be initialized with a UDS socket file rather than a port no.
+ * Each accepted connection is served by a worker thread. By default a single command is served per connection, the connection being closed after
+ * the response is written. When {@link #isKeepAlive()} is set, consecutive commands are served on the connection until the client closes it or
+ * no command is received for {@link #getKeepAliveTimeoutMillis()}. A kept alive connection holds its worker thread for as long as it is open, so at
+ * most {@link #getWorkerPoolSize()} connections, {@value #DEFAULT_MAX_WORKER_POOL_SIZE} if not set, are kept alive at a time. Connections in excess
+ * of the pool size wait for a worker thread, i.e. for a connection to be closed, in a queue of {@link #getWorkerQueueSize()} connections,
+ * {@value #DEFAULT_WORKER_QUEUE_SIZE} if not set. Connections in excess of the queue size are rejected, i.e. closed, and counted (see
+ * {@link #getRejectedConnectionCount()}).
  * 
  * @author Regunath B
  * @version 1.0, 25 Jun 2013
@@ -51,9 +73,27 @@ public class UDSOIOServer extends AbstractNetworkServer {
 	/** The default counts (invalid one) for worker pool count*/
 	private static final int INVALID_POOL_SIZE = -1;
 	
+	/** The default maximum number of worker threads, used when the worker pool size is not set*/
+	private static final int DEFAULT_MAX_WORKER_POOL_SIZE = 256;
+
+	/** The default maximum number of accepted connections waiting for a worker thread*/
+	private static final int DEFAULT_WORKER_QUEUE_SIZE = 256;
+
+	/** The default maximum number of pending connections on the server socket*/
+	private static final int DEFAULT_BACKLOG = 128;
+
 	/** The default timeout for client socket inactivity*/
 	private int DEFAULT_CLIENT_TIMEOUT_MILLIS = 300;
 
+	/** The default timeout for inactivity of kept alive connections between commands*/
+	private static final int DEFAULT_KEEP_ALIVE_TIMEOUT_MILLIS = 30000;
+
+	/** The initial size of the buffer holding the bytes read from a connection*/
+	private static final int INPUT_BUFFER_SIZE = 4096;
+
+	/** The size of the buffer of responses written to a connection*/
+	private static final int OUTPUT_BUFFER_SIZE = 8192;
+
 	/** The default directory name containing junix native libraries*/
 	private static final String DEFAULT_JUNIX_NATIVE_DIRECTORY = "uds-lib";
 
@@ -63,9 +103,30 @@ public class UDSOIOServer extends AbstractNetworkServer {
 	/** The worker thread pool sizes*/
 	private int workerPoolSize = INVALID_POOL_SIZE;
 	
+	/** The maximum number of accepted connections waiting for a worker thread, none are held if 0*/
+	private int workerQueueSize = DEFAULT_WORKER_QUEUE_SIZE;
+
+	/** The maximum number of pending connections on the server socket*/
+	private int backlog = DEFAULT_BACKLOG;
+
 	/** The client socket inactivity timeout in millis*/
 	private int clientSocketTimeoutMillis = DEFAULT_CLIENT_TIMEOUT_MILLIS;
 
+	/** Indicator to serve consecutive commands on a connection*/
+	private boolean keepAlive;
+
+	/** The inactivity timeout of kept alive connections between commands, in millis*/
+	private int keepAliveTimeoutMillis = DEFAULT_KEEP_ALIVE_TIMEOUT_MILLIS;
+
+	/** The CommandInterpreter for reading commands and writing responses, shared by all connections as it is thread-safe*/
+	private final CommandInterpreter commandInterpreter = new CommandInterpreter();
+
+	/** The connections being served, closed when the server is stopped*/
+	private final Set<Socket> activeClients = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+	/** The number of connections rejected as the worker pool and queue were full*/
+	private final AtomicLong rejectedConnectionCount = new AtomicLong();
+
 	/** The worker ExecutorService instances*/
 	private ExecutorService workerExecutors;
 
@@ -109,6 +170,8 @@ public class UDSOIOServer extends AbstractNetworkServer {
         //Required properties
 		Assert.notNull(this.socketDir, "socketDir is a required property for UDSNetworkServer");
 		Assert.notNull(this.socketName, "socketName is a required property for UDSNetworkServer");
+		Assert.isTrue(this.workerQueueSize >= 0, "workerQueueSize cannot be negative for UDSNetworkServer");
+		Assert.isTrue(this.backlog > 0, "backlog must be positive for UDSNetworkServer");
 		//Create the socket file
 		this.socketFile = new File(new File(this.socketDir), this.socketName);
 		
@@ -117,16 +180,12 @@ public class UDSOIOServer extends AbstractNetworkServer {
 		try {
 			this.socketAddress = new AFUNIXSocketAddress(this.socketFile);
 			this.socket = AFUNIXServerSocket.newInstance();
-			this.socket.bind(this.socketAddress);
+			this.socket.bind(this.socketAddress, this.backlog);
 		} catch (IOException e) {
 			throw new RuntimeException("Error creating Socket Address. ",e);
 		}
 		if (this.getWorkerExecutors() == null) {  // no executors have been set for workers
-			if (this.getWorkerPoolSize() != UDSOIOServer.INVALID_POOL_SIZE) { // thread pool size has been set. create and use a fixed thread pool
-				this.setWorkerExecutors(Executors.newFixedThreadPool(this.getWorkerPoolSize(), new NamedThreadFactory("UDSOIOServer-Worker")));
-			}else { // default behavior of creating and using a cached thread pool
-				this.setWorkerExecutors(Executors.newCachedThreadPool(new NamedThreadFactory("UDSOIOServer-Worker")));
-			}
+			this.setWorkerExecutors(this.createWorkerExecutors());
 		}
 		super.afterPropertiesSet();
 		LOGGER.info("UDS Server startup complete");
@@ -156,6 +215,9 @@ public class UDSOIOServer extends AbstractNetworkServer {
 		try {
 			this.socket.close();
 			this.workerExecutors.shutdown();
+			for (Socket client : this.activeClients) { // release workers waiting on kept alive connections
+				closeClient(client);
+			}
 		} catch (IOException e) {
 			throw new RuntimeException("Error shutting down UDS server : " + this.toString(), e);
 		}
@@ -171,6 +233,40 @@ public class UDSOIOServer extends AbstractNetworkServer {
         return this.socketFile.toString();
     }
 
+	/**
+	 * Creates a bounded thread pool of the set size, or of the default maximum size, that holds at most the set worker queue size of connections waiting
+	 * for a worker thread. Idle threads are released as with a cached thread pool
+	 * @return the worker thread pool
+	 */
+	ExecutorService createWorkerExecutors() {
+		int poolSize = this.getWorkerPoolSize() != UDSOIOServer.INVALID_POOL_SIZE ? this.getWorkerPoolSize() : UDSOIOServer.DEFAULT_MAX_WORKER_POOL_SIZE;
+		BlockingQueue<Runnable> workerQueue;
+		if (this.getWorkerQueueSize() > 0) {
+			workerQueue = new ArrayBlockingQueue<Runnable>(this.getWorkerQueueSize());
+		} else {
+			workerQueue = new SynchronousQueue<Runnable>();
+		}
+		ThreadPoolExecutor workerPool = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, workerQueue, 
+				new NamedThreadFactory("UDSOIOServer-Worker"));
+		workerPool.allowCoreThreadTimeOut(true);
+		return workerPool;
+	}
+
+	/**
+	 * Hands over the specified accepted client connection to a worker thread. The connection is closed and counted as rejected if all worker threads
+	 * are busy and the worker queue is full
+	 * @param client the accepted client connection
+	 */
+	void serveClient(Socket client) {
+		try {
+			this.workerExecutors.execute(new CommandProcessor(client));
+		} catch (RejectedExecutionException e) {
+			this.rejectedConnectionCount.incrementAndGet();
+			LOGGER.debug("Rejected client connection as all workers are busy : " + e.getMessage());
+			closeClient(client);
+		}
+	}
+
     /**
 	 * The Socket listener thread
 	 */
@@ -185,8 +281,11 @@ public class UDSOIOServer extends AbstractNetworkServer {
 				try {
 					client = socket.accept();
 					client.setSoTimeout(getClientSocketTimeoutMillis()); // set this timeout to protect server from clients that become inactive
-					workerExecutors.execute(new CommandProcessor(client));
+					serveClient(client);
 				} catch (IOException e) {
+					if (socket.isClosed()) { // the server has been stopped
+						return;
+					}
 					throw new RuntimeException("Error accepting client socket connections : " + e.getMessage(), e);
 				} 
 			}			
@@ -194,21 +293,101 @@ public class UDSOIOServer extends AbstractNetworkServer {
 	}
 	
 	/**
-	 * Helper class that reads and processes Commands from a client Socket. This runs inside a Worker thread.
+	 * Helper class that reads and processes Commands from a client Socket. This runs inside a Worker thread. Bytes read from the client are held in a
+	 * buffer that is reused across the commands of the connection, so that bytes of a following command that are read with the current one are not lost.
 	 */
 	class CommandProcessor implements Runnable {
 		Socket client;
+		int soTimeoutMillis = getClientSocketTimeoutMillis(); // as set by the listener
 		CommandProcessor(Socket client) {
 			this.client = client;
 		}
 		public void run() {
+			activeClients.add(client);
+			try {
+				InputStream inputStream = client.getInputStream();
+				OutputStream outputStream = new BufferedOutputStream(client.getOutputStream(), OUTPUT_BUFFER_SIZE);
+				ChannelBuffer input = ChannelBuffers.dynamicBuffer(INPUT_BUFFER_SIZE);
+				int commandCount = 0;
+				do {
+					CommandInterpreter.ProxyCommand readCommand = this.readCommand(inputStream, input, commandCount > 0);
+					if (readCommand == null) { // the client closed the connection or was inactive between commands
+						break;
+					}
+					this.processCommand(readCommand, outputStream);
+					outputStream.flush();
+					commandCount++;
+				} while (isKeepAlive() && !client.isClosed());
+			} catch(Exception e) {
+				if (client.isClosed()) { // closed when the server was stopped
+					return;
+				}
+				LOGGER.error("Error in processing command : " + e.getMessage(), e);
+				throw new RuntimeException("Error in processing command : " + e.getMessage(), e);
+			} finally {
+				activeClients.remove(client);
+				closeClient(client);
+			}
+		}
+
+		/**
+		 * Reads the next command into the input buffer. Returns null if the client closed the connection, or if it was inactive for the keep alive 
+		 * timeout, before sending any byte of the command.
+		 */
+		private CommandInterpreter.ProxyCommand readCommand(InputStream inputStream, ChannelBuffer input, boolean keptAlive) throws Exception {
+			input.discardReadBytes(); // the previous command, if any, has been processed
+			while (true) {
+				if (input.readable()) {
+					CommandInterpreter.ProxyCommand readCommand = commandInterpreter.interpretCommand(input);
+					if (readCommand.getReadFailure() == null) {
+						LOGGER.debug("Read Command : " + readCommand);
+						return readCommand;
+					}
+				}
+				int timeoutMillis = (keptAlive && !input.readable()) ? getKeepAliveTimeoutMillis() : getClientSocketTimeoutMillis();
+				if (this.soTimeoutMillis != timeoutMillis) {
+					client.setSoTimeout(timeoutMillis);
+					this.soTimeoutMillis = timeoutMillis;
+				}
+				input.ensureWritableBytes(INPUT_BUFFER_SIZE);
+				int bytesRead;
+				try {
+					// read the available bytes only, unlike ChannelBuffer.writeBytes(InputStream, int) which waits for all bytes
+					bytesRead = inputStream.read(input.array(), input.arrayOffset() + input.writerIndex(), input.writableBytes());
+				} catch (SocketTimeoutException e) {
+					if (keptAlive && !input.readable()) {
+						LOGGER.debug("Closing client connection inactive for : " + timeoutMillis + " ms");
+						return null;
+					}
+					throw e;
+				}
+				if (bytesRead < 0) {
+					if (input.readable()) {
+						throw new IllegalArgumentException("Stream ended before a complete command was read : " 
+								+ commandInterpreter.interpretCommand(input).getReadFailureDescription());
+					}
+					return null;
+				}
+				input.writerIndex(input.writerIndex() + bytesRead);
+			}
+		}
+
+		/**
+		 * Executes the specified command and writes the result to the specified OutputStream
+		 */
+		private void processCommand(CommandInterpreter.ProxyCommand readCommand, OutputStream outputStream) throws Exception {
             TaskHandlerExecutor executor = null;
 			try {
-				CommandInterpreter commandInterpreter = new CommandInterpreter();
-				CommandInterpreter.ProxyCommand readCommand = commandInterpreter.readCommand(client.getInputStream());	
-				LOGGER.debug("Read Command : " + readCommand);
 				String pool = readCommand.getCommandParams().get("pool");
 
+				/* Execute commands of handlers that opted for lightweight execution directly on this worker thread */
+				if (repository.isLightweightCommand(readCommand.getCommand())) {
+					TaskResult result = repository.executeCommand(readCommand.getCommand(), pool != null ? pool : readCommand.getCommand(), 
+							readCommand.getCommandData(), readCommand.getCommandParams(), readCommand.getDeadline());
+					commandInterpreter.writeCommandExecutionResponse(outputStream, result);
+					return;
+				}
+
 				/*Try to execute command using ThreadPool, if "pool" is found in the command, else the command name */
 				if(pool!=null) {
 					executor = repository.get(readCommand.getCommand(),pool);
@@ -217,6 +396,10 @@ public class UDSOIOServer extends AbstractNetworkServer {
 				}
 				executor.setParams(readCommand.getCommandParams());
 				executor.setData(readCommand.getCommandData());
+				executor.setDeadline(readCommand.getDeadline());
+				if (readCommand.getPriority() != null) {
+					executor.setPriority(readCommand.getPriority());
+				}
                 TaskResult result;
                 /* execute */
                 if (executor.getCallInvocationType() == TaskHandler.SYNC_CALL)
@@ -232,23 +415,42 @@ public class UDSOIOServer extends AbstractNetworkServer {
 				LOGGER.debug("The output is: "+ result);
 
 				// write the results to the socket output
-				commandInterpreter.writeCommandExecutionResponse(client.getOutputStream(), result);				            
-			} catch(Exception e) {
-				LOGGER.error("Error in processing command : " + e.getMessage(), e);
-				throw new RuntimeException("Error in processing command : " + e.getMessage(), e);
+				commandInterpreter.writeCommandExecutionResponse(outputStream, result);				            
 			} finally {
                 RequestLogger.log(executor);
-				if (client !=null) {
-					try {
-						client.close();
-					} catch (IOException e) {
-						LOGGER.error("Error closing client socket : " + e.getMessage(), e);
-					}					
-				}
 			}
 		}		
 	}
 
+	/**
+	 * Helper method to close the specified client socket
+	 */
+	private void closeClient(Socket client) {
+		if (client !=null) {
+			try {
+				client.close();
+			} catch (IOException e) {
+				LOGGER.error("Error closing client socket : " + e.getMessage(), e);
+			}					
+		}
+	}
+
+	/**
+	 * Returns the number of connections rejected as all worker threads were busy and the worker queue was full
+	 * @return the rejected connection count
+	 */
+	public long getRejectedConnectionCount() {
+		return this.rejectedConnectionCount.get();
+	}
+
+	/**
+	 * Returns the number of connections being served
+	 * @return the active connection count
+	 */
+	public int getActiveConnectionCount() {
+		return this.activeClients.size();
+	}
+
 	/** Start Getter/Setter methods */
 	public int getWorkerPoolSize() {
 		return this.workerPoolSize;
@@ -256,6 +458,30 @@ public class UDSOIOServer extends AbstractNetworkServer {
 	public void setWorkerPoolSize(int workerPoolSize) {
 		this.workerPoolSize = workerPoolSize;
 	}	
+	public int getWorkerQueueSize() {
+		return this.workerQueueSize;
+	}
+	public void setWorkerQueueSize(int workerQueueSize) {
+		this.workerQueueSize = workerQueueSize;
+	}
+	public int getBacklog() {
+		return this.backlog;
+	}
+	public void setBacklog(int backlog) {
+		this.backlog = backlog;
+	}
+	public boolean isKeepAlive() {
+		return this.keepAlive;
+	}
+	public void setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+	public int getKeepAliveTimeoutMillis() {
+		return this.keepAliveTimeoutMillis;
+	}
+	public void setKeepAliveTimeoutMillis(int keepAliveTimeoutMillis) {
+		this.keepAliveTimeoutMillis = keepAliveTimeoutMillis;
+	}
 	public int getClientSocketTimeoutMillis() {
 		return this.clientSocketTimeoutMillis;
 	}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.oio;
+
+import com.flipkart.phantom.task.impl.HystrixTaskHandler;
+import com.flipkart.phantom.task.impl.TaskContextImpl;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
+import com.flipkart.phantom.task.impl.TaskResult;
+import com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.netflix.config.ConfigurationManager;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for serving consecutive commands on kept alive connections by the {@link UDSOIOServer} command processor. Connections are made over TCP
+ * sockets, as the processor serves any connected Socket and Unix Domain Sockets require the junixsocket native library
+ */
+public class UDSOIOServerTest {
+
+    private static TaskHandlerExecutorRepository repository;
+
+    private ServerSocket serverSocket;
+    private Socket client;
+    private Thread processorThread;
+
+    @BeforeClass
+    public static void setUpRepository() throws Exception {
+        // commands are executed on threads that have no Hystrix request context
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.default.requestLog.enabled", false);
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.default.requestCache.enabled", false);
+        HystrixTaskHandler taskHandler = new HystrixTaskHandler() {
+            public String getName() {
+                return "keepAliveTest";
+            }
+            public String[] getCommands() {
+                return new String[] {"echo"};
+            }
+            public TaskResult execute(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                return new TaskResult(true, null, data);
+            }
+            public TaskResult getFallBack(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                return new TaskResult(false, null);
+            }
+            public void shutdown(TaskContext taskContext) {
+            }
+        };
+        taskHandler.activate();
+        TaskHandlerRegistry registry = new TaskHandlerRegistry();
+        registry.registerTaskHandler(taskHandler);
+        repository = new TaskHandlerExecutorRepository();
+        repository.setTaskHandlerRegistry(registry);
+        TaskContextImpl taskContext = new TaskContextImpl();
+        taskContext.setExecutorRepository(repository);
+        repository.setTaskContext(taskContext);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.client != null) {
+            this.client.close();
+        }
+        if (this.serverSocket != null) {
+            this.serverSocket.close();
+        }
+        if (this.processorThread != null) {
+            this.processorThread.join(5000);
+        }
+    }
+
+    @Test
+    public void testSingleCommandPerConnection() throws Exception {
+
+        UDSOIOServer server = this.connect(false, 30000);
+        assertResponse("Command failed", "SUCCESS 1\na", "echo 1\na");
+
+        // the connection is closed after the response
+        assertTrue("Connection not closed", this.client.getInputStream().read() == -1);
+        this.processorThread.join(5000);
+        assertTrue("Connection still served", server.getActiveConnectionCount() == 0);
+
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+
+        UDSOIOServer server = this.connect(true, 30000);
+        assertResponse("First command failed", "SUCCESS 1\na", "echo 1\na");
+        assertResponse("Command on kept alive connection failed", "SUCCESS 1\nb", "echo 1\nb");
+
+        // commands sent together are served in order, bytes of the second command read with the first are not lost
+        this.send("echo 1\ncecho 2\nde");
+        assertTrue("Pipelined response mismatch", "SUCCESS 1\nc".equals(this.readResponse()));
+        assertTrue("Pipelined response mismatch", "SUCCESS 2\nde".equals(this.readResponse()));
+        assertTrue("Connection not served: " + server.getActiveConnectionCount(), server.getActiveConnectionCount() == 1);
+
+        // the worker is released when the client closes the connection
+        this.client.shutdownOutput();
+        assertTrue("Connection not closed", this.client.getInputStream().read() == -1);
+        this.processorThread.join(5000);
+        assertTrue("Connection still served", server.getActiveConnectionCount() == 0);
+
+    }
+
+    @Test
+    public void testKeepAliveTimeout() throws Exception {
+
+        this.connect(true, 200);
+        assertResponse("Command failed", "SUCCESS 1\na", "echo 1\na");
+
+        // the connection is closed when no command is received within the keep alive timeout
+        long start = System.currentTimeMillis();
+        assertTrue("Inactive connection not closed", this.client.getInputStream().read() == -1);
+        assertTrue("Connection closed before the keep alive timeout", System.currentTimeMillis() - start >= 150);
+
+    }
+
+    @Test
+    public void testDefaultConfigurationRejectsWhenSaturated() throws Exception {
+
+        UDSOIOServer server = new UDSOIOServer();
+        ExecutorService workerExecutors = server.createWorkerExecutors();
+        server.setWorkerExecutors(workerExecutors);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            // the default pool holds a bounded number of busy workers and waiting connections
+            boolean saturated = false;
+            try {
+                for (int i = 0; i < 10000; i++) {
+                    workerExecutors.execute(new Runnable() {
+                        public void run() {
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    });
+                }
+            } catch (RejectedExecutionException e) {
+                saturated = true;
+            }
+            assertTrue("Work not rejected by default", saturated);
+
+            // connections are rejected, i.e. closed, and counted once the pool is saturated
+            Socket rejected = new Socket();
+            server.serveClient(rejected);
+            assertTrue("Rejected connection not closed", rejected.isClosed());
+            assertTrue("Rejected connection not counted: " + server.getRejectedConnectionCount(), server.getRejectedConnectionCount() == 1);
+        } finally {
+            release.countDown();
+            workerExecutors.shutdown();
+        }
+
+    }
+
+    /** Connects a client and starts a command processor for the accepted connection */
+    private UDSOIOServer connect(boolean keepAlive, int keepAliveTimeoutMillis) throws Exception {
+        UDSOIOServer server = new UDSOIOServer();
+        server.setRepository(repository);
+        server.setKeepAlive(keepAlive);
+        server.setKeepAliveTimeoutMillis(keepAliveTimeoutMillis);
+        this.serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        this.client = new Socket("127.0.0.1", this.serverSocket.getLocalPort());
+        this.client.setSoTimeout(5000);
+        Socket accepted = this.serverSocket.accept();
+        accepted.setSoTimeout(server.getClientSocketTimeoutMillis());
+        this.processorThread = new Thread(server.new CommandProcessor(accepted));
+        this.processorThread.start();
+        return server;
+    }
+
+    private void assertResponse(String message, String expectedResponse, String command) throws Exception {
+        this.send(command);
+        String response = this.readResponse();
+        assertTrue(message + ": " + response, expectedResponse.equals(response));
+    }
+
+    private void send(String commands) throws Exception {
+        OutputStream out = this.client.getOutputStream();
+        out.write(commands.getBytes());
+        out.flush();
+    }
+
+    /** Reads a response status line and the response data, if the status line ends with the data length */
+    private String readResponse() throws Exception {
+        InputStream in = this.client.getInputStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            assertTrue("Connection closed", b != -1);
+            response.write(b);
+        }
+        String statusLine = response.toString();
+        String lastToken = statusLine.substring(statusLine.lastIndexOf(' ') + 1);
+        if (!lastToken.matches("\\d+")) {
+            return statusLine;
+        }
+        response.write('\n');
+        for (int i = Integer.parseInt(lastToken); i > 0; i--) {
+            response.write(in.read());
+        }
+        return response.toString();
+    }
+
+}
@@ -16,25 +16,46 @@
 package com.flipkart.phantom.runtime.impl.server.netty;
 
 import com.flipkart.phantom.runtime.impl.server.concurrent.NamedThreadFactory;
+import com.flipkart.phantom.runtime.impl.server.netty.handler.ReusePortBindHandler;
 import org.jboss.netty.bootstrap.Bootstrap;
 import org.jboss.netty.bootstrap.ServerBootstrap;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
  * <code>TCPNettyServer</code> is a concrete implementation of the {@link AbstractNettyNetworkServer} for {@link TRANSMISSION_PROTOCOL#TCP}
  * 
+ * Accepts are performed by a single boss thread of a single server channel, by default. When the {@link #ACCEPTOR_COUNT_OPTION} bootstrap option is greater
+ * than 1, as many server channels are bound to the port with SO_REUSEPORT, each with its own boss thread and set of worker threads, and the kernel 
+ * spreads incoming connections across them. The worker threads, {@link #getWorkerPoolSize()} if set, are divided among the acceptors. The server
+ * channels of all acceptors are unbound if any of them fails to bind. The server and worker executors shared by the acceptors are released once, when 
+ * the server is stopped and all channels have been closed. SO_REUSEPORT may also be enabled for a single server channel using the 
+ * {@link #REUSE_PORT_OPTION} bootstrap option, for e.g. to share the port with other processes. SO_REUSEPORT requires JDK 9 or later and an OS that
+ * supports it. Note that fixed size server and worker thread pools (see {@link #setServerPoolSize(int)} and {@link #setWorkerPoolSize(int)}) must have 
+ * a thread for each acceptor.
+ * 
  * @author Regunath B
  * @version 1.0, 15 Mar 2013
  */
 public class TCPNettyServer extends AbstractNettyNetworkServer {
 	
+	/** The bootstrap option for the number of server channels accepting connections on the port*/
+	public static final String ACCEPTOR_COUNT_OPTION = "acceptorCount";
+	
+	/** The bootstrap option for enabling SO_REUSEPORT on the server channels. Implied when there are many acceptors*/
+	public static final String REUSE_PORT_OPTION = "reusePort";
+	
 	/** The default counts (invalid one) for server and worker pool counts*/
 	private static final int INVALID_POOL_SIZE = -1;
 	
+	/** The default number of I/O worker threads, as used by Netty*/
+	private static final int DEFAULT_WORKER_COUNT = Runtime.getRuntime().availableProcessors() * 2;
+	
 	/** The server and worker thread pool sizes*/
 	private int serverPoolSize = INVALID_POOL_SIZE;
 	private int workerPoolSize = INVALID_POOL_SIZE;
@@ -43,6 +64,10 @@ public class TCPNettyServer extends AbstractNettyNetworkServer {
 	private ExecutorService serverExecutors;
 	private ExecutorService workerExecutors;
 	
+	/** The number of acceptors and the bootstraps of the acceptors other than the one of the super class*/
+	private int acceptorCount = 1;
+	private List<ServerBootstrap> acceptorBootstraps = new ArrayList<ServerBootstrap>();
+	
 	/**
 	 * Interface method implementation. Returns {@link TRANSMISSION_PROTOCOL#TCP}
 	 * @see com.flipkart.phantom.runtime.spi.server.NetworkServer#getTransmissionProtocol()
@@ -56,6 +81,19 @@ public class TCPNettyServer extends AbstractNettyNetworkServer {
 	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
 	 */
 	public void afterPropertiesSet() throws Exception {		
+		Object acceptorCountOption = this.getBootstrapOptions().get(TCPNettyServer.ACCEPTOR_COUNT_OPTION);
+		if (acceptorCountOption != null) {
+			this.acceptorCount = Integer.parseInt(acceptorCountOption.toString().trim());
+			if (this.acceptorCount < 1) {
+				throw new IllegalArgumentException("Bootstrap option '" + TCPNettyServer.ACCEPTOR_COUNT_OPTION + "' must be a positive integer : " + acceptorCountOption);
+			}
+			if (this.getServerPoolSize() != TCPNettyServer.INVALID_POOL_SIZE && this.getServerPoolSize() < this.acceptorCount) {
+				LOGGER.warn("Server pool size : " + this.getServerPoolSize() + " is less than the acceptor count : " + this.acceptorCount + ". Some acceptors will not accept connections");
+			}
+			if (this.getWorkerPoolSize() != TCPNettyServer.INVALID_POOL_SIZE && this.getWorkerPoolSize() < this.acceptorCount) {
+				LOGGER.warn("Worker pool size : " + this.getWorkerPoolSize() + " is less than the acceptor count : " + this.acceptorCount + ". Some connections will not be served");
+			}
+		}
 		if (this.getServerExecutors() == null) { // no executors have been set for server listener
 			if (this.getServerPoolSize() != TCPNettyServer.INVALID_POOL_SIZE) { // thread pool size has been set. create and use a fixed thread pool
 				this.setServerExecutors(Executors.newFixedThreadPool(this.getServerPoolSize(), new NamedThreadFactory("TCPServer-Listener")));
@@ -71,6 +109,33 @@ public class TCPNettyServer extends AbstractNettyNetworkServer {
 			}
 		}
 		super.afterPropertiesSet();
+		for (int i = 1; i < this.acceptorCount; i++) { // the super class has created the bootstrap of the first acceptor
+			ServerBootstrap acceptorBootstrap = (ServerBootstrap)this.createServerBootstrap();
+			acceptorBootstrap.setPipelineFactory(this.getPipelineFactory());
+			acceptorBootstrap.setOptions(this.getBootstrapOptions());
+			this.acceptorBootstraps.add(acceptorBootstrap);
+		}
+	}
+
+	/**
+	 * Overriden superclass method. Binds the server channels of all acceptors and adds them to the default channel group. The server channels already bound
+	 * are unbound if an acceptor fails to bind
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.AbstractNettyNetworkServer#doStartServer()
+	 */
+	protected void doStartServer() throws RuntimeException {
+		List<Channel> serverChannels = new ArrayList<Channel>(this.acceptorCount);
+		try {
+			serverChannels.add(this.createChannel());
+			for (ServerBootstrap acceptorBootstrap : this.acceptorBootstraps) {
+				serverChannels.add(this.bindAcceptor(acceptorBootstrap));
+			}
+		} catch (RuntimeException e) {
+			for (Channel serverChannel : serverChannels) {
+				serverChannel.close().awaitUninterruptibly();
+			}
+			throw e;
+		}
+		this.defaultChannelGroup.addAll(serverChannels);
 	}
 
 	/**
@@ -78,15 +143,28 @@ public class TCPNettyServer extends AbstractNettyNetworkServer {
 	 * @see java.lang.Object#toString()
 	 */
 	public String toString(){
-		return "TCPNettyServer [socketAddress=" + socketAddress + ", portNumber=" + portNumber + "] " + this.getPipelineFactory();
+		return "TCPNettyServer [socketAddress=" + socketAddress + ", portNumber=" + portNumber + ", acceptorCount=" + acceptorCount + "] " + this.getPipelineFactory();
 	}
 	
 	/**
-	 * Interface method implementation. Creates and returns a Netty ServerBootstrap instance
+	 * Interface method implementation. Creates and returns a Netty ServerBootstrap instance, for one acceptor. Enables SO_REUSEPORT on the server channel
+	 * if there are many acceptors or if the {@link #REUSE_PORT_OPTION} bootstrap option is set
 	 * @see com.flipkart.phantom.runtime.impl.server.netty.AbstractNetworkServer#createServerBootstrap()
 	 */
 	protected Bootstrap createServerBootstrap() throws RuntimeException {
-		return new ServerBootstrap(new NioServerSocketChannelFactory(this.getServerExecutors(), this.getWorkerExecutors()));
+		ServerBootstrap serverBootstrap;
+		if (this.acceptorCount > 1) { // divide the worker threads among the acceptors
+			int workerCount = (this.getWorkerPoolSize() != TCPNettyServer.INVALID_POOL_SIZE ? this.getWorkerPoolSize() : TCPNettyServer.DEFAULT_WORKER_COUNT);
+			serverBootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(this.getServerExecutors(), this.getWorkerExecutors(), 
+					Math.max(1, workerCount / this.acceptorCount)));
+		} else {
+			serverBootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(this.getServerExecutors(), this.getWorkerExecutors()));
+		}
+		Object reusePortOption = this.getBootstrapOptions().get(TCPNettyServer.REUSE_PORT_OPTION);
+		if (this.acceptorCount > 1 || (reusePortOption != null && Boolean.valueOf(reusePortOption.toString().trim()))) {
+			serverBootstrap.setParentHandler(new ReusePortBindHandler());
+		}
+		return serverBootstrap;
 	}
 
 	/**
@@ -101,6 +179,15 @@ public class TCPNettyServer extends AbstractNettyNetworkServer {
 		return ((ServerBootstrap)this.serverBootstrap).bind(this.socketAddress);
 	}
 
+	/**
+	 * Binds the server channel of the specified acceptor, other than the first one, to the socket address of this server
+	 * @param acceptorBootstrap the ServerBootstrap of the acceptor
+	 * @return the bound server channel
+	 */
+	protected Channel bindAcceptor(ServerBootstrap acceptorBootstrap) throws RuntimeException {
+		return acceptorBootstrap.bind(this.socketAddress);
+	}
+
     /**
      * Abstract method implementation. Returns server type as string.
      */
@@ -140,6 +227,9 @@ public class TCPNettyServer extends AbstractNettyNetworkServer {
 	public void setWorkerExecutors(ExecutorService workerExecutors) {
 		this.workerExecutors = workerExecutors;
 	}	
+	public int getAcceptorCount() {
+		return this.acceptorCount;
+	}
 	/** End Getter/Setter methods */
 	
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty;
+
+import com.flipkart.phantom.runtime.impl.server.concurrent.NamedThreadFactory;
+import com.flipkart.phantom.runtime.impl.server.netty.handler.command.DatagramCommandProcessingChannelHandler;
+import org.jboss.netty.bootstrap.Bootstrap;
+import org.jboss.netty.bootstrap.ConnectionlessBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.FixedReceiveBufferSizePredictorFactory;
+import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <code>UDPNettyServer</code> is a concrete implementation of the {@link AbstractNettyNetworkServer} for {@link TRANSMISSION_PROTOCOL#UDP}.
+ * Binds a single datagram channel, typically with a {@link DatagramCommandProcessingChannelHandler} in its pipeline, for ingesting fire-and-forget
+ * commands without the connection setup and response overhead of the TCP server. Datagrams larger than {@link #getMaxDatagramSize()} are truncated,
+ * unless a "receiveBufferSizePredictorFactory" is specified in the bootstrap options.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class UDPNettyServer extends AbstractNettyNetworkServer {
+
+	/** The default count (invalid one) for worker pool count*/
+	private static final int INVALID_POOL_SIZE = -1;
+
+	/** The default max size of received datagrams*/
+	private static final int DEFAULT_MAX_DATAGRAM_SIZE = 8192;
+
+	/** The bootstrap option for the receive buffer size predictor*/
+	private static final String RECEIVE_BUFFER_SIZE_PREDICTOR_FACTORY_OPTION = "receiveBufferSizePredictorFactory";
+
+	/** The worker thread pool size*/
+	private int workerPoolSize = INVALID_POOL_SIZE;
+
+	/** The worker ExecutorService instance*/
+	private ExecutorService workerExecutors;
+
+	/** The max size of received datagrams*/
+	private int maxDatagramSize = DEFAULT_MAX_DATAGRAM_SIZE;
+
+	/** The bound datagram channel, null until the server is started*/
+	private volatile Channel channel;
+
+	/**
+	 * Interface method implementation. Returns {@link TRANSMISSION_PROTOCOL#UDP}
+	 * @see com.flipkart.phantom.runtime.spi.server.NetworkServer#getTransmissionProtocol()
+	 */
+	public TransmissionProtocol getTransmissionProtocol() {
+		return TRANSMISSION_PROTOCOL.UDP;
+	}
+
+	/**
+	 * Interface method implementation. Creates the worker thread pool if required and then calls {@link #afterPropertiesSet()} on the super class
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		if (this.getWorkerExecutors() == null) {  // no executors have been set for workers
+			if (this.getWorkerPoolSize() != UDPNettyServer.INVALID_POOL_SIZE) { // thread pool size has been set. create and use a fixed thread pool
+				this.setWorkerExecutors(Executors.newFixedThreadPool(this.getWorkerPoolSize(), new NamedThreadFactory("UDPServer-Worker")));
+			}else { // default behavior of creating and using a cached thread pool
+				this.setWorkerExecutors(Executors.newCachedThreadPool(new NamedThreadFactory("UDPServer-Worker")));
+			}
+		}
+		if (!this.getBootstrapOptions().containsKey(RECEIVE_BUFFER_SIZE_PREDICTOR_FACTORY_OPTION)) { // Netty truncates datagrams to 768 bytes by default
+			this.getBootstrapOptions().put(RECEIVE_BUFFER_SIZE_PREDICTOR_FACTORY_OPTION, new FixedReceiveBufferSizePredictorFactory(this.getMaxDatagramSize()));
+		}
+		super.afterPropertiesSet();
+	}
+
+	/**
+	 * Overriden super class method. Returns a readable string for this UDPNettyServer
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString(){
+		return "UDPNettyServer [socketAddress=" + socketAddress + ", portNumber=" + portNumber + "] " + this.getPipelineFactory();
+	}
+
+	/**
+	 * Interface method implementation. Creates and returns a Netty ConnectionlessBootstrap instance. A single worker is used as the server binds a
+	 * single datagram channel
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.AbstractNettyNetworkServer#createServerBootstrap()
+	 */
+	protected Bootstrap createServerBootstrap() throws RuntimeException {
+		return new ConnectionlessBootstrap(new NioDatagramChannelFactory(this.getWorkerExecutors(), 1));
+	}
+
+	/**
+	 * Abstract method implementation. Creates and returns a Netty Channel from the ConnectionlessBootstrap that was
+	 * previously created in {@link UDPNettyServer#createServerBootstrap()}
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.AbstractNettyNetworkServer#createChannel()
+	 */
+	protected Channel createChannel() throws RuntimeException {
+		if (this.getServerBootstrap() == null) {
+			throw new RuntimeException("Error creating Channel. Bootstrap instance cannot be null. See UDPNettyServer#createServerBootstrap()");
+		}
+		this.channel = ((ConnectionlessBootstrap)this.serverBootstrap).bind(this.socketAddress);
+		return this.channel;
+	}
+
+	/**
+	 * Returns the DatagramCommandProcessingChannelHandler in the pipeline of the bound channel, for display of its command counters
+	 * @return the DatagramCommandProcessingChannelHandler, null if the server is not started or the pipeline has none
+	 */
+	public DatagramCommandProcessingChannelHandler getDatagramCommandHandler() {
+		Channel channel = this.channel;
+		return channel == null ? null : channel.getPipeline().get(DatagramCommandProcessingChannelHandler.class);
+	}
+
+    /**
+     * Abstract method implementation. Returns server type as string.
+     */
+    public String getServerType() {
+        return "UDP Netty Server";
+    }
+
+    /**
+     * Abstract method implementation. Returns server endpoint as string.
+     */
+    public String getServerEndpoint() {
+        return ""+this.portNumber;
+    }
+
+	/** Start Getter/Setter methods */
+	public int getWorkerPoolSize() {
+		return this.workerPoolSize;
+	}
+	public void setWorkerPoolSize(int workerPoolSize) {
+		this.workerPoolSize = workerPoolSize;
+	}
+	public ExecutorService getWorkerExecutors() {
+		return this.workerExecutors;
+	}
+	public void setWorkerExecutors(ExecutorService workerExecutors) {
+		this.workerExecutors = workerExecutors;
+	}
+	public int getMaxDatagramSize() {
+		return this.maxDatagramSize;
+	}
+	public void setMaxDatagramSize(int maxDatagramSize) {
+		this.maxDatagramSize = maxDatagramSize;
+	}
+	/** End Getter/Setter methods */
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.decoder.command;
+
+import com.flipkart.phantom.runtime.impl.server.netty.handler.command.BinaryCommandInterpreter;
+import com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>BinaryCommandBufferDecoder</code> is an extension of the Netty {@link FrameDecoder} that ensures that all bytes of a binary (v2) Command protocol
+ * frame have been received before the {@link MessageEvent} is constructed for use by other upstream channel handlers. The binary protocol is described in
+ * {@link BinaryCommandInterpreter}. Frames are length prefixed and therefore located by reading the frame header only. The decoded
+ * {@link CommandInterpreter.ProxyCommand} is sent upstream as the message.
+ * This decoder holds the command names interned on the channel. Instances of this decoder must therefore not be shared across channels.
+ * Upstream command handlers must be configured to use the {@link BinaryCommandInterpreter} for writing responses.
+ *
+ * @version 1.0, 16 Oct 2026
+ */
+public class BinaryCommandBufferDecoder extends FrameDecoder {
+
+    /** Logger for this class*/
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinaryCommandBufferDecoder.class);
+
+    /** The BinaryCommandInterpreter for interpreting command frames*/
+    private BinaryCommandInterpreter commandInterpreter = new BinaryCommandInterpreter();
+
+    /** The command names interned on the channel, indexed by command id*/
+    private String[] commandNames = new String[BinaryCommandInterpreter.MAX_COMMAND_IDS];
+
+	/**
+	 * Overriden super class method. Uses {@link BinaryCommandInterpreter#interpretCommand(ChannelBuffer, String[])} to interpret the frame. Returns the
+	 * decoded {@link CommandInterpreter.ProxyCommand} when all the frame bytes have been received, returns a null otherwise.
+	 * @see org.jboss.netty.handler.codec.frame.FrameDecoder#decode(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.Channel, org.jboss.netty.buffer.ChannelBuffer)
+	 */
+	protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
+		CommandInterpreter.ProxyCommand proxyCommand = this.commandInterpreter.interpretCommand(buffer, this.commandNames);
+		if (proxyCommand == null) {
+			LOGGER.debug("Frame decode failed due to insufficient data. Readable bytes : " + buffer.readableBytes());
+		}
+		return proxyCommand; // Netty will call this decoder again when more data is available, if null
+	}
+
+}
@@ -16,21 +16,32 @@
 package com.flipkart.phantom.runtime.impl.server.netty.decoder.command;
 
 import com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter;
-import com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter.ReadFailure;
+import com.flipkart.phantom.task.impl.StreamingTaskHandler;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.frame.FrameDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 /**
  * <code>CommandBufferDecoder</code> is an extension of the Netty {@link FrameDecoder} that ensures that all Command protocol bytes have been received
  * before the {@link MessageEvent} is constructed for use by other upstream channel handlers.
- * The Command protocol does not indicate length of bytes relayed up front. Occurrence of a line feed ({@link CommandInterpreter#LINE_FEED}) or total byte size 
- * equal to or greater than {@link CommandInterpreter#MAX_COMMAND_INPUT} is treated as end of input bytes. The {@link CommandInterpreter} is used to interpret
- * the protocol bytes. Any Exception in reading the Command is caught
+ * The Command protocol does not indicate length of bytes relayed up front. Occurrence of a line feed ({@link CommandInterpreter#LINE_FEED}) marks the end
+ * of the command line while total byte size equal to or greater than {@link CommandInterpreter#MAX_COMMAND_INPUT} without a line feed is treated as an error.
+ * The {@link CommandInterpreter} is used to interpret the command line and the decoded {@link CommandInterpreter.ProxyCommand} is sent upstream as the 
+ * message, thereby saving upstream handlers from interpreting the same bytes again.
+ * This decoder is stateful across partial reads : bytes already scanned for the line feed are not scanned again and the command line is interpreted only 
+ * once, even if the command data arrives over multiple reads. Instances of this decoder must therefore not be shared across channels.
+ * Command data larger than {@link #getStreamingWindowSize()} is streamed to commands executed by a {@link StreamingTaskHandler}, if the 
+ * {@link #getRepository()} is set : the command is sent upstream as soon as its command line is interpreted, with the data available as a 
+ * {@link CommandDataInputStream} that is fed as data bytes are received. At most a window of data bytes is buffered per command, reads on the channel
+ * being suspended until the command has consumed the buffered data.
  * 
  * @author Regunath B
  * @version 1.0, 12 April, 2013
@@ -40,23 +51,130 @@ public class CommandBufferDecoder extends FrameDecoder {
     /** Logger for this class*/
     private static final Logger LOGGER = LoggerFactory.getLogger(CommandBufferDecoder.class);
 
+    /** The CommandInterpreter for interpreting the command line*/
+    private CommandInterpreter commandInterpreter = new CommandInterpreter();
+
+    /** The number of bytes, from the reader index, already scanned for the line feed*/
+    private int scannedBytes;
+
+    /** The command whose command line has been interpreted but whose data bytes are yet to be received fully*/
+    private CommandInterpreter.ProxyCommand pendingCommand;
+
+    /** The offset, from the reader index, of the command data of the pending command*/
+    private int pendingDataOffset;
+
+    /** The default streaming window size*/
+    public static final int DEFAULT_STREAMING_WINDOW_SIZE = 1024 * 1024;
+
+    /** The TaskHandlerExecutorRepository to look up streaming commands from. Command data is not streamed if this is not set*/
+    private TaskHandlerExecutorRepository repository;
+
+    /** The streaming window size i.e. data size above which command data is streamed and the maximum data bytes buffered per streamed command*/
+    private int streamingWindowSize = DEFAULT_STREAMING_WINDOW_SIZE;
+
+    /** The stream of the command whose data is being streamed and the number of data bytes yet to be received for it*/
+    private CommandDataInputStream streamingData;
+    private int streamingRemaining;
+
 	/**
-	 * Overriden super class method. Uses the {@link CommandInterpreter#readCommand(ChannelBuffer)} to interpret the Command and thereby check if all bytes have
-	 * been received, returns a null otherwise.
+	 * Overriden super class method. Looks for the end of the command line and uses {@link CommandInterpreter#interpretCommandLine(ChannelBuffer, int)} to 
+	 * interpret it. Returns the decoded {@link CommandInterpreter.ProxyCommand} when all the command data bytes have been received, returns a null otherwise.
 	 * @see org.jboss.netty.handler.codec.frame.FrameDecoder#decode(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.Channel, org.jboss.netty.buffer.ChannelBuffer)
 	 */
 	protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
-		int beginIndex = buffer.readerIndex();
-		buffer.markReaderIndex();
-		CommandInterpreter.ProxyCommand proxyCommand = new CommandInterpreter().interpretCommand(buffer);
-		if (proxyCommand.getReadFailure() != null && proxyCommand.getReadFailure() == ReadFailure.INSUFFICIENT_DATA) {
-			LOGGER.debug("Frame decode failed due to insufficient data. Message is : " + proxyCommand.getReadFailureDescription());
-            buffer.resetReaderIndex();
+		if (this.streamingData != null) {
+			this.feedStreamingData(buffer);
+			return null; // Netty will call this decoder again for the next command, if more bytes are readable
+		}
+		if (this.pendingCommand == null) {
+			int scanLength = Math.min(buffer.readableBytes(), CommandInterpreter.MAX_COMMAND_INPUT);
+			int lineFeedOffset = buffer.bytesBefore(buffer.readerIndex() + this.scannedBytes, scanLength - this.scannedBytes, (byte)CommandInterpreter.LINE_FEED);
+			if (lineFeedOffset < 0) {
+				if (scanLength == CommandInterpreter.MAX_COMMAND_INPUT) {
+					throw new IllegalArgumentException("Maximum command line size allowed: " + CommandInterpreter.MAX_COMMAND_INPUT);
+				}
+				this.scannedBytes = scanLength;
+				LOGGER.debug("Frame decode failed due to insufficient data. Line feed not found in : " + this.scannedBytes + " bytes");
+				return null; // we return null here and Netty will call this decoder again when more data is available
+			}
+			int lineFeedIndex = buffer.readerIndex() + this.scannedBytes + lineFeedOffset;
+			this.scannedBytes = 0;
+			this.pendingCommand = this.commandInterpreter.interpretCommandLine(buffer, lineFeedIndex);
+			this.pendingDataOffset = lineFeedIndex + 1 - buffer.readerIndex();
+		}
+		int dataLength = this.pendingCommand.getDataLength();
+		if (this.isStreamed(this.pendingCommand)) {
+			CommandInterpreter.ProxyCommand proxyCommand = this.pendingCommand;
+			this.pendingCommand = null;
+			buffer.skipBytes(this.pendingDataOffset);
+			this.streamingData = new CommandDataInputStream(channel, this.streamingWindowSize);
+			this.streamingRemaining = dataLength;
+			proxyCommand.setCommandDataStream(this.streamingData);
+			this.feedStreamingData(buffer);
+			return proxyCommand;
+		}
+		if (buffer.readableBytes() < this.pendingDataOffset + dataLength) {
+			LOGGER.debug("Frame decode failed due to insufficient data. Length of data bytes needed : " + (this.pendingDataOffset + dataLength - buffer.readableBytes()));
 			return null; // we return null here and Netty will call this decoder again when more data is available
 		}
-	    int endIndex = buffer.readerIndex();
-	    buffer.resetReaderIndex();
-	    return buffer.readSlice(endIndex - beginIndex);		
+		CommandInterpreter.ProxyCommand proxyCommand = this.pendingCommand;
+		this.pendingCommand = null;
+		if (dataLength > 0) {
+			proxyCommand.setCommandDataBuffer(buffer.slice(buffer.readerIndex() + this.pendingDataOffset, dataLength));
+		}
+		buffer.skipBytes(this.pendingDataOffset + dataLength);
+		return proxyCommand;
+	}
+
+	/**
+	 * Overriden super class method. Fails the stream of the command whose data is being streamed, if any, before calling the super class method
+	 * @see org.jboss.netty.handler.codec.frame.FrameDecoder#channelClosed(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
+	 */
+	public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent event) throws Exception {
+		if (this.streamingData != null) {
+			this.streamingData.fail(new IOException("Channel closed with " + this.streamingRemaining + " command data bytes yet to be received"));
+			this.streamingData = null;
+		}
+		super.channelClosed(ctx, event);
+	}
+
+	/**
+	 * Helper method to determine if the data of the specified command is to be streamed
+	 */
+	private boolean isStreamed(CommandInterpreter.ProxyCommand proxyCommand) {
+		return this.repository != null && proxyCommand.getDataLength() > this.streamingWindowSize 
+				&& this.repository.isStreamingCommand(proxyCommand.getCommand());
+	}
+
+	/**
+	 * Helper method to feed readable data bytes of the command whose data is being streamed. Ends the stream when all the data bytes have been received.
+	 * The bytes are copied as the buffer is reused by this decoder for subsequent reads.
+	 */
+	private void feedStreamingData(ChannelBuffer buffer) {
+		int length = Math.min(buffer.readableBytes(), this.streamingRemaining);
+		if (length > 0) {
+			this.streamingData.addChunk(buffer.readBytes(length));
+			this.streamingRemaining -= length;
+		}
+		if (this.streamingRemaining == 0) {
+			this.streamingData.end();
+			this.streamingData = null;
+		}
+	}
+
+	/** Start Getter/Setter methods */
+	public TaskHandlerExecutorRepository getRepository() {
+		return this.repository;
+	}
+	public void setRepository(TaskHandlerExecutorRepository repository) {
+		this.repository = repository;
+	}
+	public int getStreamingWindowSize() {
+		return this.streamingWindowSize;
+	}
+	public void setStreamingWindowSize(int streamingWindowSize) {
+		this.streamingWindowSize = streamingWindowSize;
 	}
+	/** End Getter/Setter methods */
 
 }
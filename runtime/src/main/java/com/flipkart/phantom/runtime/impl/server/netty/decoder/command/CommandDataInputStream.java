@@ -0,0 +1,208 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.decoder.command;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+
+/**
+ * <code>CommandDataInputStream</code> is an {@link InputStream} over command data that is still being received on a {@link Channel}. Data chunks are added 
+ * by the channel's I/O worker as they are read and are consumed by the thread executing the command.
+ * The number of bytes buffered is bounded by a window : reads on the channel are suspended when the buffered bytes reach the window size and are resumed 
+ * when the consumer has drained the buffer to half the window size. The buffered bytes may exceed the window by the size of a single channel read.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class CommandDataInputStream extends InputStream {
+
+	/** The Channel on which the command data is received*/
+	private Channel channel;
+
+	/** The maximum number of bytes to buffer before suspending reads on the channel*/
+	private int windowSize;
+
+	/** The received data chunks that are yet to be read*/
+	private LinkedList<ChannelBuffer> chunks = new LinkedList<ChannelBuffer>();
+
+	/** The number of bytes buffered in the chunks*/
+	private int bufferedBytes;
+
+	/** State indicators for end of data, closure of this stream and reads suspended on the channel*/
+	private boolean ended;
+	private boolean closed;
+	private boolean suspended;
+
+	/** The cause, if the command data could not be received fully*/
+	private IOException failure;
+
+	/**
+	 * Constructor for this class
+	 * @param channel the Channel on which the command data is received. May be null if flow control is not required
+	 * @param windowSize the maximum number of bytes to buffer before suspending reads on the channel
+	 */
+	public CommandDataInputStream(Channel channel, int windowSize) {
+		this.channel = channel;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Adds the specified chunk of command data to this stream. Suspends reads on the channel if the buffered bytes reach the window size.
+	 * Chunks added after this stream has been closed are discarded.
+	 * @param chunk the ChannelBuffer containing the data chunk. Must not be modified after calling this method
+	 */
+	public void addChunk(ChannelBuffer chunk) {
+		boolean suspend = false;
+		synchronized(this) {
+			if (this.closed || !chunk.readable()) {
+				return;
+			}
+			this.chunks.add(chunk);
+			this.bufferedBytes += chunk.readableBytes();
+			if (this.bufferedBytes >= this.windowSize && !this.suspended) {
+				suspend = this.suspended = true;
+			}
+			this.notifyAll();
+		}
+		if (suspend && this.channel != null) {
+			this.channel.setReadable(false);
+		}
+	}
+
+	/**
+	 * Marks the end of the command data. Readers receive end of stream once the buffered chunks have been read.
+	 */
+	public synchronized void end() {
+		this.ended = true;
+		this.notifyAll();
+	}
+
+	/**
+	 * Marks this stream as failed i.e. the command data could not be received fully. Readers receive the specified exception once the buffered chunks
+	 * have been read.
+	 * @param failure the cause of the failure
+	 */
+	public synchronized void fail(IOException failure) {
+		if (!this.ended) {
+			this.failure = failure;
+			this.ended = true;
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns true if all the command data has been received or the stream has failed
+	 * @return true if no more data chunks are expected
+	 */
+	public synchronized boolean isEnded() {
+		return this.ended;
+	}
+
+	/**
+	 * Interface method implementation. Reads a single byte, waiting for data to be received if required
+	 * @see java.io.InputStream#read()
+	 */
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		int read = this.read(b, 0, 1);
+		return read < 0 ? -1 : (b[0] & 0xFF);
+	}
+
+	/**
+	 * Overriden super class method. Reads available bytes, waiting for data to be received if none is available. Resumes reads on the channel if 
+	 * they had been suspended and the buffered bytes have dropped to half the window size.
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int read = 0;
+		boolean resume = false;
+		synchronized(this) {
+			while (this.chunks.isEmpty()) {
+				if (this.closed) {
+					throw new IOException("Stream closed");
+				}
+				if (this.ended) {
+					if (this.failure != null) {
+						throw this.failure;
+					}
+					return -1;
+				}
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted waiting for command data");
+				}
+			}
+			while (read < len && !this.chunks.isEmpty()) {
+				ChannelBuffer chunk = this.chunks.getFirst();
+				int count = Math.min(len - read, chunk.readableBytes());
+				chunk.readBytes(b, off + read, count);
+				read += count;
+				if (!chunk.readable()) {
+					this.chunks.removeFirst();
+				}
+			}
+			this.bufferedBytes -= read;
+			if (this.suspended && this.bufferedBytes <= this.windowSize / 2) {
+				this.suspended = false;
+				resume = true;
+			}
+		}
+		if (resume && this.channel != null) {
+			this.channel.setReadable(true);
+		}
+		return read;
+	}
+
+	/**
+	 * Overriden super class method. Returns the number of buffered bytes
+	 * @see java.io.InputStream#available()
+	 */
+	public synchronized int available() throws IOException {
+		return this.bufferedBytes;
+	}
+
+	/**
+	 * Overriden super class method. Discards buffered chunks and any chunks received subsequently, resuming reads on the channel if they had been suspended
+	 * @see java.io.InputStream#close()
+	 */
+	public void close() throws IOException {
+		boolean resume = false;
+		synchronized(this) {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			this.chunks.clear();
+			this.bufferedBytes = 0;
+			resume = this.suspended;
+			this.suspended = false;
+			this.notifyAll();
+		}
+		if (resume && this.channel != null) {
+			this.channel.setReadable(true);
+		}
+	}
+
+}
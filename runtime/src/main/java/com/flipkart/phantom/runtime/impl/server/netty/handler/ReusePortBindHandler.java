@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.handler;
+
+import org.jboss.netty.channel.ChannelException;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * <code>ReusePortBindHandler</code> is a {@link SimpleChannelDownstreamHandler} that enables the SO_REUSEPORT socket option on a Netty NIO server
+ * channel when its bind is requested, so that many server channels may be bound to the same port and the kernel distributes incoming connections
+ * across them. It is meant to be the parent handler of a ServerBootstrap, see {@link org.jboss.netty.bootstrap.ServerBootstrap#setParentHandler(ChannelHandler)}.
+ * SO_REUSEPORT requires JDK 9 or later and an OS that supports it (for e.g. Linux 3.9+). The bind fails if the option cannot be enabled.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+@ChannelHandler.Sharable
+public class ReusePortBindHandler extends SimpleChannelDownstreamHandler {
+
+	/** The name of the field holding the JDK server socket channel in Netty NIO server channels*/
+	private static final String SOCKET_FIELD = "socket";
+
+	/**
+	 * Overriden superclass method. Enables SO_REUSEPORT on the channel's socket before passing on the bind request. Fails the bind if it cannot be enabled
+	 * @see org.jboss.netty.channel.SimpleChannelDownstreamHandler#bindRequested(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
+	 */
+	public void bindRequested(ChannelHandlerContext ctx, ChannelStateEvent event) throws Exception {
+		try {
+			enableReusePort(event.getChannel());
+		} catch (Exception e) {
+			event.getFuture().setFailure(new ChannelException("Failed to enable SO_REUSEPORT on channel : " + event.getChannel(), e));
+			return;
+		}
+		super.bindRequested(ctx, event);
+	}
+
+	/**
+	 * Enables SO_REUSEPORT on the JDK server socket channel wrapped by the specified Netty channel. Uses reflection as the socket is not exposed by Netty
+	 * and as the option is not available in the JDK version this code is compiled for.
+	 * @param channel the Netty NIO server channel
+	 * @throws Exception in case the option cannot be enabled
+	 */
+	private void enableReusePort(Object channel) throws Exception {
+		Field socketField = channel.getClass().getDeclaredField(SOCKET_FIELD);
+		socketField.setAccessible(true);
+		ServerSocketChannel socket = (ServerSocketChannel)socketField.get(channel);
+		Object reusePortOption = Class.forName("java.net.StandardSocketOptions").getField("SO_REUSEPORT").get(null);
+		Method setOption = ServerSocketChannel.class.getMethod("setOption", Class.forName("java.net.SocketOption"), Object.class);
+		try {
+			setOption.invoke(socket, reusePortOption, Boolean.TRUE);
+		} catch (InvocationTargetException e) {
+			throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+		}
+	}
+
+}
@@ -27,6 +27,11 @@ import java.util.Map;
 /**
  * <code>AsyncCommandProcessingChannelHandler</code> is similar to @link{CommandProcessingChannelHandler} except it executes the
  * commands asynchronously.
+ * Command results are not written by default. When {@link #isWriteCommandResults()} is set, the result of each command is written to the channel when the 
+ * command completes, without the channel's I/O worker waiting on it. Results are written in order of completion and are prefixed with the 
+ * {@link CommandInterpreter#REQUEST_ID_PARAM} param of the command, if specified, as in multiplexed mode.
+ * Command data streamed by the upstream CommandBufferDecoder is passed to the executed command as a stream.
+ * Commands still queued when the deadline specified using the {@link CommandInterpreter#DEADLINE_PARAM} param is reached are dropped.
  *
  * @author devashish.shankar
  * @version 1.0, 10 Jun 2013
@@ -45,6 +50,12 @@ public class AsyncCommandProcessingChannelHandler extends SimpleChannelUpstreamH
 	/** The TaskRepository to lookup TaskHandlerExecutors from */
 	private TaskHandlerExecutorRepository repository;
 
+	/** The CommandInterpreter for reading commands and writing responses. Set to a {@link BinaryCommandInterpreter} for the binary command protocol*/
+	private CommandInterpreter commandInterpreter = new CommandInterpreter();
+
+	/** Indicator to write command results to the channel when commands complete*/
+	private boolean writeCommandResults;
+
 	/**
 	 * Overriden superclass method. Adds the newly created Channel to the default channel group and calls the super class {@link #channelOpen(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)} method
 	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#channelOpen(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
@@ -55,13 +66,23 @@ public class AsyncCommandProcessingChannelHandler extends SimpleChannelUpstreamH
 	}
 
 	/**
-	 * Interface method implementation. Reads and processes commands sent to the service proxy. Expects data in the command protocol defined in the class summary.
+	 * Overriden superclass method. Closes the CommandInterpreter, releasing the thread that produces result chunks for this channel, if any
+	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#channelClosed(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
+	 */
+	public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent event) throws Exception {
+		this.commandInterpreter.close();
+		super.channelClosed(ctx, event);
+	}
+
+	/**
+	 * Interface method implementation. Reads and processes commands sent to the service proxy. Expects data in the command protocol defined in the class summary,
+	 * either as the {@link CommandInterpreter.ProxyCommand} decoded by an upstream CommandBufferDecoder or as raw bytes.
 	 * Discards commands that do not have a {@link com.flipkart.sp.task.spi.task.TaskHandler} mapping.
 	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#handleUpstream(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelEvent)
 	 */
 	public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent event) throws Exception {    
 		if (MessageEvent.class.isAssignableFrom(event.getClass())) {			
-			CommandInterpreter commandInterpreter = new CommandInterpreter();
+			CommandInterpreter commandInterpreter = this.commandInterpreter;
 			CommandInterpreter.ProxyCommand readCommand = commandInterpreter.readCommand((MessageEvent)event);	
 			LOGGER.debug("Read Command : " + readCommand);
 			String pool = readCommand.getCommandParams().get("pool");
@@ -76,10 +97,32 @@ public class AsyncCommandProcessingChannelHandler extends SimpleChannelUpstreamH
             Map params = readCommand.getCommandParams();
             byte[] data = readCommand.getCommandData();
             try {
-                this.repository.executeAsyncCommand(commandName,poolName,data,params);
+                executor = this.repository.get(commandName,poolName);
+                if (executor == null) {
+                    throw new UnsupportedOperationException("Invoked unsupported command : " + commandName);
+                }
+                executor.setParams(params);
+                if (readCommand.getCommandDataStream() != null) {
+                    executor.setDataStream(readCommand.getCommandDataStream());
+                } else {
+                    executor.setData(data);
+                }
+                executor.setDeadline(readCommand.getDeadline());
+                if (readCommand.getPriority() != null) {
+                    executor.setPriority(readCommand.getPriority());
+                }
+                if (this.writeCommandResults) {
+                    String requestId = readCommand.getCommandParams().remove(CommandInterpreter.REQUEST_ID_PARAM);
+                    this.repository.executeAsyncCommand(executor,new CommandResultWriter(ctx, event, commandInterpreter, requestId));
+                } else {
+                    executor.queue();
+                }
                 LOGGER.debug("Successfully started execution for async command "+commandName);
             } catch(Exception e) {
                 LOGGER.error("Error asynchronously executing the command", e);
+                if (readCommand.getCommandDataStream() != null) {
+                    readCommand.getCommandDataStream().close(); // discard the data still being received
+                }
             }
 		} 		
 		super.handleUpstream(ctx, event);
@@ -107,6 +150,18 @@ public class AsyncCommandProcessingChannelHandler extends SimpleChannelUpstreamH
 	public void setRepository(TaskHandlerExecutorRepository repository) {
 		this.repository = repository;
 	}
+	public CommandInterpreter getCommandInterpreter() {
+		return this.commandInterpreter;
+	}
+	public void setCommandInterpreter(CommandInterpreter commandInterpreter) {
+		this.commandInterpreter = commandInterpreter;
+	}
+	public boolean isWriteCommandResults() {
+		return this.writeCommandResults;
+	}
+	public void setWriteCommandResults(boolean writeCommandResults) {
+		this.writeCommandResults = writeCommandResults;
+	}
 	/** End Getter/Setter methods */
 }
 
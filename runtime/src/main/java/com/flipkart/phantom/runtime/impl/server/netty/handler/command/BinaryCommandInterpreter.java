@@ -0,0 +1,340 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.handler.command;
+
+import com.flipkart.phantom.task.impl.TaskResult;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.MessageEvent;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <code>BinaryCommandInterpreter</code> is a sub-type of {@link CommandInterpreter} that reads commands and writes responses using the binary (v2)
+ * command protocol. The binary protocol carries the same information as the text protocol but frames are length prefixed, so that a frame may be
+ * located by reading a fixed size header, and the command name is interned per connection.
+ *
+ * The binary command protocol is described below. All lengths are unsigned varints (7 bits per byte, least significant group first, high bit set on all
+ * but the last byte) and all Strings are UTF-8 encoded bytes prefixed with their varint length.
+ *
+ * <pre>
+ * Command frame:
+ * +-------+--------------+-------------+----------------+-------------+--------------------+--------------+
+ * | magic | frame length | command ref | [command name] | param count | param key, value.. | payload bytes|
+ * +-------+--------------+-------------+----------------+-------------+--------------------+--------------+
+ *
+ * magic        : the {@link #MAGIC} byte
+ * frame length : number of bytes in the frame following this field
+ * command ref  : (command id << 1) | 1 when the frame defines the command id using the command name that follows, (command id << 1) when the frame
+ *                refers to a command id defined earlier on the same connection. Command ids must be less than {@link #MAX_COMMAND_IDS}
+ * payload bytes: the command data i.e. all remaining bytes of the frame
+ *
+ * Response frame:
+ * +-------+--------------+-------+--------------+-----------+---------------+
+ * | magic | frame length | flags | [request id] | [message] | payload bytes |
+ * +-------+--------------+-------+--------------+-----------+---------------+
+ *
+ * flags        : bit mask of {@link #RESULT_SUCCESS}, {@link #RESULT_MESSAGE} and {@link #RESULT_REQUEST_ID} that indicate success and presence of
+ *                the optional message and request id Strings respectively
+ * payload bytes: the TaskResult data i.e. all remaining bytes of the frame
+ *
+ * The response frame of a chunked result has the {@link #RESULT_CHUNKED} flag set and no payload. It is followed by chunk frames, response frames that
+ * have the {@link #RESULT_CHUNK} flag set, the request id if multiplexed and the chunk as payload. A chunk frame with no payload terminates the result.
+ * </pre>
+ *
+ * Multiplexing, when negotiated, uses the {@link CommandInterpreter#REQUEST_ID_PARAM} param as in the text protocol. The command data of a
+ * {@link CommandInterpreter#MULTI_COMMAND} is the sequence of binary sub-command frames, each of which must define the command id it uses, and the 
+ * response data is the sequence of binary sub-command response frames.
+ * This class is thread-safe, the command names interned on a connection are held by the caller e.g. a frame decoder.
+ *
+ * @version 1.0, 16 Oct 2026
+ */
+public class BinaryCommandInterpreter extends CommandInterpreter {
+
+	/** The magic byte that starts every binary command protocol frame*/
+	public static final byte MAGIC = (byte)0xB2;
+
+	/** Maximum number of command ids that may be defined on a connection*/
+	public static final int MAX_COMMAND_IDS = 1024;
+
+	/** Maximum allowed frame length*/
+	public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+	/** Response flags*/
+	public static final byte RESULT_SUCCESS = 0x01;
+	public static final byte RESULT_MESSAGE = 0x02;
+	public static final byte RESULT_REQUEST_ID = 0x04;
+	public static final byte RESULT_CHUNKED = 0x08;
+	public static final byte RESULT_CHUNK = 0x10;
+
+	/** Maximum number of bytes in a 32-bit varint*/
+	private static final int MAX_VARINT_BYTES = 5;
+
+	/** The Charset for command, param and message Strings*/
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Overriden superclass method. Returns the message as-is if it is a ProxyCommand already decoded by an upstream frame decoder, interprets the
+	 * message as a single binary command frame otherwise. Throws Exception for all data read errors including partial reads arising from insufficient data.
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter#readCommand(org.jboss.netty.channel.MessageEvent)
+	 */
+	public ProxyCommand readCommand(MessageEvent event) throws Exception {
+		if (event.getMessage() instanceof ProxyCommand) {
+			return (ProxyCommand)event.getMessage();
+		}
+		ProxyCommand readCommand = this.interpretCommand((ChannelBuffer)event.getMessage(), new String[MAX_COMMAND_IDS]);
+		if (readCommand == null) {
+			throw new IllegalArgumentException("Insufficient bytes read for binary command frame");
+		}
+		return readCommand;
+	}
+
+	/**
+	 * Overriden superclass method. Interprets a single binary command frame. Command ids may not be referred to across frames as no command names
+	 * are retained between calls.
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter#interpretCommand(org.jboss.netty.buffer.ChannelBuffer)
+	 */
+	public ProxyCommand interpretCommand(ChannelBuffer buffer) throws Exception {
+		ProxyCommand readCommand = this.interpretCommand(buffer, new String[MAX_COMMAND_IDS]);
+		if (readCommand == null) {
+			return new ProxyCommand(ReadFailure.INSUFFICIENT_DATA, "Stream ended before the binary command frame was read fully");
+		}
+		return readCommand;
+	}
+
+	/**
+	 * Interprets the binary command frame that starts at the reader index of the specified {@link ChannelBuffer}. Returns null, without moving the
+	 * reader index, if the frame has not been received fully. Moves the reader index to the end of the frame otherwise. The command data (if any) is set
+	 * as a slice of the specified buffer on the returned ProxyCommand.
+	 * @param buffer the ChannelBuffer containing the command frame
+	 * @param commandNames the command names interned on the connection, indexed by command id. Updated when the frame defines a command id
+	 * @return the read ProxyCommand or null if the frame is incomplete
+	 * @throws IllegalArgumentException in case of frame syntax errors
+	 */
+	public ProxyCommand interpretCommand(ChannelBuffer buffer, String[] commandNames) {
+		int frameStartIndex = buffer.readerIndex();
+		if (buffer.readableBytes() < 2) {
+			return null;
+		}
+		if (buffer.getByte(frameStartIndex) != MAGIC) {
+			throw new IllegalArgumentException("Invalid binary command frame. Expected magic byte : " + MAGIC + " but found : " + buffer.getByte(frameStartIndex));
+		}
+		int frameLengthSize = getVarIntSize(buffer, frameStartIndex + 1);
+		if (frameLengthSize < 0) {
+			return null;
+		}
+		int frameLength = getVarInt(buffer, frameStartIndex + 1);
+		if (frameLength < 0 || frameLength > MAX_FRAME_LENGTH) {
+			throw new IllegalArgumentException("Invalid binary command frame length : " + (frameLength & 0xFFFFFFFFL) + ". Maximum allowed : " + MAX_FRAME_LENGTH);
+		}
+		int frameIndex = frameStartIndex + 1 + frameLengthSize;
+		if (buffer.writerIndex() - frameIndex < frameLength) {
+			return null;
+		}
+		ChannelBuffer frame = buffer.slice(frameIndex, frameLength);
+		ProxyCommand readCommand;
+		try {
+			int commandRef = readVarInt(frame);
+			int commandId = commandRef >>> 1;
+			if (commandId >= MAX_COMMAND_IDS) {
+				throw new IllegalArgumentException("Invalid command id : " + commandId + ". Maximum allowed : " + (MAX_COMMAND_IDS - 1));
+			}
+			if ((commandRef & 1) == 1) {
+				commandNames[commandId] = readString(frame);
+			} else if (commandNames[commandId] == null) {
+				throw new IllegalArgumentException("Undefined command id : " + commandId);
+			}
+			readCommand = new ProxyCommand(commandNames[commandId]);
+			int paramCount = readVarInt(frame);
+			if (paramCount > 0) {
+				Map<String,String> commandParams = new HashMap<String, String>();
+				for (int i = 0; i < paramCount; i++) {
+					commandParams.put(readString(frame), readString(frame));
+				}
+				readCommand.setCommandParams(commandParams);
+			}
+			if (frame.readable()) {
+				readCommand.setDataLength(frame.readableBytes());
+				readCommand.setCommandDataBuffer(frame.slice());
+			}
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Malformed binary command frame. Frame length : " + frameLength, e);
+		}
+		buffer.readerIndex(frameIndex + frameLength);
+		return readCommand;
+	}
+
+	/**
+	 * Overriden superclass method. Encodes the specified TaskResult as a binary response frame. The frame header is written to a buffer of the exact size 
+	 * needed and is wrapped together with the result data.
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter#encodeCommandExecutionResponse(com.flipkart.phantom.task.impl.TaskResult, java.lang.String)
+	 */
+	protected ChannelBuffer encodeCommandExecutionResponse(TaskResult result, String requestId) throws Exception {
+		if (result.isChunked()) {
+			throw new IllegalArgumentException("Chunked results are written chunk by chunk and cannot be encoded into a single buffer");
+		}
+		ChannelBuffer payload = this.encodeResultData(result);
+		byte flags = (result.isSuccess() ? RESULT_SUCCESS : 0);
+		return ChannelBuffers.wrappedBuffer(encodeFrameHeader(flags, requestId, result.getMessage(), payload.readableBytes()), payload);
+	}
+
+	/**
+	 * Overriden superclass method. Encodes the response frame of the specified chunked TaskResult, with the {@link #RESULT_CHUNKED} flag set and no payload
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter#encodeChunkedResponseHeader(com.flipkart.phantom.task.impl.TaskResult, java.lang.String)
+	 */
+	protected ChannelBuffer encodeChunkedResponseHeader(TaskResult result, String requestId) {
+		byte flags = (byte)((result.isSuccess() ? RESULT_SUCCESS : 0) | RESULT_CHUNKED);
+		return encodeFrameHeader(flags, requestId, result.getMessage(), 0);
+	}
+
+	/**
+	 * Overriden superclass method. Encodes the specified chunk as a chunk frame, with the {@link #RESULT_CHUNK} flag set and the chunk as payload
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter#encodeResultChunk(byte[], java.lang.String)
+	 */
+	protected ChannelBuffer encodeResultChunk(byte[] chunk, String requestId) {
+		int chunkLength = (chunk == null ? 0 : chunk.length);
+		ChannelBuffer header = encodeFrameHeader(RESULT_CHUNK, requestId, null, chunkLength);
+		return chunkLength > 0 ? ChannelBuffers.wrappedBuffer(header, ChannelBuffers.wrappedBuffer(chunk)) : header;
+	}
+
+	/**
+	 * Helper method to encode a response frame header, up to the payload bytes, into a buffer of the exact size needed
+	 */
+	private static ChannelBuffer encodeFrameHeader(byte flags, String requestId, String message, int payloadLength) {
+		byte[] requestIdBytes = (requestId == null ? null : requestId.getBytes(UTF_8));
+		byte[] messageBytes = (message == null ? null : message.getBytes(UTF_8));
+		int frameLength = 1 + payloadLength;
+		if (requestIdBytes != null) {
+			flags |= RESULT_REQUEST_ID;
+			frameLength += getVarIntSize(requestIdBytes.length) + requestIdBytes.length;
+		}
+		if (messageBytes != null) {
+			flags |= RESULT_MESSAGE;
+			frameLength += getVarIntSize(messageBytes.length) + messageBytes.length;
+		}
+		ChannelBuffer header = ChannelBuffers.buffer(1 + getVarIntSize(frameLength) + frameLength - payloadLength);
+		header.writeByte(MAGIC);
+		writeVarInt(header, frameLength);
+		header.writeByte(flags);
+		if (requestIdBytes != null) {
+			writeVarInt(header, requestIdBytes.length);
+			header.writeBytes(requestIdBytes);
+		}
+		if (messageBytes != null) {
+			writeVarInt(header, messageBytes.length);
+			header.writeBytes(messageBytes);
+		}
+		return header;
+	}
+
+	/**
+	 * Returns the number of bytes in the varint that starts at the specified index, or -1 if the varint has not been received fully
+	 * @param buffer the ChannelBuffer containing the varint
+	 * @param index the start index of the varint
+	 * @return the varint size in bytes, -1 if incomplete
+	 * @throws IllegalArgumentException if the varint is longer than 32 bits
+	 */
+	public static int getVarIntSize(ChannelBuffer buffer, int index) {
+		int limit = Math.min(buffer.writerIndex(), index + MAX_VARINT_BYTES);
+		for (int i = index; i < limit; i++) {
+			if ((buffer.getByte(i) & 0x80) == 0) {
+				return i - index + 1;
+			}
+		}
+		if (limit - index == MAX_VARINT_BYTES) {
+			throw new IllegalArgumentException("Invalid varint. Exceeds " + MAX_VARINT_BYTES + " bytes");
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the value of the varint that starts at the specified index. The varint is expected to have been received fully.
+	 * @param buffer the ChannelBuffer containing the varint
+	 * @param index the start index of the varint
+	 * @return the varint value
+	 */
+	public static int getVarInt(ChannelBuffer buffer, int index) {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = buffer.getByte(index++);
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Reads and returns a varint at the reader index of the specified buffer
+	 * @param buffer the ChannelBuffer to read from
+	 * @return the varint value
+	 * @throws IllegalArgumentException if the varint is longer than 32 bits
+	 */
+	public static int readVarInt(ChannelBuffer buffer) {
+		int value = 0;
+		for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+			byte b = buffer.readByte();
+			value |= (b & 0x7F) << (7 * i);
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Invalid varint. Exceeds " + MAX_VARINT_BYTES + " bytes");
+	}
+
+	/**
+	 * Writes the specified value as a varint at the writer index of the specified buffer
+	 * @param buffer the ChannelBuffer to write to
+	 * @param value the value to write, treated as unsigned
+	 */
+	public static void writeVarInt(ChannelBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer.writeByte(value);
+	}
+
+	/**
+	 * Returns the number of bytes needed to write the specified value as a varint
+	 * @param value the value, treated as unsigned
+	 * @return the varint size in bytes
+	 */
+	public static int getVarIntSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			size++;
+			value >>>= 7;
+		}
+		return size;
+	}
+
+	/**
+	 * Helper method to read a varint length prefixed UTF-8 String at the reader index of the specified buffer
+	 */
+	private static String readString(ChannelBuffer buffer) {
+		int length = readVarInt(buffer);
+		if (length < 0 || length > buffer.readableBytes()) {
+			throw new IndexOutOfBoundsException("String length : " + length + " exceeds readable bytes : " + buffer.readableBytes());
+		}
+		String value = buffer.toString(buffer.readerIndex(), length, UTF_8);
+		buffer.skipBytes(length);
+		return value;
+	}
+
+}
@@ -15,22 +15,47 @@
  */
 package com.flipkart.phantom.runtime.impl.server.netty.handler.command;
 
+import com.flipkart.phantom.runtime.impl.server.concurrent.NamedThreadFactory;
+import com.flipkart.phantom.task.impl.CommandDeadline;
 import com.flipkart.phantom.task.impl.TaskResult;
+import com.flipkart.phantom.task.impl.priority.TaskPriority;
+import com.flipkart.phantom.task.spi.ResultChunkProducer;
+import com.flipkart.phantom.task.spi.ResultCodec;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelLocal;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.MessageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.util.SerializationUtils;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <code>CommandInterpreter</code> interprets a Command from the Netty {@link MessageEvent}
@@ -67,9 +92,60 @@ import java.util.Map;
  * | data bytes |
  * +------------+
  * 
+ * Any command may carry the reserved {@link #DEADLINE_PARAM} param : the time, in milliseconds, that the client will wait for the response. It is relative,
+ * to be independent of clock differences between the client and the service proxy. The param is removed from the command params when the command is
+ * read and the command's deadline (see {@link ProxyCommand#getDeadline()}) caps the executor timeout of the command and of the commands it executes.
+ * Commands still queued for execution when the deadline is reached are dropped. Reserved param names start with an underscore so that they do not
+ * clash with the params of existing commands, which are passed on to TaskHandlers unchanged.
+ * 
+ * Any command may also carry the reserved {@link #PRIORITY_PARAM} param : one of the {@link TaskPriority} classes high, normal or low. It is removed
+ * from the command params when the command is read and overrides the priority configured for the command (see {@link ProxyCommand#getPriority()}).
+ * Commands queued for thread pools that have priority lanes are dequeued in proportion to the weight of their priority class.
+ * 
+ * Multiplexed mode, negotiated per connection by sending the {@link #MULTIPLEX_COMMAND} command (no params) and receiving a success status, requires every
+ * subsequent command to carry a {@link #REQUEST_ID_PARAM} param. Commands are then executed concurrently and responses are written out of order, as and 
+ * when commands complete. The status line of each response is prefixed with the request id:
+ * 
+ * +------------+-------------+--------+-------------+-------------+----+
+ * | request id | white space | status | white space | data length | \n |
+ * +------------+-------------+--------+-------------+-------------+----+
+ * +------------+
+ * | data bytes |
+ * +------------+
+ * 
+ * A batch of sub-commands may be executed in parallel using the {@link #MULTI_COMMAND} command. The command data of a multi command is the sequence of
+ * sub-command frames, each following the command protocol. An optional {@link #TIMEOUT_PARAM} param specifies the overall deadline in milliseconds.
+ * The response data of a multi command is the sequence of sub-command responses, in the order of the sub-commands:
+ * 
+ * +--------+-------------+-------------+----+
+ * | status | white space | data length | \n |
+ * +--------+-------------+-------------+----+
+ * +----------------------------------------+
+ * | sub-command responses                  |
+ * +----------------------------------------+
+ * 
+ * A chunked result i.e. one whose data is a {@link ResultChunkProducer}, is written with {@link #CHUNKED_DATA_LENGTH} in place of the data length, 
+ * followed by a sequence of chunks, each prefixed with the request id in multiplexed mode, and terminated by a chunk of length 0. On a connection that is not
+ * multiplexed, the responses of subsequent commands are written only after the terminating chunk. The chunks are produced on the 
+ * {@link #getChunkProducerExecutor()} and are never all held in memory. A sub-command of a multi command that returns a chunked result is answered with 
+ * the {@link #CHUNKED_RESULT_IN_MULTI} error status, as the multi command response holds the sub-command responses in full:
+ * 
+ * +--------+-------------+---------+----+
+ * | status | white space | chunked | \n |
+ * +--------+-------------+---------+----+
+ * +--------------+----+-------------+
+ * | chunk length | \n | chunk bytes |   (repeats)
+ * +--------------+----+-------------+
+ * +---+----+
+ * | 0 | \n |
+ * +---+----+
+ * 
  * <pre>
  * 
  * Command protocol interpretation code is based on the implementation in com.flipkart.w3.agent.W3Agent
+ * Commands read off a Netty {@link ChannelBuffer} are interpreted in place i.e. the command line is scanned within the buffer and the data bytes
+ * are exposed as a slice of the buffer (see {@link ProxyCommand#getCommandDataBuffer()}). The {@link InputStream} based interpretation is retained
+ * for blocking transports that read directly off a socket.
  * 
  * @author Regunath B
  * @version 1.0, 22 Mar 2013
@@ -77,9 +153,36 @@ import java.util.Map;
 
 public class CommandInterpreter {
 
+	/** Logger for this class*/
+	private static final Logger LOGGER = LoggerFactory.getLogger(CommandInterpreter.class);
+
 	/** Constant for max command input size*/
 	public static final int MAX_COMMAND_INPUT = 20480;
 
+	/** The command for switching a connection to multiplexed mode*/
+	public static final String MULTIPLEX_COMMAND = "multiplex";
+
+	/** The param key for the request id that correlates a command with its response in multiplexed mode*/
+	public static final String REQUEST_ID_PARAM = "reqId";
+
+	/** The command for executing a batch of sub-commands in parallel*/
+	public static final String MULTI_COMMAND = "multi";
+
+	/** The param key for the overall deadline, in milliseconds, of the sub-commands of a {@link #MULTI_COMMAND}*/
+	public static final String TIMEOUT_PARAM = "timeout";
+
+	/** The reserved param key for the time, in milliseconds, that the client waits for the response of a command*/
+	public static final String DEADLINE_PARAM = "_deadline";
+
+	/** The reserved param key for the priority class of a command*/
+	public static final String PRIORITY_PARAM = "_priority";
+
+	/** The data length token of the response status line of a chunked result*/
+	public static final String CHUNKED_DATA_LENGTH = "chunked";
+
+	/** The status of the response of a sub-command of a {@link #MULTI_COMMAND} that returned a chunked result*/
+	public static final String CHUNKED_RESULT_IN_MULTI = "Chunked results are not supported in multi commands";
+
 	/** Constants for characters that have special meaning in the command protocol*/
 	public static final char LINE_FEED = '\n';
 
@@ -89,16 +192,28 @@ public class CommandInterpreter {
 	private static final char[] ASCII_LOW = {'a','z'};
 	private static final char[] ASCII_HIGH = {'A','Z'};
 
-	private static final String SUCCESS = "SUCCESS";
-	private static final String ERROR = "ERROR";
-	private static final String NULL_STRING = ""; 
+	private static final byte[] SUCCESS_BYTES = "SUCCESS".getBytes();
+	private static final byte[] ERROR_BYTES = "ERROR".getBytes();
+	private static final byte[] CHUNKED_DATA_LENGTH_BYTES = CHUNKED_DATA_LENGTH.getBytes();
 
 	/** Default param value, when none is specified*/
 	private static final String DEFAULT_PARAM_VALUE = "true";
 
+	/** The Charset used for decoding command and param Strings from a ChannelBuffer. Same as the one used by the InputStream interpretation*/
+	private static final Charset DEFAULT_CHARSET = Charset.defaultCharset();
+
 	/** The Jackson ObjectMapper for writing output as JSON*/
 	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(); // using an instance variable as this class is deemed to be thread-safe
 
+	/** The chunked responses being written, and the responses held back behind them, per channel*/
+	private static final ChannelLocal<ChannelResponses> CHANNEL_RESPONSES = new ChannelLocal<ChannelResponses>(true);
+
+	/** The executor for producing result chunks*/
+	private Executor chunkProducerExecutor;
+
+	/** The single thread executor owned by this instance for producing result chunks when none is set. Created on first use and shut down by #close()*/
+	private ExecutorService defaultChunkProducerExecutor;
+
 	/** Enumeration of read failure reasons */
 	public enum ReadFailure {
 		INSUFFICIENT_DATA,
@@ -116,25 +231,29 @@ public class CommandInterpreter {
 	}
 	
 	/**
-	 * Helper method to read and return a ProxyCommand from an input Channel {@link MessageEvent}. Throws Exception for all data read errors including partial
-	 * reads arising from insufficient data
+	 * Helper method to read and return a ProxyCommand from an input Channel {@link MessageEvent}. Returns the message as-is if it is a ProxyCommand 
+	 * already decoded by an upstream frame decoder. Throws Exception for all data read errors including partial reads arising from insufficient data
 	 * @param event the MessageEvent instance
 	 * @return the read ProxyCommand
 	 * @throws Exception in case of errors
 	 */
 	public ProxyCommand readCommand(MessageEvent event) throws Exception {
-		return this.interpretCommand(new ChannelBufferInputStream((ChannelBuffer)event.getMessage()), true);
+		if (event.getMessage() instanceof ProxyCommand) {
+			return (ProxyCommand)event.getMessage();
+		}
+		return this.interpretCommand((ChannelBuffer)event.getMessage(), true);
 	}
 
 	/**
 	 * Helper method to read and return a ProxyCommand from a ChannelBuffer {@link ChannelBuffer}. Returns a ProxyCommand for partial read errors and throws
-	 * Exception only for irrecoverable errors. Useful method to decode data frames from the raw input channel buffer.  
+	 * Exception only for irrecoverable errors. Useful method to decode data frames from the raw input channel buffer.
+	 * The buffer reader index is moved to the end of the command frame if the command is read successfully and is left untouched otherwise.
 	 * @param buffer the input buffer
 	 * @return the read ProxyCommand
 	 * @throws Exception in case of errors
 	 */
 	public ProxyCommand interpretCommand(ChannelBuffer buffer) throws Exception {
-		return this.interpretCommand(new ChannelBufferInputStream(buffer), false);
+		return this.interpretCommand(buffer, false);
 	}
 
 	/**
@@ -145,11 +264,82 @@ public class CommandInterpreter {
 	 * @throws Exception in case of any errors
 	 */
 	public void writeCommandExecutionResponse(ChannelHandlerContext ctx, ChannelEvent event, TaskResult result) throws Exception {
-		ChannelBuffer writeBuffer = ChannelBuffers.dynamicBuffer();
-		this.writeCommandExecutionResponse(new ChannelBufferOutputStream(writeBuffer), result);
-		Channels.write(ctx, event.getFuture(), writeBuffer);    	
+		this.writeCommandExecutionResponse(ctx, event, result, null);
+	}
+
+	/**
+	 * Writes the specified TaskResult data to the channel output following the Command protocol, prefixing the response with the specified request id
+	 * @param ctx the ChannelHandlerContext
+	 * @param event the ChannelEvent
+	 * @param result the TaskResult data written to the channel response
+	 * @param requestId the request id of the command in multiplexed mode, null otherwise
+	 * @throws Exception in case of any errors
+	 */
+	public void writeCommandExecutionResponse(ChannelHandlerContext ctx, ChannelEvent event, TaskResult result, String requestId) throws Exception {
+		//Don't write anything if the result is null
+		if(result==null) {
+			return;
+		}
+		ChannelResponses channelResponses = CHANNEL_RESPONSES.get(ctx.getChannel());
+		if (channelResponses == null && !result.isChunked()) {
+			Channels.write(ctx, event.getFuture(), this.encodeCommandExecutionResponse(result, requestId));
+			return;
+		}
+		if (channelResponses == null) {
+			channelResponses = new ChannelResponses();
+			ChannelResponses existingResponses = CHANNEL_RESPONSES.setIfAbsent(ctx.getChannel(), channelResponses);
+			channelResponses = (existingResponses == null ? channelResponses : existingResponses);
+		}
+		if (requestId != null) { // responses on multiplexed connections are not ordered
+			if (result.isChunked()) {
+				new ChunkedResponseWriter(ctx, event, result, requestId, channelResponses).start();
+			} else {
+				Channels.write(ctx, event.getFuture(), this.encodeCommandExecutionResponse(result, requestId));
+			}
+			return;
+		}
+		synchronized(channelResponses) {
+			if (channelResponses.orderedWriter != null) { // written after the chunked response in progress
+				channelResponses.heldResponses.add(new HeldResponse(ctx, event, result));
+			} else if (result.isChunked()) {
+				channelResponses.orderedWriter = new ChunkedResponseWriter(ctx, event, result, null, channelResponses);
+				channelResponses.orderedWriter.start();
+			} else {
+				Channels.write(ctx, event.getFuture(), this.encodeCommandExecutionResponse(result, requestId));
+			}
+		}
+	}
+
+	/**
+	 * Resumes writing the chunked responses on the specified channel that were suspended as the channel was not writable. Channel handlers that write
+	 * chunked results should call this method when the interest ops of the channel change, as they do when the channel becomes writable again.
+	 * Suspended responses are resumed anyway when their pending chunk has been written.
+	 * @param channel the Channel whose interest ops changed
+	 */
+	public void resumeChunkedResponses(Channel channel) {
+		ChannelResponses channelResponses = CHANNEL_RESPONSES.get(channel);
+		if (channelResponses != null && channel.isWritable()) {
+			for (ChunkedResponseWriter writer : channelResponses.writers) {
+				writer.schedule();
+			}
+		}
 	}
 	
+	/**
+	 * Closes this CommandInterpreter. Shuts down the executor created for producing result chunks, if any. Chunked responses in progress are failed.
+	 * Channel handlers call this method when the channel is closed, including when the server is stopped
+	 */
+	public void close() {
+		ExecutorService defaultChunkProducerExecutor;
+		synchronized(this) {
+			defaultChunkProducerExecutor = this.defaultChunkProducerExecutor;
+			this.defaultChunkProducerExecutor = null;
+		}
+		if (defaultChunkProducerExecutor != null) {
+			defaultChunkProducerExecutor.shutdown();
+		}
+	}
+
 	/**
 	 *  Writes the specified TaskResult data to the Outputstream following the Command protocol
 	 * @param outputStream the Outputstream to write result data to
@@ -157,43 +347,310 @@ public class CommandInterpreter {
 	 * @throws Exception in case of any errors
 	 */
 	public void writeCommandExecutionResponse(OutputStream outputStream, TaskResult result) throws Exception {
+		this.writeCommandExecutionResponse(outputStream, result, null);
+	}
+
+	/**
+	 *  Writes the specified TaskResult data to the Outputstream following the Command protocol, prefixing the response with the specified request id
+	 * @param outputStream the Outputstream to write result data to
+	 * @param result the TaskResult to write
+	 * @param requestId the request id of the command in multiplexed mode, null otherwise
+	 * @throws Exception in case of any errors
+	 */
+	public void writeCommandExecutionResponse(OutputStream outputStream, TaskResult result, String requestId) throws Exception {
 		//Don't write anything if the result is null
 		if(result==null) {
 			return;
 		}
-		String message = result.getMessage();
-		boolean success = result.isSuccess();
+		if (result.isChunked()) {
+			ResultChunkProducer chunkProducer = result.getChunkProducer();
+			try {
+				writeBuffer(outputStream, this.encodeChunkedResponseHeader(result, requestId));
+				byte[] chunk;
+				do {
+					chunk = chunkProducer.nextChunk();
+					writeBuffer(outputStream, this.encodeResultChunk(chunk, requestId));
+				} while (chunk != null);
+			} finally {
+				chunkProducer.close();
+			}
+			return;
+		}
+		writeBuffer(outputStream, this.encodeCommandExecutionResponse(result, requestId));
+	}
+
+	/**
+	 * Encodes the specified TaskResult following the Command protocol. The status line is encoded into a buffer of the exact size needed and the result data
+	 * is wrapped, not copied, into the returned composite buffer. Chunked results are streamed and are not encoded by this method
+	 * @param result the TaskResult to encode
+	 * @param requestId the request id of the command in multiplexed mode, null otherwise
+	 * @return ChannelBuffer containing the response
+	 * @throws IllegalArgumentException if the result is chunked
+	 * @throws Exception in case of any errors
+	 */
+	protected ChannelBuffer encodeCommandExecutionResponse(TaskResult result, String requestId) throws Exception {
+		if (result.isChunked()) {
+			throw new IllegalArgumentException("Chunked results are written chunk by chunk and cannot be encoded into a single buffer");
+		}
+		byte[] requestIdBytes = (requestId == null ? null : requestId.getBytes(DEFAULT_CHARSET));
+		byte[] statusBytes = (result.getMessage() == null ? (result.isSuccess() ? SUCCESS_BYTES : ERROR_BYTES) : result.getMessage().getBytes(DEFAULT_CHARSET));
+		ChannelBuffer resultData = this.encodeResultData(result);
 		int resultDatalength = result.getLength();
-		String metaContents = (message==null ? (success ? SUCCESS : ERROR) : message);
-		metaContents += (resultDatalength==0 ? LINE_FEED : (DEFAULT_DELIM + NULL_STRING + resultDatalength + NULL_STRING + LINE_FEED));
+		if (!result.isDataArray() && !(result.getData() instanceof byte[])) {
+			resultDatalength = resultData.readableBytes(); // the length of encoded objects is known only after encoding
+		}
+		int lengthDigits = (resultDatalength == 0 ? 0 : getDigitCount(resultDatalength));
+		ChannelBuffer statusLine = ChannelBuffers.buffer((requestIdBytes == null ? 0 : requestIdBytes.length + 1) + statusBytes.length 
+				+ (lengthDigits == 0 ? 0 : lengthDigits + 1) + 1);
+		if (requestIdBytes != null) {
+			statusLine.writeBytes(requestIdBytes);
+			statusLine.writeByte(DEFAULT_DELIM);
+		}
+		statusLine.writeBytes(statusBytes);
+		if (lengthDigits > 0) {
+			statusLine.writeByte(DEFAULT_DELIM);
+			writeDigits(statusLine, resultDatalength, lengthDigits);
+		}
+		statusLine.writeByte(LINE_FEED);
+		return resultData.readable() ? ChannelBuffers.wrappedBuffer(statusLine, resultData) : statusLine;
+	}
 
-		// write the meta contents
-		outputStream.write(metaContents.getBytes());
+	/**
+	 * Encodes the status line of the specified chunked TaskResult, following the Command protocol
+	 * @param result the chunked TaskResult
+	 * @param requestId the request id of the command in multiplexed mode, null otherwise
+	 * @return ChannelBuffer containing the status line
+	 */
+	protected ChannelBuffer encodeChunkedResponseHeader(TaskResult result, String requestId) {
+		byte[] requestIdBytes = (requestId == null ? null : requestId.getBytes(DEFAULT_CHARSET));
+		byte[] statusBytes = (result.getMessage() == null ? (result.isSuccess() ? SUCCESS_BYTES : ERROR_BYTES) : result.getMessage().getBytes(DEFAULT_CHARSET));
+		ChannelBuffer statusLine = ChannelBuffers.buffer((requestIdBytes == null ? 0 : requestIdBytes.length + 1) + statusBytes.length 
+				+ CHUNKED_DATA_LENGTH_BYTES.length + 2);
+		if (requestIdBytes != null) {
+			statusLine.writeBytes(requestIdBytes);
+			statusLine.writeByte(DEFAULT_DELIM);
+		}
+		statusLine.writeBytes(statusBytes);
+		statusLine.writeByte(DEFAULT_DELIM);
+		statusLine.writeBytes(CHUNKED_DATA_LENGTH_BYTES);
+		statusLine.writeByte(LINE_FEED);
+		return statusLine;
+	}
+
+	/**
+	 * Encodes the specified chunk of a chunked TaskResult, following the Command protocol. The chunk bytes are wrapped, not copied
+	 * @param chunk the chunk bytes, null or empty for the chunk that terminates the result
+	 * @param requestId the request id of the command in multiplexed mode, null otherwise
+	 * @return ChannelBuffer containing the encoded chunk
+	 */
+	protected ChannelBuffer encodeResultChunk(byte[] chunk, String requestId) {
+		byte[] requestIdBytes = (requestId == null ? null : requestId.getBytes(DEFAULT_CHARSET));
+		int chunkLength = (chunk == null ? 0 : chunk.length);
+		int lengthDigits = getDigitCount(chunkLength);
+		ChannelBuffer chunkLine = ChannelBuffers.buffer((requestIdBytes == null ? 0 : requestIdBytes.length + 1) + lengthDigits + 1);
+		if (requestIdBytes != null) {
+			chunkLine.writeBytes(requestIdBytes);
+			chunkLine.writeByte(DEFAULT_DELIM);
+		}
+		writeDigits(chunkLine, chunkLength, lengthDigits);
+		chunkLine.writeByte(LINE_FEED);
+		return chunkLength > 0 ? ChannelBuffers.wrappedBuffer(chunkLine, ChannelBuffers.wrappedBuffer(chunk)) : chunkLine;
+	}
 
-		// now write the result data
+	/**
+	 * Helper method to write the readable bytes of the specified buffer to the specified OutputStream
+	 */
+	private static void writeBuffer(OutputStream outputStream, ChannelBuffer buffer) throws Exception {
+		buffer.getBytes(buffer.readerIndex(), outputStream, buffer.readableBytes());
+	}
+
+	/**
+	 * Encodes the data of the specified TaskResult. Byte array data is wrapped as-is while other objects are encoded using the {@link ResultCodec} of the 
+	 * TaskResult, or serialized if it has none. Data arrays are encoded as a composite buffer of the individual items so that they may be written to the 
+	 * channel using a single gathering write.
+	 * @param result the TaskResult whose data is encoded
+	 * @return ChannelBuffer containing the result data, an empty buffer if there is no data
+	 * @throws Exception in case of any errors
+	 */
+	protected ChannelBuffer encodeResultData(TaskResult result) throws Exception {
 		if(result.isDataArray()) {
+			List<ChannelBuffer> dataBuffers = new ArrayList<ChannelBuffer>(result.getDataArray().size());
 			for(Object object : result.getDataArray()) {
 				if(object!=null) {
-					if(object instanceof byte[]) {
-						outputStream.write((byte[]) object);
-					} else {
-						outputStream.write(SerializationUtils.serialize(object));
-					}
+					dataBuffers.add(this.encodeResultDataObject(object, result.getResultCodec()));
 				}
 			}
-		} else {
-			Object data = result.getData();
-			if(data!=null) {
-				if(data instanceof byte[]) {
-					byte[] byteData = (byte[]) data;
-					if(byteData.length>0)  {
-						outputStream.write(byteData);
-					}
+			return ChannelBuffers.wrappedBuffer(dataBuffers.toArray(new ChannelBuffer[dataBuffers.size()]));
+		}
+		Object data = result.getData();
+		if(data!=null) {
+			return this.encodeResultDataObject(data, result.getResultCodec());
+		}
+		return ChannelBuffers.EMPTY_BUFFER;
+	}
+
+	/**
+	 * Helper method to encode a single result data object. Wraps byte arrays and ChannelBuffer instances, encodes other objects directly into a buffer 
+	 * using the specified codec and serializes them if no codec is specified
+	 */
+	private ChannelBuffer encodeResultDataObject(Object data, ResultCodec resultCodec) throws Exception {
+		if(data instanceof byte[]) {
+			return ChannelBuffers.wrappedBuffer((byte[]) data);
+		}
+		if(data instanceof ChannelBuffer) {
+			return ((ChannelBuffer) data).duplicate(); // the readable bytes of the buffer are the encoded data
+		}
+		if (resultCodec != null) {
+			ChannelBuffer dataBuffer = ChannelBuffers.dynamicBuffer();
+			resultCodec.encode(data, new ChannelBufferOutputStream(dataBuffer));
+			return dataBuffer;
+		}
+		return ChannelBuffers.wrappedBuffer(SerializationUtils.serialize(data));
+	}
+
+	/**
+	 * Helper method to get the number of characters needed to write the specified int in decimal form
+	 */
+	private static int getDigitCount(int value) {
+		if (value < 0) {
+			return value > -10 ? 2 : getDigitCount(-(value / 10)) + 2; // the sign and the last digit
+		}
+		int digits = 1;
+		while (value >= 10) {
+			value /= 10;
+			digits++;
+		}
+		return digits;
+	}
+
+	/**
+	 * Helper method to write the specified int in decimal form, as ASCII characters, without creating an intermediate String 
+	 */
+	private static void writeDigits(ChannelBuffer buffer, int value, int digits) {
+		int endIndex = buffer.writerIndex() + digits;
+		int index = endIndex - 1;
+		long remaining = Math.abs((long)value);
+		do {
+			buffer.setByte(index--, (int)('0' + remaining % 10));
+			remaining /= 10;
+		} while (remaining > 0);
+		if (value < 0) {
+			buffer.setByte(index, '-');
+		}
+		buffer.writerIndex(endIndex);
+	}
+
+	/**
+	 * Interprets the command line i.e. the command, params and data length of a command frame that starts at the reader index of the specified 
+	 * {@link ChannelBuffer} and ends at the specified line feed index. Does not read the command data or move the buffer reader index. Useful for
+	 * frame decoders that locate the line feed incrementally and need to know the data length before all data bytes are received.
+	 * @param buffer the ChannelBuffer containing the command line
+	 * @param lineFeedIndex the index of the {@link #LINE_FEED} that terminates the command line
+	 * @return the read ProxyCommand with the command data length set on it
+	 * @throws IllegalArgumentException in case of command syntax errors
+	 */
+	public ProxyCommand interpretCommandLine(ChannelBuffer buffer, int lineFeedIndex) {
+		int frameStartIndex = buffer.readerIndex();
+		if (lineFeedIndex <= frameStartIndex) {
+			throw new IllegalArgumentException("Invalid syntax in command. Encountered empty command line");
+		}
+		int commandEndIndex = lineFeedIndex;
+		if (buffer.getByte(commandEndIndex-1) == CARRIAGE_RETURN) {
+			commandEndIndex--;	// handle the CR for people who still haven't moved on from telnet to netcat
+		}
+
+		byte delimiter = DEFAULT_DELIM;
+		int fragmentStart = frameStartIndex;
+		byte firstByte = buffer.getByte(frameStartIndex);
+		if(!(firstByte>=ASCII_LOW[0] && firstByte<=ASCII_LOW[1]) && !(firstByte>=ASCII_HIGH[0] && firstByte<=ASCII_HIGH[1])) {
+			delimiter = firstByte; // the delimiter is not DEFAULT_DELIM but the non-ascii character appearing as the first byte
+			fragmentStart++;
+		}
+		int fragmentIndex = this.getNextCommandFragmentPosition(buffer, fragmentStart, commandEndIndex, delimiter);
+		ProxyCommand readCommand = new ProxyCommand(buffer.toString(fragmentStart, fragmentIndex-fragmentStart, DEFAULT_CHARSET));
+
+		Map<String,String> commandParams = new HashMap<String, String>();
+		// gather params
+		while(fragmentIndex < commandEndIndex) {
+			// skip initial delims
+			while(fragmentIndex < commandEndIndex && buffer.getByte(fragmentIndex) == delimiter) {
+				fragmentIndex++;
+			}
+			if (fragmentIndex == commandEndIndex) { 
+				break;
+			}
+			// read first char
+			if(Character.isDigit((char)buffer.getByte(fragmentIndex))) {
+				// this is the datalen
+				readCommand.setDataLength(this.getDataLength(buffer, fragmentIndex, commandEndIndex));
+				break;
+			} else {
+				fragmentStart = fragmentIndex;
+				fragmentIndex = this.getNextCommandFragmentPosition(buffer, fragmentIndex+1, commandEndIndex, delimiter);
+				int paramValueSepOffset = buffer.bytesBefore(fragmentStart, fragmentIndex-fragmentStart, (byte)PARAM_VALUE_SEP);
+				if (paramValueSepOffset >= 0) {
+					int paramValueSepIndex = fragmentStart + paramValueSepOffset;
+					commandParams.put(buffer.toString(fragmentStart, paramValueSepIndex-fragmentStart, DEFAULT_CHARSET), 
+							buffer.toString(paramValueSepIndex+1, fragmentIndex-paramValueSepIndex-1, DEFAULT_CHARSET));
+				} else {
+					commandParams.put(buffer.toString(fragmentStart, fragmentIndex-fragmentStart, DEFAULT_CHARSET), DEFAULT_PARAM_VALUE); // initialize with default value if none specified
+				}
+				// set the params on the ProxyCommand object
+				readCommand.setCommandParams(commandParams);
+			}        	
+		}
+		return readCommand;
+	}
+
+	/**
+	 * Helper method to read and return a ProxyCommand from an input {@link ChannelBuffer}. The command line is scanned in place and the command data 
+	 * (if any) is set as a slice of the specified buffer on the returned ProxyCommand i.e. no bytes are copied
+	 * @param buffer the ChannelBuffer instance
+	 * @param isFramedTransport boolean indicator that defines mechanism for reporting errors - Exceptions vs a ProxyCommand with error description 
+	 * @return the read ProxyCommand
+	 * @throws Exception in case of errors
+	 */
+	private ProxyCommand interpretCommand(ChannelBuffer buffer, boolean isFramedTransport) throws Exception {
+		int frameStartIndex = buffer.readerIndex();
+		int readableBytes = buffer.readableBytes();
+		if (readableBytes <= 0) { // check if no data is available at all
+			if (isFramedTransport) {
+				throw new IllegalArgumentException("Invalid read. Encountered end of stream before reading a single byte");
+			} else {
+				return new ProxyCommand(ReadFailure.INSUFFICIENT_DATA, "Invalid read. Encountered end of stream before reading a single byte");
+			}
+		}
+		int lineFeedOffset = buffer.bytesBefore(frameStartIndex, Math.min(readableBytes, MAX_COMMAND_INPUT), (byte)LINE_FEED);
+		if (lineFeedOffset < 0) { // report a suitable error if NEW_LINE was not encountered at all (or) if bytes read has exceeded MAX_COMMAND_INPUT
+			if (readableBytes < MAX_COMMAND_INPUT) {
+				if (isFramedTransport) {
+					throw new IllegalArgumentException("Stream ended before encountering a \\n: " + buffer.toString(frameStartIndex, readableBytes, DEFAULT_CHARSET)); 
 				} else {
-					outputStream.write(SerializationUtils.serialize(data));
+					return new ProxyCommand(ReadFailure.INSUFFICIENT_DATA, "Stream ended before encountering a \\n: " + buffer.toString(frameStartIndex, readableBytes, DEFAULT_CHARSET));
 				}
+			} else {
+				throw new IllegalArgumentException("Maximum command line size allowed: " + MAX_COMMAND_INPUT +" Command : "+ buffer.toString(frameStartIndex, MAX_COMMAND_INPUT, DEFAULT_CHARSET));
 			}
-		}					
+		}
+
+		// The input data appears to adhere to the command protocol. Proceed to read the command, params and data
+		ProxyCommand readCommand = this.interpretCommandLine(buffer, frameStartIndex + lineFeedOffset);
+		int dataStartIndex = frameStartIndex + lineFeedOffset + 1;
+		int dataLength = readCommand.getDataLength();
+		if(dataLength > 0) {
+			int availableDataBytes = buffer.writerIndex() - dataStartIndex;
+			if (availableDataBytes < dataLength) {
+				if (isFramedTransport) {
+					throw new IllegalArgumentException("Insufficient bytes read for command : " + readCommand.getCommand() + ". Expected : " + dataLength + " but read : " + availableDataBytes);
+				} else {
+					return new ProxyCommand(ReadFailure.INSUFFICIENT_DATA, "Stream ended before all data was read. Length of data bytes needed : " + (dataLength-availableDataBytes));
+				}
+			}
+			// set the command data on the ProxyCommand object as a slice of the buffer
+			readCommand.setCommandDataBuffer(buffer.slice(dataStartIndex, dataLength));
+		}
+		buffer.readerIndex(dataStartIndex + dataLength); // move the reader index to the end of this command frame
+		return readCommand;
 	}
 
 	/**
@@ -336,6 +793,181 @@ public class CommandInterpreter {
 		return fragmentStart;
 	}
 
+	/**
+	 * Helper method to return the next command fragment position in the input ChannelBuffer. Considers the start index to skip bytes and the delim char to
+	 * identify the next fragment
+	 * @return the start position of the next command fragment
+	 */
+	private int getNextCommandFragmentPosition(ChannelBuffer buffer, int fragmentStart, int lastPos, byte delim) {
+		if (fragmentStart >= lastPos) {
+			return fragmentStart;
+		}
+		int delimOffset = buffer.bytesBefore(fragmentStart, lastPos-fragmentStart, delim);
+		return delimOffset < 0 ? lastPos : fragmentStart + delimOffset;
+	}
+
+	/**
+	 * Helper method to read the data length that appears as the last fragment of the command line in the input ChannelBuffer
+	 * @return the data length
+	 * @throws IllegalArgumentException if the fragment is not a valid data length
+	 */
+	private int getDataLength(ChannelBuffer buffer, int fragmentStart, int lastPos) {
+		long dataLength = 0;
+		for (int i = fragmentStart; i < lastPos; i++) {
+			int digit = buffer.getByte(i) - '0';
+			if (digit < 0 || digit > 9 || (dataLength = dataLength * 10 + digit) > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Invalid syntax in command: " + buffer.toString(buffer.readerIndex(), lastPos-buffer.readerIndex(), DEFAULT_CHARSET));
+			}
+		}
+		return (int)dataLength;
+	}
+
+	/**
+	 * Writes the responses held back behind the completed chunked response on a non-multiplexed connection, in order, until another chunked response
+	 * is started
+	 */
+	private void writeHeldResponses(ChannelResponses channelResponses) {
+		synchronized(channelResponses) {
+			channelResponses.orderedWriter = null;
+			HeldResponse heldResponse;
+			while ((heldResponse = channelResponses.heldResponses.poll()) != null) {
+				if (heldResponse.result.isChunked()) {
+					channelResponses.orderedWriter = new ChunkedResponseWriter(heldResponse.ctx, heldResponse.event, heldResponse.result, null, channelResponses);
+					channelResponses.orderedWriter.start();
+					return;
+				}
+				try {
+					Channels.write(heldResponse.ctx, heldResponse.event.getFuture(), this.encodeCommandExecutionResponse(heldResponse.result, null));
+				} catch (Exception e) {
+					LOGGER.error("Error writing response : " + heldResponse.result, e);
+					heldResponse.event.getFuture().setFailure(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The chunked responses being written on a channel and, for non-multiplexed connections, the responses held back until the chunked response in progress
+	 * has been written
+	 */
+	private static class ChannelResponses {
+		private final Set<ChunkedResponseWriter> writers = Collections.newSetFromMap(new ConcurrentHashMap<ChunkedResponseWriter, Boolean>());
+		private ChunkedResponseWriter orderedWriter;
+		private final Queue<HeldResponse> heldResponses = new LinkedList<HeldResponse>();
+	}
+
+	/**
+	 * A response held back behind a chunked response
+	 */
+	private static class HeldResponse {
+		private final ChannelHandlerContext ctx;
+		private final ChannelEvent event;
+		private final TaskResult result;
+		HeldResponse(ChannelHandlerContext ctx, ChannelEvent event, TaskResult result) {
+			this.ctx = ctx;
+			this.event = event;
+			this.result = result;
+		}
+	}
+
+	/**
+	 * Writes the chunks of a chunked result. Chunks are produced on the {@link #getChunkProducerExecutor()} threads as producing a chunk may block, and
+	 * never on the channel's I/O worker. Producing is suspended while the channel is not writable and the last written chunk is pending, and is resumed 
+	 * when that chunk has been written or when {@link #resumeChunkedResponses(Channel)} is called. The future of the event is notified when the 
+	 * terminating chunk has been written. The channel is closed if a chunk cannot be produced, as the response cannot be completed.
+	 */
+	private class ChunkedResponseWriter implements Runnable, ChannelFutureListener {
+		private final ChannelHandlerContext ctx;
+		private final ChannelEvent event;
+		private final TaskResult result;
+		private final ResultChunkProducer chunkProducer;
+		private final String requestId;
+		private final ChannelResponses channelResponses;
+		private final AtomicInteger pendingRuns = new AtomicInteger();
+		private volatile ChannelFuture lastWrite;
+		ChunkedResponseWriter(ChannelHandlerContext ctx, ChannelEvent event, TaskResult result, String requestId, ChannelResponses channelResponses) {
+			this.ctx = ctx;
+			this.event = event;
+			this.result = result;
+			this.chunkProducer = result.getChunkProducer();
+			this.requestId = requestId;
+			this.channelResponses = channelResponses;
+		}
+		/** Writes the response header and schedules producing the chunks that follow*/
+		void start() {
+			this.channelResponses.writers.add(this);
+			this.lastWrite = Channels.future(this.ctx.getChannel());
+			Channels.write(this.ctx, this.lastWrite, encodeChunkedResponseHeader(this.result, this.requestId));
+			this.schedule();
+		}
+		/** Schedules producing chunks on the chunk producer executor, unless already scheduled*/
+		void schedule() {
+			if (this.pendingRuns.getAndIncrement() == 0) {
+				try {
+					getChunkProducerExecutor().execute(this);
+				} catch (RejectedExecutionException e) {
+					this.fail(e);
+				}
+			}
+		}
+		/** Interface method implementation. Schedules producing chunks as the last written chunk has been written*/
+		public void operationComplete(ChannelFuture future) throws Exception {
+			this.schedule();
+		}
+		/** Interface method implementation. Writes chunks until the result is complete or the channel is not writable*/
+		public void run() {
+			int runs = 1;
+			do {
+				if (this.writeChunks()) {
+					return;
+				}
+				runs = this.pendingRuns.addAndGet(-runs);
+			} while (runs != 0);
+		}
+		/** Writes chunks as long as the channel is writable. Returns true if the response is complete, false if writing is suspended*/
+		private boolean writeChunks() {
+			while (true) {
+				ChannelFuture lastWrite = this.lastWrite;
+				if (lastWrite.isDone() && !lastWrite.isSuccess()) {
+					this.fail(lastWrite.getCause());
+					return true;
+				}
+				if (!lastWrite.isDone() && !this.ctx.getChannel().isWritable()) {
+					lastWrite.addListener(this);
+					return false;
+				}
+				byte[] chunk;
+				try {
+					chunk = this.chunkProducer.nextChunk();
+				} catch (Exception e) {
+					LOGGER.error("Error producing result chunk. Closing channel : " + this.ctx.getChannel(), e);
+					this.ctx.getChannel().close();
+					this.fail(e);
+					return true;
+				}
+				if (chunk == null) {
+					this.chunkProducer.close();
+					Channels.write(this.ctx, this.event.getFuture(), encodeResultChunk(null, this.requestId));
+					this.complete();
+					return true;
+				}
+				this.lastWrite = Channels.future(this.ctx.getChannel());
+				Channels.write(this.ctx, this.lastWrite, encodeResultChunk(chunk, this.requestId));
+			}
+		}
+		private void fail(Throwable cause) {
+			this.chunkProducer.close();
+			this.event.getFuture().setFailure(cause);
+			this.complete();
+		}
+		private void complete() {
+			this.channelResponses.writers.remove(this);
+			if (this.requestId == null) {
+				writeHeldResponses(this.channelResponses);
+			}
+		}
+	}
+
 	/**
 	 * Helper class to store command protocol objects
 	 */
@@ -354,6 +986,21 @@ public class CommandInterpreter {
 		/** The command data*/
 		private byte[] commandData;
 
+		/** The command data as a ChannelBuffer, when read off a ChannelBuffer*/
+		private ChannelBuffer commandDataBuffer;
+
+		/** The length of command data as specified in the command line*/
+		private int dataLength;
+
+		/** The command data as a stream, when the data is streamed to the command while it is being received*/
+		private InputStream commandDataStream;
+
+		/** The deadline of the command, as returned by System#currentTimeMillis(), parsed from the {@link CommandInterpreter#DEADLINE_PARAM} param*/
+		private long deadline = CommandDeadline.NONE;
+
+		/** The priority class of the command parsed from the {@link CommandInterpreter#PRIORITY_PARAM} param, null if not specified*/
+		private TaskPriority priority;
+
 		/**
 		 * Constructor for this class
 		 * @param command the command string
@@ -399,17 +1046,108 @@ public class CommandInterpreter {
 		public Map<String, String> getCommandParams() {
 			return commandParams;
 		}
+		/**
+		 * Sets the command params. Removes the {@link CommandInterpreter#DEADLINE_PARAM} and {@link CommandInterpreter#PRIORITY_PARAM} params, if present,
+		 * and sets the command's deadline and priority from them
+		 * @param commandParams the command params
+		 */
 		public void setCommandParams(Map<String, String> commandParams) {
 			this.commandParams = commandParams;
+			String deadlineParam = commandParams.remove(DEADLINE_PARAM);
+			if (deadlineParam != null) {
+				try {
+					this.deadline = System.currentTimeMillis() + Math.max(Long.parseLong(deadlineParam.trim()), 0);
+				} catch (NumberFormatException e) {
+					LOGGER.warn("Ignoring invalid value of param " + DEADLINE_PARAM + " : " + deadlineParam + " for command : " + this.command);
+				}
+			}
+			String priorityParam = commandParams.remove(PRIORITY_PARAM);
+			if (priorityParam != null) {
+				try {
+					this.priority = TaskPriority.valueOf(priorityParam.trim().toUpperCase());
+				} catch (IllegalArgumentException e) {
+					LOGGER.warn("Ignoring invalid value of param " + PRIORITY_PARAM + " : " + priorityParam + " for command : " + this.command);
+				}
+			}
 		}
+		/**
+		 * Returns the deadline of this command. See {@link CommandDeadline}
+		 * @return the time, as returned by System#currentTimeMillis(), by which the client expects the response. {@link CommandDeadline#NONE} if the 
+		 * 	command did not specify a deadline
+		 */
+		public long getDeadline() {
+			return this.deadline;
+		}
+		/**
+		 * Returns the priority class of this command
+		 * @return the priority class specified by the client, null if the command did not specify one and the configured priority applies
+		 */
+		public TaskPriority getPriority() {
+			return this.priority;
+		}
+		/**
+		 * Returns the command data bytes. Copies the bytes out of the command data ChannelBuffer, if one was set, the first time this method is called
+		 * @return the command data bytes or null if there is no command data
+		 */
 		public byte[] getCommandData() {
+			if (this.commandData == null && this.commandDataBuffer != null) {
+				this.commandData = new byte[this.commandDataBuffer.readableBytes()];
+				this.commandDataBuffer.getBytes(this.commandDataBuffer.readerIndex(), this.commandData);
+			}
 			return this.commandData;
 		}
 		public void setCommandData(byte[] commandData) {
 			this.commandData = commandData;
+			this.commandDataBuffer = null;
 		}    	
+		/**
+		 * Returns the command data as a ChannelBuffer without copying the bytes
+		 * @return the command data ChannelBuffer or null if there is no command data
+		 */
+		public ChannelBuffer getCommandDataBuffer() {
+			if (this.commandDataBuffer == null && this.commandData != null) {
+				return ChannelBuffers.wrappedBuffer(this.commandData);
+			}
+			return this.commandDataBuffer;
+		}
+		public void setCommandDataBuffer(ChannelBuffer commandDataBuffer) {
+			this.commandDataBuffer = commandDataBuffer;
+			this.commandData = null;
+		}
+		public InputStream getCommandDataStream() {
+			return commandDataStream;
+		}
+		public void setCommandDataStream(InputStream commandDataStream) {
+			this.commandDataStream = commandDataStream;
+		}
+		public int getDataLength() {
+			return this.dataLength;
+		}
+		public void setDataLength(int dataLength) {
+			this.dataLength = dataLength;
+		}
 		/** End setter/getter methods*/
 
 	}
 
+	/** Start Getter/Setter methods */
+	public Executor getChunkProducerExecutor() {
+		if (this.chunkProducerExecutor != null) {
+			return this.chunkProducerExecutor;
+		}
+		synchronized(this) {
+			if (this.defaultChunkProducerExecutor == null) { // a single thread as the chunks written on a channel are sent one after the other anyway
+				ThreadPoolExecutor chunkProducerPool = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+						new NamedThreadFactory("ResultChunkProducer", true));
+				chunkProducerPool.allowCoreThreadTimeOut(true);
+				this.defaultChunkProducerExecutor = chunkProducerPool;
+			}
+			return this.defaultChunkProducerExecutor;
+		}
+	}
+	public void setChunkProducerExecutor(Executor chunkProducerExecutor) {
+		this.chunkProducerExecutor = chunkProducerExecutor;
+	}
+	/** End Getter/Setter methods */
+
 }
@@ -16,19 +16,38 @@
 package com.flipkart.phantom.runtime.impl.server.netty.handler.command;
 
 import com.flipkart.phantom.task.utils.RequestLogger;
+import com.flipkart.phantom.task.impl.CommandDeadline;
 import com.flipkart.phantom.task.impl.TaskHandler;
 import com.flipkart.phantom.task.impl.TaskHandlerExecutor;
 import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
 import com.flipkart.phantom.task.impl.TaskResult;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.*;
 import org.jboss.netty.channel.group.ChannelGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * <code>CommandProcessingChannelHandler</code> is a sub-type of {@link SimpleChannelHandler} that implements command processing of the service proxy.
  * The command protocol is described in {@link CommandInterpreter}.
  * It wraps the service call using a {@link TaskHandlerExecutor} that provides useful features like monitoring, fallback etc.
+ * Commands are executed one at a time on the channel's I/O worker unless the client switches the connection to multiplexed mode using the 
+ * {@link CommandInterpreter#MULTIPLEX_COMMAND} command. Commands on a multiplexed connection are executed concurrently using the 
+ * {@link #getMultiplexExecutors()} and responses are written out of order as commands complete. Multiplexing is refused if no executors are set.
+ * The sub-commands of a {@link CommandInterpreter#MULTI_COMMAND} are executed in parallel using {@link TaskHandlerExecutorRepository#executeCommands(List, long)}
+ * and a single combined response is written. Sub-commands therefore bypass the result cache, request collapsing and hedging applied to single commands.
+ * The overall timeout of a multi command, specified using the {@link CommandInterpreter#TIMEOUT_PARAM} param, is ignored if it is not a valid number.
+ * Commands whose data is streamed by the upstream CommandBufferDecoder are executed asynchronously, as the channel's I/O worker feeds the data. Clients 
+ * must therefore await the response of such a command before sending the next one, unless the connection is multiplexed.
+ * Commands of handlers that opted for lightweight execution are executed on the channel's I/O worker using the command's LightweightCommandExecutor.
+ * The deadline of a command, specified using the {@link CommandInterpreter#DEADLINE_PARAM} param, is set on its executor. Sub-commands of a 
+ * {@link CommandInterpreter#MULTI_COMMAND} inherit the deadline of the multi command, if that is earlier.
  * 
  * @author Regunath B
  * @version 1.0, 18 Mar 2013
@@ -47,6 +66,15 @@ public class CommandProcessingChannelHandler extends SimpleChannelUpstreamHandle
 	/** The TaskRepository to lookup TaskHandlerExecutors from */
 	private TaskHandlerExecutorRepository repository;
 
+	/** The CommandInterpreter for reading commands and writing responses. Set to a {@link BinaryCommandInterpreter} for the binary command protocol*/
+	private CommandInterpreter commandInterpreter = new CommandInterpreter();
+
+	/** The ExecutorService for executing commands on multiplexed connections*/
+	private ExecutorService multiplexExecutors;
+
+	/** Indicator for multiplexed mode on the channel served by this handler*/
+	private volatile boolean multiplexed;
+
 	/**
 	 * Overriden superclass method. Adds the newly created Channel to the default channel group and calls the super class {@link #channelOpen(ChannelHandlerContext, ChannelStateEvent)} method
 	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#channelOpen(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
@@ -57,45 +85,257 @@ public class CommandProcessingChannelHandler extends SimpleChannelUpstreamHandle
 	}
 
 	/**
-	 * Interface method implementation. Reads and processes commands sent to the service proxy. Expects data in the command protocol defined in the class summary.
+	 * Overriden superclass method. Closes the CommandInterpreter, releasing the thread that produces result chunks for this channel, if any
+	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#channelClosed(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
+	 */
+	public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent event) throws Exception {
+		this.commandInterpreter.close();
+		super.channelClosed(ctx, event);
+	}
+
+	/**
+	 * Overriden superclass method. Resumes writing chunked responses that were suspended as the channel was not writable
+	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#channelInterestChanged(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
+	 */
+	public void channelInterestChanged(ChannelHandlerContext ctx, ChannelStateEvent event) throws Exception {
+		this.commandInterpreter.resumeChunkedResponses(ctx.getChannel());
+		super.channelInterestChanged(ctx, event);
+	}
+
+	/**
+	 * Interface method implementation. Reads and processes commands sent to the service proxy. Expects data in the command protocol defined in the class summary,
+	 * either as the {@link CommandInterpreter.ProxyCommand} decoded by an upstream CommandBufferDecoder or as raw bytes.
 	 * Discards commands that do not have a {@link TaskHandler} mapping. 
 	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#handleUpstream(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelEvent)
 	 */
 	public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent event) throws Exception {    
 		if (MessageEvent.class.isAssignableFrom(event.getClass())) {			
-			CommandInterpreter commandInterpreter = new CommandInterpreter();
+			CommandInterpreter commandInterpreter = this.commandInterpreter;
 			CommandInterpreter.ProxyCommand readCommand = commandInterpreter.readCommand((MessageEvent)event);	
 			LOGGER.debug("Read Command : " + readCommand);
-			String pool = readCommand.getCommandParams().get("pool");
-			TaskHandlerExecutor executor;
-			//Try to execute command using ThreadPool, if "pool" is found in the command, else the command name
-			if(pool!=null) {
-				executor = this.repository.get(readCommand.getCommand(),pool);
+			if (CommandInterpreter.MULTIPLEX_COMMAND.equals(readCommand.getCommand())) {
+				this.multiplexed = this.multiplexExecutors != null; // multiplexing is possible only if executors have been set
+				commandInterpreter.writeCommandExecutionResponse(ctx, event, new TaskResult(this.multiplexed, null));
+			} else if (this.multiplexed) {
+				this.dispatchMultiplexedCommand(ctx, event, commandInterpreter, readCommand);
+			} else if (readCommand.getCommandDataStream() != null) {
+				this.dispatchStreamingCommand(ctx, event, commandInterpreter, readCommand);
+			} else if (this.repository.isLightweightCommand(readCommand.getCommand())) {
+				try {
+					commandInterpreter.writeCommandExecutionResponse(ctx, event, this.executeLightweightCommand(readCommand));
+				} catch(Exception e) {
+					LOGGER.error("Error in executing command/fallBack : " + readCommand, e);
+					throw new RuntimeException("Error in executing command : " + readCommand, e);
+				}
 			} else {
-				executor = this.repository.get(readCommand.getCommand(),readCommand.getCommand());
+				List<TaskHandlerExecutor> executors = this.getExecutors(commandInterpreter, readCommand);
+				try {
+					TaskResult result = this.executeCommands(commandInterpreter, readCommand, executors);
+					LOGGER.debug("The output is: "+ result);
+					// write the results to the channel output
+					commandInterpreter.writeCommandExecutionResponse(ctx, event, result);
+				} catch(Exception e) {
+					LOGGER.error("Error in executing command/fallBack : " + readCommand, e);
+					throw new RuntimeException("Error in executing command : " + readCommand, e);
+				}
 			}
-			executor.setParams(readCommand.getCommandParams());
-			executor.setData(readCommand.getCommandData());
+		} 		
+		super.handleUpstream(ctx, event);
+	}	
+
+	/**
+	 * Helper method to execute the specified command on the multiplex executors and write the response, tagged with the command's request id, when 
+	 * execution completes. Execution errors are written as error responses for the request id, without closing the channel. Commands without a request id
+	 * are not executed and an untagged error response is written for them, again without closing the channel. Commands whose data is being streamed are
+	 * executed asynchronously, as for non-multiplexed connections.
+	 */
+	private void dispatchMultiplexedCommand(final ChannelHandlerContext ctx, final ChannelEvent event, final CommandInterpreter commandInterpreter, 
+			final CommandInterpreter.ProxyCommand readCommand) throws Exception {
+		final String requestId = readCommand.getCommandParams().remove(CommandInterpreter.REQUEST_ID_PARAM);
+		if (requestId == null) {
+			LOGGER.error("Missing param : " + CommandInterpreter.REQUEST_ID_PARAM + " on multiplexed connection for command : " + readCommand);
+			if (readCommand.getCommandDataStream() != null) {
+				readCommand.getCommandDataStream().close(); // discard the data still being received
+			}
+			commandInterpreter.writeCommandExecutionResponse(ctx, event, new TaskResult(false, null));
+			return;
+		}
+		if (readCommand.getCommandDataStream() != null) { // executed asynchronously as the I/O worker feeds the data, without holding a multiplex executor
 			try {
-				TaskResult result = null;
-				if (executor.getCallInvocationType() == TaskHandler.SYNC_CALL) {
-					result = executor.execute();
-				} else {
-					executor.queue(); // dont wait for the result. send back a response that the call has been dispatched for async execution
-					result = new TaskResult(true,TaskHandlerExecutor.ASYNC_QUEUED);
-				}
-				LOGGER.debug("The output is: "+ result);
-				// write the results to the channel output
-				commandInterpreter.writeCommandExecutionResponse(ctx, event, result);
+				TaskHandlerExecutor executor = this.getExecutor(readCommand);
+				this.repository.executeAsyncCommand(executor, new CommandResultWriter(ctx, event, commandInterpreter, requestId));
 			} catch(Exception e) {
+				readCommand.getCommandDataStream().close(); // discard the data still being received
 				LOGGER.error("Error in executing command/fallBack : " + readCommand, e);
-				throw new RuntimeException("Error in executing command : " + readCommand, e);
+				commandInterpreter.writeCommandExecutionResponse(ctx, event, new TaskResult(false, null), requestId);
+			}
+			return;
+		}
+		if (this.repository.isLightweightCommand(readCommand.getCommand())) { // executed on the I/O worker as no thread isolation is needed
+			TaskResult result;
+			try {
+				result = this.executeLightweightCommand(readCommand);
+			} catch(Exception e) {
+				LOGGER.error("Error in executing command/fallBack : " + readCommand, e);
+				result = new TaskResult(false, null);
+			}
+			commandInterpreter.writeCommandExecutionResponse(ctx, event, result, requestId);
+			return;
+		}
+		final List<TaskHandlerExecutor> executors = this.getExecutors(commandInterpreter, readCommand);
+		try {
+			this.multiplexExecutors.execute(new Runnable() {
+				public void run() {
+					TaskResult result = null;
+					try {
+						result = executeCommands(commandInterpreter, readCommand, executors);
+						LOGGER.debug("The output for request id : " + requestId + " is: "+ result);
+					} catch(Exception e) {
+						LOGGER.error("Error in executing command/fallBack : " + readCommand, e);
+						result = new TaskResult(false, null);
+					}
+					try {
+						commandInterpreter.writeCommandExecutionResponse(ctx, event, result, requestId);
+					} catch (Exception e) {
+						LOGGER.error("Error writing response for request id : " + requestId + " of command : " + readCommand, e);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			LOGGER.error("Multiplex executors rejected command : " + readCommand, e);
+			commandInterpreter.writeCommandExecutionResponse(ctx, event, new TaskResult(false, null), requestId);
+		}
+	}
+
+	/**
+	 * Helper method to execute the specified command, whose data is being streamed, asynchronously and write the response when execution completes. The
+	 * channel's I/O worker must not wait on the command as it feeds the command data stream.
+	 */
+	private void dispatchStreamingCommand(ChannelHandlerContext ctx, ChannelEvent event, CommandInterpreter commandInterpreter, 
+			CommandInterpreter.ProxyCommand readCommand) throws Exception {
+		try {
+			TaskHandlerExecutor executor = this.getExecutor(readCommand);
+			this.repository.executeAsyncCommand(executor, new CommandResultWriter(ctx, event, commandInterpreter, null));
+		} catch(Exception e) {
+			readCommand.getCommandDataStream().close(); // discard the data still being received
+			LOGGER.error("Error in executing command/fallBack : " + readCommand, e);
+			throw new RuntimeException("Error in executing command : " + readCommand, e);
+		}
+	}
+
+	/**
+	 * Helper method to execute the specified command, of a handler that opted for lightweight execution, on the calling thread
+	 */
+	private TaskResult executeLightweightCommand(CommandInterpreter.ProxyCommand readCommand) {
+		String pool = readCommand.getCommandParams().get(POOL_PARAM);
+		return this.repository.executeCommand(readCommand.getCommand(), pool != null ? pool : readCommand.getCommand(), readCommand.getCommandData(), 
+				readCommand.getCommandParams(), readCommand.getDeadline());
+	}
+
+	/**
+	 * Helper method to get the TaskHandlerExecutor instances for the specified command. Returns the executors of the sub-commands if the command is a 
+	 * {@link CommandInterpreter#MULTI_COMMAND}, a single executor otherwise. The command data is read fully when this method returns.
+	 */
+	private List<TaskHandlerExecutor> getExecutors(CommandInterpreter commandInterpreter, CommandInterpreter.ProxyCommand readCommand) throws Exception {
+		List<TaskHandlerExecutor> executors = new LinkedList<TaskHandlerExecutor>();
+		if (!CommandInterpreter.MULTI_COMMAND.equals(readCommand.getCommand())) {
+			executors.add(this.getExecutor(readCommand));
+			return executors;
+		}
+		if (readCommand.getDataLength() > 0) {
+			ChannelBuffer subCommandsBuffer = readCommand.getCommandDataBuffer().duplicate();
+			while (subCommandsBuffer.readable()) {
+				CommandInterpreter.ProxyCommand subCommand = commandInterpreter.interpretCommand(subCommandsBuffer);
+				if (subCommand.getReadFailure() != null) {
+					throw new IllegalArgumentException("Invalid sub-command in command : " + readCommand + ". " + subCommand.getReadFailureDescription());
+				}
+				if (CommandInterpreter.MULTI_COMMAND.equals(subCommand.getCommand())) {
+					throw new IllegalArgumentException("Nested " + CommandInterpreter.MULTI_COMMAND + " commands are not supported");
+				}
+				TaskHandlerExecutor executor = this.getExecutor(subCommand);
+				executor.setDeadline(CommandDeadline.earliest(executor.getDeadline(), readCommand.getDeadline()));
+				executors.add(executor);
+			}
+		}
+		return executors;
+	}
+
+	/**
+	 * Helper method to get the TaskHandlerExecutor for the specified command, initialized with the command params and data
+	 */
+	private TaskHandlerExecutor getExecutor(CommandInterpreter.ProxyCommand readCommand) {
+		String pool = readCommand.getCommandParams().get(POOL_PARAM);
+		TaskHandlerExecutor executor;
+		//Try to execute command using ThreadPool, if "pool" is found in the command, else the command name
+		if(pool!=null) {
+			executor = this.repository.get(readCommand.getCommand(),pool);
+		} else {
+			executor = this.repository.get(readCommand.getCommand(),readCommand.getCommand());
+		}
+		executor.setParams(readCommand.getCommandParams());
+		executor.setData(readCommand.getCommandData());
+		executor.setDataStream(readCommand.getCommandDataStream());
+		executor.setDeadline(readCommand.getDeadline());
+		if (readCommand.getPriority() != null) {
+			executor.setPriority(readCommand.getPriority());
+		}
+		return executor;
+	}
+
+	/**
+	 * Helper method to execute the TaskHandlerExecutor instances of the specified command. The sub-commands of a {@link CommandInterpreter#MULTI_COMMAND}
+	 * are executed in parallel, honoring the overall deadline if specified, and the sub-command responses are combined into the returned result. 
+	 * Sub-commands that return chunked results are answered with the {@link CommandInterpreter#CHUNKED_RESULT_IN_MULTI} error status
+	 */
+	private TaskResult executeCommands(CommandInterpreter commandInterpreter, CommandInterpreter.ProxyCommand readCommand, List<TaskHandlerExecutor> executors) 
+			throws Exception {
+		if (!CommandInterpreter.MULTI_COMMAND.equals(readCommand.getCommand())) {
+			TaskHandlerExecutor executor = executors.get(0);
+			try {
+				return this.executeCommand(executor);
 			} finally {
-                RequestLogger.log(executor);
-            }
-		} 		
-		super.handleUpstream(ctx, event);
-	}	
+				RequestLogger.log(executor);
+			}
+		}
+		List<TaskResult> results = this.repository.executeCommands(executors, this.getTimeout(readCommand));
+		ChannelBuffer[] responses = new ChannelBuffer[results.size()];
+		for (int i = 0; i < responses.length; i++) {
+			TaskResult result = results.get(i);
+			if (result.isChunked()) { // the chunks are not read into memory. the sub-command is answered with an error status instead
+				result.getChunkProducer().close();
+				result = new TaskResult(false, CommandInterpreter.CHUNKED_RESULT_IN_MULTI);
+			}
+			responses[i] = commandInterpreter.encodeCommandExecutionResponse(result, null);
+		}
+		return new TaskResult(true, null, ChannelBuffers.wrappedBuffer(responses)); // the sub-command responses are wrapped, not copied
+	}
+
+	/**
+	 * Helper method to get the overall timeout of the specified multi command. Returns 0 i.e. no timeout, if the timeout param is missing or invalid
+	 */
+	private long getTimeout(CommandInterpreter.ProxyCommand readCommand) {
+		String timeout = readCommand.getCommandParams().get(CommandInterpreter.TIMEOUT_PARAM);
+		if (timeout == null) {
+			return 0;
+		}
+		try {
+			return Math.max(Long.parseLong(timeout), 0);
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Ignoring invalid " + CommandInterpreter.TIMEOUT_PARAM + " param value : " + timeout + " of command : " + readCommand);
+			return 0;
+		}
+	}
+
+	/**
+	 * Helper method to execute the specified TaskHandlerExecutor as per its call invocation type
+	 */
+	private TaskResult executeCommand(TaskHandlerExecutor executor) {
+		if (executor.getCallInvocationType() == TaskHandler.SYNC_CALL) {
+			return executor.execute();
+		}
+		executor.queue(); // dont wait for the result. send back a response that the call has been dispatched for async execution
+		return new TaskResult(true,TaskHandlerExecutor.ASYNC_QUEUED);
+	}
 
 	/**
 	 * Interface method implementation. Closes the underlying channel after logging a warning message
@@ -119,6 +359,18 @@ public class CommandProcessingChannelHandler extends SimpleChannelUpstreamHandle
 	public void setRepository(TaskHandlerExecutorRepository repository) {
 		this.repository = repository;
 	}
+	public CommandInterpreter getCommandInterpreter() {
+		return this.commandInterpreter;
+	}
+	public void setCommandInterpreter(CommandInterpreter commandInterpreter) {
+		this.commandInterpreter = commandInterpreter;
+	}
+	public ExecutorService getMultiplexExecutors() {
+		return this.multiplexExecutors;
+	}
+	public void setMultiplexExecutors(ExecutorService multiplexExecutors) {
+		this.multiplexExecutors = multiplexExecutors;
+	}
 	/** End Getter/Setter methods */
 }
 
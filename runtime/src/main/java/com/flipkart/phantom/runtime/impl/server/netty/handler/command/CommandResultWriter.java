@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.handler.command;
+
+import com.flipkart.phantom.task.impl.TaskCompletionListener;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutor;
+import com.flipkart.phantom.task.impl.TaskResult;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>CommandResultWriter</code> is a {@link TaskCompletionListener} that writes the result of a command, tagged with the command's request id if any, 
+ * to the channel on which the command was received. Failed commands are written as error responses.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class CommandResultWriter implements TaskCompletionListener {
+
+	/** Logger for this class*/
+	private static final Logger LOGGER = LoggerFactory.getLogger(CommandResultWriter.class);
+
+	/** The channel handler context and event of the command*/
+	private final ChannelHandlerContext ctx;
+	private final ChannelEvent event;
+
+	/** The CommandInterpreter for writing the response*/
+	private final CommandInterpreter commandInterpreter;
+
+	/** The request id of the command, may be null*/
+	private final String requestId;
+
+	/**
+	 * Constructor for this class
+	 * @param ctx the ChannelHandlerContext of the command
+	 * @param event the ChannelEvent of the command
+	 * @param commandInterpreter the CommandInterpreter for writing the response
+	 * @param requestId the request id of the command, may be null
+	 */
+	public CommandResultWriter(ChannelHandlerContext ctx, ChannelEvent event, CommandInterpreter commandInterpreter, String requestId) {
+		this.ctx = ctx;
+		this.event = event;
+		this.commandInterpreter = commandInterpreter;
+		this.requestId = requestId;
+	}
+
+	/**
+	 * Interface method implementation. Writes the specified result
+	 * @see com.flipkart.phantom.task.impl.TaskCompletionListener#onCompletion(com.flipkart.phantom.task.impl.TaskHandlerExecutor, com.flipkart.phantom.task.impl.TaskResult)
+	 */
+	public void onCompletion(TaskHandlerExecutor executor, TaskResult result) {
+		LOGGER.debug("The output for request id : " + this.requestId + " is: "+ result);
+		this.write(executor, result);
+	}
+
+	/**
+	 * Interface method implementation. Writes an error response
+	 * @see com.flipkart.phantom.task.impl.TaskCompletionListener#onError(com.flipkart.phantom.task.impl.TaskHandlerExecutor, java.lang.Throwable)
+	 */
+	public void onError(TaskHandlerExecutor executor, Throwable error) {
+		LOGGER.error("Error in executing command/fallBack : " + executor.getCommandKey().name(), error);
+		this.write(executor, new TaskResult(false, null));
+	}
+
+	/**
+	 * Helper method to write the result
+	 */
+	private void write(TaskHandlerExecutor executor, TaskResult result) {
+		try {
+			this.commandInterpreter.writeCommandExecutionResponse(this.ctx, this.event, result, this.requestId);
+		} catch (Exception e) {
+			LOGGER.error("Error writing response for request id : " + this.requestId + " of command : " + executor.getCommandKey().name(), e);
+		}
+	}
+
+}
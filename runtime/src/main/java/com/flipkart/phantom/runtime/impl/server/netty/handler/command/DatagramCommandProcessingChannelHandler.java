@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.handler.command;
+
+import com.flipkart.phantom.runtime.impl.server.concurrent.NamedThreadFactory;
+import com.flipkart.phantom.task.impl.TaskCompletionListener;
+import com.flipkart.phantom.task.impl.TaskHandler;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutor;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
+import com.flipkart.phantom.task.impl.TaskResult;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>DatagramCommandProcessingChannelHandler</code> ingests fire-and-forget commands received as datagrams, for e.g. by the
+ * {@link com.flipkart.phantom.runtime.impl.server.netty.UDPNettyServer}. Each datagram carries one or more complete command frames of the command
+ * protocol (see {@link CommandInterpreter}), no response is written and no connection state is kept.
+ * Decoded commands are offered to a bounded ingestion queue and are executed asynchronously by dispatcher threads, using
+ * {@link TaskHandlerExecutorRepository#executeAsyncCommand(TaskHandlerExecutor, TaskCompletionListener)}, so that neither the I/O worker nor the
+ * dispatchers wait on command execution. Commands are dropped, and counted, when the ingestion queue is full. Only commands of the
+ * {@link TaskHandler#ASYNC_CALL} invocation type are executed as the sender does not wait on a response. Other commands are rejected and counted as
+ * failed, as are commands that fail on execution. Datagrams that do not contain complete command frames (for e.g. datagrams truncated to the receive
+ * buffer size) are discarded and counted as malformed. The counters are displayed on the admin console.
+ * Commands still queued when the deadline specified using the {@link CommandInterpreter#DEADLINE_PARAM} param is reached are dropped by the executor.
+ * The dispatcher threads are started when the channel is opened and are stopped when it is closed.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class DatagramCommandProcessingChannelHandler extends SimpleChannelUpstreamHandler {
+
+	/** Logger for this class*/
+	private static final Logger LOGGER = LoggerFactory.getLogger(DatagramCommandProcessingChannelHandler.class);
+
+	/** The param key for pool name */
+	public static final String POOL_PARAM = "pool";
+
+	/** The default size of the ingestion queue*/
+	public static final int DEFAULT_INGESTION_QUEUE_SIZE = 10000;
+
+	/** The default number of dispatcher threads*/
+	public static final int DEFAULT_DISPATCHER_COUNT = 1;
+
+	/** The max number of queued commands taken by a dispatcher at a time*/
+	private static final int DISPATCH_BATCH_SIZE = 64;
+
+	/** The TaskRepository to lookup TaskHandlerExecutors from */
+	private TaskHandlerExecutorRepository repository;
+
+	/** The CommandInterpreter for reading commands. Set to a {@link BinaryCommandInterpreter} for the binary command protocol*/
+	private CommandInterpreter commandInterpreter = new CommandInterpreter();
+
+	/** The ingestion queue size and the number of dispatcher threads*/
+	private int ingestionQueueSize = DEFAULT_INGESTION_QUEUE_SIZE;
+	private int dispatcherCount = DEFAULT_DISPATCHER_COUNT;
+
+	/** The ingestion queue of decoded commands and the dispatcher threads draining it*/
+	private BlockingQueue<CommandInterpreter.ProxyCommand> ingestionQueue;
+	private ExecutorService dispatchers;
+
+	/** Counters for commands received, dropped as the ingestion queue was full, rejected or failed, and datagrams discarded as malformed*/
+	private final AtomicLong receivedCommandCount = new AtomicLong();
+	private final AtomicLong droppedCommandCount = new AtomicLong();
+	private final AtomicLong failedCommandCount = new AtomicLong();
+	private final AtomicLong malformedDatagramCount = new AtomicLong();
+
+	/** The listener counting commands that fail on execution*/
+	private final TaskCompletionListener completionListener = new FailureCounter();
+
+	/**
+	 * Overriden superclass method. Creates the ingestion queue and starts the dispatcher threads
+	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#channelOpen(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
+	 */
+	public synchronized void channelOpen(ChannelHandlerContext ctx, ChannelStateEvent event) throws Exception {
+		if (this.dispatchers == null) {
+			this.ingestionQueue = new ArrayBlockingQueue<CommandInterpreter.ProxyCommand>(this.ingestionQueueSize);
+			this.dispatchers = Executors.newFixedThreadPool(this.dispatcherCount, new NamedThreadFactory("DatagramCommand-Dispatcher", true));
+			for (int i = 0; i < this.dispatcherCount; i++) {
+				this.dispatchers.execute(new Dispatcher(this.ingestionQueue));
+			}
+		}
+		super.channelOpen(ctx, event);
+	}
+
+	/**
+	 * Overriden superclass method. Stops the dispatcher threads. Commands still in the ingestion queue are dropped
+	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#channelClosed(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
+	 */
+	public synchronized void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent event) throws Exception {
+		if (this.dispatchers != null) {
+			this.dispatchers.shutdownNow();
+			this.dispatchers = null;
+			int pendingCommands = this.ingestionQueue.size();
+			this.ingestionQueue.clear();
+			this.droppedCommandCount.addAndGet(pendingCommands);
+			LOGGER.info("Stopped command dispatchers. Dropped {} queued commands", pendingCommands);
+		}
+		super.channelClosed(ctx, event);
+	}
+
+	/**
+	 * Overriden superclass method. Decodes the command frames in the received datagram and offers them to the ingestion queue
+	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#messageReceived(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.MessageEvent)
+	 */
+	public void messageReceived(ChannelHandlerContext ctx, MessageEvent event) throws Exception {
+		if (!(event.getMessage() instanceof ChannelBuffer)) {
+			super.messageReceived(ctx, event);
+			return;
+		}
+		ChannelBuffer buffer = (ChannelBuffer)event.getMessage();
+		BlockingQueue<CommandInterpreter.ProxyCommand> ingestionQueue = this.ingestionQueue;
+		while (buffer.readable()) {
+			CommandInterpreter.ProxyCommand readCommand;
+			try {
+				readCommand = this.commandInterpreter.interpretCommand(buffer);
+			} catch (Exception e) {
+				readCommand = null;
+			}
+			if (readCommand == null || readCommand.getReadFailure() != null) {
+				this.malformedDatagramCount.incrementAndGet();
+				LOGGER.debug("Discarding malformed datagram from {}", event.getRemoteAddress());
+				return;
+			}
+			this.receivedCommandCount.incrementAndGet();
+			// copy the data out so that the queued command does not retain the received datagram buffer
+			readCommand.setCommandData(readCommand.getCommandData());
+			if (ingestionQueue == null || !ingestionQueue.offer(readCommand)) {
+				this.droppedCommandCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Interface method implementation. Logs a warning message. The channel is not closed as it is shared by all senders
+	 * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#exceptionCaught(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ExceptionEvent)
+	 */
+	public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent event) throws Exception {
+		LOGGER.warn("Exception {} thrown on Channel {}", event, event.getChannel());
+	}
+
+	/**
+	 * Executes the specified command asynchronously, counting it as failed if it is not an asynchronous command or could not be queued for execution
+	 * @param readCommand the command to execute
+	 */
+	private void dispatch(CommandInterpreter.ProxyCommand readCommand) {
+		String commandName = readCommand.getCommand();
+		String poolName = readCommand.getCommandParams().get(POOL_PARAM);
+		if (poolName == null) {
+			poolName = commandName;
+		}
+		try {
+			TaskHandlerExecutor executor = this.repository.get(commandName, poolName);
+			if (executor == null) {
+				throw new UnsupportedOperationException("Invoked unsupported command : " + commandName);
+			}
+			if (executor.getCallInvocationType() != TaskHandler.ASYNC_CALL) {
+				throw new UnsupportedOperationException("Invoked command : " + commandName + " that is not an asynchronous command");
+			}
+			executor.setParams(readCommand.getCommandParams());
+			executor.setData(readCommand.getCommandData());
+			executor.setDeadline(readCommand.getDeadline());
+			if (readCommand.getPriority() != null) {
+				executor.setPriority(readCommand.getPriority());
+			}
+			this.repository.executeAsyncCommand(executor, this.completionListener);
+		} catch (Exception e) {
+			this.failedCommandCount.incrementAndGet();
+			LOGGER.debug("Error dispatching datagram command " + commandName, e);
+		}
+	}
+
+	/**
+	 * The TaskCompletionListener that counts commands that failed on execution. Fallback results are not counted
+	 */
+	private class FailureCounter implements TaskCompletionListener {
+
+		/**
+		 * Interface method implementation. Counts the command as failed if its result is not successful
+		 * @see com.flipkart.phantom.task.impl.TaskCompletionListener#onCompletion(com.flipkart.phantom.task.impl.TaskHandlerExecutor, com.flipkart.phantom.task.impl.TaskResult)
+		 */
+		public void onCompletion(TaskHandlerExecutor executor, TaskResult result) {
+			if (result == null || !result.isSuccess()) {
+				failedCommandCount.incrementAndGet();
+			}
+		}
+
+		/**
+		 * Interface method implementation. Counts the command as failed
+		 * @see com.flipkart.phantom.task.impl.TaskCompletionListener#onError(com.flipkart.phantom.task.impl.TaskHandlerExecutor, java.lang.Throwable)
+		 */
+		public void onError(TaskHandlerExecutor executor, Throwable error) {
+			failedCommandCount.incrementAndGet();
+			LOGGER.debug("Error executing datagram command " + executor.getCommandKey().name(), error);
+		}
+	}
+
+	/**
+	 * The dispatcher that drains the ingestion queue, in batches, until interrupted
+	 */
+	private class Dispatcher implements Runnable {
+
+		/** The ingestion queue drained by this dispatcher*/
+		private final BlockingQueue<CommandInterpreter.ProxyCommand> ingestionQueue;
+
+		/** Default constructor */
+		Dispatcher(BlockingQueue<CommandInterpreter.ProxyCommand> ingestionQueue) {
+			this.ingestionQueue = ingestionQueue;
+		}
+
+		/**
+		 * Interface method implementation.
+		 * @see java.lang.Runnable#run()
+		 */
+		public void run() {
+			List<CommandInterpreter.ProxyCommand> batch = new ArrayList<CommandInterpreter.ProxyCommand>(DISPATCH_BATCH_SIZE);
+			while (!Thread.currentThread().isInterrupted()) {
+				try {
+					batch.add(this.ingestionQueue.take());
+				} catch (InterruptedException e) {
+					return;
+				}
+				this.ingestionQueue.drainTo(batch, DISPATCH_BATCH_SIZE - 1);
+				for (int i = 0; i < batch.size(); i++) {
+					dispatch(batch.get(i));
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of commands waiting in the ingestion queue
+	 * @return the ingestion queue size
+	 */
+	public int getQueuedCommandCount() {
+		BlockingQueue<CommandInterpreter.ProxyCommand> ingestionQueue = this.ingestionQueue;
+		return ingestionQueue == null ? 0 : ingestionQueue.size();
+	}
+
+	/** Start Getter/Setter methods */
+	public TaskHandlerExecutorRepository getRepository() {
+		return this.repository;
+	}
+	public void setRepository(TaskHandlerExecutorRepository repository) {
+		this.repository = repository;
+	}
+	public CommandInterpreter getCommandInterpreter() {
+		return this.commandInterpreter;
+	}
+	public void setCommandInterpreter(CommandInterpreter commandInterpreter) {
+		this.commandInterpreter = commandInterpreter;
+	}
+	public int getIngestionQueueSize() {
+		return this.ingestionQueueSize;
+	}
+	public void setIngestionQueueSize(int ingestionQueueSize) {
+		this.ingestionQueueSize = ingestionQueueSize;
+	}
+	public int getDispatcherCount() {
+		return this.dispatcherCount;
+	}
+	public void setDispatcherCount(int dispatcherCount) {
+		this.dispatcherCount = dispatcherCount;
+	}
+	public long getReceivedCommandCount() {
+		return this.receivedCommandCount.get();
+	}
+	public long getDroppedCommandCount() {
+		return this.droppedCommandCount.get();
+	}
+	public long getFailedCommandCount() {
+		return this.failedCommandCount.get();
+	}
+	public long getMalformedDatagramCount() {
+		return this.malformedDatagramCount.get();
+	}
+	/** End Getter/Setter methods */
+}
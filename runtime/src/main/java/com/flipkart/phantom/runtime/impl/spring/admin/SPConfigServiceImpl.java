@@ -16,9 +16,15 @@
 package com.flipkart.phantom.runtime.impl.spring.admin;
 
 import com.flipkart.phantom.runtime.impl.server.AbstractNetworkServer;
+import com.flipkart.phantom.runtime.impl.server.netty.UDPNettyServer;
 import com.flipkart.phantom.runtime.impl.spring.ServiceProxyComponentContainer;
 import com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService;
 import com.flipkart.phantom.task.impl.TaskContextFactory;
+import com.flipkart.phantom.task.impl.cache.ResultCache;
+import com.flipkart.phantom.task.impl.limit.AdaptiveConcurrencyLimiter;
+import com.flipkart.phantom.task.impl.priority.PriorityLaneQueue;
+import com.flipkart.phantom.task.impl.registry.CommandDispatchDescriptor;
+import com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry;
 import com.flipkart.phantom.task.spi.AbstractHandler;
 import com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry;
 import org.slf4j.Logger;
@@ -296,6 +302,135 @@ public class SPConfigServiceImpl  implements SPConfigService {
         return list;
     }
 
+    /**
+     * Interface method implementation
+     * @see com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService#getResultCaches()
+     */
+    public List<ResultCache> getResultCaches() {
+        List<ResultCache> list = new ArrayList<ResultCache>();
+        for (AbstractHandlerRegistry registry : registries) {
+            if (registry instanceof TaskHandlerRegistry) {
+                list.addAll(((TaskHandlerRegistry)registry).getResultCaches());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Interface method implementation
+     * @see com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService#getConcurrencyLimiters()
+     */
+    public List<AdaptiveConcurrencyLimiter> getConcurrencyLimiters() {
+        List<AdaptiveConcurrencyLimiter> list = new ArrayList<AdaptiveConcurrencyLimiter>();
+        for (AbstractHandlerRegistry registry : registries) {
+            if (registry instanceof TaskHandlerRegistry) {
+                list.addAll(((TaskHandlerRegistry)registry).getConcurrencyLimiters());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Interface method implementation. Thread pools are shared across registries and their queues are therefore listed once
+     * @see com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService#getPriorityLaneQueues()
+     */
+    public List<PriorityLaneQueue> getPriorityLaneQueues() {
+        Set<PriorityLaneQueue> queues = new LinkedHashSet<PriorityLaneQueue>();
+        for (AbstractHandlerRegistry registry : registries) {
+            if (registry instanceof TaskHandlerRegistry) {
+                queues.addAll(((TaskHandlerRegistry)registry).getPriorityLaneQueues());
+            }
+        }
+        return new ArrayList<PriorityLaneQueue>(queues);
+    }
+
+    /**
+     * Interface method implementation
+     * @see com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService#getDatagramServers()
+     */
+    public List<UDPNettyServer> getDatagramServers() {
+        List<UDPNettyServer> servers = new ArrayList<UDPNettyServer>();
+        for (AbstractNetworkServer server : deployedNetworkServers) {
+            if (server instanceof UDPNettyServer) {
+                servers.add((UDPNettyServer)server);
+            }
+        }
+        return servers;
+    }
+
+    /**
+     * Interface method implementation
+     * @see com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService#getCommandDispatchDescriptors()
+     */
+    public Map<String, CommandDispatchDescriptor> getCommandDispatchDescriptors() {
+        Map<String, CommandDispatchDescriptor> descriptors = new TreeMap<String, CommandDispatchDescriptor>();
+        for (AbstractHandlerRegistry registry : registries) {
+            if (registry instanceof TaskHandlerRegistry) {
+                descriptors.putAll(((TaskHandlerRegistry)registry).getDispatchDescriptors());
+            }
+        }
+        return descriptors;
+    }
+
+    /**
+     * Interface method implementation
+     * @see com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService#getThreadPoolSizes()
+     */
+    public Map<String, Integer> getThreadPoolSizes() {
+        Map<String, Integer> threadPoolSizes = new TreeMap<String, Integer>();
+        for (AbstractHandlerRegistry registry : registries) {
+            if (registry instanceof TaskHandlerRegistry) {
+                threadPoolSizes.putAll(((TaskHandlerRegistry)registry).getThreadPoolSizes());
+            }
+        }
+        return threadPoolSizes;
+    }
+
+    /**
+     * Interface method implementation. Returns true if any of the task handler registries may resize thread pools
+     * @see com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService#isThreadPoolResizable()
+     */
+    public boolean isThreadPoolResizable() {
+        for (AbstractHandlerRegistry registry : registries) {
+            if (registry instanceof TaskHandlerRegistry && ((TaskHandlerRegistry)registry).isThreadPoolResizable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Interface method implementation. Resizes the thread pool in the registries that have it
+     * @see com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService#resizeThreadPool(java.lang.String, int, java.lang.Integer)
+     */
+    public void resizeThreadPool(String threadPoolName, int coreSize, Integer queueSize) {
+        boolean resized = false;
+        for (AbstractHandlerRegistry registry : registries) {
+            if (registry instanceof TaskHandlerRegistry && (((TaskHandlerRegistry)registry).getPoolSize(threadPoolName) != null 
+                    || ((TaskHandlerRegistry)registry).getTaskHandlerByCommand(threadPoolName) != null)) {
+                ((TaskHandlerRegistry)registry).resizeThreadPool(threadPoolName, coreSize, queueSize);
+                resized = true;
+            }
+        }
+        if (!resized) {
+            throw new IllegalArgumentException("Unknown thread pool : " + threadPoolName);
+        }
+    }
+
+    /**
+     * Interface method implementation
+     * @see com.flipkart.phantom.runtime.spi.spring.admin.SPConfigService#setExecutorTimeout(java.lang.String, int)
+     */
+    public void setExecutorTimeout(String commandName, int executorTimeout) {
+        for (AbstractHandlerRegistry registry : registries) {
+            if (registry instanceof TaskHandlerRegistry && ((TaskHandlerRegistry)registry).getTaskHandlerByCommand(commandName) != null) {
+                ((TaskHandlerRegistry)registry).setExecutorTimeout(commandName, executorTimeout);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown command : " + commandName);
+    }
+
     /** Getter/Setter methods */
 	public ServiceProxyComponentContainer getComponentContainer() {
 		return componentContainer;
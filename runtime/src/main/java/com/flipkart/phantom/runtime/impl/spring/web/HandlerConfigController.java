@@ -33,6 +33,7 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 
 /**
  * The <code>HandlerConfigController</code> is a controller for handling configuration changes.
@@ -73,6 +74,85 @@ public class HandlerConfigController {
         return "configuration";
     }
 
+    /**
+     * Controller for the result caches page
+     */
+    @RequestMapping(value = {"/caches"}, method = RequestMethod.GET)
+    public String caches(ModelMap model, HttpServletRequest request) {
+        model.addAttribute("caches", this.configService.getResultCaches());
+        return "caches";
+    }
+
+    /**
+     * Controller for the concurrency limits page
+     */
+    @RequestMapping(value = {"/limits"}, method = RequestMethod.GET)
+    public String limits(ModelMap model, HttpServletRequest request) {
+        model.addAttribute("limiters", this.configService.getConcurrencyLimiters());
+        return "limits";
+    }
+
+    /**
+     * Controller for the priority lanes page
+     */
+    @RequestMapping(value = {"/lanes"}, method = RequestMethod.GET)
+    public String lanes(ModelMap model, HttpServletRequest request) {
+        model.addAttribute("queues", this.configService.getPriorityLaneQueues());
+        return "lanes";
+    }
+
+    /**
+     * Controller for the datagram commands page
+     */
+    @RequestMapping(value = {"/datagrams"}, method = RequestMethod.GET)
+    public String datagrams(ModelMap model, HttpServletRequest request) {
+        model.addAttribute("servers", this.configService.getDatagramServers());
+        return "datagrams";
+    }
+
+    /**
+     * Controller for the thread pools page
+     */
+    @RequestMapping(value = {"/pools"}, method = RequestMethod.GET)
+    public String pools(ModelMap model, HttpServletRequest request) {
+        model.addAttribute("descriptors", new ArrayList<Object>(this.configService.getCommandDispatchDescriptors().entrySet()));
+        model.addAttribute("poolSizes", new ArrayList<Object>(this.configService.getThreadPoolSizes().entrySet()));
+        model.addAttribute("resizable", this.configService.isThreadPoolResizable());
+        return "pools";
+    }
+
+    /**
+     * Controller for resizing a thread pool. Changes are applied to the running thread pool without reinitializing handlers
+     */
+    @RequestMapping(value = {"/resizePool"}, method = RequestMethod.POST)
+    public String resizePool(ModelMap model, HttpServletRequest request, @RequestParam String threadPoolName, @RequestParam String coreSize,
+            @RequestParam(defaultValue = "") String queueSize) {
+        try {
+            this.configService.resizeThreadPool(threadPoolName, Integer.parseInt(coreSize.trim()), 
+                    queueSize.trim().length() == 0 ? null : Integer.valueOf(queueSize.trim()));
+            model.addAttribute("message", "Resized thread pool " + threadPoolName);
+        } catch (RuntimeException e) {
+            LOGGER.error("Error resizing thread pool " + threadPoolName, e);
+            model.addAttribute("message", "Error resizing thread pool " + threadPoolName + " : " + e.getMessage());
+        }
+        return this.pools(model, request);
+    }
+
+    /**
+     * Controller for changing the executor timeout of a command. Changes are applied without reinitializing the command's handler
+     */
+    @RequestMapping(value = {"/executorTimeout"}, method = RequestMethod.POST)
+    public String executorTimeout(ModelMap model, HttpServletRequest request, @RequestParam String commandName, @RequestParam String executorTimeout) {
+        try {
+            this.configService.setExecutorTimeout(commandName, Integer.parseInt(executorTimeout.trim()));
+            model.addAttribute("message", "Changed executor timeout of command " + commandName);
+        } catch (RuntimeException e) {
+            LOGGER.error("Error changing executor timeout of command " + commandName, e);
+            model.addAttribute("message", "Error changing executor timeout of command " + commandName + " : " + e.getMessage());
+        }
+        return this.pools(model, request);
+    }
+
     @RequestMapping(value = {"/viewConfig/**"}, method = RequestMethod.GET)
     public String viewConfig(ModelMap model, HttpServletRequest request, @ModelAttribute("handlerName") String handlerName) {
         model.addAttribute("handlers", this.configService.getAllHandlers());
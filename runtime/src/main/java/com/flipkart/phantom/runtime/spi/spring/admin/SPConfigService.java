@@ -17,6 +17,11 @@
 package com.flipkart.phantom.runtime.spi.spring.admin;
 
 import com.flipkart.phantom.runtime.impl.server.AbstractNetworkServer;
+import com.flipkart.phantom.runtime.impl.server.netty.UDPNettyServer;
+import com.flipkart.phantom.task.impl.cache.ResultCache;
+import com.flipkart.phantom.task.impl.limit.AdaptiveConcurrencyLimiter;
+import com.flipkart.phantom.task.impl.priority.PriorityLaneQueue;
+import com.flipkart.phantom.task.impl.registry.CommandDispatchDescriptor;
 import com.flipkart.phantom.task.spi.AbstractHandler;
 import com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry;
 import org.springframework.core.io.ByteArrayResource;
@@ -25,6 +30,7 @@ import org.trpr.platform.core.PlatformException;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <code>SPConfigService</code> provides methods for viewing configurations
@@ -82,4 +88,55 @@ public interface SPConfigService {
      */
     public List<AbstractHandler> getAllHandlers();
 
+    /**
+     * Get the caches of command results, for display of cache metrics
+     */
+    public List<ResultCache> getResultCaches();
+
+    /**
+     * Get the adaptive concurrency limiters of commands, for display of the current limits
+     */
+    public List<AdaptiveConcurrencyLimiter> getConcurrencyLimiters();
+
+    /**
+     * Get the work queues of thread pools that have priority lanes, for display of per lane queue time metrics
+     */
+    public List<PriorityLaneQueue> getPriorityLaneQueues();
+
+    /**
+     * Get the deployed UDP servers, for display of the counters of received, dropped and failed datagram commands
+     */
+    public List<UDPNettyServer> getDatagramServers();
+
+    /**
+     * Get the dispatch descriptors of commands, keyed by command name, for display of their thread pool sizes and executor timeouts
+     */
+    public Map<String, CommandDispatchDescriptor> getCommandDispatchDescriptors();
+
+    /**
+     * Get the sizes of configured thread pools, keyed by thread pool name
+     */
+    public Map<String, Integer> getThreadPoolSizes();
+
+    /**
+     * Returns true if thread pools may be resized at runtime. See {@link com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry#isThreadPoolResizable()}
+     */
+    public boolean isThreadPoolResizable();
+
+    /**
+     * Resizes a thread pool without reinitializing handlers. See {@link com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry#resizeThreadPool(String, int, Integer)}
+     * @param threadPoolName the thread pool name i.e. a command name or a configured pool name
+     * @param coreSize the new core size
+     * @param queueSize the new queue size of a thread pool that has priority lanes, null to leave it unchanged
+     */
+    public void resizeThreadPool(String threadPoolName, int coreSize, Integer queueSize);
+
+    /**
+     * Changes the executor timeout of a command without reinitializing its handler. See 
+     * {@link com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry#setExecutorTimeout(String, int)}
+     * @param commandName the command name
+     * @param executorTimeout the new executor timeout in milliseconds
+     */
+    public void setExecutorTimeout(String commandName, int executorTimeout);
+
 }
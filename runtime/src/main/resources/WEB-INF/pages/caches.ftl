@@ -0,0 +1,44 @@
+<#include "./../header.ftl"> 
+
+<div id="caches">
+
+	<h1>Result Caches</h1>
+
+	<#if caches?? && caches?size!=0>
+		<table id = "sp-cache-table" class="bordered-table">
+			<tr>
+				<th>Command</th>
+				<th>Eviction Policy</th>
+				<th>TTL (ms)</th>
+				<th>Entries</th>
+				<th>Memory (bytes)</th>
+				<th>Max Memory (bytes)</th>
+				<th>Hits</th>
+				<th>Misses</th>
+				<th>Hit %</th>
+				<th>Evictions</th>
+				<th>Expirations</th>
+			</tr>
+			<#list caches as cache>
+				<tr>
+					<td>${cache.getName()}</td>
+					<td>${cache.getConfig().getEvictionPolicy()}<#if cache.getConfig().isOffHeap()> (off heap)</#if></td>
+					<td>${cache.getConfig().getTtlMillis()?c}</td>
+					<td>${cache.getEntryCount()?c}</td>
+					<td>${cache.getMemorySize()?c}</td>
+					<td>${cache.getConfig().getMaxMemorySize()?c}</td>
+					<td>${cache.getHits()?c}</td>
+					<td>${cache.getMisses()?c}</td>
+					<td>${cache.getHitPercentage()}</td>
+					<td>${cache.getEvictions()?c}</td>
+					<td>${cache.getExpirations()?c}</td>
+				</tr>
+			</#list>
+		</table>
+	<#else>
+		No command results are cached
+	</#if>
+
+</div>
+
+<#include "./../footer.ftl"> 
@@ -0,0 +1,39 @@
+<#include "./../header.ftl">
+
+<div id="datagrams">
+
+	<h1>Datagram Commands</h1>
+
+	<#if servers?? && servers?size!=0>
+		<table id = "sp-datagram-table" class="bordered-table">
+			<tr>
+				<th>Port</th>
+				<th>Received</th>
+				<th>Queued</th>
+				<th>Dropped</th>
+				<th>Failed</th>
+				<th>Malformed Datagrams</th>
+			</tr>
+			<#list servers as server>
+				<#assign handler = server.getDatagramCommandHandler()!>
+				<tr>
+					<td>${server.getServerEndpoint()?html}</td>
+					<#if handler?has_content>
+						<td>${handler.getReceivedCommandCount()?c}</td>
+						<td>${handler.getQueuedCommandCount()?c}</td>
+						<td>${handler.getDroppedCommandCount()?c}</td>
+						<td>${handler.getFailedCommandCount()?c}</td>
+						<td>${handler.getMalformedDatagramCount()?c}</td>
+					<#else>
+						<td colspan="5">Not started</td>
+					</#if>
+				</tr>
+			</#list>
+		</table>
+	<#else>
+		No UDP servers are deployed
+	</#if>
+
+</div>
+
+<#include "./../footer.ftl">
@@ -48,6 +48,11 @@
 				<ul>
 					<li><a href="/admin/dashboard">Dashboard</a></li>
 					<li><a href="/admin/configuration">Configuration</a></li>
+					<li><a href="/admin/caches">Caches</a></li>
+					<li><a href="/admin/limits">Limits</a></li>
+					<li><a href="/admin/lanes">Lanes</a></li>
+					<li><a href="/admin/datagrams">Datagrams</a></li>
+					<li><a href="/admin/pools">Pools</a></li>
 				</ul>
 			</div>
 		</div>
@@ -0,0 +1,41 @@
+<#include "./../header.ftl">
+
+<div id="lanes">
+
+	<h1>Priority Lanes</h1>
+
+	<#if queues?? && queues?size!=0>
+		<#list queues as queue>
+			<h3>${queue.getName()} (capacity ${queue.getCapacity()}, queued ${queue.size()})</h3>
+			<table id = "sp-lane-table" class="bordered-table">
+				<tr>
+					<th>Priority</th>
+					<th>Queued</th>
+					<th>Enqueued</th>
+					<th>Dequeued</th>
+					<th>Promoted</th>
+					<th>Mean Queue Time (ms)</th>
+					<th>99th Percentile Queue Time (ms)</th>
+					<th>Max Queue Time (ms)</th>
+				</tr>
+				<#list queue.getLaneMetrics() as lane>
+					<tr>
+						<td>${lane.getPriority()}</td>
+						<td>${lane.getQueued()}</td>
+						<td>${lane.getEnqueued()?c}</td>
+						<td>${lane.getDequeued()?c}</td>
+						<td>${lane.getPromoted()?c}</td>
+						<td>${lane.getMeanQueueTimeMillis()?string("0.##")}</td>
+						<td>${lane.getP99QueueTimeMillis()?string("0.##")}</td>
+						<td>${lane.getMaxQueueTimeMillis()?string("0.##")}</td>
+					</tr>
+				</#list>
+			</table>
+		</#list>
+	<#else>
+		No thread pools have priority lanes
+	</#if>
+
+</div>
+
+<#include "./../footer.ftl">
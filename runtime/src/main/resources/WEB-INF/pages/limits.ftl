@@ -0,0 +1,36 @@
+<#include "./../header.ftl"> 
+
+<div id="limits">
+
+	<h1>Concurrency Limits</h1>
+
+	<#if limiters?? && limiters?size!=0>
+		<table id = "sp-limit-table" class="bordered-table">
+			<tr>
+				<th>Command</th>
+				<th>Algorithm</th>
+				<th>Current Limit</th>
+				<th>Min Limit</th>
+				<th>Max Limit</th>
+				<th>In Flight</th>
+				<th>Rejections</th>
+			</tr>
+			<#list limiters as limiter>
+				<tr>
+					<td>${limiter.getName()}</td>
+					<td>${limiter.getAlgorithm()}</td>
+					<td>${limiter.getLimit()}</td>
+					<td>${limiter.getMinLimit()}</td>
+					<td>${limiter.getMaxLimit()}</td>
+					<td>${limiter.getInFlight()}</td>
+					<td>${limiter.getRejections()?c}</td>
+				</tr>
+			</#list>
+		</table>
+	<#else>
+		No commands are limited adaptively
+	</#if>
+
+</div>
+
+<#include "./../footer.ftl"> 
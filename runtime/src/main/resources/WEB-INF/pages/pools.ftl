@@ -0,0 +1,96 @@
+<#include "./../header.ftl">
+
+<div id="pools">
+
+	<h1>Thread Pools</h1>
+
+	<#if message??>
+		<p>${message?html}</p>
+	</#if>
+
+	<p>Changes apply to running thread pools and commands at once, without reinitializing handlers. They are not saved to the handler configuration.
+	Queue size applies to thread pools that have priority lanes only.</p>
+
+	<#if !resizable>
+		<p>Thread pools cannot be resized as runtime resizing is not enabled. Set the 'threadPoolResizingEnabled' property of the TaskHandlerRegistry to enable it.</p>
+	</#if>
+
+	<#if poolSizes?? && poolSizes?size!=0>
+		<h3>Configured Pools</h3>
+		<table id = "sp-pool-table" class="bordered-table">
+			<tr>
+				<th>Thread Pool</th>
+				<th>Core Size</th>
+				<#if resizable>
+					<th>Resize</th>
+				</#if>
+			</tr>
+			<#list poolSizes as pool>
+				<tr>
+					<td>${pool.getKey()?html}</td>
+					<td>${pool.getValue()?c}</td>
+					<#if resizable>
+						<td>
+							<form action="/admin/resizePool" method="POST">
+								<input type="hidden" name="threadPoolName" value="${pool.getKey()?html}" />
+								Core size <input type="text" name="coreSize" value="${pool.getValue()?c}" size="4" />
+								Queue size <input type="text" name="queueSize" value="" size="4" />
+								<input type="submit" value="Resize" />
+							</form>
+						</td>
+					</#if>
+				</tr>
+			</#list>
+		</table>
+	</#if>
+
+	<#if descriptors?? && descriptors?size!=0>
+		<h3>Commands</h3>
+		<table id = "sp-command-pool-table" class="bordered-table">
+			<tr>
+				<th>Command</th>
+				<th>Handler</th>
+				<th>Isolation</th>
+				<th>Core Size</th>
+				<#if resizable>
+					<th>Resize</th>
+				</#if>
+				<th>Executor Timeout (ms)</th>
+				<th>Change Timeout</th>
+			</tr>
+			<#list descriptors as command>
+				<tr>
+					<td>${command.getKey()?html}</td>
+					<td>${command.getValue().getTaskHandler().getName()?html}</td>
+					<td>${command.getValue().getIsolationStrategy()}</td>
+					<td>${command.getValue().getThreadPoolSize()?c}</td>
+					<#if resizable>
+						<td>
+							<#if command.getValue().getIsolationStrategy() == "THREAD">
+								<form action="/admin/resizePool" method="POST">
+									<input type="hidden" name="threadPoolName" value="${command.getKey()?html}" />
+									Core size <input type="text" name="coreSize" value="${command.getValue().getThreadPoolSize()?c}" size="4" />
+									Queue size <input type="text" name="queueSize" value="" size="4" />
+									<input type="submit" value="Resize" />
+								</form>
+							</#if>
+						</td>
+					</#if>
+					<td>${command.getValue().getExecutorTimeout()?c}</td>
+					<td>
+						<form action="/admin/executorTimeout" method="POST">
+							<input type="hidden" name="commandName" value="${command.getKey()?html}" />
+							<input type="text" name="executorTimeout" value="${command.getValue().getExecutorTimeout()?c}" size="6" />
+							<input type="submit" value="Change" />
+						</form>
+					</td>
+				</tr>
+			</#list>
+		</table>
+	<#else>
+		No commands are registered
+	</#if>
+
+</div>
+
+<#include "./../footer.ftl">
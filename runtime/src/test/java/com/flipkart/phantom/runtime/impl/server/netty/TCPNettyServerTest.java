@@ -0,0 +1,230 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty;
+
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelException;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for binding and stopping the SO_REUSEPORT acceptors of {@link TCPNettyServer}
+ */
+public class TCPNettyServerTest {
+
+    private TCPNettyServer server;
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.server != null) {
+            this.server.stopServer();
+        }
+    }
+
+    @Test
+    public void testMultipleAcceptors() throws Exception {
+
+        Assume.assumeTrue(isReusePortSupported());
+        EchoHandler handler = new EchoHandler();
+        int port = freePort();
+        this.server = createServer(handler, 3);
+        this.server.startServer(new InetSocketAddress("127.0.0.1", port));
+
+        // all acceptors are bound to the same port
+        assertTrue("Acceptor count mismatch: " + this.server.getAcceptorCount(), this.server.getAcceptorCount() == 3);
+        assertTrue("Server channels not bound: " + this.server.getDefaultChannelGroup().size(), this.server.getDefaultChannelGroup().size() == 3);
+        for (Channel channel : this.server.getDefaultChannelGroup()) {
+            assertTrue("Server channel not bound: " + channel, channel.isBound());
+            assertTrue("Port mismatch: " + channel.getLocalAddress(), ((InetSocketAddress)channel.getLocalAddress()).getPort() == port);
+        }
+
+        // connections are served and spread across the acceptors
+        for (int i = 0; i < 30; i++) {
+            assertTrue("Echo mismatch", "ping".equals(echo(port, "ping")));
+        }
+        assertTrue("Connections not spread across acceptors: " + handler.acceptors.size(), handler.acceptors.size() > 1);
+
+    }
+
+    @Test
+    public void testStopReleasesAllAcceptors() throws Exception {
+
+        Assume.assumeTrue(isReusePortSupported());
+        int port = freePort();
+        this.server = createServer(new EchoHandler(), 2);
+        this.server.startServer(new InetSocketAddress("127.0.0.1", port));
+        assertTrue("Echo mismatch", "ping".equals(echo(port, "ping")));
+        this.server.stopServer();
+        this.server = null;
+
+        // the port is free once all acceptors are closed
+        ServerSocket socket = new ServerSocket();
+        try {
+            socket.bind(new InetSocketAddress("127.0.0.1", port));
+            assertTrue("Port not released", socket.isBound());
+        } finally {
+            socket.close();
+        }
+
+    }
+
+    @Test
+    public void testPartialBindFailure() throws Exception {
+
+        Assume.assumeTrue(isReusePortSupported());
+        int port = freePort();
+        this.server = new TCPNettyServer() {
+            private int boundAcceptors;
+            protected Channel bindAcceptor(ServerBootstrap acceptorBootstrap) {
+                if (++this.boundAcceptors == 2) {
+                    throw new ChannelException("Failed to bind the third acceptor");
+                }
+                return super.bindAcceptor(acceptorBootstrap);
+            }
+        };
+        initServer(this.server, new EchoHandler(), 3);
+        try {
+            this.server.startServer(new InetSocketAddress("127.0.0.1", port));
+            assertTrue("Bind failure not thrown", false);
+        } catch (ChannelException e) {
+            assertTrue("Server channels added: " + this.server.getDefaultChannelGroup().size(), this.server.getDefaultChannelGroup().isEmpty());
+        }
+
+        // the acceptors bound before the failure are unbound
+        ServerSocket socket = new ServerSocket();
+        try {
+            socket.bind(new InetSocketAddress("127.0.0.1", port));
+            assertTrue("Port not released", socket.isBound());
+        } finally {
+            socket.close();
+        }
+
+    }
+
+    @Test
+    public void testInvalidAcceptorCount() throws Exception {
+
+        try {
+            createServer(new EchoHandler(), 0);
+            assertTrue("Invalid acceptor count accepted", false);
+        } catch (IllegalArgumentException e) {
+            assertTrue("Message mismatch: " + e.getMessage(), e.getMessage().contains(TCPNettyServer.ACCEPTOR_COUNT_OPTION));
+        }
+
+    }
+
+    private static TCPNettyServer createServer(ChannelHandler handler, int acceptorCount) throws Exception {
+        TCPNettyServer server = new TCPNettyServer();
+        initServer(server, handler, acceptorCount);
+        return server;
+    }
+
+    private static void initServer(TCPNettyServer server, final ChannelHandler handler, int acceptorCount) throws Exception {
+        server.setDefaultChannelGroup(new DefaultChannelGroup());
+        server.setPipelineFactory(new ChannelHandlerPipelineFactory() {
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(handler);
+            }
+        });
+        Map<String, Object> bootstrapOptions = new HashMap<String, Object>();
+        bootstrapOptions.put(TCPNettyServer.ACCEPTOR_COUNT_OPTION, String.valueOf(acceptorCount));
+        server.setBootstrapOptions(bootstrapOptions);
+        server.afterPropertiesSet();
+    }
+
+    /** Sends the specified message on a new connection and reads back as many bytes */
+    private static String echo(int port, String message) throws Exception {
+        Socket client = new Socket("127.0.0.1", port);
+        try {
+            client.setSoTimeout(5000);
+            OutputStream out = client.getOutputStream();
+            out.write(message.getBytes());
+            out.flush();
+            byte[] response = new byte[message.length()];
+            InputStream in = client.getInputStream();
+            for (int read = 0; read < response.length; ) {
+                int count = in.read(response, read, response.length - read);
+                assertTrue("Connection closed", count != -1);
+                read += count;
+            }
+            return new String(response);
+        } finally {
+            client.close();
+        }
+    }
+
+    private static int freePort() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /** SO_REUSEPORT is available from JDK 9, and not on all OSes */
+    private static boolean isReusePortSupported() throws Exception {
+        Object reusePortOption;
+        try {
+            reusePortOption = StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        } catch (NoSuchFieldException e) {
+            return false;
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            Set<SocketOption<?>> supportedOptions = channel.supportedOptions();
+            return supportedOptions.contains(reusePortOption);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /** Echoes the received bytes and records the server channels that accepted the connections */
+    @ChannelHandler.Sharable
+    private static class EchoHandler extends SimpleChannelUpstreamHandler {
+        private final Set<Channel> acceptors = Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+            this.acceptors.add(e.getChannel().getParent());
+            e.getChannel().write(e.getMessage());
+        }
+    }
+
+}
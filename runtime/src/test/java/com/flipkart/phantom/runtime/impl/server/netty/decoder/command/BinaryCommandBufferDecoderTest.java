@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.decoder.command;
+
+import com.flipkart.phantom.runtime.impl.server.netty.handler.command.BinaryCommandInterpreter;
+import com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link BinaryCommandBufferDecoder} decoding of binary command frames
+ */
+public class BinaryCommandBufferDecoderTest {
+
+    @Test
+    public void testDecodeInternedCommands() throws Exception {
+
+        BinaryCommandBufferDecoder decoder = new BinaryCommandBufferDecoder();
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+
+        // frame that defines command id 3, with a param and data, arrives in two reads
+        ChannelBuffer frame = ChannelBuffers.dynamicBuffer();
+        BinaryCommandInterpreter.writeVarInt(frame, (3 << 1) | 1);
+        writeString(frame, "testCommand");
+        BinaryCommandInterpreter.writeVarInt(frame, 1);
+        writeString(frame, "p1");
+        writeString(frame, "v1");
+        frame.writeBytes("testData".getBytes());
+        writeFrame(buffer, frame);
+        ChannelBuffer firstRead = buffer.readSlice(5);
+        assertTrue("Decoded incomplete frame", decoder.decode(null, null, firstRead) == null);
+        assertTrue("Reader index moved on partial read: "+firstRead.readerIndex(), firstRead.readerIndex() == 0);
+
+        // frame that refers to command id 3, pipelined behind the first frame
+        frame.clear();
+        BinaryCommandInterpreter.writeVarInt(frame, 3 << 1);
+        BinaryCommandInterpreter.writeVarInt(frame, 0);
+        writeFrame(buffer, frame);
+        buffer.readerIndex(0);
+
+        CommandInterpreter.ProxyCommand command = (CommandInterpreter.ProxyCommand)decoder.decode(null, null, buffer);
+        assertTrue("Command decoding failed", command != null);
+        assertTrue("Decoded command mismatch: "+command.getCommand(), "testCommand".equals(command.getCommand()));
+        assertTrue("Command parameter mismatch: "+command.getCommandParams(), "v1".equals(command.getCommandParams().get("p1")));
+        assertTrue("Command data mismatch: "+command.getCommandData(), "testData".equals(new String(command.getCommandData())));
+
+        command = (CommandInterpreter.ProxyCommand)decoder.decode(null, null, buffer);
+        assertTrue("Interned command decoding failed", command != null && "testCommand".equals(command.getCommand()));
+        assertTrue("Command parameters not empty", command.getCommandParams().isEmpty());
+        assertTrue("Command data not empty", command.getCommandData() == null);
+        assertTrue("Buffer not fully read", !buffer.readable());
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeUndefinedCommandId() throws Exception {
+        BinaryCommandBufferDecoder decoder = new BinaryCommandBufferDecoder();
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        ChannelBuffer frame = ChannelBuffers.dynamicBuffer();
+        BinaryCommandInterpreter.writeVarInt(frame, 7 << 1);
+        BinaryCommandInterpreter.writeVarInt(frame, 0);
+        writeFrame(buffer, frame);
+        decoder.decode(null, null, buffer);
+    }
+
+    private void writeFrame(ChannelBuffer buffer, ChannelBuffer frame) {
+        buffer.writeByte(BinaryCommandInterpreter.MAGIC);
+        BinaryCommandInterpreter.writeVarInt(buffer, frame.readableBytes());
+        buffer.writeBytes(frame, frame.readerIndex(), frame.readableBytes());
+    }
+
+    private void writeString(ChannelBuffer buffer, String value) {
+        BinaryCommandInterpreter.writeVarInt(buffer, value.getBytes().length);
+        buffer.writeBytes(value.getBytes());
+    }
+
+}
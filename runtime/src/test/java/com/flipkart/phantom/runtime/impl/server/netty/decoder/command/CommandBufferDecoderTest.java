@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.decoder.command;
+
+import com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CommandBufferDecoder} decoding of frames that arrive over multiple reads
+ */
+public class CommandBufferDecoderTest {
+
+    @Test
+    public void testDecodePartialReads() throws Exception {
+
+        CommandBufferDecoder decoder = new CommandBufferDecoder();
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+
+        // command line arrives in two reads
+        buffer.writeBytes("testCommand p1".getBytes());
+        assertTrue("Decoded incomplete command line", decoder.decode(null, null, buffer) == null);
+        buffer.writeBytes("=v1 8\ntest".getBytes());
+        assertTrue("Decoded incomplete command data", decoder.decode(null, null, buffer) == null);
+        assertTrue("Reader index moved on partial read: "+buffer.readerIndex(), buffer.readerIndex() == 0);
+
+        // rest of the data and a pipelined command
+        buffer.writeBytes("DatanextCommand\n".getBytes());
+        CommandInterpreter.ProxyCommand command = (CommandInterpreter.ProxyCommand)decoder.decode(null, null, buffer);
+        assertTrue("Command decoding failed", command != null);
+        assertTrue("Decoded command mismatch: "+command.getCommand(), "testCommand".equals(command.getCommand()));
+        assertTrue("Command parameter mismatch: "+command.getCommandParams(), "v1".equals(command.getCommandParams().get("p1")));
+        assertTrue("Command data mismatch: "+command.getCommandData(), "testData".equals(new String(command.getCommandData())));
+
+        command = (CommandInterpreter.ProxyCommand)decoder.decode(null, null, buffer);
+        assertTrue("Pipelined command decoding failed", command != null && "nextCommand".equals(command.getCommand()));
+        assertTrue("Buffer not fully read", !buffer.readable());
+
+    }
+
+    @Test
+    public void testDecodeStreamedData() throws Exception {
+
+        CommandBufferDecoder decoder = new CommandBufferDecoder();
+        decoder.setStreamingWindowSize(4);
+        decoder.setRepository(new TaskHandlerExecutorRepository() {
+            public boolean isStreamingCommand(String commandName) {
+                return "streamCommand".equals(commandName);
+            }
+        });
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+
+        // command is decoded before its data arrives fully
+        buffer.writeBytes("streamCommand 8\ntest".getBytes());
+        CommandInterpreter.ProxyCommand command = (CommandInterpreter.ProxyCommand)decoder.decode(null, null, buffer);
+        assertTrue("Streamed command decoding failed", command != null && command.getCommandDataStream() != null);
+        InputStream dataStream = command.getCommandDataStream();
+        byte[] data = new byte[8];
+        assertTrue("Streamed data mismatch", dataStream.read(data, 0, 8) == 4 && "test".equals(new String(data, 0, 4)));
+
+        // rest of the data and a pipelined command
+        buffer.writeBytes("DatanextCommand\n".getBytes());
+        assertTrue("Decoded command while streaming data", decoder.decode(null, null, buffer) == null);
+        assertTrue("Streamed data mismatch", dataStream.read(data, 4, 4) == 4 && "testData".equals(new String(data)));
+        assertTrue("Stream not ended", dataStream.read() == -1);
+        command = (CommandInterpreter.ProxyCommand)decoder.decode(null, null, buffer);
+        assertTrue("Pipelined command decoding failed", command != null && "nextCommand".equals(command.getCommand()));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeOversizedCommandLine() throws Exception {
+        CommandBufferDecoder decoder = new CommandBufferDecoder();
+        decoder.decode(null, null, ChannelBuffers.wrappedBuffer(new byte[CommandInterpreter.MAX_COMMAND_INPUT]));
+    }
+
+}
@@ -15,12 +15,20 @@
  */
 package com.flipkart.phantom.runtime.impl.server.netty.handler.command;
 
+import com.flipkart.phantom.task.impl.TaskResult;
+import com.flipkart.phantom.task.impl.priority.TaskPriority;
+import com.flipkart.phantom.task.spi.ResultChunkProducer;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -43,7 +51,7 @@ public class CommandInterpreterTest {
     }
 
     @Test
-    public void testInterpretCommand() {
+    public void testInterpretCommand() throws Exception {
 
         CommandInterpreter.ProxyCommand command;
 
@@ -68,6 +76,15 @@ public class CommandInterpreterTest {
         assertTrue("Command parameters mismatch: "+command.getCommandParams().size(), command.getCommandParams().size() == 2);
         assertTrue("Command data not empty", command.getCommandData() == null);
 
+        // command + param that starts with the value separator, read as a param with an empty name as when read off a stream
+        command = getCommand("testCommand =v p1\n");
+        assertTrue("Command parsing failed",command != null && command.getReadFailure() == null);
+        assertTrue("Empty param name mismatch: "+command.getCommandParams(), "v".equals(command.getCommandParams().get("")));
+        assertTrue("Default param value mismatch: "+command.getCommandParams(), "true".equals(command.getCommandParams().get("p1")));
+        assertTrue("Command parameters mismatch: "+command.getCommandParams().size(), command.getCommandParams().size() == 2);
+        command = commandInterpreter.readCommand(new ByteArrayInputStream("testCommand =v p1\n".getBytes()));
+        assertTrue("Stream param mismatch: "+command.getCommandParams(), "v".equals(command.getCommandParams().get("")) && command.getCommandParams().size() == 2);
+
         // command + params + data
         command = getCommand("testCommand p1=v1 p2=v2 8\ntestData");
         assertTrue("Command parsing failed",command != null && command.getReadFailure() == null);
@@ -75,6 +92,26 @@ public class CommandInterpreterTest {
         assertTrue("Command parameters mismatch: "+command.getCommandParams().size(), command.getCommandParams().size() == 2);
         assertTrue("Command data mismatch: "+command.getCommandData(), "testData".equals(new String(command.getCommandData())));
 
+        // command + params + reserved deadline param
+        long start = System.currentTimeMillis();
+        command = getCommand("testCommand p1=v1 _deadline=500\n");
+        assertTrue("Command parsing failed",command != null && command.getReadFailure() == null);
+        assertTrue("Deadline param not removed: "+command.getCommandParams(), command.getCommandParams().size() == 1);
+        assertTrue("Deadline mismatch: "+command.getDeadline(), command.getDeadline() >= start + 500 && command.getDeadline() <= System.currentTimeMillis() + 500);
+
+        // command + params + reserved priority param
+        command = getCommand("testCommand p1=v1 _priority=low\n");
+        assertTrue("Command parsing failed",command != null && command.getReadFailure() == null);
+        assertTrue("Priority param not removed: "+command.getCommandParams(), command.getCommandParams().size() == 1);
+        assertTrue("Priority mismatch: "+command.getPriority(), command.getPriority() == TaskPriority.LOW);
+
+        // command + params named like the reserved params, passed on unchanged
+        command = getCommand("testCommand deadline=500 priority=low\n");
+        assertTrue("Command parsing failed",command != null && command.getReadFailure() == null);
+        assertTrue("Command params removed: "+command.getCommandParams(), command.getCommandParams().size() == 2);
+        assertTrue("Deadline set from command param: "+command.getDeadline(), command.getDeadline() == 0);
+        assertTrue("Priority set from command param: "+command.getPriority(), command.getPriority() == null);
+
         // incorrect command - no newline
         command = getCommand("testCommand p1=v1 p2=v2");
         assertTrue("Command parsing passed (which should not)", command != null && command.getReadFailure() != null);
@@ -85,6 +122,90 @@ public class CommandInterpreterTest {
 
     }
 
+    @Test
+    public void testInterpretCommandInPlace() {
+
+        ChannelBuffer buffer;
+        CommandInterpreter.ProxyCommand command;
+
+        // command + params + data, followed by a pipelined command
+        buffer = ChannelBuffers.copiedBuffer("testCommand p1=v1 p2 8\r\ntestDatanextCommand\n".getBytes());
+        command = interpretCommand(buffer);
+        assertTrue("Command parsing failed",command != null && command.getReadFailure() == null);
+        assertTrue("Parsed command mismatch: "+command.getCommand(), "testCommand".equals(command.getCommand()));
+        assertTrue("Command parameter mismatch: "+command.getCommandParams(), "v1".equals(command.getCommandParams().get("p1")));
+        assertTrue("Command parameter mismatch: "+command.getCommandParams(), "true".equals(command.getCommandParams().get("p2")));
+        assertTrue("Command data buffer mismatch", "testData".equals(new String(command.getCommandDataBuffer().array(),
+                command.getCommandDataBuffer().arrayOffset(), command.getCommandDataBuffer().readableBytes())));
+        assertTrue("Command data mismatch: "+command.getCommandData(), "testData".equals(new String(command.getCommandData())));
+        assertTrue("Reader index not at end of frame: "+buffer.readerIndex(), buffer.readerIndex() == "testCommand p1=v1 p2 8\r\ntestData".length());
+
+        command = interpretCommand(buffer);
+        assertTrue("Command parsing failed",command != null && command.getReadFailure() == null);
+        assertTrue("Parsed command mismatch: "+command.getCommand(), "nextCommand".equals(command.getCommand()));
+        assertTrue("Buffer not fully read", !buffer.readable());
+
+        // partial data - reader index must stay at the start of the frame
+        buffer = ChannelBuffers.copiedBuffer("testCommand 10\ntestData".getBytes());
+        command = interpretCommand(buffer);
+        assertTrue("Command parsing passed (which should not)", command != null && command.getReadFailure() != null);
+        assertTrue("Reader index moved on partial read: "+buffer.readerIndex(), buffer.readerIndex() == 0);
+
+        // invalid data length
+        buffer = ChannelBuffers.copiedBuffer("testCommand 1x\n".getBytes());
+        assertTrue("Command parsing passed (which should not)", interpretCommand(buffer) == null);
+
+    }
+
+    @Test
+    public void testWriteCommandExecutionResponse() throws Exception {
+
+        // success with data
+        assertTrue("Response mismatch", "SUCCESS 12\nresponseData".equals(getResponse(new TaskResult(true, null, "responseData".getBytes()), null)));
+
+        // error without data, with request id
+        assertTrue("Response mismatch", "req1 ERROR\n".equals(getResponse(new TaskResult(false, null), "req1")));
+
+        // message with data array
+        List<Object> dataArray = new ArrayList<Object>();
+        dataArray.add("part1".getBytes());
+        dataArray.add(null);
+        dataArray.add("part2".getBytes());
+        assertTrue("Response mismatch", "OK 10\npart1part2".equals(getResponse(new TaskResult(true, "OK", dataArray, 10), null)));
+
+        // chunked result, with request id
+        final List<byte[]> chunks = new ArrayList<byte[]>();
+        chunks.add("chunk1".getBytes());
+        chunks.add("chunk22".getBytes());
+        final boolean[] closed = new boolean[1];
+        ResultChunkProducer chunkProducer = new ResultChunkProducer() {
+            public byte[] nextChunk() {
+                return chunks.isEmpty() ? null : chunks.remove(0);
+            }
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        String response = getResponse(new TaskResult(true, null, chunkProducer), "req2");
+        assertTrue("Response mismatch: " + response, "req2 SUCCESS chunked\nreq2 6\nchunk1req2 7\nchunk22req2 0\n".equals(response));
+        assertTrue("Chunk producer not closed", closed[0]);
+
+    }
+
+    private String getResponse(TaskResult result, String requestId) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        commandInterpreter.writeCommandExecutionResponse(outputStream, result, requestId);
+        return new String(outputStream.toByteArray());
+    }
+
+    private CommandInterpreter.ProxyCommand interpretCommand(ChannelBuffer buffer) {
+        try {
+            return commandInterpreter.interpretCommand(buffer);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     private CommandInterpreter.ProxyCommand getCommand(String command) {
         ChannelBuffer buffer = ChannelBuffers.copiedBuffer(command.getBytes());
         try {
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.handler.command;
+
+import com.flipkart.phantom.runtime.impl.server.netty.decoder.command.CommandBufferDecoder;
+import com.flipkart.phantom.task.impl.HystrixTaskHandler;
+import com.flipkart.phantom.task.impl.TaskContextImpl;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
+import com.flipkart.phantom.task.impl.TaskResult;
+import com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry;
+import com.flipkart.phantom.task.spi.ResultChunkProducer;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.netflix.config.ConfigurationManager;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for multiplexed connections, multi commands and chunked responses served by {@link CommandProcessingChannelHandler}
+ */
+public class CommandProcessingChannelHandlerTest {
+
+    private static TaskHandlerExecutorRepository repository;
+
+    private ServerBootstrap bootstrap;
+    private Channel serverChannel;
+    private ExecutorService multiplexExecutors;
+    private Socket client;
+
+    @BeforeClass
+    public static void setUpRepository() throws Exception {
+        // commands are executed on threads that have no Hystrix request context
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.default.requestLog.enabled", false);
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.default.requestCache.enabled", false);
+        HystrixTaskHandler taskHandler = new HystrixTaskHandler() {
+            public String getName() {
+                return "multiplexTest";
+            }
+            public String[] getCommands() {
+                return new String[] {"sleep", "chunks"};
+            }
+            public TaskResult execute(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                if ("chunks".equals(command)) {
+                    return new TaskResult(true, null, new SlowChunkProducer("ab", "cd"));
+                }
+                try {
+                    Thread.sleep(Long.parseLong(params.get("ms")));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new TaskResult(true, null, data);
+            }
+            public TaskResult getFallBack(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                return new TaskResult(false, null);
+            }
+            public void shutdown(TaskContext taskContext) {
+            }
+        };
+        taskHandler.activate();
+        TaskHandlerRegistry registry = new TaskHandlerRegistry();
+        registry.registerTaskHandler(taskHandler);
+        repository = new TaskHandlerExecutorRepository();
+        repository.setTaskHandlerRegistry(registry);
+        TaskContextImpl taskContext = new TaskContextImpl();
+        taskContext.setExecutorRepository(repository);
+        repository.setTaskContext(taskContext);
+    }
+
+    @AfterClass
+    public static void tearDownRepository() {
+        ConfigurationManager.getConfigInstance().clearProperty("hystrix.command.default.requestLog.enabled");
+        ConfigurationManager.getConfigInstance().clearProperty("hystrix.command.default.requestCache.enabled");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.client != null) {
+            this.client.close();
+        }
+        if (this.serverChannel != null) {
+            this.serverChannel.close().awaitUninterruptibly();
+        }
+        if (this.bootstrap != null) {
+            this.bootstrap.releaseExternalResources();
+        }
+        if (this.multiplexExecutors != null) {
+            this.multiplexExecutors.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMultiplexNegotiation() throws Exception {
+
+        // refused when no executors are set, commands are then executed one at a time
+        this.connect(false);
+        assertResponse("Multiplexing not refused", "ERROR", "multiplex\n");
+        assertResponse("Command failed on refused connection", "SUCCESS 1\na", "sleep ms=0 1\na");
+        this.tearDown();
+
+        // accepted when executors are set
+        this.connect(true);
+        assertResponse("Multiplexing refused", "SUCCESS", "multiplex\n");
+        assertResponse("Tagged response mismatch", "7 SUCCESS 1\nb", "sleep reqId=7 ms=0 1\nb");
+
+    }
+
+    @Test
+    public void testOutOfOrderResponses() throws Exception {
+
+        this.connect(true);
+        assertResponse("Multiplexing refused", "SUCCESS", "multiplex\n");
+
+        // the slow command is sent first and its response is written last
+        this.send("sleep reqId=slow ms=500 4\nslowsleep reqId=fast ms=0 4\nfast");
+        assertTrue("Response out of order", "fast SUCCESS 4\nfast".equals(this.readResponse()));
+        assertTrue("Response out of order", "slow SUCCESS 4\nslow".equals(this.readResponse()));
+
+    }
+
+    @Test
+    public void testMissingRequestId() throws Exception {
+
+        this.connect(true);
+        assertResponse("Multiplexing refused", "SUCCESS", "multiplex\n");
+
+        // untagged error response and the connection stays open
+        assertResponse("Missing request id not rejected", "ERROR", "sleep ms=0 1\na");
+        assertResponse("Connection not usable after error", "3 SUCCESS 1\nb", "sleep reqId=3 ms=0 1\nb");
+
+    }
+
+    @Test
+    public void testMultiCommandWithInvalidTimeout() throws Exception {
+
+        this.connect(false);
+        assertResponse("Multi command failed", "SUCCESS 22\nSUCCESS 1\naSUCCESS 1\nb", "multi timeout=soon 28\nsleep ms=0 1\nasleep ms=0 1\nb");
+
+    }
+
+    @Test
+    public void testChunkedResultInMultiCommand() throws Exception {
+
+        this.connect(false);
+
+        // the chunked result of a sub-command is not read into the multi command response
+        String subResponses = CommandInterpreter.CHUNKED_RESULT_IN_MULTI + "\nSUCCESS 1\nx";
+        assertResponse("Chunked sub-command result not rejected", "SUCCESS " + subResponses.length() + "\n" + subResponses, 
+                "multi 21\nchunks\nsleep ms=0 1\nx");
+
+    }
+
+    @Test
+    public void testResponseAfterChunkedResponse() throws Exception {
+
+        this.connect(false);
+
+        // the response of the pipelined command follows the terminating chunk of the slowly produced chunked response
+        this.send("chunks\nsleep ms=0 1\nx");
+        String expectedResponses = "SUCCESS chunked\n2\nab2\ncd0\nSUCCESS 1\nx";
+        byte[] responses = new byte[expectedResponses.length()];
+        InputStream in = this.client.getInputStream();
+        for (int read = 0; read < responses.length; ) {
+            int count = in.read(responses, read, responses.length - read);
+            assertTrue("Connection closed", count != -1);
+            read += count;
+        }
+        assertTrue("Responses out of order: " + new String(responses), expectedResponses.equals(new String(responses)));
+
+    }
+
+    private void connect(final boolean multiplexEnabled) throws Exception {
+        this.multiplexExecutors = multiplexEnabled ? Executors.newCachedThreadPool() : null;
+        this.bootstrap = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool()));
+        this.bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+            public ChannelPipeline getPipeline() {
+                CommandProcessingChannelHandler handler = new CommandProcessingChannelHandler();
+                handler.setDefaultChannelGroup(new DefaultChannelGroup());
+                handler.setRepository(repository);
+                handler.setMultiplexExecutors(multiplexExecutors);
+                return Channels.pipeline(new CommandBufferDecoder(), handler);
+            }
+        });
+        this.serverChannel = this.bootstrap.bind(new InetSocketAddress("127.0.0.1", 0));
+        this.client = new Socket("127.0.0.1", ((InetSocketAddress)this.serverChannel.getLocalAddress()).getPort());
+        this.client.setSoTimeout(5000);
+    }
+
+    private void assertResponse(String message, String expectedResponse, String command) throws Exception {
+        this.send(command);
+        String response = this.readResponse();
+        assertTrue(message + ": " + response, expectedResponse.equals(response));
+    }
+
+    private void send(String commands) throws Exception {
+        OutputStream out = this.client.getOutputStream();
+        out.write(commands.getBytes());
+        out.flush();
+    }
+
+    /** Produces the specified chunks, pausing before each */
+    private static class SlowChunkProducer implements ResultChunkProducer {
+        private final String[] chunks;
+        private int next;
+        SlowChunkProducer(String... chunks) {
+            this.chunks = chunks;
+        }
+        public byte[] nextChunk() throws Exception {
+            Thread.sleep(100);
+            return this.next < this.chunks.length ? this.chunks[this.next++].getBytes() : null;
+        }
+        public void close() {
+        }
+    }
+
+    /** Reads a response status line and the response data, if the status line ends with the data length */
+    private String readResponse() throws Exception {
+        InputStream in = this.client.getInputStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            assertTrue("Connection closed", b != -1);
+            response.write(b);
+        }
+        String statusLine = response.toString();
+        String lastToken = statusLine.substring(statusLine.lastIndexOf(' ') + 1);
+        if (!lastToken.matches("\\d+")) {
+            return statusLine;
+        }
+        response.write('\n');
+        for (int i = Integer.parseInt(lastToken); i > 0; i--) {
+            response.write(in.read());
+        }
+        return response.toString();
+    }
+
+}
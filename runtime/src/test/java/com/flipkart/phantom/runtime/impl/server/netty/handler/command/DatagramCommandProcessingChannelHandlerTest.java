@@ -0,0 +1,282 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.handler.command;
+
+import com.flipkart.phantom.task.impl.HystrixTaskHandler;
+import com.flipkart.phantom.task.impl.TaskContextImpl;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
+import com.flipkart.phantom.task.impl.TaskResult;
+import com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.netflix.config.ConfigurationManager;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
+import org.jboss.netty.bootstrap.ConnectionlessBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.FixedReceiveBufferSizePredictorFactory;
+import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for ingestion, dropping and rejection of fire-and-forget commands received as datagrams by {@link DatagramCommandProcessingChannelHandler}
+ */
+public class DatagramCommandProcessingChannelHandlerTest {
+
+    private static TaskHandlerExecutorRepository repository;
+
+    /** Executions of the asynchronous command, and permits for executions to complete*/
+    private static final AtomicInteger executions = new AtomicInteger();
+    private static final Semaphore started = new Semaphore(0);
+    private static volatile Semaphore completions;
+
+    private DatagramCommandProcessingChannelHandler handler;
+    private ConnectionlessBootstrap bootstrap;
+    private Channel serverChannel;
+    private DatagramSocket client;
+
+    @BeforeClass
+    public static void setUpRepository() throws Exception {
+        // commands are executed on threads that have no Hystrix request context
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.default.requestLog.enabled", false);
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.default.requestCache.enabled", false);
+        // the asynchronous command is semaphore isolated and is therefore executed on the dispatcher thread, which it blocks until permitted to complete
+        HystrixTaskHandler asyncTaskHandler = new HystrixTaskHandler() {
+            public String getName() {
+                return "datagramAsyncTest";
+            }
+            public String[] getCommands() {
+                return new String[] {"record"};
+            }
+            public int getCallInvocationType() {
+                return ASYNC_CALL;
+            }
+            public ExecutionIsolationStrategy getIsolationStrategy() {
+                return ExecutionIsolationStrategy.SEMAPHORE;
+            }
+            public TaskResult execute(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                started.release();
+                try {
+                    completions.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                executions.incrementAndGet();
+                return new TaskResult(true, null);
+            }
+            public TaskResult getFallBack(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                return new TaskResult(false, null);
+            }
+            public void shutdown(TaskContext taskContext) {
+            }
+        };
+        HystrixTaskHandler syncTaskHandler = new HystrixTaskHandler() {
+            public String getName() {
+                return "datagramSyncTest";
+            }
+            public String[] getCommands() {
+                return new String[] {"sync"};
+            }
+            public TaskResult execute(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                executions.incrementAndGet();
+                return new TaskResult(true, null);
+            }
+            public TaskResult getFallBack(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                return new TaskResult(false, null);
+            }
+            public void shutdown(TaskContext taskContext) {
+            }
+        };
+        asyncTaskHandler.activate();
+        syncTaskHandler.activate();
+        TaskHandlerRegistry registry = new TaskHandlerRegistry();
+        registry.registerTaskHandler(asyncTaskHandler);
+        registry.registerTaskHandler(syncTaskHandler);
+        repository = new TaskHandlerExecutorRepository();
+        repository.setTaskHandlerRegistry(registry);
+        TaskContextImpl taskContext = new TaskContextImpl();
+        taskContext.setExecutorRepository(repository);
+        repository.setTaskContext(taskContext);
+    }
+
+    @AfterClass
+    public static void tearDownRepository() {
+        ConfigurationManager.getConfigInstance().clearProperty("hystrix.command.default.requestLog.enabled");
+        ConfigurationManager.getConfigInstance().clearProperty("hystrix.command.default.requestCache.enabled");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        executions.set(0);
+        started.drainPermits();
+        completions = new Semaphore(1000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        completions.release(1000); // releases blocked commands
+        if (this.client != null) {
+            this.client.close();
+        }
+        if (this.serverChannel != null) {
+            this.serverChannel.close().awaitUninterruptibly();
+        }
+        if (this.bootstrap != null) {
+            this.bootstrap.releaseExternalResources();
+        }
+    }
+
+    @Test
+    public void testIngestion() throws Exception {
+
+        this.bind(DatagramCommandProcessingChannelHandler.DEFAULT_INGESTION_QUEUE_SIZE);
+
+        // a datagram may carry many command frames
+        this.send("record 1\narecord 1\nb");
+        awaitCount("Commands not executed", executions, 2);
+        assertTrue("Received count mismatch: " + this.handler.getReceivedCommandCount(), this.handler.getReceivedCommandCount() == 2);
+        assertTrue("Commands dropped or failed", this.handler.getDroppedCommandCount() == 0 && this.handler.getFailedCommandCount() == 0);
+
+    }
+
+    @Test
+    public void testDrops() throws Exception {
+
+        this.bind(1);
+
+        // the dispatcher is blocked by the first command, the next is queued and commands in excess of the queue size are dropped
+        completions = new Semaphore(0);
+        this.send("record 1\na");
+        assertTrue("Command not started", started.tryAcquire(5, TimeUnit.SECONDS));
+        this.send("record 1\nbrecord 1\ncrecord 1\nd");
+        awaitCount("Commands not received", this.received(), 4);
+        awaitCount("Dropped count mismatch", this.dropped(), 2);
+        assertTrue("Queued count mismatch: " + this.handler.getQueuedCommandCount(), this.handler.getQueuedCommandCount() == 1);
+
+        // the queued command is executed once the dispatcher is released
+        completions.release(2);
+        awaitCount("Queued command not executed", executions, 2);
+
+    }
+
+    @Test
+    public void testRejectionAndMalformedDatagrams() throws Exception {
+
+        this.bind(DatagramCommandProcessingChannelHandler.DEFAULT_INGESTION_QUEUE_SIZE);
+
+        // synchronous commands are rejected as no response is written
+        this.send("sync 1\na");
+        awaitCount("Synchronous command not rejected", this.failed(), 1);
+        assertTrue("Synchronous command executed", executions.get() == 0);
+
+        // incomplete command frames are discarded
+        this.send("record 10\nab");
+        awaitCount("Malformed datagram not counted", this.malformed(), 1);
+        assertTrue("Malformed command received", this.handler.getReceivedCommandCount() == 1);
+
+    }
+
+    /** Binds the datagram channel with a handler of the specified ingestion queue size */
+    private void bind(int ingestionQueueSize) throws Exception {
+        this.handler = new DatagramCommandProcessingChannelHandler();
+        this.handler.setRepository(repository);
+        this.handler.setIngestionQueueSize(ingestionQueueSize);
+        this.bootstrap = new ConnectionlessBootstrap(new NioDatagramChannelFactory(Executors.newCachedThreadPool(), 1));
+        this.bootstrap.setOption("receiveBufferSizePredictorFactory", new FixedReceiveBufferSizePredictorFactory(8192));
+        this.bootstrap.setPipelineFactory(new ChannelPipelineFactory() {
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(handler);
+            }
+        });
+        this.serverChannel = this.bootstrap.bind(new InetSocketAddress("127.0.0.1", 0));
+        this.client = new DatagramSocket();
+    }
+
+    private void send(String commands) throws Exception {
+        byte[] data = commands.getBytes();
+        this.client.send(new DatagramPacket(data, data.length, this.serverChannel.getLocalAddress()));
+    }
+
+    /** Waits for the specified count to reach the expected value */
+    private static void awaitCount(String message, final AtomicInteger count, int expected) throws Exception {
+        awaitCount(message, new Count() {
+            long get() {
+                return count.get();
+            }
+        }, expected);
+    }
+
+    private static void awaitCount(String message, Count count, long expected) throws Exception {
+        for (int i = 0; i < 500 && count.get() < expected; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(message + ": " + count.get(), count.get() == expected);
+    }
+
+    /** A count that is read again while waiting for it */
+    private static abstract class Count {
+        abstract long get();
+    }
+
+    private Count received() {
+        return new Count() {
+            long get() {
+                return handler.getReceivedCommandCount();
+            }
+        };
+    }
+
+    private Count dropped() {
+        return new Count() {
+            long get() {
+                return handler.getDroppedCommandCount();
+            }
+        };
+    }
+
+    private Count failed() {
+        return new Count() {
+            long get() {
+                return handler.getFailedCommandCount();
+            }
+        };
+    }
+
+    private Count malformed() {
+        return new Count() {
+            long get() {
+                return handler.getMalformedDatagramCount();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl;
+
+/**
+ * <code>CommandDeadline</code> tracks the deadline of the command executing on the current thread. A deadline is the time, as returned by
+ * {@link System#currentTimeMillis()}, by which the client expects the result of a command, 0 if none was specified. The deadline is set for the duration
+ * of a command's execution by {@link TaskHandlerExecutor} and {@link LightweightCommandExecutor}, so that commands executed by a {@link TaskHandler}
+ * using the {@link com.flipkart.phantom.task.spi.TaskContext} inherit the deadline of the calling command.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class CommandDeadline {
+
+	/** Value of a deadline that has not been specified*/
+	public static final long NONE = 0;
+
+	/** The deadline of the command executing on the current thread*/
+	private static final ThreadLocal<Long> CURRENT_DEADLINE = new ThreadLocal<Long>();
+
+	/**
+	 * Returns the deadline of the command executing on the current thread
+	 * @return the deadline or {@link #NONE} if no command with a deadline is executing on the current thread
+	 */
+	public static long current() {
+		Long deadline = CURRENT_DEADLINE.get();
+		return deadline == null ? NONE : deadline;
+	}
+
+	/**
+	 * Sets the deadline of the command executing on the current thread
+	 * @param deadline the deadline, may be {@link #NONE}
+	 * @return the deadline that was set previously, to be restored using {@link #restore(long)} when the command completes
+	 */
+	public static long set(long deadline) {
+		long previous = current();
+		if (deadline == NONE) {
+			CURRENT_DEADLINE.remove();
+		} else {
+			CURRENT_DEADLINE.set(deadline);
+		}
+		return previous;
+	}
+
+	/**
+	 * Restores the deadline that was set before a command executed on the current thread
+	 * @param previous the deadline returned by {@link #set(long)}
+	 */
+	public static void restore(long previous) {
+		set(previous);
+	}
+
+	/**
+	 * Returns the deadline that is reached first
+	 * @param deadline a deadline, may be {@link #NONE}
+	 * @param otherDeadline another deadline, may be {@link #NONE}
+	 * @return the earlier of the deadlines, {@link #NONE} if neither is specified
+	 */
+	public static long earliest(long deadline, long otherDeadline) {
+		if (deadline == NONE) {
+			return otherDeadline;
+		}
+		return otherDeadline == NONE ? deadline : Math.min(deadline, otherDeadline);
+	}
+
+	/**
+	 * Returns the time remaining until the specified deadline
+	 * @param deadline the deadline, may be {@link #NONE}
+	 * @return the remaining time in milliseconds, {@link Long#MAX_VALUE} if the deadline is not specified
+	 */
+	public static long remainingMillis(long deadline) {
+		return deadline == NONE ? Long.MAX_VALUE : deadline - System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns true if the specified deadline has been reached
+	 * @param deadline the deadline, may be {@link #NONE}
+	 * @return true if the deadline is specified and has been reached
+	 */
+	public static boolean isExpired(long deadline) {
+		return deadline != NONE && System.currentTimeMillis() >= deadline;
+	}
+
+}
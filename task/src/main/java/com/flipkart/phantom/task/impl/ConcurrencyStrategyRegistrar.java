@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.task.impl;
+
+import com.netflix.hystrix.strategy.HystrixPlugins;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>ConcurrencyStrategyRegistrar</code> registers the {@link PriorityLaneConcurrencyStrategy} with Hystrix, once per JVM, and holds the registered
+ * instance. Hystrix allows a single concurrency strategy, which is therefore the one instance that provides priority lanes, virtual threads and runtime
+ * resizing of thread pools.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class ConcurrencyStrategyRegistrar {
+
+	/** Logger for this class*/
+	private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyStrategyRegistrar.class);
+
+	/** The registered instance, null if not registered*/
+	private static volatile PriorityLaneConcurrencyStrategy registeredStrategy;
+
+	/** Indicator that another concurrency strategy was registered with Hystrix*/
+	private static boolean registrationFailed;
+
+	/**
+	 * Returns the registered PriorityLaneConcurrencyStrategy, registering it with Hystrix on first call. Returns null if another concurrency strategy has
+	 * been registered with Hystrix.
+	 * @return the registered PriorityLaneConcurrencyStrategy or null
+	 */
+	public static synchronized PriorityLaneConcurrencyStrategy register() {
+		if (registeredStrategy == null && !registrationFailed) {
+			PriorityLaneConcurrencyStrategy strategy = new PriorityLaneConcurrencyStrategy();
+			try {
+				HystrixPlugins.getInstance().registerConcurrencyStrategy(strategy);
+				registeredStrategy = strategy;
+			} catch (IllegalStateException e) {
+				if (HystrixPlugins.getInstance().getConcurrencyStrategy() instanceof PriorityLaneConcurrencyStrategy) {
+					registeredStrategy = (PriorityLaneConcurrencyStrategy)HystrixPlugins.getInstance().getConcurrencyStrategy();
+				} else {
+					LOGGER.warn("Another Hystrix concurrency strategy is registered. Thread pools will be created with the default queue and threads", e);
+					registrationFailed = true;
+				}
+			}
+		}
+		return registeredStrategy;
+	}
+
+	/**
+	 * Returns the registered PriorityLaneConcurrencyStrategy, without registering it
+	 * @return the registered PriorityLaneConcurrencyStrategy or null if it has not been registered
+	 */
+	public static PriorityLaneConcurrencyStrategy getRegisteredStrategy() {
+		return registeredStrategy;
+	}
+
+}
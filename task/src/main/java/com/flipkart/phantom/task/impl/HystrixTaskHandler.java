@@ -16,10 +16,16 @@
 
 package com.flipkart.phantom.task.impl;
 
+import com.flipkart.phantom.task.impl.hedge.HedgeConfig;
+import com.flipkart.phantom.task.impl.limit.AdaptiveLimitConfig;
+import com.flipkart.phantom.task.impl.priority.PriorityLaneQueue;
+import com.flipkart.phantom.task.impl.priority.TaskPriority;
 import com.flipkart.phantom.task.spi.TaskContext;
 import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -33,6 +39,9 @@ public abstract class HystrixTaskHandler extends TaskHandler {
 
 	/** The default executor timeout in millis*/
 	public static final int DEFAULT_EXECUTOR_TIMEOUT = 10000;
+
+	/** The default maximum number of requests in a collapsed batch*/
+	public static final int DEFAULT_COLLAPSER_MAX_BATCH_SIZE = 100;
 		
     /** 
      * These can be used to limit the maximum concurrent requests at a thread pool level.
@@ -59,6 +68,60 @@ public abstract class HystrixTaskHandler extends TaskHandler {
      * Map of command names and their respective executor timeouts in milliseconds
      */
     protected Map<String,Integer> executorTimeouts = new HashMap<String, Integer>();
+
+
+    /**
+     * Indicates if commands are to be executed using the {@link LightweightCommandExecutor} instead of a HystrixCommand per call. Applies only to
+     * handlers that use {@link ExecutionIsolationStrategy#SEMAPHORE} isolation and to commands of the {@link TaskHandler#SYNC_CALL} invocation type.
+     * The concurrency limit of such commands is the Hystrix semaphore max concurrent requests of the command, as with HystrixCommands. Such commands publish no Hystrix metrics
+     * and are therefore not shown on the Hystrix dashboard.
+     */
+    private boolean lightweightExecution;
+
+
+    /**
+     * Indicates if commands are to be executed on virtual threads, when supported by the JVM (JDK 21+), instead of the platform threads of Hystrix
+     * thread pools. Applies only to handlers that use {@link ExecutionIsolationStrategy#THREAD} isolation. Pool sizes are enforced as limits on
+     * concurrent commands. See {@link VirtualThreadConcurrencyStrategy}
+     */
+    private boolean virtualThreadExecution;
+
+    /**
+     * Map of command names and the collapsing window in milliseconds, for commands whose concurrent requests are collapsed into a batch and executed using
+     * {@link #executeBatch(TaskContext, String, List, List)}. Requests of commands not in this map are not collapsed.
+     */
+    private Map<String,Integer> collapserWindows = new HashMap<String, Integer>();
+
+    /** The maximum number of requests in a collapsed batch*/
+    private int collapserMaxBatchSize = DEFAULT_COLLAPSER_MAX_BATCH_SIZE;
+
+    /**
+     * Map of command names and the configuration of the adaptive limit on their in-flight calls. Calls of these commands in excess of the limit,
+     * which is adjusted from observed latency, are rejected ahead of Hystrix. Thread pool sizes are then the upper bound of the limit
+     */
+    private Map<String,AdaptiveLimitConfig> adaptiveLimitConfigPerCommand = new HashMap<String, AdaptiveLimitConfig>();
+
+    /**
+     * Map of names of read-only commands and the configuration of hedging their executions : a duplicate execution is issued if the first has not
+     * completed within a percentile of recent latency, and the first successful result is used. Applies to thread isolated handlers only
+     */
+    private Map<String,HedgeConfig> hedgeConfigPerCommand = new HashMap<String, HedgeConfig>();
+
+    /**
+     * The maximum number of commands queued for each thread pool of this handler, when all its threads are busy. Queued commands are executed in
+     * weighted fair order of their priority class, see {@link PriorityLaneQueue}. Commands are not queued if this is not positive i.e. the default. 
+     * Applies to thread isolated handlers only
+     */
+    private int priorityLaneQueueSize;
+
+    /** The time after which a queued command is executed ahead of commands of higher priority*/
+    private int priorityLaneStarvationMillis = PriorityLaneQueue.DEFAULT_STARVATION_MILLIS;
+
+    /**
+     * Map of command names and their priority class. Commands not in this map have the {@link TaskPriority#NORMAL} priority, unless the request
+     * specifies one
+     */
+    private Map<String,TaskPriority> priorityPerCommand = new HashMap<String, TaskPriority>();
     
     /**
 	 * This method will be executed if execute() fails.
@@ -69,6 +132,23 @@ public abstract class HystrixTaskHandler extends TaskHandler {
 	 */
 	public abstract TaskResult getFallBack(TaskContext taskContext, String command, Map<String,String> params, byte[] data);
     
+	/**
+	 * Executes a batch of collapsed requests of the specified command. Called for commands that are configured in {@link #getCollapserWindows()}. 
+	 * Default implementation executes the requests one after the other, sub-types may override this method to execute them as a single call.
+	 * @param taskContext the TaskContext that manages this TaskHandler
+	 * @param command the command used
+	 * @param params the parameters of each request in the batch
+	 * @param data the data of each request in the batch
+	 * @return the results of the requests, in the same order as the requests
+	 */
+	public List<TaskResult> executeBatch(TaskContext taskContext, String command, List<Map<String,String>> params, List<byte[]> data) {
+		List<TaskResult> results = new ArrayList<TaskResult>(params.size());
+		for (int i = 0; i < params.size(); i++) {
+			results.add(this.execute(taskContext, command, params.get(i), data.get(i)));
+		}
+		return results;
+	}
+
 	/**
 	 * Return the ExecutionIsolationStrategy. Thread is the default.
 	 */
@@ -104,5 +184,59 @@ public abstract class HystrixTaskHandler extends TaskHandler {
 	public void setExecutorTimeouts(Map<String, Integer> executorTimeouts) {
 		this.executorTimeouts = executorTimeouts;
 	}	
+	public boolean isLightweightExecution() {
+		return this.lightweightExecution;
+	}
+	public void setLightweightExecution(boolean lightweightExecution) {
+		this.lightweightExecution = lightweightExecution;
+	}
+	public Map<String, Integer> getCollapserWindows() {
+		return this.collapserWindows;
+	}
+	public void setCollapserWindows(Map<String, Integer> collapserWindows) {
+		this.collapserWindows = collapserWindows;
+	}
+	public int getCollapserMaxBatchSize() {
+		return this.collapserMaxBatchSize;
+	}
+	public void setCollapserMaxBatchSize(int collapserMaxBatchSize) {
+		this.collapserMaxBatchSize = collapserMaxBatchSize;
+	}
+	public Map<String, AdaptiveLimitConfig> getAdaptiveLimitConfigPerCommand() {
+		return this.adaptiveLimitConfigPerCommand;
+	}
+	public void setAdaptiveLimitConfigPerCommand(Map<String, AdaptiveLimitConfig> adaptiveLimitConfigPerCommand) {
+		this.adaptiveLimitConfigPerCommand = adaptiveLimitConfigPerCommand;
+	}
+	public Map<String, HedgeConfig> getHedgeConfigPerCommand() {
+		return this.hedgeConfigPerCommand;
+	}
+	public void setHedgeConfigPerCommand(Map<String, HedgeConfig> hedgeConfigPerCommand) {
+		this.hedgeConfigPerCommand = hedgeConfigPerCommand;
+	}
+	public int getPriorityLaneQueueSize() {
+		return this.priorityLaneQueueSize;
+	}
+	public void setPriorityLaneQueueSize(int priorityLaneQueueSize) {
+		this.priorityLaneQueueSize = priorityLaneQueueSize;
+	}
+	public int getPriorityLaneStarvationMillis() {
+		return this.priorityLaneStarvationMillis;
+	}
+	public void setPriorityLaneStarvationMillis(int priorityLaneStarvationMillis) {
+		this.priorityLaneStarvationMillis = priorityLaneStarvationMillis;
+	}
+	public Map<String, TaskPriority> getPriorityPerCommand() {
+		return this.priorityPerCommand;
+	}
+	public void setPriorityPerCommand(Map<String, TaskPriority> priorityPerCommand) {
+		this.priorityPerCommand = priorityPerCommand;
+	}
+	public boolean isVirtualThreadExecution() {
+		return this.virtualThreadExecution;
+	}
+	public void setVirtualThreadExecution(boolean virtualThreadExecution) {
+		this.virtualThreadExecution = virtualThreadExecution;
+	}
 	/** End Getter/Setter methods */
 }
\ No newline at end of file
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.task.impl;
+
+import com.flipkart.phantom.task.impl.cache.ResultCache;
+import com.flipkart.phantom.task.impl.limit.AdaptiveConcurrencyLimiter;
+import com.flipkart.phantom.task.impl.registry.CommandDispatchDescriptor;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.strategy.properties.HystrixPropertiesFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <code>LightweightCommandExecutor</code> executes commands of a semaphore isolated {@link HystrixTaskHandler} on the calling thread without creating a
+ * {@link TaskHandlerExecutor} i.e. a HystrixCommand per call. A single instance holds all the state of a command and provides guarantees similar to 
+ * Hystrix semaphore isolation :
+ * <ul>
+ *  <li>Concurrency limit : calls in excess of the "hystrix.command.&lt;command&gt;.execution.isolation.semaphore.maxConcurrentRequests" property, as
+ *  	for HystrixCommands, or of the command's {@link AdaptiveConcurrencyLimiter} limit if any, are rejected</li>
+ *  <li>Timeout : a call that completes after the command's executor timeout is treated as timed out and its result discarded. As with Hystrix semaphore 
+ *  	isolation, the calling thread is not interrupted</li>
+ *  <li>Circuit breaking : the circuit opens when a call fails and the error percentage over the rolling statistical window reaches the error
+ *  	threshold percentage, for at least the request volume threshold of calls. A single trial call is allowed per sleep window after the circuit 
+ *  	opens and the circuit closes if it succeeds. The thresholds, the sleep window and the forced open or closed states are read from the 
+ *  	{@link HystrixCommandProperties} of the command key i.e. "hystrix.command.&lt;command&gt;.circuitBreaker.*", as for HystrixCommands. Failures do
+ *  	not open the circuit while it is forced closed. The rolling window size is read once, when this executor is created</li>
+ *  <li>Fallback : {@link HystrixTaskHandler#getFallBack(TaskContext, String, Map, byte[])} is called for rejected, short-circuited, failed and timed out 
+ *  	calls. A RuntimeException is thrown if the fallback returns null or fails</li>
+ *  <li>Deadline : a call is dropped if the {@link CommandDeadline} of the calling thread has been reached, and a call that completes after it is 
+ *  	discarded. A {@link TaskHandlerExecutor#DEADLINE_EXCEEDED} result is returned in both cases</li>
+ * </ul>
+ * Handlers opt in using {@link HystrixTaskHandler#setLightweightExecution(boolean)}. The TaskHandlerRegistry keeps a single instance per command while
+ * the TaskHandler stays registered, so that the circuit and in-flight calls are tracked across changes of the command's settings, see 
+ * {@link #update(CommandDispatchDescriptor)}. Note that lightweight commands are not HystrixCommands and 
+ * therefore do not publish Hystrix metrics : they disappear from the Hystrix dashboard and metrics stream once a handler opts in.
+ * This class is thread-safe.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class LightweightCommandExecutor {
+
+	/** Logger for this class*/
+	private static final Logger LOGGER = LoggerFactory.getLogger(LightweightCommandExecutor.class);
+
+	/** The TaskHandler and the name of the command executed*/
+	private final HystrixTaskHandler taskHandler;
+	private final String command;
+
+	/** The timeout of the command in nanoseconds*/
+	private volatile long timeoutNanos;
+
+	/** The number of in-flight calls, limited to the maximum concurrent requests of the command*/
+	private final AtomicInteger inFlightCalls = new AtomicInteger();
+
+	/** The Hystrix properties of the command, for the concurrency limit and the circuit breaker thresholds*/
+	private final HystrixCommandProperties properties;
+
+	/** The rolling window counters of successful and failed calls*/
+	private final RollingCounter successes;
+	private final RollingCounter failures;
+
+	/** The time at which the circuit was opened or last allowed a trial call, 0 if the circuit is closed*/
+	private final AtomicLong circuitOpenedAt = new AtomicLong();
+
+	/** The cache of results of the command, null if results are not cached*/
+	private volatile ResultCache resultCache;
+
+	/** The adaptive limiter of in-flight calls of the command, null if calls are not limited adaptively*/
+	private volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+	/**
+	 * Constructor for this class
+	 * @param descriptor the CommandDispatchDescriptor of a command of a HystrixTaskHandler
+	 */
+	public LightweightCommandExecutor(CommandDispatchDescriptor descriptor) {
+		this.taskHandler = (HystrixTaskHandler)descriptor.getTaskHandler();
+		this.command = descriptor.getCommandName();
+		this.properties = HystrixPropertiesFactory.getCommandProperties(HystrixCommandKey.Factory.asKey(descriptor.getCommandName()), 
+				HystrixCommandProperties.Setter());
+		int windowMillis = this.properties.metricsRollingStatisticalWindowInMilliseconds().get();
+		int windowBuckets = this.properties.metricsRollingStatisticalWindowBuckets().get();
+		this.successes = new RollingCounter(windowMillis, windowBuckets);
+		this.failures = new RollingCounter(windowMillis, windowBuckets);
+		this.update(descriptor);
+	}
+
+	/**
+	 * Applies the executor timeout, result cache and adaptive concurrency limiter of the specified descriptor to calls made afterwards. The state of the
+	 * circuit and the count of in-flight calls are retained.
+	 * @param descriptor the CommandDispatchDescriptor of the command, as rebuilt by the TaskHandlerRegistry
+	 */
+	public void update(CommandDispatchDescriptor descriptor) {
+		this.timeoutNanos = descriptor.getExecutorTimeout() * 1000000L;
+		this.resultCache = descriptor.getResultCache();
+		this.concurrencyLimiter = descriptor.getConcurrencyLimiter();
+	}
+
+	/**
+	 * Executes the command on the calling thread, returning the fallback result if the call is rejected, short-circuited, fails or times out. Returns the
+	 * cached result, if results of the command are cached.
+	 * @param taskContext the TaskContext to pass to the TaskHandler
+	 * @param params the command params
+	 * @param data the command data
+	 * @return the TaskResult of the command or its fallback
+	 * @throws RuntimeException if the command did not succeed and no fallback result is available
+	 */
+	public TaskResult execute(TaskContext taskContext, Map<String,String> params, byte[] data) {
+		ResultCache resultCache = this.resultCache;
+		if (resultCache == null) {
+			return this.execute(taskContext, params, data, null);
+		}
+		try {
+			return resultCache.get(params, data, new CachedCallLoader(taskContext, params, data));
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException("Error executing command: " + this.command, e);
+		}
+	}
+
+	/**
+	 * Helper method to execute the command. Marks the specified loader, if any, when the fallback result is returned.
+	 */
+	private TaskResult execute(TaskContext taskContext, Map<String,String> params, byte[] data, CachedCallLoader loader) {
+		long deadline = CommandDeadline.current();
+		if (CommandDeadline.isExpired(deadline)) {
+			return this.getDeadlineExceededResult(loader);
+		}
+		if (!this.allowRequest()) {
+			return this.getFallback(taskContext, params, data, "short-circuited", null, loader);
+		}
+		// read once, as the settings may be updated while the call executes
+		AdaptiveConcurrencyLimiter concurrencyLimiter = this.concurrencyLimiter;
+		long timeoutNanos = this.timeoutNanos;
+		if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire()) {
+			return this.getFallback(taskContext, params, data, "rejected by the concurrency limit", null, loader);
+		}
+		long start = System.nanoTime();
+		if (this.inFlightCalls.incrementAndGet() > this.properties.executionIsolationSemaphoreMaxConcurrentRequests().get()) {
+			this.inFlightCalls.decrementAndGet();
+			if (concurrencyLimiter != null) {
+				concurrencyLimiter.release(start, true);
+			}
+			return this.getFallback(taskContext, params, data, "rejected", null, loader);
+		}
+		TaskResult result;
+		try {
+			result = this.taskHandler.execute(taskContext, this.command, params, data);
+			if (result == null) {
+				result = new TaskResult(true, TaskHandlerExecutor.NO_RESULT);
+			} else if (!result.isSuccess()) {
+				throw new RuntimeException("Command returned FALSE: " + result.getMessage());
+			}
+		} catch (Exception e) {
+			this.markFailure();
+			return this.getFallback(taskContext, params, data, "failed", e, loader);
+		} finally {
+			this.inFlightCalls.decrementAndGet();
+			if (concurrencyLimiter != null) {
+				concurrencyLimiter.release(start, System.nanoTime() - start > timeoutNanos);
+			}
+		}
+		if (System.nanoTime() - start > timeoutNanos) {
+			this.markFailure();
+			return this.getFallback(taskContext, params, data, "timed-out", null, loader);
+		}
+		if (CommandDeadline.isExpired(deadline)) {
+			this.markSuccess();
+			return this.getDeadlineExceededResult(loader);
+		}
+		this.markSuccess();
+		return result.withResultCodec(this.taskHandler.getResultCodec(this.command));
+	}
+
+	/**
+	 * Returns true if the circuit of this command is open. Does not change the state of the circuit
+	 * @return true if calls are being short-circuited
+	 */
+	public boolean isCircuitOpen() {
+		if (this.properties.circuitBreakerForceOpen().get()) {
+			return true;
+		}
+		if (!this.properties.circuitBreakerEnabled().get() || this.properties.circuitBreakerForceClosed().get()) {
+			return false;
+		}
+		return this.circuitOpenedAt.get() != 0;
+	}
+
+	/**
+	 * Returns the TaskHandler that executes the command
+	 * @return the HystrixTaskHandler of the command
+	 */
+	public HystrixTaskHandler getTaskHandler() {
+		return this.taskHandler;
+	}
+
+	/**
+	 * Helper method to determine if a call may be executed i.e. the circuit is closed or a trial call is due
+	 */
+	private boolean allowRequest() {
+		if (!this.isCircuitOpen()) {
+			return true;
+		}
+		if (this.properties.circuitBreakerForceOpen().get()) {
+			return false;
+		}
+		long openedAt = this.circuitOpenedAt.get();
+		long now = System.currentTimeMillis();
+		// allow a single trial call per sleep window
+		return now - openedAt >= this.properties.circuitBreakerSleepWindowInMilliseconds().get() && this.circuitOpenedAt.compareAndSet(openedAt, now);
+	}
+
+	/**
+	 * Helper method to record a successful call. Closes the circuit, if open, and resets the counters
+	 */
+	private void markSuccess() {
+		if (this.circuitOpenedAt.get() != 0) {
+			this.successes.reset();
+			this.failures.reset();
+			this.circuitOpenedAt.set(0);
+			LOGGER.info("Circuit closed for command: " + this.command);
+		}
+		this.successes.increment();
+	}
+
+	/**
+	 * Helper method to record a failed call. Opens the circuit if the error threshold percentage has been reached for the request volume threshold,
+	 * unless the circuit is forced closed
+	 */
+	private void markFailure() {
+		this.failures.increment();
+		if (this.circuitOpenedAt.get() != 0 || !this.properties.circuitBreakerEnabled().get() || this.properties.circuitBreakerForceClosed().get()) {
+			return;
+		}
+		long failureCount = this.failures.sum();
+		long total = failureCount + this.successes.sum();
+		if (total < this.properties.circuitBreakerRequestVolumeThreshold().get() 
+				|| failureCount * 100 < total * this.properties.circuitBreakerErrorThresholdPercentage().get()) {
+			return;
+		}
+		if (this.circuitOpenedAt.compareAndSet(0, System.currentTimeMillis())) {
+			LOGGER.warn("Circuit opened for command: " + this.command + ". Failed calls : " + failureCount + " of " + total);
+		}
+	}
+
+	/**
+	 * Helper method to get the fallback result of the command
+	 */
+	private TaskResult getFallback(TaskContext taskContext, Map<String,String> params, byte[] data, String reason, Exception cause, CachedCallLoader loader) {
+		if (loader != null) {
+			loader.fallback = true; // fallback results are not cached
+		}
+		if (cause != null) {
+			LOGGER.error("Command: " + this.command + " failed. Params: " + params, cause);
+		} else {
+			LOGGER.warn("Command: " + this.command + " " + reason + ". Returning fallback, if any");
+		}
+		TaskResult result;
+		try {
+			result = this.taskHandler.getFallBack(taskContext, this.command, params, data);
+		} catch (Exception e) {
+			throw new RuntimeException("Command: " + this.command + " " + reason + " and fallback failed", e);
+		}
+		if (result == null) {
+			throw new RuntimeException("Command: " + this.command + " " + reason + " and no fallback available", cause);
+		}
+		return result.withResultCodec(this.taskHandler.getResultCodec(this.command));
+	}
+
+	/**
+	 * Helper method to return the result of a call whose deadline has been reached. The fallback is not called as the client no longer waits on the result
+	 */
+	private TaskResult getDeadlineExceededResult(CachedCallLoader loader) {
+		if (loader != null) {
+			loader.fallback = true; // not cached
+		}
+		LOGGER.warn("Command: " + this.command + " dropped, the deadline was reached before the command completed");
+		return new TaskResult(false, TaskHandlerExecutor.DEADLINE_EXCEEDED);
+	}
+
+	/**
+	 * The ResultCache loader that executes the command
+	 */
+	private class CachedCallLoader implements ResultCache.ResultLoader {
+		private final TaskContext taskContext;
+		private final Map<String,String> params;
+		private final byte[] data;
+		private boolean fallback;
+		CachedCallLoader(TaskContext taskContext, Map<String,String> params, byte[] data) {
+			this.taskContext = taskContext;
+			this.params = params;
+			this.data = data;
+		}
+		public TaskResult load() {
+			return execute(this.taskContext, this.params, this.data, this);
+		}
+		public boolean isCacheable() {
+			return !this.fallback;
+		}
+	}
+
+	/**
+	 * Counter over a rolling time window, made up of buckets that are reset when reused for a later time slice
+	 */
+	private static class RollingCounter {
+		private final int buckets;
+		private final long bucketMillis;
+		private final AtomicLongArray counts;
+		private final AtomicLongArray slices;
+		RollingCounter(int windowMillis, int buckets) {
+			this.buckets = Math.max(buckets, 1);
+			this.bucketMillis = Math.max(windowMillis / this.buckets, 1);
+			this.counts = new AtomicLongArray(this.buckets);
+			this.slices = new AtomicLongArray(this.buckets);
+		}
+		void increment() {
+			long slice = System.currentTimeMillis() / this.bucketMillis;
+			int bucket = (int)(slice % this.buckets);
+			long bucketSlice = this.slices.get(bucket);
+			if (bucketSlice != slice && this.slices.compareAndSet(bucket, bucketSlice, slice)) {
+				this.counts.set(bucket, 0);
+			}
+			this.counts.incrementAndGet(bucket);
+		}
+		long sum() {
+			long slice = System.currentTimeMillis() / this.bucketMillis;
+			long sum = 0;
+			for (int i = 0; i < this.buckets; i++) {
+				if (slice - this.slices.get(i) < this.buckets) {
+					sum += this.counts.get(i);
+				}
+			}
+			return sum;
+		}
+		void reset() {
+			for (int i = 0; i < this.buckets; i++) {
+				this.slices.set(i, 0);
+				this.counts.set(i, 0);
+			}
+		}
+	}
+
+}
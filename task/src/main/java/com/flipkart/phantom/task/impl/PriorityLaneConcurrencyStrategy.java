@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl;
+
+import com.flipkart.phantom.task.impl.priority.PriorityLaneQueue;
+import com.flipkart.phantom.task.impl.priority.TaskPriority;
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.strategy.properties.HystrixProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>PriorityLaneConcurrencyStrategy</code> is a {@link VirtualThreadConcurrencyStrategy} that creates the selected Hystrix thread pools with a
+ * {@link PriorityLaneQueue} as the work queue, so that queued commands are executed in weighted fair order of their {@link TaskPriority} instead of
+ * FIFO order. Threads of such pools are created by Hystrix as usual. Thread pools selected for execution on virtual threads do not queue commands and
+ * are therefore not created with priority lanes. Thread pools are created with executors that may be resized at runtime (see {@link #resizeThreadPool(String, int)}),
+ * in any order of core and maximum size changes, as Hystrix applies changes of the core size property to the executor. This is the concurrency strategy 
+ * registered with Hystrix, as Hystrix allows a single one, see {@link ConcurrencyStrategyRegistrar}.
+ * <p>
+ * Registration takes over the JVM wide Hystrix concurrency strategy : all Hystrix thread pools of the JVM, including those of libraries other than the 
+ * service proxy, are then created by this strategy, and registering another strategy fails. The TaskHandlerRegistry therefore registers it only when a 
+ * TaskHandler opts for priority lanes or virtual threads, or when resizing thread pools at runtime is enabled.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class PriorityLaneConcurrencyStrategy extends VirtualThreadConcurrencyStrategy {
+
+	/** Logger for this class*/
+	private static final Logger LOGGER = LoggerFactory.getLogger(PriorityLaneConcurrencyStrategy.class);
+
+	/** The queue capacity and starvation threshold of thread pools selected for priority lanes, keyed by thread pool name*/
+	private final Map<String, int[]> priorityLanePools = new ConcurrentHashMap<String, int[]>();
+
+	/** The work queues of thread pools created with priority lanes, keyed by thread pool name*/
+	private final Map<String, PriorityLaneQueue> priorityLaneQueues = new ConcurrentHashMap<String, PriorityLaneQueue>();
+
+	/** The executors of the thread pools created by this strategy, keyed by thread pool name*/
+	private final Map<String, ThreadPoolExecutor> threadPools = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+
+	/**
+	 * Selects the specified thread pool for priority lanes. Must be called before the thread pool is first used.
+	 * @param threadPoolName the Hystrix thread pool name
+	 * @param queueSize the maximum number of queued commands
+	 * @param starvationMillis the time after which a queued command is dequeued ahead of commands of higher priority
+	 */
+	public void addPriorityLanePool(String threadPoolName, int queueSize, int starvationMillis) {
+		this.priorityLanePools.put(threadPoolName, new int[] {queueSize, starvationMillis});
+	}
+
+	/**
+	 * Returns the work queues of the thread pools created with priority lanes, for their queue time metrics
+	 * @return the PriorityLaneQueue instances
+	 */
+	public Collection<PriorityLaneQueue> getPriorityLaneQueues() {
+		return new ArrayList<PriorityLaneQueue>(this.priorityLaneQueues.values());
+	}
+
+	/**
+	 * Returns the work queue of the specified thread pool, if it has priority lanes
+	 * @param threadPoolName the Hystrix thread pool name
+	 * @return the PriorityLaneQueue or null if the thread pool has not been created with priority lanes
+	 */
+	public PriorityLaneQueue getPriorityLaneQueue(String threadPoolName) {
+		return this.priorityLaneQueues.get(threadPoolName);
+	}
+
+	/**
+	 * Sets the core and maximum size of the specified thread pool, if it has been created. The Hystrix core size property of the thread pool must be
+	 * changed as well, else Hystrix restores the size when the thread pool is next used.
+	 * @param threadPoolName the Hystrix thread pool name
+	 * @param coreSize the new core size
+	 * @return true if the thread pool was resized, false if it has not been created yet
+	 */
+	public boolean resizeThreadPool(String threadPoolName, int coreSize) {
+		ThreadPoolExecutor threadPool = this.threadPools.get(threadPoolName);
+		if (threadPool == null) {
+			return false;
+		}
+		LOGGER.info("Resizing thread pool : " + threadPoolName + " from " + threadPool.getCorePoolSize() + " to " + coreSize);
+		threadPool.setCorePoolSize(coreSize);
+		threadPool.setMaximumPoolSize(coreSize);
+		return true;
+	}
+
+	/**
+	 * Overriden super class method. Creates thread pools selected for priority lanes with a {@link PriorityLaneQueue} as the work queue. Creates thread
+	 * pools not selected for virtual threads using a {@link ResizableThreadPoolExecutor}.
+	 * @see com.flipkart.phantom.task.impl.VirtualThreadConcurrencyStrategy#getThreadPool(com.netflix.hystrix.HystrixThreadPoolKey, com.netflix.hystrix.strategy.properties.HystrixProperty, com.netflix.hystrix.strategy.properties.HystrixProperty, com.netflix.hystrix.strategy.properties.HystrixProperty, java.util.concurrent.TimeUnit, java.util.concurrent.BlockingQueue)
+	 */
+	public ThreadPoolExecutor getThreadPool(HystrixThreadPoolKey threadPoolKey, HystrixProperty<Integer> corePoolSize, HystrixProperty<Integer> maximumPoolSize,
+			HystrixProperty<Integer> keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue) {
+		ThreadPoolExecutor threadPool;
+		int[] laneConfig = this.priorityLanePools.get(threadPoolKey.name());
+		if (this.isVirtualThreadPool(threadPoolKey.name())) {
+			threadPool = super.getThreadPool(threadPoolKey, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+		} else if (laneConfig == null) {
+			threadPool = new ResizableThreadPoolExecutor(threadPoolKey.name(), corePoolSize.get(), maximumPoolSize.get(), keepAliveTime.get(), unit, workQueue);
+		} else {
+			LOGGER.info("Creating thread pool : " + threadPoolKey.name() + " with priority lanes. Queue size : " + laneConfig[0]);
+			PriorityLaneQueue queue = new PriorityLaneQueue(threadPoolKey.name(), laneConfig[0], laneConfig[1]);
+			this.priorityLaneQueues.put(threadPoolKey.name(), queue);
+			threadPool = new ResizableThreadPoolExecutor(threadPoolKey.name(), corePoolSize.get(), maximumPoolSize.get(), keepAliveTime.get(), unit, queue);
+		}
+		this.threadPools.put(threadPoolKey.name(), threadPool);
+		return threadPool;
+	}
+
+	/**
+	 * A ThreadPoolExecutor whose core size may be raised above the maximum size and vice versa, the other size being adjusted to match. Hystrix sets the
+	 * core size before the maximum size when its core size property changes, which newer JVMs reject when the size is raised. Threads are named as by
+	 * Hystrix.
+	 */
+	private static class ResizableThreadPoolExecutor extends ThreadPoolExecutor {
+		ResizableThreadPoolExecutor(final String threadPoolName, int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit, 
+				BlockingQueue<Runnable> workQueue) {
+			super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, new ThreadFactory() {
+				private final AtomicInteger threadNumber = new AtomicInteger();
+				public Thread newThread(Runnable runnable) {
+					return new Thread(runnable, "hystrix-" + threadPoolName + "-" + this.threadNumber.incrementAndGet());
+				}
+			});
+		}
+		public synchronized void setCorePoolSize(int corePoolSize) {
+			if (corePoolSize > this.getMaximumPoolSize()) {
+				super.setMaximumPoolSize(corePoolSize);
+			}
+			super.setCorePoolSize(corePoolSize);
+		}
+		public synchronized void setMaximumPoolSize(int maximumPoolSize) {
+			if (maximumPoolSize < this.getCorePoolSize()) {
+				super.setCorePoolSize(maximumPoolSize);
+			}
+			super.setMaximumPoolSize(maximumPoolSize);
+		}
+	}
+
+}
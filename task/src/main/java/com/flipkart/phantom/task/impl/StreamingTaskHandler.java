@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.task.impl;
+
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * An extension of {@link HystrixTaskHandler} that receives the command data as an {@link InputStream}. Transports that support streaming pass the data to this 
+ * handler while it is still being received, so that large payloads need not be held in memory in entirety. The stream returns end of stream once all the 
+ * command data has been read and throws an IOException if the data could not be received fully.
+ * Streaming handlers are always executed using thread isolation as the stream is fed by transport threads that must not wait on handler execution.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public abstract class StreamingTaskHandler extends HystrixTaskHandler {
+
+	/**
+	 * Execute this task, using the specified parameters and command data stream
+	 * @param taskContext the TaskContext that manages this TaskHandler
+	 * @param command the command used
+	 * @param params task parameters
+	 * @param dataStream the command data stream. Must be read by the calling thread, before this method returns
+	 * @return response the TaskResult from task execution
+	 */
+	public abstract TaskResult execute(TaskContext taskContext, String command, Map<String,String> params, InputStream dataStream) throws RuntimeException;
+
+	/**
+	 * Abstract method implementation. Executes this task using the command data as a stream
+	 * @see com.flipkart.phantom.task.impl.TaskHandler#execute(com.flipkart.phantom.task.spi.TaskContext, java.lang.String, java.util.Map, byte[])
+	 */
+	public TaskResult execute(TaskContext taskContext, String command, Map<String,String> params, byte[] data) throws RuntimeException {
+		return this.execute(taskContext, command, params, new ByteArrayInputStream(data == null ? new byte[0] : data));
+	}
+
+	/**
+	 * Overriden superclass method. Returns {@link ExecutionIsolationStrategy#THREAD} always
+	 * @see com.flipkart.phantom.task.impl.HystrixTaskHandler#getIsolationStrategy()
+	 */
+	public final ExecutionIsolationStrategy getIsolationStrategy() {
+		return ExecutionIsolationStrategy.THREAD;
+	}
+
+}
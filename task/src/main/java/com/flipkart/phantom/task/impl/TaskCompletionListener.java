@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.task.impl;
+
+/**
+ * <code>TaskCompletionListener</code> is notified when a command, executed using
+ * {@link TaskHandlerExecutorRepository#executeAsyncCommand(String, String, byte[], java.util.Map, TaskCompletionListener)}, completes.
+ * Notifications are made on the thread that completes the command i.e. the thread that executed the command or its fallback, or the repository's
+ * timeout scheduler thread when the command times out. Implementations must therefore not block for long.
+ *
+ * @version 1.0, 16 Oct 2026
+ */
+public interface TaskCompletionListener {
+
+	/**
+	 * Called when the command completes with a result, including a fallback result
+	 * @param executor the TaskHandlerExecutor of the command
+	 * @param result the TaskResult of the command
+	 */
+	public void onCompletion(TaskHandlerExecutor executor, TaskResult result);
+
+	/**
+	 * Called when the command fails and no fallback result is available
+	 * @param executor the TaskHandlerExecutor of the command
+	 * @param error the cause of the failure
+	 */
+	public void onError(TaskHandlerExecutor executor, Throwable error);
+
+}
@@ -16,7 +16,9 @@
 
 package com.flipkart.phantom.task.impl;
 
+import com.flipkart.phantom.task.impl.cache.ResultCacheConfig;
 import com.flipkart.phantom.task.spi.AbstractHandler;
+import com.flipkart.phantom.task.spi.ResultCodec;
 import com.flipkart.phantom.task.spi.TaskContext;
 import com.flipkart.phantom.task.utils.StringUtils;
 import org.slf4j.Logger;
@@ -58,6 +60,15 @@ public abstract class TaskHandler extends AbstractHandler implements DisposableB
      */
     protected List<Map<String,String>> initializationCommands = new LinkedList<Map<String,String>>();
 
+    /** The ResultCodec for encoding non byte array result data of this handler's commands. Java serialization is used if none is set*/
+    private ResultCodec resultCodec;
+
+    /** Map of command names and the ResultCodec to use for the command, overrides the handler level ResultCodec*/
+    private Map<String, ResultCodec> resultCodecPerCommand = new HashMap<String, ResultCodec>();
+
+    /** Map of names of idempotent commands and the configuration of the cache for their results. Results of commands not in this map are not cached*/
+    private Map<String, ResultCacheConfig> resultCacheConfigPerCommand = new HashMap<String, ResultCacheConfig>();
+
     /**
      * Abstract method implementation
      * @see AbstractHandler#getType()
@@ -125,6 +136,16 @@ public abstract class TaskHandler extends AbstractHandler implements DisposableB
 		this.shutdown(null);
 	}
 	
+	/**
+	 * Returns the ResultCodec for the specified command. Returns the handler level ResultCodec if none is set for the command
+	 * @param commandName the command name
+	 * @return the ResultCodec or null if none is set
+	 */
+	public ResultCodec getResultCodec(String commandName) {
+		ResultCodec commandResultCodec = this.resultCodecPerCommand.get(commandName);
+		return commandResultCodec != null ? commandResultCodec : this.resultCodec;
+	}
+
 	/** Getter/Setter methods */
 	public List<Map<String, String>> getInitializationCommands() {
 		return initializationCommands;
@@ -132,5 +153,23 @@ public abstract class TaskHandler extends AbstractHandler implements DisposableB
 	public void setInitializationCommands(List<Map<String, String>> initializationCommands) {
 		this.initializationCommands = initializationCommands;
 	}
+	public ResultCodec getResultCodec() {
+		return this.resultCodec;
+	}
+	public void setResultCodec(ResultCodec resultCodec) {
+		this.resultCodec = resultCodec;
+	}
+	public Map<String, ResultCodec> getResultCodecPerCommand() {
+		return this.resultCodecPerCommand;
+	}
+	public void setResultCodecPerCommand(Map<String, ResultCodec> resultCodecPerCommand) {
+		this.resultCodecPerCommand = resultCodecPerCommand;
+	}
+	public Map<String, ResultCacheConfig> getResultCacheConfigPerCommand() {
+		return this.resultCacheConfigPerCommand;
+	}
+	public void setResultCacheConfigPerCommand(Map<String, ResultCacheConfig> resultCacheConfigPerCommand) {
+		this.resultCacheConfigPerCommand = resultCacheConfigPerCommand;
+	}
 	/** End Getter/Setter methods */
 }
\ No newline at end of file
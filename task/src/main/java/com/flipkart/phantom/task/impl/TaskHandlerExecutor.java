@@ -15,13 +15,31 @@
  */
 package com.flipkart.phantom.task.impl;
 
+import com.flipkart.phantom.task.impl.cache.ResultCache;
+import com.flipkart.phantom.task.impl.hedge.RequestHedger;
+import com.flipkart.phantom.task.impl.limit.AdaptiveConcurrencyLimiter;
+import com.flipkart.phantom.task.impl.priority.PriorityLaneQueue;
+import com.flipkart.phantom.task.impl.priority.TaskPriority;
+import com.flipkart.phantom.task.impl.registry.CommandDispatchDescriptor;
 import com.flipkart.phantom.task.spi.TaskContext;
 import com.netflix.hystrix.*;
 import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <code>TaskHandlerExecutor</code> is an extension of {@link HystrixCommand}. It is essentially a 
@@ -36,6 +54,7 @@ public class TaskHandlerExecutor extends HystrixCommand<TaskResult> {
     /** TaskResult message constants */
     public static final String NO_RESULT = "The command returned no result";
     public static final String ASYNC_QUEUED = "The command dispatched for async execution";
+    public static final String DEADLINE_EXCEEDED = "The command did not complete within the deadline";
 
     /** Logger for this class*/
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskHandlerExecutor.class);
@@ -57,6 +76,35 @@ public class TaskHandlerExecutor extends HystrixCommand<TaskResult> {
     protected String command;
     protected Map<String,String> params;
     protected byte[] data;
+    protected InputStream dataStream;
+
+    /** The dispatch descriptor this executor was created from, may be null*/
+    private CommandDispatchDescriptor descriptor;
+
+    /** The time at which a permit was acquired from the command's AdaptiveConcurrencyLimiter and whether it is still held*/
+    private long permitAcquiredAt;
+    private final AtomicBoolean permitHeld = new AtomicBoolean();
+
+    /** Indicator that the command was rejected by its AdaptiveConcurrencyLimiter*/
+    private boolean limitRejected;
+
+    /** The deadline of the command, inherited from the command executing on the creating thread if any. See {@link CommandDeadline}*/
+    private long deadline = CommandDeadline.current();
+
+    /** Indicator that the command was dropped or abandoned as its deadline was reached*/
+    private volatile boolean deadlineExceeded;
+
+    /** The priority class of the command, used to dequeue the command from thread pools that have priority lanes. See {@link PriorityLaneQueue}*/
+    private TaskPriority priority = TaskPriority.NORMAL;
+
+    /** Indicator that the command's run() completed successfully*/
+    private volatile boolean succeeded;
+
+    /** Hook that is run when execution of the command's run() method completes, used to signal completion of hedged executions*/
+    private volatile Runnable completionHook;
+
+    /** Hook that is notified of the outcome of the command's run() and getFallback() methods, used to notify completion of async commands*/
+    private volatile ResultHook resultHook;
 
     /**
      * Basic constructor for {@link TaskHandler}. The Hystrix command name is commandName. The group name is the Handler Name
@@ -100,6 +148,20 @@ public class TaskHandlerExecutor extends HystrixCommand<TaskResult> {
     }
 
 
+    /**
+     * Constructor for {@link TaskHandler} using the precomputed command keys, properties and call invocation type of the specified descriptor
+     * @param descriptor the CommandDispatchDescriptor of the command and thread pool
+     * @param taskContext The context (Unique context required by Handlers to communicate with the container.)
+     */
+    public TaskHandlerExecutor(CommandDispatchDescriptor descriptor, TaskContext taskContext) {
+        super(descriptor.getSetter());
+        this.taskHandler = descriptor.getTaskHandler();
+        this.taskContext = taskContext;
+        this.command = descriptor.getCommandName();
+        this.descriptor = descriptor;
+        this.priority = descriptor.getPriority();
+    }
+
     /**
      * Constructor for TaskHandlerExecutor run through Default Hystrix Thread Pool ({@link TaskHandlerExecutor#DEFAULT_HYSTRIX_THREAD_POOL})
      * @param taskHandler The taskHandler to be wrapped
@@ -113,23 +175,334 @@ public class TaskHandlerExecutor extends HystrixCommand<TaskResult> {
 
 
     /**
-     * Interface method implementation. @see HystrixCommand#run()
+     * Overriden super class method. Returns the cached result if results of the command are cached in a {@link ResultCache}. Executes the command using a
+     * {@link TaskRequestCollapser} if requests of the command are collapsed, so that concurrent requests are executed as a batch. Commands with a data 
+     * stream and commands queued for execution are neither cached nor collapsed. Rejects the command if the command's {@link AdaptiveConcurrencyLimiter}
+     * limit on in-flight calls has been reached. Issues a hedged execution if executions of the command are hedged by a {@link RequestHedger}.
+     * The executor timeout is capped by the command's deadline, if any, and a {@link #DEADLINE_EXCEEDED} result is returned once the deadline is reached.
+     * @see com.netflix.hystrix.HystrixCommand#execute()
+     */
+    @Override
+    public TaskResult execute() {
+        if (this.descriptor != null && this.dataStream == null && this.descriptor.getResultCache() != null) {
+            try {
+                return this.descriptor.getResultCache().get(this.params, this.data, new ResultCache.ResultLoader() {
+                    public TaskResult load() throws Exception {
+                        return executeUncached();
+                    }
+                    public boolean isCacheable() {
+                        return !isResponseFromFallback() && !limitRejected && !deadlineExceeded;
+                    }
+                });
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Error executing command: " + this.command, e);
+            }
+        }
+        return this.executeUncached();
+    }
+
+    /**
+     * Overriden super class method. Rejects the command if the command's {@link AdaptiveConcurrencyLimiter} limit on in-flight calls has been reached.
+     * Returns a {@link #DEADLINE_EXCEEDED} result, without queueing the command, if the command's deadline has been reached.
+     * @see com.netflix.hystrix.HystrixCommand#queue()
+     */
+    @Override
+    public Future<TaskResult> queue() {
+        if (CommandDeadline.isExpired(this.deadline) || !this.acquirePermit()) {
+            final TaskResult result = this.limitRejected ? this.getLimitRejectedResult() : this.getDeadlineExceededResult();
+            FutureTask<TaskResult> future = new FutureTask<TaskResult>(new Callable<TaskResult>() {
+                public TaskResult call() {
+                    return result;
+                }
+            });
+            future.run();
+            return future;
+        }
+        try {
+            return this.queueWithPriority();
+        } catch (RuntimeException e) {
+            this.releasePermit(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Helper method to execute the command, collapsing it with concurrent requests if the command is collapsed. Rejects the command if the command's 
+     * {@link AdaptiveConcurrencyLimiter} limit on in-flight calls has been reached
+     */
+    private TaskResult executeUncached() {
+        if (CommandDeadline.isExpired(this.deadline)) {
+            return this.getDeadlineExceededResult();
+        }
+        if (!this.acquirePermit()) {
+            return this.getLimitRejectedResult();
+        }
+        if (this.descriptor != null && this.descriptor.isCollapsed() && this.dataStream == null) {
+            try {
+                return new TaskRequestCollapser(this.descriptor, this.taskContext, this.params, this.data, this.deadline).execute();
+            } finally {
+                this.releasePermit(false);
+            }
+        }
+        if (this.descriptor != null && this.descriptor.getRequestHedger() != null && this.dataStream == null) {
+            return this.executeHedged(this.descriptor.getRequestHedger());
+        }
+        return this.executeWithinDeadline();
+    }
+
+    /**
+     * Helper method to execute the command, waiting for the result until the command's deadline if it is reached before the executor timeout
+     */
+    private TaskResult executeWithinDeadline() {
+        if (CommandDeadline.remainingMillis(this.deadline) < this.getProperties().executionIsolationThreadTimeoutInMilliseconds().get()) {
+            return this.getResult(this.queueWithPriority());
+        }
+        TaskPriority previousPriority = PriorityLaneQueue.setSubmitPriority(this.priority);
+        try {
+            return super.execute();
+        } finally {
+            PriorityLaneQueue.restoreSubmitPriority(previousPriority);
+        }
+    }
+
+    /**
+     * Helper method to queue the command for execution in the priority lane of the command's priority class, if the thread pool has priority lanes
+     */
+    private Future<TaskResult> queueWithPriority() {
+        TaskPriority previousPriority = PriorityLaneQueue.setSubmitPriority(this.priority);
+        try {
+            return super.queue();
+        } finally {
+            PriorityLaneQueue.restoreSubmitPriority(previousPriority);
+        }
+    }
+
+    /**
+     * Helper method to execute the command, issuing a hedged execution of the command if this execution has not completed within the hedge delay of the
+     * specified RequestHedger and its hedge budget permits. The first successful result is returned and the other execution is cancelled. The result of
+     * this execution, which may be the fallback, is returned if neither succeeds.
+     */
+    private TaskResult executeHedged(RequestHedger hedger) {
+        hedger.onRequest();
+        long start = System.nanoTime();
+        long hedgeDelay = hedger.getHedgeDelayNanos();
+        if (hedgeDelay < 0) { // not enough latency samples yet
+            TaskResult result = this.executeWithinDeadline();
+            if (this.succeeded) {
+                hedger.recordLatency(System.nanoTime() - start);
+            }
+            return result;
+        }
+        final BlockingQueue<TaskHandlerExecutor> completions = new LinkedBlockingQueue<TaskHandlerExecutor>();
+        this.completionHook = new CompletionSignal(this, completions);
+        Future<TaskResult> primary = this.queueWithPriority();
+        if (primary.isDone()) { // rejected or short-circuited
+            return this.getResult(primary);
+        }
+        long deadline = start + Math.min(this.getProperties().executionIsolationThreadTimeoutInMilliseconds().get(), 
+                CommandDeadline.remainingMillis(this.deadline)) * 1000000L;
+        TaskHandlerExecutor hedge = null;
+        Future<TaskResult> hedgeFuture = null;
+        long hedgeStart = 0;
+        boolean hedgeAttempted = false;
+        int pending = 1;
+        TaskHandlerExecutor winner = null;
+        try {
+            while (winner == null) {
+                long now = System.nanoTime();
+                long waitUntil = hedgeAttempted ? deadline : Math.min(start + hedgeDelay, deadline);
+                TaskHandlerExecutor completed = completions.poll(Math.max(waitUntil - now, 0), TimeUnit.NANOSECONDS);
+                if (completed == null) {
+                    if (hedgeAttempted || System.nanoTime() >= deadline) {
+                        break; // the primary's future returns the fallback on timeout
+                    }
+                    hedgeAttempted = true;
+                    if (hedger.tryAcquireHedge()) {
+                        hedge = new TaskHandlerExecutor(this.descriptor, this.taskContext);
+                        hedge.setParams(this.params);
+                        hedge.setData(this.data);
+                        hedge.setDeadline(this.deadline);
+                        hedge.setPriority(this.priority);
+                        hedge.completionHook = new CompletionSignal(hedge, completions);
+                        hedgeStart = System.nanoTime();
+                        try {
+                            hedgeFuture = hedge.queue();
+                            if (hedgeFuture.isDone()) { // rejected, short-circuited or over the concurrency limit
+                                hedge = null;
+                            } else {
+                                pending++;
+                            }
+                        } catch (Exception e) {
+                            LOGGER.warn("Error in queueing hedged execution of command " + this.command + ": " + e.getMessage());
+                            hedge = null;
+                        }
+                    }
+                } else if (completed.succeeded) {
+                    winner = completed;
+                } else if (--pending == 0 || (completed == this && hedge == null)) {
+                    break; // failures are not hedged
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while executing command: " + this.command, e);
+        }
+        if (winner == null) {
+            if (hedgeFuture != null && !hedgeFuture.isDone()) {
+                hedgeFuture.cancel(true);
+            }
+            return this.getResult(primary);
+        }
+        if (winner == this) {
+            hedger.recordLatency(System.nanoTime() - start);
+            if (hedgeFuture != null && !hedgeFuture.isDone()) {
+                hedgeFuture.cancel(true);
+            }
+            return this.getResult(primary);
+        }
+        hedger.recordLatency(System.nanoTime() - hedgeStart);
+        hedger.recordHedgeWin();
+        if (!primary.isDone()) {
+            primary.cancel(true);
+        }
+        return this.getResult(hedgeFuture);
+    }
+
+    /**
+     * Helper method to get the result of a queued execution, throwing the cause if execution failed. Waits until the command's deadline, if any, and 
+     * cancels the execution and returns a {@link #DEADLINE_EXCEEDED} result if the deadline is reached
+     */
+    private TaskResult getResult(Future<TaskResult> future) {
+        try {
+            if (this.deadline == CommandDeadline.NONE) {
+                return future.get();
+            }
+            return future.get(Math.max(CommandDeadline.remainingMillis(this.deadline), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            this.releasePermit(true);
+            return this.getDeadlineExceededResult();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new RuntimeException("Error executing command: " + this.command, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while executing command: " + this.command, e);
+        }
+    }
+
+    /**
+     * Helper method to acquire a permit from the command's AdaptiveConcurrencyLimiter, if any
+     * @return false if the limit on in-flight calls has been reached, true otherwise
+     */
+    private boolean acquirePermit() {
+        AdaptiveConcurrencyLimiter limiter = (this.descriptor == null ? null : this.descriptor.getConcurrencyLimiter());
+        if (limiter == null) {
+            return true;
+        }
+        if (!limiter.tryAcquire()) {
+            this.limitRejected = true;
+            return false;
+        }
+        this.permitAcquiredAt = System.nanoTime();
+        this.permitHeld.set(true);
+        return true;
+    }
+
+    /**
+     * Helper method to release the permit acquired from the command's AdaptiveConcurrencyLimiter, if held. The permit is released when run() completes or
+     * when the fallback is called for e.g. on timeout, whichever happens first.
+     * @param dropped true if the command timed out or was rejected by Hystrix
+     */
+    private void releasePermit(boolean dropped) {
+        if (this.permitHeld.compareAndSet(true, false)) {
+            this.descriptor.getConcurrencyLimiter().release(this.permitAcquiredAt, dropped);
+        }
+    }
+
+    /**
+     * Helper method to return the fallback result of a command rejected by its AdaptiveConcurrencyLimiter
+     * @throws RejectedExecutionException if no fallback is available
+     */
+    private TaskResult getLimitRejectedResult() {
+        LOGGER.warn("Command: " + this.command + " rejected, the concurrency limit of " + this.descriptor.getConcurrencyLimiter().getLimit() + " has been reached");
+        TaskResult result = this.getFallback();
+        if (result == null) {
+            throw new RejectedExecutionException("Concurrency limit of " + this.descriptor.getConcurrencyLimiter().getLimit() + " reached for command: " 
+                    + this.command + " and no fallback available");
+        }
+        return result;
+    }
+
+    /**
+     * Helper method to return the result of a command whose deadline has been reached. The fallback is not called as the client no longer waits on the result
+     */
+    private TaskResult getDeadlineExceededResult() {
+        this.deadlineExceeded = true;
+        LOGGER.warn("Command: " + this.command + " dropped, the deadline was reached before the command completed");
+        return new TaskResult(false, DEADLINE_EXCEEDED);
+    }
+
+    /**
+     * Interface method implementation. Drops the command, without executing the TaskHandler, if the command's deadline was reached while the command 
+     * was queued. The deadline is set as the deadline of the executing thread for commands executed by the TaskHandler. 
+     * @see HystrixCommand#run()
      * @throws Exception
      */
     @Override
     protected TaskResult run() throws Exception {
+        long previousDeadline = CommandDeadline.set(this.deadline);
+        TaskResult runResult = null;
+        Exception runError = null;
         try {
-            TaskResult result = this.taskHandler.execute(taskContext, command, params, data);
+            if (CommandDeadline.isExpired(this.deadline)) {
+                runResult = this.getDeadlineExceededResult();
+                return runResult;
+            }
+            TaskResult result;
+            if (this.dataStream != null && this.taskHandler instanceof StreamingTaskHandler) {
+                result = ((StreamingTaskHandler)this.taskHandler).execute(taskContext, command, params, dataStream);
+            } else {
+                result = this.taskHandler.execute(taskContext, command, params, data);
+            }
             if(result==null) {
-                return new TaskResult(true,TaskHandlerExecutor.NO_RESULT);
+                this.succeeded = true;
+                runResult = new TaskResult(true,TaskHandlerExecutor.NO_RESULT);
+                return runResult;
             }
             if(result.isSuccess()==false) {
                 throw new RuntimeException("Command returned FALSE: "+(result==null?"":result.getMessage()));
             }
+            result = result.withResultCodec(this.taskHandler.getResultCodec(this.command));
+            this.succeeded = true;
+            runResult = result;
             return result;
         } catch(Exception e) {
             LOGGER.error("Command: "+this.command+" failed. Params: "+this.params+". Data:"+this.data,e);
+            runError = e;
             throw e;
+        } finally {
+            if (this.dataStream != null) {
+                try {
+                    this.dataStream.close(); // discard any data not read by the handler
+                } catch (IOException e) {
+                    LOGGER.warn("Error closing data stream of command: "+this.command, e);
+                }
+            }
+            CommandDeadline.restore(previousDeadline);
+            this.releasePermit(false);
+            Runnable hook = this.completionHook;
+            if (hook != null) {
+                hook.run();
+            }
+            ResultHook resultHook = this.resultHook;
+            if (resultHook != null) {
+                resultHook.onRunCompleted(this, runResult, runError);
+            }
         }
     }
 
@@ -138,11 +511,62 @@ public class TaskHandlerExecutor extends HystrixCommand<TaskResult> {
      */
     @Override
     protected TaskResult getFallback() {
-        if(this.taskHandler instanceof HystrixTaskHandler) {
-            HystrixTaskHandler hystrixTaskHandler = (HystrixTaskHandler) this.taskHandler;
-            return hystrixTaskHandler.getFallBack(taskContext, command, params, data);
+        this.releasePermit(true);
+        TaskResult result = null;
+        RuntimeException fallbackError = null;
+        try {
+            if(this.taskHandler instanceof HystrixTaskHandler) {
+                HystrixTaskHandler hystrixTaskHandler = (HystrixTaskHandler) this.taskHandler;
+                result = hystrixTaskHandler.getFallBack(taskContext, command, params, data);
+                if (result != null) {
+                    result = result.withResultCodec(this.taskHandler.getResultCodec(this.command));
+                }
+            }
+            return result;
+        } catch (RuntimeException e) {
+            fallbackError = e;
+            throw e;
+        } finally {
+            ResultHook resultHook = this.resultHook;
+            if (resultHook != null) {
+                resultHook.onFallbackCompleted(this, result, fallbackError);
+            }
+        }
+    }
+
+    /**
+     * Hook that is notified of the outcome of the run() and getFallback() methods of a command, on the thread that executed the method
+     */
+    interface ResultHook {
+        /**
+         * Called when run() completes
+         * @param executor the TaskHandlerExecutor of the command
+         * @param result the result returned by run(), null if it failed
+         * @param error the error thrown by run(), null if it returned a result
+         */
+        void onRunCompleted(TaskHandlerExecutor executor, TaskResult result, Exception error);
+        /**
+         * Called when getFallback() completes
+         * @param executor the TaskHandlerExecutor of the command
+         * @param result the fallback result, null if there is none
+         * @param error the error thrown by getFallback(), null if it did not throw one
+         */
+        void onFallbackCompleted(TaskHandlerExecutor executor, TaskResult result, Exception error);
+    }
+
+    /**
+     * Completion hook that signals completion of an execution of a hedged command
+     */
+    private static class CompletionSignal implements Runnable {
+        private final TaskHandlerExecutor executor;
+        private final BlockingQueue<TaskHandlerExecutor> completions;
+        CompletionSignal(TaskHandlerExecutor executor, BlockingQueue<TaskHandlerExecutor> completions) {
+            this.executor = executor;
+            this.completions = completions;
+        }
+        public void run() {
+            this.completions.offer(this.executor);
         }
-        return null;
     }
 
     /**Getter/Setter methods */
@@ -158,6 +582,32 @@ public class TaskHandlerExecutor extends HystrixCommand<TaskResult> {
     public void setData(byte[] data) {
         this.data = data;
     }
+    public InputStream getDataStream() {
+        return dataStream;
+    }
+    public void setDataStream(InputStream dataStream) {
+        this.dataStream = dataStream;
+    }
+    public long getDeadline() {
+        return this.deadline;
+    }
+    /**
+     * Sets the deadline of this command. See {@link CommandDeadline}
+     * @param deadline the time, as returned by {@link System#currentTimeMillis()}, by which the command's result is expected. {@link CommandDeadline#NONE}
+     * 	if there is no deadline
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+    public TaskPriority getPriority() {
+        return this.priority;
+    }
+    public void setPriority(TaskPriority priority) {
+        this.priority = priority;
+    }
+    void setResultHook(ResultHook resultHook) {
+        this.resultHook = resultHook;
+    }
 
     /**
      * First It checks the call invocation type has been overridden for the command,
@@ -166,6 +616,9 @@ public class TaskHandlerExecutor extends HystrixCommand<TaskResult> {
      * @return  callInvocation Type
      */
     public int getCallInvocationType() {
+        if(this.descriptor != null) {
+            return this.descriptor.getCallInvocationType();
+        }
         if(this.taskHandler.getCallInvocationTypePerCommand() != null) {
             Integer callInvocationType = this.taskHandler.getCallInvocationTypePerCommand().get(this.command);
             if(callInvocationType != null) {
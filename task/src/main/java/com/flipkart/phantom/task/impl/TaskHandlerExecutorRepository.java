@@ -16,20 +16,33 @@
 
 package com.flipkart.phantom.task.impl;
 
+import com.flipkart.phantom.task.impl.registry.CommandDispatchDescriptor;
 import com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry;
 import com.flipkart.phantom.task.spi.TaskContext;
 import com.flipkart.phantom.task.utils.RequestLogger;
-import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
+import com.netflix.hystrix.exception.HystrixBadRequestException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <code>TaskHandlerExecutorRepository</code> is a repository that searches for a {@link TaskHandler}
  * in the {@link TaskHandlerRegistry} based on a command name and then wraps the {@link TaskHandler} into 
  * a {@link TaskHandlerExecutor} and returns it.
+ * Executors are created from the {@link CommandDispatchDescriptor} precomputed by the registry for the command and thread pool.
  *  
  * @author devashishshankar
  * @version 1.0, 20th March, 2013
@@ -45,15 +58,18 @@ public class TaskHandlerExecutorRepository {
 	/** Regex for finding all whitespace characters */
 	public static final String WHITESPACE_REGEX = "\\s+";
 
-	/** The default thread pool core size*/
-	private static final int DEFAULT_THREAD_POOL_SIZE = 10;
-
 	/** The registry holding the names of the TaskHandler */
 	private TaskHandlerRegistry taskHandlerRegistry;
 
 	/** The taskContext being passed to the Handlers, providing a way for communication to the Container */
 	private TaskContext taskContext;
 
+	/** The scheduler for enforcing the deadlines of async commands. Created on first use if not set*/
+	private ScheduledExecutorService timeoutScheduler;
+
+	/** The executor for logging async commands that complete after their listener has been notified, off the timeout scheduler. Created on first use if not set*/
+	private ExecutorService requestLogExecutor;
+
 	/**
 	 * Gets the TaskHandlerExecutor for a commandName
 	 * @param commandName the command name/String for which the Executor is needed
@@ -62,45 +78,16 @@ public class TaskHandlerExecutorRepository {
 	 * @throws UnsupportedOperationException if doesn't find a TaskHandler in the registry corresponding to the command name
 	 */
 	public TaskHandlerExecutor get(String commandName,String threadPoolName) {
-		//Regex matching of threadPoolName and commandName
-		//(Hystrix dashboard requires names to be alphanumeric)
-		String refinedCommandName = commandName.replaceAll(ONLY_ALPHANUMERIC_REGEX, "").replaceAll(WHITESPACE_REGEX, "");
-		String refinedThreadPoolName = threadPoolName.replaceAll(ONLY_ALPHANUMERIC_REGEX, "").replaceAll(WHITESPACE_REGEX, "");
-
-		if(!commandName.equals(refinedCommandName)) {
-			LOGGER.debug("Command names are not allowed to have Special characters/ whitespaces. Replacing: "+commandName+" with "+refinedCommandName);
-		}
-		if(!threadPoolName.equals(refinedThreadPoolName)) {
-			LOGGER.debug("Thread pool names are not allowed to have Special characters/ whitespaces. Replacing: "+threadPoolName+" with "+refinedThreadPoolName);
-		}
-		if(threadPoolName==null || threadPoolName == "") {
-			threadPoolName=commandName;
-			LOGGER.debug("null/empty threadPoolName passed. defaulting to commandName: "+commandName);
-		}
-		TaskHandler taskHandler = this.taskHandlerRegistry.getTaskHandlerByCommand(commandName);
-		if(taskHandler!=null) {
-            if (!taskHandler.isActive()) {
-				LOGGER.error("TaskHandler: "+taskHandler.getName()+" is not yet active. Command: "+commandName+" will not be processed");
-				return null;
-			}
-			if(taskHandler instanceof HystrixTaskHandler) {
-				HystrixTaskHandler hystrixTaskHandler = (HystrixTaskHandler) taskHandler;
-				LOGGER.debug("Isolation strategy: "+hystrixTaskHandler.getIsolationStrategy()+" for "+hystrixTaskHandler);
-				if(hystrixTaskHandler.getIsolationStrategy()==ExecutionIsolationStrategy.SEMAPHORE) {
-					return new TaskHandlerExecutor(taskHandler,this.getTaskContext(),refinedCommandName);
-				}
-				if(this.taskHandlerRegistry.getPoolSize(threadPoolName)==null) {
-					LOGGER.debug("Did not find a predefined pool size for "+threadPoolName+". Falling back to default value of "+DEFAULT_THREAD_POOL_SIZE);
-					return new TaskHandlerExecutor(taskHandler,this.getTaskContext(),refinedCommandName, hystrixTaskHandler.getExecutorTimeout(commandName),refinedThreadPoolName,DEFAULT_THREAD_POOL_SIZE);
-				}
-				return new TaskHandlerExecutor(taskHandler,this.getTaskContext(),refinedCommandName, hystrixTaskHandler.getExecutorTimeout(commandName),refinedThreadPoolName,this.taskHandlerRegistry.getPoolSize(threadPoolName));
-			} else { //Run everything with defaults
-				return new TaskHandlerExecutor(taskHandler,this.getTaskContext(),refinedCommandName, HystrixTaskHandler.DEFAULT_EXECUTOR_TIMEOUT,refinedThreadPoolName,DEFAULT_THREAD_POOL_SIZE);
-			}
-		} else {
+		CommandDispatchDescriptor descriptor = this.taskHandlerRegistry.getDispatchDescriptor(commandName, threadPoolName);
+		if(descriptor==null) {
 			LOGGER.error("No TaskHandler found for command: '"+commandName+"'. Disconnecting");
 			throw new UnsupportedOperationException("Invoked unsupported command : " + commandName);
-		}	
+		}
+		if (!descriptor.getTaskHandler().isActive()) {
+			LOGGER.error("TaskHandler: "+descriptor.getTaskHandler().getName()+" is not yet active. Command: "+commandName+" will not be processed");
+			return null;
+		}
+		return new TaskHandlerExecutor(descriptor,this.getTaskContext());
 	}
 
 	/**
@@ -134,7 +121,83 @@ public class TaskHandlerExecutorRepository {
 	}
 
 	/**
-	 * Executes a command
+	 * Returns true if the specified command is executed using a {@link LightweightCommandExecutor} by {@link #executeCommand(String, String, byte[], Map)}
+	 * @param commandName the command name
+	 * @return true if the command is executed without creating a TaskHandlerExecutor, false otherwise
+	 */
+	public boolean isLightweightCommand(String commandName) {
+		CommandDispatchDescriptor descriptor = this.taskHandlerRegistry.getDispatchDescriptor(commandName, null);
+		return descriptor != null && descriptor.getLightweightExecutor() != null;
+	}
+
+	/**
+	 * Returns true if the specified command is executed by a {@link StreamingTaskHandler} i.e. accepts command data as a stream
+	 * @param commandName the command name
+	 * @return true if command data may be streamed, false otherwise
+	 */
+	public boolean isStreamingCommand(String commandName) {
+		CommandDispatchDescriptor descriptor = this.taskHandlerRegistry.getDispatchDescriptor(commandName, null);
+		return descriptor != null && descriptor.getTaskHandler() instanceof StreamingTaskHandler;
+	}
+
+	/**
+	 * Executes a command asynchronously and notifies the specified listener when the command completes. No thread waits on the command's result while it 
+	 * executes : the listener is notified on the thread that completes the command i.e. when the command's run() returns a result or, if the command fails,
+	 * is rejected, when its fallback completes. Hystrix enforces the executor timeout only on a thread waiting on the result, so the executor timeout, capped
+	 * by the command's deadline, is enforced using the {@link #getTimeoutScheduler()} instead : the command is cancelled and a
+	 * {@link TaskHandlerExecutor#DEADLINE_EXCEEDED} error is returned to the listener, without calling the fallback outside of Hystrix.
+	 * @param commandName name of the command
+	 * @param threadPoolName name of the threadpool in which the command has to be executed
+	 * @param data data
+	 * @param params hash map of parameters
+	 * @param listener the TaskCompletionListener to notify
+	 * @throws UnsupportedOperationException if no handler found for command
+	 */
+	public void executeAsyncCommand(String commandName, String threadPoolName, byte[] data, Map<String,String> params, TaskCompletionListener listener) 
+			throws UnsupportedOperationException {
+		TaskHandlerExecutor command = get(commandName, threadPoolName);
+		if(command==null) {
+			throw new UnsupportedOperationException("Invoked unsupported command : " + commandName);
+		}
+		command.setData(data);
+		command.setParams(params);
+		this.executeAsyncCommand(command, listener);
+	}
+
+	/**
+	 * Executes the specified command asynchronously and notifies the specified listener when the command completes. 
+	 * @param command the initialized TaskHandlerExecutor of the command
+	 * @param listener the TaskCompletionListener to notify
+	 * @see #executeAsyncCommand(String, String, byte[], Map, TaskCompletionListener)
+	 */
+	public void executeAsyncCommand(TaskHandlerExecutor command, TaskCompletionListener listener) {
+		final CompletionNotifier notifier = new CompletionNotifier(command, listener);
+		command.setResultHook(notifier);
+		try {
+			notifier.future = command.queue();
+		} catch (Exception e) {
+			LOGGER.error("Error in queueing command "+command.getCommandKey().name()+": " + e.getMessage(), e);
+			notifier.notifyError(e);
+			return;
+		}
+		if (notifier.future.isDone()) { // executed on the calling thread i.e. semaphore isolation, or rejected/short-circuited/dropped
+			notifier.notifyDone();
+			return;
+		}
+		long timeout = Math.min(command.getProperties().executionIsolationThreadTimeoutInMilliseconds().get(), 
+				Math.max(CommandDeadline.remainingMillis(command.getDeadline()), 0));
+		notifier.timeout = this.getTimeoutScheduler().schedule(new Runnable() {
+			public void run() {
+				notifier.notifyTimeout();
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+		if (notifier.notified.get()) { // completed before the timeout was available to the notifier
+			notifier.timeout.cancel(false);
+		}
+	}
+
+	/**
+	 * Executes a command. Commands of handlers that opted for lightweight execution are executed using the command's {@link LightweightCommandExecutor}
 	 * @param commandName name of the command
 	 * @param data data
 	 * @param params hash map of parameters
@@ -143,12 +206,39 @@ public class TaskHandlerExecutorRepository {
 	 * @throws UnsupportedOperationException if no handler found for command
 	 */
 	public TaskResult executeCommand(String commandName, String threadPoolName, byte[] data, Map<String,String> params) throws UnsupportedOperationException {
+		return this.executeCommand(commandName, threadPoolName, data, params, CommandDeadline.NONE);
+	}
+
+	/**
+	 * Executes a command that must complete by the specified deadline. The command inherits the deadline of the command executing on the calling thread,
+	 * if that is earlier. See {@link CommandDeadline}
+	 * @param commandName name of the command
+	 * @param threadPoolName name of the threadpool in which the command has to be executed
+	 * @param data data
+	 * @param params hash map of parameters
+	 * @param deadline the time, as returned by {@link System#currentTimeMillis()}, by which the result is expected. {@link CommandDeadline#NONE} if 
+	 * 	there is no deadline
+	 * @return thrift result, a {@link TaskHandlerExecutor#DEADLINE_EXCEEDED} error if the deadline is reached
+	 * @throws UnsupportedOperationException if no handler found for command
+	 */
+	public TaskResult executeCommand(String commandName, String threadPoolName, byte[] data, Map<String,String> params, long deadline) 
+			throws UnsupportedOperationException {
+		CommandDispatchDescriptor descriptor = this.taskHandlerRegistry.getDispatchDescriptor(commandName, threadPoolName);
+		if (descriptor != null && descriptor.getLightweightExecutor() != null && descriptor.getTaskHandler().isActive()) {
+			long previousDeadline = CommandDeadline.set(CommandDeadline.earliest(CommandDeadline.current(), deadline));
+			try {
+				return descriptor.getLightweightExecutor().execute(this.getTaskContext(), params, data);
+			} finally {
+				CommandDeadline.restore(previousDeadline);
+			}
+		}
 		TaskHandlerExecutor command = get(commandName, threadPoolName);
 		if(command==null) {
 			throw new UnsupportedOperationException("Invoked unsupported command : " + commandName);
 		} else {
 			command.setData(data);
 			command.setParams(params);
+			command.setDeadline(CommandDeadline.earliest(command.getDeadline(), deadline));
             try {
                 return command.execute();
             } catch (Exception e) {
@@ -184,6 +274,178 @@ public class TaskHandlerExecutorRepository {
 		return this.executeAsyncCommand(commandName,commandName, data, params);
 	}
 
+	/**
+	 * Executes the specified commands in parallel and returns their results in the same order. Each command is queued for execution on its own
+	 * thread pool (commands using semaphore isolation are executed on the calling thread when queued) and results are gathered until the overall deadline.
+	 * Commands that have the {@link TaskHandler#ASYNC_CALL} invocation type are not waited upon. The overall deadline caps the deadline of each command
+	 * (see {@link TaskHandlerExecutor#setDeadline(long)}), so that commands still queued when it is reached are dropped.
+	 * Note that commands are executed using {@link TaskHandlerExecutor#queue()} and therefore bypass the result cache, request collapsing and request
+	 * hedging that {@link TaskHandlerExecutor#execute()} applies to individually executed commands.
+	 * @param executors the initialized TaskHandlerExecutor instances to execute
+	 * @param timeoutMillis the overall deadline, in milliseconds, for all the commands to complete. Results are waited upon indefinitely if this is not positive
+	 * @return results of the commands. The result is an error for commands that failed and a {@link TaskHandlerExecutor#DEADLINE_EXCEEDED} error for 
+	 * 	commands that did not complete within the deadline
+	 */
+	public List<TaskResult> executeCommands(List<TaskHandlerExecutor> executors, long timeoutMillis) {
+		List<Future<TaskResult>> futures = new ArrayList<Future<TaskResult>>(executors.size());
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		for (TaskHandlerExecutor executor : executors) {
+			if (timeoutMillis > 0) { // commands still queued at the overall deadline are dropped
+				executor.setDeadline(CommandDeadline.earliest(executor.getDeadline(), deadline));
+			}
+			try {
+				futures.add(executor.queue());
+			} catch (Exception e) {
+				LOGGER.error("Error in queueing command "+executor.getCommandKey().name()+": " + e.getMessage(), e);
+				futures.add(null);
+			}
+		}
+		List<TaskResult> results = new ArrayList<TaskResult>(executors.size());
+		for (int i = 0; i < executors.size(); i++) {
+			TaskHandlerExecutor executor = executors.get(i);
+			Future<TaskResult> future = futures.get(i);
+			TaskResult result;
+			if (future == null) {
+				result = new TaskResult(false, null);
+			} else if (executor.getCallInvocationType() == TaskHandler.ASYNC_CALL) {
+				result = new TaskResult(true, TaskHandlerExecutor.ASYNC_QUEUED);
+			} else {
+				try {
+					if (executor.getDeadline() != CommandDeadline.NONE) {
+						result = future.get(Math.max(CommandDeadline.remainingMillis(executor.getDeadline()), 0), TimeUnit.MILLISECONDS);
+					} else {
+						result = future.get();
+					}
+					if (result == null) {
+						result = new TaskResult(true, TaskHandlerExecutor.NO_RESULT);
+					}
+				} catch (TimeoutException e) {
+					LOGGER.warn("Command "+executor.getCommandKey().name()+" did not complete within the deadline");
+					result = new TaskResult(false, TaskHandlerExecutor.DEADLINE_EXCEEDED);
+				} catch (Exception e) {
+					LOGGER.error("Error in processing command "+executor.getCommandKey().name()+": " + e.getMessage(), e);
+					result = new TaskResult(false, null);
+				} finally {
+					RequestLogger.log(executor);
+				}
+			}
+			results.add(result);
+		}
+		return results;
+	}
+
+	/**
+	 * Runs as the result hook of a TaskHandlerExecutor and notifies a TaskCompletionListener exactly once, either when the command's run() returns a
+	 * result, when its fallback completes or when it times out. The command is logged by the {@link RequestLogger} exactly once, when its execution is
+	 * complete, on the {@link TaskHandlerExecutorRepository#getRequestLogExecutor()} if it is not yet complete when the listener has been notified.
+	 */
+	private class CompletionNotifier implements TaskHandlerExecutor.ResultHook {
+		private final TaskHandlerExecutor executor;
+		private final TaskCompletionListener listener;
+		private final AtomicBoolean notified = new AtomicBoolean(false);
+		private final AtomicBoolean logged = new AtomicBoolean(false);
+		private volatile boolean timedOut;
+		private volatile Future<TaskResult> future;
+		private volatile ScheduledFuture<?> timeout;
+		CompletionNotifier(TaskHandlerExecutor executor, TaskCompletionListener listener) {
+			this.executor = executor;
+			this.listener = listener;
+		}
+		/**
+		 * Interface method implementation. Notifies the result, if any. The fallback result is notified when run() fails, except for bad requests for 
+		 * which Hystrix does not call the fallback
+		 */
+		public void onRunCompleted(TaskHandlerExecutor executor, TaskResult result, Exception error) {
+			if (this.timedOut) { // the cancelled command has completed. the listener has been notified already
+				this.logRequest();
+			} else if (result != null) {
+				this.notifyCompletion(result);
+			} else if (error instanceof HystrixBadRequestException) {
+				this.notifyError(error);
+			}
+		}
+		/**
+		 * Interface method implementation. Notifies the fallback result, or an error if there is no fallback result
+		 */
+		public void onFallbackCompleted(TaskHandlerExecutor executor, TaskResult result, Exception error) {
+			if (this.timedOut) {
+				this.logRequest();
+			} else if (error != null) {
+				this.notifyError(error);
+			} else if (result == null) {
+				this.notifyError(new RuntimeException("Command "+this.executor.getCommandKey().name()+" failed and no fallback is available"));
+			} else {
+				this.notifyCompletion(result);
+			}
+		}
+		void notifyDone() {
+			try {
+				this.notifyCompletion(this.future.get()); // does not block as the future is done
+			} catch (ExecutionException e) {
+				this.notifyError(e.getCause());
+			} catch (Exception e) {
+				this.notifyError(e);
+			}
+		}
+		void notifyCompletion(TaskResult result) {
+			if (!this.notified.compareAndSet(false, true)) {
+				return;
+			}
+			this.cancelTimeout();
+			try {
+				this.listener.onCompletion(this.executor, result == null ? new TaskResult(true, TaskHandlerExecutor.NO_RESULT) : result);
+			} finally {
+				this.logRequest();
+			}
+		}
+		void notifyTimeout() {
+			if (!this.notified.compareAndSet(false, true)) {
+				return;
+			}
+			this.timedOut = true;
+			LOGGER.warn("Command "+this.executor.getCommandKey().name()+" timed out. Cancelling it");
+			this.future.cancel(true);
+			try {
+				this.listener.onCompletion(this.executor, new TaskResult(false, TaskHandlerExecutor.DEADLINE_EXCEEDED));
+			} finally {
+				this.logRequest(); // logged when the cancelled command completes, if it has not completed yet
+			}
+		}
+		void notifyError(Throwable error) {
+			if (this.notified.compareAndSet(false, true)) {
+				this.cancelTimeout();
+				try {
+					this.listener.onError(this.executor, error);
+				} finally {
+					this.logRequest();
+				}
+			}
+		}
+		private void logRequest() {
+			if (this.executor.isExecutionComplete()) {
+				this.logCompletedRequest();
+				return;
+			}
+			// Hystrix marks the execution complete only after the result hook returns
+			getRequestLogExecutor().execute(new Runnable() {
+				public void run() {
+					logCompletedRequest();
+				}
+			});
+		}
+		private void logCompletedRequest() {
+			if (this.executor.isExecutionComplete() && this.logged.compareAndSet(false, true)) {
+				RequestLogger.log(this.executor);
+			}
+		}
+		private void cancelTimeout() {
+			ScheduledFuture<?> timeout = this.timeout;
+			if (timeout != null) {
+				timeout.cancel(false);
+			}
+		}
+	}
+
 	/** Getter/Setter methods */
 	public TaskHandlerRegistry getTaskHandlerRegistry() {
 		return this.taskHandlerRegistry;
@@ -197,5 +459,35 @@ public class TaskHandlerExecutorRepository {
 	public void setTaskContext(TaskContext taskContext) {
 		this.taskContext = taskContext;
 	}
+	public synchronized ScheduledExecutorService getTimeoutScheduler() {
+		if (this.timeoutScheduler == null) {
+			this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "TaskTimeoutScheduler");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return this.timeoutScheduler;
+	}
+	public synchronized void setTimeoutScheduler(ScheduledExecutorService timeoutScheduler) {
+		this.timeoutScheduler = timeoutScheduler;
+	}
+	public synchronized ExecutorService getRequestLogExecutor() {
+		if (this.requestLogExecutor == null) {
+			this.requestLogExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "TaskRequestLogger");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return this.requestLogExecutor;
+	}
+	public synchronized void setRequestLogExecutor(ExecutorService requestLogExecutor) {
+		this.requestLogExecutor = requestLogExecutor;
+	}
 	/** End Getter/Setter methods */
 }
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl;
+
+import com.flipkart.phantom.task.impl.registry.CommandDispatchDescriptor;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.netflix.hystrix.HystrixCollapser;
+import com.netflix.hystrix.HystrixCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>TaskRequestCollapser</code> is an extension of {@link HystrixCollapser} that collapses concurrent requests of a {@link HystrixTaskHandler} command
+ * into a batch. Requests are buffered for the collapsing window configured in {@link HystrixTaskHandler#getCollapserWindows()} or until
+ * {@link HystrixTaskHandler#getCollapserMaxBatchSize()} requests are buffered, and are then executed as one call to
+ * {@link HystrixTaskHandler#executeBatch(TaskContext, String, List, List)} on the command's thread pool. The batch results are handed back to the
+ * individual requests. Failed requests are served using {@link HystrixTaskHandler#getFallBack(TaskContext, String, Map, byte[])}, same as non collapsed
+ * requests. A batch is executed with the earliest {@link CommandDeadline} of its requests.
+ * <p>
+ * Collapsers are scoped globally and Hystrix retains the first collapser created for a collapser key, for the life of the JVM. Each collapser therefore
+ * publishes the dispatch descriptor and TaskContext it was created with, and batches are created using the most recently published ones. Batches
+ * thereby use the current descriptor, after a TaskHandler is reinitialized or its thread pool resized, and not the one of the retained collapser.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class TaskRequestCollapser extends HystrixCollapser<TaskRequestCollapser.BatchResult, TaskResult, TaskRequestCollapser.CollapsedTaskRequest> {
+
+    /** Logger for this class*/
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskRequestCollapser.class);
+
+    /** Marker result for requests of a failed batch that have no fallback*/
+    private static final TaskResult NO_FALLBACK = new TaskResult(false, "The batch failed and no fallback is available");
+
+    /** The most recently published dispatch target of each collapser key, used by the collapser retained by Hystrix to create batches*/
+    private static final Map<String,DispatchTarget> CURRENT_TARGETS = new ConcurrentHashMap<String, DispatchTarget>();
+
+    /** The name of the collapser key*/
+    private String collapserKey;
+
+    /** The request collapsed by this instance*/
+    private CollapsedTaskRequest request;
+
+    /**
+     * Constructor for this class
+     * @param descriptor the CommandDispatchDescriptor of the command, must be collapsed i.e. {@link CommandDispatchDescriptor#isCollapsed()}
+     * @param taskContext the TaskContext of the command
+     * @param params the command parameters
+     * @param data the command data
+     * @param deadline the deadline of the command, may be {@link CommandDeadline#NONE}
+     */
+    public TaskRequestCollapser(CommandDispatchDescriptor descriptor, TaskContext taskContext, Map<String,String> params, byte[] data, long deadline) {
+        super(descriptor.getCollapserSetter());
+        this.collapserKey = this.getCollapserKey().name();
+        DispatchTarget target = CURRENT_TARGETS.get(this.collapserKey);
+        if (target == null || target.descriptor != descriptor || target.taskContext != taskContext) {
+            CURRENT_TARGETS.put(this.collapserKey, new DispatchTarget(descriptor, taskContext));
+        }
+        this.request = new CollapsedTaskRequest(params, data, deadline);
+    }
+
+    /**
+     * Interface method implementation. @see HystrixCollapser#getRequestArgument()
+     */
+    public CollapsedTaskRequest getRequestArgument() {
+        return this.request;
+    }
+
+    /**
+     * Interface method implementation. Creates a {@link HystrixCommand} that executes the collapsed requests as a batch.
+     * @see HystrixCollapser#createCommand(java.util.Collection)
+     */
+    protected HystrixCommand<BatchResult> createCommand(Collection<CollapsedRequest<TaskResult, CollapsedTaskRequest>> collapsedRequests) {
+        List<CollapsedTaskRequest> requests = new ArrayList<CollapsedTaskRequest>(collapsedRequests.size());
+        for (CollapsedRequest<TaskResult, CollapsedTaskRequest> collapsedRequest : collapsedRequests) {
+            requests.add(collapsedRequest.getArgument());
+        }
+        return new BatchCommand(CURRENT_TARGETS.get(this.collapserKey), requests);
+    }
+
+    /**
+     * Interface method implementation. Hands back the batch results, in order, to the collapsed requests.
+     * @see HystrixCollapser#mapResponseToRequests(Object, java.util.Collection)
+     */
+    protected void mapResponseToRequests(BatchResult batch, Collection<CollapsedRequest<TaskResult, CollapsedTaskRequest>> collapsedRequests) {
+        HystrixTaskHandler taskHandler = (HystrixTaskHandler)batch.target.descriptor.getTaskHandler();
+        TaskContext taskContext = batch.target.taskContext;
+        String command = batch.target.descriptor.getCommandName();
+        List<TaskResult> batchResponse = batch.results;
+        int index = 0;
+        for (CollapsedRequest<TaskResult, CollapsedTaskRequest> collapsedRequest : collapsedRequests) {
+            CollapsedTaskRequest request = collapsedRequest.getArgument();
+            TaskResult result = (batchResponse != null && index < batchResponse.size()) ? batchResponse.get(index) : null;
+            index++;
+            if (result == NO_FALLBACK) {
+                result = null;
+            } else if (batchResponse == null || index > batchResponse.size()) {
+                LOGGER.error("Batch of command: " + command + " returned no result for request at : " + (index - 1) + ". Params: " + request.getParams());
+                result = taskHandler.getFallBack(taskContext, command, request.getParams(), request.getData());
+            } else if (result == null) {
+                result = new TaskResult(true, TaskHandlerExecutor.NO_RESULT);
+            } else if (!result.isSuccess()) {
+                LOGGER.error("Command: " + command + " failed in batch. Params: " + request.getParams() + ". Message: " + result.getMessage());
+                result = taskHandler.getFallBack(taskContext, command, request.getParams(), request.getData());
+            }
+            if (result == null) {
+                collapsedRequest.setException(new RuntimeException("Command returned FALSE and no fallback is available: " + command));
+                continue;
+            }
+            collapsedRequest.setResponse(result.withResultCodec(taskHandler.getResultCodec(command)));
+        }
+    }
+
+    /**
+     * The argument of a collapsed request - the command parameters, data and deadline
+     */
+    public static class CollapsedTaskRequest {
+        private Map<String,String> params;
+        private byte[] data;
+        private long deadline;
+        public CollapsedTaskRequest(Map<String,String> params, byte[] data, long deadline) {
+            this.params = params;
+            this.data = data;
+            this.deadline = deadline;
+        }
+        public Map<String, String> getParams() {
+            return this.params;
+        }
+        public byte[] getData() {
+            return this.data;
+        }
+        public long getDeadline() {
+            return this.deadline;
+        }
+    }
+
+    /**
+     * The dispatch descriptor and TaskContext that batches of a collapser key are created with
+     */
+    private static class DispatchTarget {
+        private final CommandDispatchDescriptor descriptor;
+        private final TaskContext taskContext;
+        DispatchTarget(CommandDispatchDescriptor descriptor, TaskContext taskContext) {
+            this.descriptor = descriptor;
+            this.taskContext = taskContext;
+        }
+    }
+
+    /**
+     * The result of a batch - the results of the collapsed requests, in order, and the dispatch target the batch was executed with
+     */
+    public static class BatchResult {
+        private final DispatchTarget target;
+        private final List<TaskResult> results;
+        private BatchResult(DispatchTarget target, List<TaskResult> results) {
+            this.target = target;
+            this.results = results;
+        }
+        public List<TaskResult> getResults() {
+            return this.results;
+        }
+    }
+
+    /**
+     * The {@link HystrixCommand} that executes a batch of collapsed requests using {@link HystrixTaskHandler#executeBatch(TaskContext, String, List, List)}.
+     * Uses the command key and thread pool of the collapsed command. The batch is executed with the earliest deadline of the collapsed requests. 
+     * Falls back to {@link HystrixTaskHandler#getFallBack(TaskContext, String, Map, byte[])} for each request if the batch fails.
+     */
+    private static class BatchCommand extends HystrixCommand<BatchResult> {
+        private DispatchTarget target;
+        private List<CollapsedTaskRequest> requests;
+        BatchCommand(DispatchTarget target, List<CollapsedTaskRequest> requests) {
+            super(target.descriptor.getSetter());
+            this.target = target;
+            this.requests = requests;
+        }
+        protected BatchResult run() throws Exception {
+            List<Map<String,String>> params = new ArrayList<Map<String,String>>(this.requests.size());
+            List<byte[]> data = new ArrayList<byte[]>(this.requests.size());
+            long deadline = CommandDeadline.NONE;
+            for (CollapsedTaskRequest request : this.requests) {
+                params.add(request.getParams());
+                data.add(request.getData());
+                deadline = CommandDeadline.earliest(deadline, request.getDeadline());
+            }
+            String command = this.target.descriptor.getCommandName();
+            long previousDeadline = CommandDeadline.set(deadline);
+            try {
+                return new BatchResult(this.target, ((HystrixTaskHandler)this.target.descriptor.getTaskHandler()).executeBatch(this.target.taskContext, 
+                        command, params, data));
+            } catch (Exception e) {
+                LOGGER.error("Batch of command: " + command + " failed. Batch size : " + this.requests.size(), e);
+                throw e;
+            } finally {
+                CommandDeadline.restore(previousDeadline);
+            }
+        }
+        protected BatchResult getFallback() {
+            HystrixTaskHandler taskHandler = (HystrixTaskHandler)this.target.descriptor.getTaskHandler();
+            List<TaskResult> results = new ArrayList<TaskResult>(this.requests.size());
+            for (CollapsedTaskRequest request : this.requests) {
+                TaskResult result = taskHandler.getFallBack(this.target.taskContext, this.target.descriptor.getCommandName(), request.getParams(), 
+                        request.getData());
+                results.add(result == null ? NO_FALLBACK : result);
+            }
+            return new BatchResult(this.target, results);
+        }
+    }
+
+}
@@ -16,11 +16,15 @@
 
 package com.flipkart.phantom.task.impl;
 
+import com.flipkart.phantom.task.spi.ResultChunkProducer;
+import com.flipkart.phantom.task.spi.ResultCodec;
+
 import java.util.Arrays;
 import java.util.List;
 
 /**
  * Result of a thrift handler invocation.
+ * The result data may be a {@link ResultChunkProducer}, in which case the result is chunked i.e. the data is produced and written out a chunk at a time.
  *
  * @author devashishshankar
  * @version 1.0, 19 March, 2013
@@ -36,6 +40,9 @@ public class TaskResult {
     private final List<Object> dataList;
     private final int length;
     private boolean profilingDone = false;
+
+    /** The ResultCodec for encoding non byte array data, set from the TaskHandler that produced this result*/
+    private ResultCodec resultCodec;
     
     /** Various constructors for this class*/    
 	public TaskResult(boolean success, String message) {
@@ -63,6 +70,17 @@ public class TaskResult {
         this.length=length;
     }
 
+    /** Copies the specified result, with the specified ResultCodec*/
+    private TaskResult(TaskResult result, ResultCodec resultCodec) {
+        this.success = result.success;
+        this.message = result.message;
+        this.data = result.data;
+        this.dataList = result.dataList;
+        this.length = result.length;
+        this.profilingDone = result.profilingDone;
+        this.resultCodec = resultCodec;
+    }
+
     public TaskResult(boolean success, String message, byte[] data, boolean profilingDone) {
         this.success = success;
         this.message = message;
@@ -99,8 +117,27 @@ public class TaskResult {
     public List<Object> getDataArray() {
         return dataList;
     }
+    public boolean isChunked() {
+        return data instanceof ResultChunkProducer;
+    }
+    public ResultChunkProducer getChunkProducer() {
+        return isChunked() ? (ResultChunkProducer) data : null;
+    }
     public boolean isProfilingDone() {
         return profilingDone;
     }
+    public ResultCodec getResultCodec() {
+        return resultCodec;
+    }
     /** End Getter/Setter methods*/
+
+    /**
+     * Returns this TaskResult if it has the specified ResultCodec, or a copy of it with the specified ResultCodec otherwise. This TaskResult is not 
+     * modified, as it may be shared or cached by the TaskHandler that returned it. The data is not copied
+     * @param resultCodec the ResultCodec of the TaskHandler that produced this result
+     * @return a TaskResult with the specified ResultCodec
+     */
+    TaskResult withResultCodec(ResultCodec resultCodec) {
+        return resultCodec == this.resultCodec ? this : new TaskResult(this, resultCodec);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.task.impl;
+
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.strategy.concurrency.HystrixConcurrencyStrategy;
+import com.netflix.hystrix.strategy.properties.HystrixProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>VirtualThreadConcurrencyStrategy</code> is a {@link HystrixConcurrencyStrategy} that executes the commands of selected Hystrix thread pools on 
+ * virtual threads, when running on a JVM that supports them (JDK 21+). Each command is executed on a new virtual thread and the thread pool core size is
+ * enforced as a limit on concurrent commands, commands in excess of the limit being rejected as by a full Hystrix thread pool. Timeouts interrupt the 
+ * virtual thread, as with platform threads, and the executor reports active, completed and largest counts so that Hystrix thread pool metrics remain 
+ * available on the dashboard. Thread pools that are not selected, and all thread pools on JVMs without virtual threads, are created as usual.
+ * Virtual threads are created reflectively as this code is compiled for older JVMs.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class VirtualThreadConcurrencyStrategy extends HystrixConcurrencyStrategy {
+
+	/** Logger for this class*/
+	private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadConcurrencyStrategy.class);
+
+	/** The Thread.startVirtualThread(Runnable) method, null if virtual threads are not supported*/
+	private static final Method START_VIRTUAL_THREAD = getStartVirtualThreadMethod();
+
+	/** The names of thread pools whose commands are executed on virtual threads*/
+	private final Set<String> virtualThreadPools = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Returns true if the specified thread pool is selected for execution on virtual threads
+	 * @param threadPoolName the Hystrix thread pool name
+	 * @return true if commands of the thread pool are executed on virtual threads
+	 */
+	public boolean isVirtualThreadPool(String threadPoolName) {
+		return START_VIRTUAL_THREAD != null && this.virtualThreadPools.contains(threadPoolName);
+	}
+
+	/**
+	 * Returns true if the JVM supports virtual threads
+	 * @return true if virtual threads are supported
+	 */
+	public static boolean isSupported() {
+		return START_VIRTUAL_THREAD != null;
+	}
+
+	/**
+	 * Selects the specified thread pool for execution on virtual threads. Must be called before the thread pool is first used.
+	 * @param threadPoolName the Hystrix thread pool name
+	 */
+	public void addVirtualThreadPool(String threadPoolName) {
+		this.virtualThreadPools.add(threadPoolName);
+	}
+
+	/**
+	 * Overriden super class method. Returns a {@link VirtualThreadPoolExecutor} for thread pools selected for execution on virtual threads
+	 * @see com.netflix.hystrix.strategy.concurrency.HystrixConcurrencyStrategy#getThreadPool(com.netflix.hystrix.HystrixThreadPoolKey, com.netflix.hystrix.strategy.properties.HystrixProperty, com.netflix.hystrix.strategy.properties.HystrixProperty, com.netflix.hystrix.strategy.properties.HystrixProperty, java.util.concurrent.TimeUnit, java.util.concurrent.BlockingQueue)
+	 */
+	public ThreadPoolExecutor getThreadPool(HystrixThreadPoolKey threadPoolKey, HystrixProperty<Integer> corePoolSize, HystrixProperty<Integer> maximumPoolSize,
+			HystrixProperty<Integer> keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue) {
+		if (!this.virtualThreadPools.contains(threadPoolKey.name())) {
+			return super.getThreadPool(threadPoolKey, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+		}
+		LOGGER.info("Executing commands of thread pool : " + threadPoolKey.name() + " on virtual threads. Concurrency limit : " + corePoolSize.get());
+		return new VirtualThreadPoolExecutor(threadPoolKey.name(), corePoolSize.get(), maximumPoolSize.get(), keepAliveTime.get(), unit, workQueue);
+	}
+
+	/**
+	 * Helper method to look up the Thread.startVirtualThread(Runnable) method
+	 */
+	private static Method getStartVirtualThreadMethod() {
+		try {
+			return Thread.class.getMethod("startVirtualThread", Runnable.class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * A ThreadPoolExecutor that executes each task on a new virtual thread, limiting the number of concurrent tasks to the core pool size. The pool
+	 * threads and work queue of the super class are never used.
+	 */
+	private static class VirtualThreadPoolExecutor extends ThreadPoolExecutor {
+		private final String threadPoolName;
+		private final LimitSemaphore permits;
+		private final AtomicInteger activeCount = new AtomicInteger();
+		private final AtomicInteger largestCount = new AtomicInteger();
+		private final AtomicLong taskCount = new AtomicLong();
+		private final AtomicLong completedTaskCount = new AtomicLong();
+		private int limit;
+		VirtualThreadPoolExecutor(String threadPoolName, int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit, 
+				BlockingQueue<Runnable> workQueue) {
+			super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+			this.threadPoolName = threadPoolName;
+			this.permits = new LimitSemaphore(corePoolSize);
+			this.limit = corePoolSize;
+		}
+		public void execute(final Runnable command) {
+			if (this.isShutdown() || !this.permits.tryAcquire()) {
+				throw new RejectedExecutionException("Concurrency limit : " + this.limit + " reached for thread pool : " + this.threadPoolName);
+			}
+			this.taskCount.incrementAndGet();
+			int active = this.activeCount.incrementAndGet();
+			int largest;
+			while (active > (largest = this.largestCount.get()) && !this.largestCount.compareAndSet(largest, active));
+			Runnable task = new Runnable() {
+				public void run() {
+					try {
+						command.run();
+					} finally {
+						activeCount.decrementAndGet();
+						completedTaskCount.incrementAndGet();
+						permits.release();
+					}
+				}
+			};
+			try {
+				START_VIRTUAL_THREAD.invoke(null, task);
+			} catch (Exception e) {
+				this.activeCount.decrementAndGet();
+				this.permits.release();
+				throw new RejectedExecutionException("Error starting virtual thread for thread pool : " + this.threadPoolName, e);
+			}
+		}
+		/** Adjusts the concurrency limit. Called by Hystrix when the core size property changes*/
+		public synchronized void setCorePoolSize(int corePoolSize) {
+			if (corePoolSize > this.getMaximumPoolSize()) {
+				super.setMaximumPoolSize(corePoolSize);
+			}
+			super.setCorePoolSize(corePoolSize);
+			if (corePoolSize > this.limit) {
+				this.permits.release(corePoolSize - this.limit);
+			} else if (corePoolSize < this.limit) {
+				this.permits.reducePermits(this.limit - corePoolSize);
+			}
+			this.limit = corePoolSize;
+		}
+		public int getActiveCount() {
+			return this.activeCount.get();
+		}
+		public int getPoolSize() {
+			return this.activeCount.get();
+		}
+		public int getLargestPoolSize() {
+			return this.largestCount.get();
+		}
+		public long getTaskCount() {
+			return this.taskCount.get();
+		}
+		public long getCompletedTaskCount() {
+			return this.completedTaskCount.get();
+		}
+	}
+
+	/**
+	 * Semaphore whose permits may be reduced when the concurrency limit is lowered
+	 */
+	private static class LimitSemaphore extends Semaphore {
+		private static final long serialVersionUID = 1L;
+		LimitSemaphore(int permits) {
+			super(permits);
+		}
+		protected void reducePermits(int reduction) {
+			super.reducePermits(reduction);
+		}
+	}
+
+}
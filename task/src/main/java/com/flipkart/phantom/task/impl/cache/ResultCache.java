@@ -0,0 +1,480 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.cache;
+
+import com.flipkart.phantom.task.impl.TaskResult;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>ResultCache</code> caches the results of an idempotent command, keyed by the command params and data. Results are cached for the configured time to
+ * live and the cache is bounded by the configured memory size, evicting results using the configured {@link ResultCacheConfig.EvictionPolicy} when full.
+ * LFU eviction is approximated by evicting the least used of {@value #LFU_SAMPLE_SIZE} results sampled at random from the full segment.
+ * <p>
+ * Results are held in lock-striped segments. Only one load per key is in flight at a time : concurrent requests for a result that is being loaded wait
+ * for the load to complete instead of executing the command again. Only successful results that have byte array (or no) data are cached, other results
+ * such as chunked results are returned to the caller without caching. Cached result data may optionally be stored in direct buffers, off the Java heap.
+ * Result data and key data are copied when cached, and every hit returns its own copy of the result data, so that callers may modify the byte arrays
+ * they pass in and get back without affecting cached results.
+ * <p>
+ * Hits, misses, evictions and expirations are counted for display in the admin console. This class is thread-safe.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class ResultCache {
+
+	/** The number of lock stripes, must be a power of two*/
+	private static final int SEGMENTS = 16;
+
+	/** The number of results sampled for LFU eviction*/
+	public static final int LFU_SAMPLE_SIZE = 8;
+
+	/** The approximate memory, in bytes, used by a cache entry in addition to its key and result data*/
+	private static final int ENTRY_OVERHEAD = 96;
+
+	/** The name of the cache i.e. the command name*/
+	private final String name;
+
+	/** The cache configuration*/
+	private final ResultCacheConfig config;
+
+	/** The lock striped segments holding the cached results*/
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	/** The loads in flight, by key*/
+	private final ConcurrentHashMap<CacheKey, FutureTask<TaskResult>> loads = new ConcurrentHashMap<CacheKey, FutureTask<TaskResult>>();
+
+	/** Cache metrics*/
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
+	/**
+	 * Constructor for this class
+	 * @param name the name of the cache i.e. the command name
+	 * @param config the cache configuration
+	 */
+	public ResultCache(String name, ResultCacheConfig config) {
+		this.name = name;
+		this.config = config;
+		long segmentMemorySize = Math.max(config.getMaxMemorySize() / SEGMENTS, 1);
+		for (int i = 0; i < SEGMENTS; i++) {
+			this.segments[i] = new Segment(segmentMemorySize, config.getEvictionPolicy() == ResultCacheConfig.EvictionPolicy.LRU);
+		}
+	}
+
+	/**
+	 * Returns the cached result for the specified params and data, loading it using the specified loader if it is not cached. Waits for the result if
+	 * it is already being loaded.
+	 * @param params the command params
+	 * @param data the command data
+	 * @param loader the loader that executes the command
+	 * @return the cached or loaded result
+	 * @throws Exception the exception thrown by the loader
+	 */
+	public TaskResult get(Map<String,String> params, byte[] data, ResultLoader loader) throws Exception {
+		CacheKey key = new CacheKey(params, data);
+		Segment segment = this.segments[key.hash & (SEGMENTS - 1)];
+		CacheEntry entry = segment.get(key);
+		if (entry != null) {
+			this.hits.incrementAndGet();
+			return entry.toResult();
+		}
+		this.misses.incrementAndGet();
+		LoaderCallable callable = new LoaderCallable(loader);
+		FutureTask<TaskResult> load = new FutureTask<TaskResult>(callable);
+		FutureTask<TaskResult> inFlight = this.loads.putIfAbsent(key, load);
+		if (inFlight != null) {
+			TaskResult result = this.await(inFlight);
+			if (isCacheable(result)) {
+				return result;
+			}
+			return loader.load(); // results that are not cached may not be shared either, for e.g. chunked results
+		}
+		try {
+			load.run();
+			TaskResult result = this.await(load);
+			if (callable.cacheable && isCacheable(result)) {
+				CacheKey storedKey = key.copy(); // the request data may be modified by the caller once the command is executed
+				segment.put(storedKey, new CacheEntry(storedKey, result, System.currentTimeMillis() + this.config.getTtlMillis(), this.config.isOffHeap()));
+			}
+			return result;
+		} finally {
+			this.loads.remove(key, load);
+		}
+	}
+
+	/**
+	 * Removes all cached results
+	 */
+	public void clear() {
+		for (Segment segment : this.segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of cached results
+	 * @return the number of cached results, including expired results that are yet to be removed
+	 */
+	public int getEntryCount() {
+		int count = 0;
+		for (Segment segment : this.segments) {
+			count += segment.getEntryCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the approximate memory used by cached results
+	 * @return the memory size in bytes
+	 */
+	public long getMemorySize() {
+		long size = 0;
+		for (Segment segment : this.segments) {
+			size += segment.getMemorySize();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the percentage of lookups that were served from the cache
+	 * @return the hit percentage, 0 if there were no lookups
+	 */
+	public int getHitPercentage() {
+		long hitCount = this.hits.get();
+		long total = hitCount + this.misses.get();
+		return total == 0 ? 0 : (int)(hitCount * 100 / total);
+	}
+
+	/**
+	 * Helper method to determine if the specified result may be cached
+	 */
+	private static boolean isCacheable(TaskResult result) {
+		return result != null && result.isSuccess() && !result.isDataArray() && (result.getData() == null || result.getData() instanceof byte[]);
+	}
+
+	/**
+	 * Helper method to wait for a load to complete and return its result, throwing the cause of the failure if the load failed
+	 */
+	private TaskResult await(FutureTask<TaskResult> load) throws Exception {
+		try {
+			return load.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception)e.getCause();
+			}
+			throw (Error)e.getCause();
+		}
+	}
+
+	/** Start Getter/Setter methods */
+	public String getName() {
+		return this.name;
+	}
+	public ResultCacheConfig getConfig() {
+		return this.config;
+	}
+	public long getHits() {
+		return this.hits.get();
+	}
+	public long getMisses() {
+		return this.misses.get();
+	}
+	public long getEvictions() {
+		return this.evictions.get();
+	}
+	public long getExpirations() {
+		return this.expirations.get();
+	}
+	/** End Getter/Setter methods */
+
+	/**
+	 * Loads results that are not cached. Implemented by callers of {@link ResultCache#get(Map, byte[], ResultLoader)}
+	 */
+	public static interface ResultLoader {
+
+		/**
+		 * Loads the result i.e. executes the command
+		 * @return the result of the command
+		 * @throws Exception in case of errors in executing the command
+		 */
+		public TaskResult load() throws Exception;
+
+		/**
+		 * Returns true if the result returned by {@link #load()} may be cached, false if it is a fallback result for e.g.
+		 * @return true if the loaded result may be cached
+		 */
+		public boolean isCacheable();
+	}
+
+	/**
+	 * Callable that executes a ResultLoader and records if its result may be cached
+	 */
+	private static class LoaderCallable implements Callable<TaskResult> {
+		private final ResultLoader loader;
+		private boolean cacheable;
+		LoaderCallable(ResultLoader loader) {
+			this.loader = loader;
+		}
+		public TaskResult call() throws Exception {
+			TaskResult result = this.loader.load();
+			this.cacheable = this.loader.isCacheable();
+			return result;
+		}
+	}
+
+	/**
+	 * The cache key, made up of the command params and data
+	 */
+	private static class CacheKey {
+		private final Map<String,String> params;
+		private final byte[] data;
+		private final int hash;
+		private final int weight;
+		CacheKey(Map<String,String> params, byte[] data) {
+			this.params = (params == null ? Collections.<String,String>emptyMap() : new HashMap<String, String>(params));
+			this.data = data;
+			int h = this.params.hashCode() * 31 + Arrays.hashCode(data);
+			this.hash = h ^ (h >>> 16);
+			int paramsWeight = 0;
+			for (Map.Entry<String,String> param : this.params.entrySet()) {
+				paramsWeight += (param.getKey().length() + (param.getValue() == null ? 0 : param.getValue().length())) * 2;
+			}
+			this.weight = paramsWeight + (data == null ? 0 : data.length);
+		}
+		private CacheKey(CacheKey key) {
+			this.params = key.params;
+			this.data = (key.data == null ? null : key.data.clone());
+			this.hash = key.hash;
+			this.weight = key.weight;
+		}
+		CacheKey copy() {
+			return new CacheKey(this);
+		}
+		public int hashCode() {
+			return this.hash;
+		}
+		public boolean equals(Object object) {
+			if (!(object instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey)object;
+			return this.hash == other.hash && Arrays.equals(this.data, other.data) && this.params.equals(other.params);
+		}
+	}
+
+	/**
+	 * A cached result. The result data is copied, and held in a direct buffer if stored off heap
+	 */
+	private static class CacheEntry {
+		private final CacheKey key;
+		private final String message;
+		private final byte[] data;
+		private final ByteBuffer offHeapData;
+		private final long expiresAt;
+		private final int weight;
+		private int useCount;
+		private int slot;
+		CacheEntry(CacheKey key, TaskResult result, long expiresAt, boolean offHeap) {
+			byte[] resultData = (byte[])result.getData();
+			this.key = key;
+			this.message = result.getMessage();
+			if (offHeap && resultData != null) {
+				this.offHeapData = ByteBuffer.allocateDirect(resultData.length);
+				this.offHeapData.put(resultData);
+				this.data = null;
+			} else {
+				this.offHeapData = null;
+				this.data = (resultData == null ? null : resultData.clone());
+			}
+			this.expiresAt = expiresAt;
+			this.weight = ENTRY_OVERHEAD + key.weight + (this.message == null ? 0 : this.message.length() * 2) + (resultData == null ? 0 : resultData.length);
+		}
+		TaskResult toResult() {
+			if (this.offHeapData != null) {
+				byte[] resultData = new byte[this.offHeapData.capacity()];
+				ByteBuffer buffer = this.offHeapData.duplicate();
+				buffer.clear();
+				buffer.get(resultData);
+				return new TaskResult(true, this.message, resultData);
+			}
+			return this.data == null ? new TaskResult(true, this.message) : new TaskResult(true, this.message, this.data.clone());
+		}
+	}
+
+	/**
+	 * A lock protected segment of the cache, bounded by memory size. Entries are ordered by access for LRU eviction. For LFU eviction, entries are
+	 * also held in an array of slots so that they may be sampled at random.
+	 */
+	private final class Segment {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final LinkedHashMap<CacheKey, CacheEntry> entries;
+		private final ArrayList<CacheEntry> slots;
+		private final Random random;
+		private final long maxMemorySize;
+		private final boolean lru;
+		private long memorySize;
+		Segment(long maxMemorySize, boolean lru) {
+			this.entries = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, lru);
+			this.slots = (lru ? null : new ArrayList<CacheEntry>());
+			this.random = (lru ? null : new Random());
+			this.maxMemorySize = maxMemorySize;
+			this.lru = lru;
+		}
+		CacheEntry get(CacheKey key) {
+			this.lock.lock();
+			try {
+				CacheEntry entry = this.entries.get(key);
+				if (entry == null) {
+					return null;
+				}
+				if (entry.expiresAt <= System.currentTimeMillis()) {
+					this.remove(entry);
+					expirations.incrementAndGet();
+					return null;
+				}
+				entry.useCount++;
+				return entry;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		void put(CacheKey key, CacheEntry entry) {
+			if (entry.weight > this.maxMemorySize) {
+				return;
+			}
+			this.lock.lock();
+			try {
+				CacheEntry previous = this.entries.put(key, entry);
+				if (previous != null) {
+					this.memorySize -= previous.weight;
+				}
+				this.memorySize += entry.weight;
+				if (!this.lru) {
+					if (previous != null) {
+						entry.slot = previous.slot;
+						this.slots.set(entry.slot, entry);
+					} else {
+						entry.slot = this.slots.size();
+						this.slots.add(entry);
+					}
+				}
+				while (this.memorySize > this.maxMemorySize && this.evict(key)) {
+					// evict until the segment is within its memory size
+				}
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		/** Evicts an expired entry or the eldest (LRU) or least used of a random sample (LFU) entry, other than the entry for the specified key*/
+		private boolean evict(CacheKey retainedKey) {
+			long now = System.currentTimeMillis();
+			CacheEntry victim = null;
+			if (this.lru) {
+				for (CacheEntry candidate : this.entries.values()) {
+					if (candidate.key != retainedKey) {
+						victim = candidate;
+						break;
+					}
+				}
+			} else if (this.slots.size() > 1 || (this.slots.size() == 1 && this.slots.get(0).key != retainedKey)) {
+				for (int sampled = 0; sampled < LFU_SAMPLE_SIZE; sampled++) {
+					CacheEntry candidate = this.slots.get(this.random.nextInt(this.slots.size()));
+					if (candidate.key == retainedKey) {
+						continue;
+					}
+					if (candidate.expiresAt <= now) {
+						victim = candidate;
+						break;
+					}
+					if (victim == null || candidate.useCount < victim.useCount) {
+						victim = candidate;
+					}
+				}
+				if (victim == null) { // only the retained entry was sampled
+					victim = this.slots.get(0).key != retainedKey ? this.slots.get(0) : this.slots.get(1);
+				}
+			}
+			if (victim == null) {
+				return false;
+			}
+			this.remove(victim);
+			if (victim.expiresAt <= now) {
+				expirations.incrementAndGet();
+			} else {
+				evictions.incrementAndGet();
+			}
+			return true;
+		}
+		/** Removes the specified entry, moving the last slot into its slot for LFU eviction*/
+		private void remove(CacheEntry entry) {
+			this.entries.remove(entry.key);
+			this.memorySize -= entry.weight;
+			if (!this.lru) {
+				CacheEntry last = this.slots.remove(this.slots.size() - 1);
+				if (last != entry) {
+					last.slot = entry.slot;
+					this.slots.set(entry.slot, last);
+				}
+			}
+		}
+		void clear() {
+			this.lock.lock();
+			try {
+				this.entries.clear();
+				if (!this.lru) {
+					this.slots.clear();
+				}
+				this.memorySize = 0;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		int getEntryCount() {
+			this.lock.lock();
+			try {
+				return this.entries.size();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		long getMemorySize() {
+			this.lock.lock();
+			try {
+				return this.memorySize;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.cache;
+
+/**
+ * <code>ResultCacheConfig</code> holds the configuration of the {@link ResultCache} of a command : the time to live of cached results, the maximum
+ * memory used by the cache, the eviction policy used when the cache is full and whether cached results are stored off the Java heap.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class ResultCacheConfig {
+
+	/** The eviction policies supported by the cache*/
+	public static enum EvictionPolicy {
+		/** Evicts the least recently used result*/
+		LRU,
+		/** Evicts the least frequently used result*/
+		LFU
+	}
+
+	/** Default values for the cache configuration*/
+	public static final long DEFAULT_TTL_MILLIS = 60000;
+	public static final long DEFAULT_MAX_MEMORY_SIZE = 16 * 1024 * 1024;
+
+	/** The time to live of cached results in milliseconds*/
+	private long ttlMillis = DEFAULT_TTL_MILLIS;
+
+	/** The maximum memory, in bytes, used by cached results*/
+	private long maxMemorySize = DEFAULT_MAX_MEMORY_SIZE;
+
+	/** The eviction policy of the cache*/
+	private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+
+	/** Indicator to store cached result data in direct buffers, off the Java heap*/
+	private boolean offHeap;
+
+	/** Start Getter/Setter methods */
+	public long getTtlMillis() {
+		return this.ttlMillis;
+	}
+	public void setTtlMillis(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+	public long getMaxMemorySize() {
+		return this.maxMemorySize;
+	}
+	public void setMaxMemorySize(long maxMemorySize) {
+		this.maxMemorySize = maxMemorySize;
+	}
+	public EvictionPolicy getEvictionPolicy() {
+		return this.evictionPolicy;
+	}
+	public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+	}
+	public boolean isOffHeap() {
+		return this.offHeap;
+	}
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+	/** End Getter/Setter methods */
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.codec;
+
+import com.flipkart.phantom.task.impl.TaskContextFactory;
+import com.flipkart.phantom.task.spi.ResultCodec;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.OutputStream;
+
+/**
+ * <code>JsonResultCodec</code> is an implementation of {@link ResultCodec} that encodes data as JSON using the Jackson streaming generator of an 
+ * {@link ObjectMapper}. Uses the ObjectMapper of the {@link com.flipkart.phantom.task.spi.TaskContext} unless one is set explicitly.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class JsonResultCodec implements ResultCodec {
+
+	/** The ObjectMapper for writing data as JSON*/
+	private ObjectMapper objectMapper;
+
+	/**
+	 * Interface method implementation. Writes the data as JSON to the OutputStream. The OutputStream is not closed
+	 * @see com.flipkart.phantom.task.spi.ResultCodec#encode(java.lang.Object, java.io.OutputStream)
+	 */
+	public void encode(Object data, OutputStream outputStream) throws Exception {
+		ObjectMapper objectMapper = this.getObjectMapper();
+		JsonGenerator generator = objectMapper.getJsonFactory().createJsonGenerator(outputStream, JsonEncoding.UTF8);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // the OutputStream is owned by the caller
+		objectMapper.writeValue(generator, data);
+		generator.close();
+	}
+
+	/** Start Getter/Setter methods */
+	public ObjectMapper getObjectMapper() {
+		if (this.objectMapper == null) {
+			this.objectMapper = TaskContextFactory.getTaskContext().getObjectMapper();
+		}
+		return this.objectMapper;
+	}
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+	/** End Getter/Setter methods */
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.codec;
+
+import com.flipkart.phantom.task.spi.ResultCodec;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * <code>RawResultCodec</code> is an implementation of {@link ResultCodec} that passes through data that is already in raw form i.e. a {@link ByteBuffer}
+ * or a {@link CharSequence} that is written as UTF-8 bytes. Other data types are not supported.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class RawResultCodec implements ResultCodec {
+
+	/** The Charset for writing character data*/
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Interface method implementation. Writes the raw data to the OutputStream
+	 * @see com.flipkart.phantom.task.spi.ResultCodec#encode(java.lang.Object, java.io.OutputStream)
+	 */
+	public void encode(Object data, OutputStream outputStream) throws Exception {
+		if (data instanceof ByteBuffer) {
+			ByteBuffer buffer = ((ByteBuffer)data).duplicate();
+			if (buffer.hasArray()) {
+				outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			} else {
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				outputStream.write(bytes);
+			}
+		} else if (data instanceof CharSequence) {
+			outputStream.write(data.toString().getBytes(UTF_8));
+		} else {
+			throw new IllegalArgumentException("Unsupported raw result data type : " + data.getClass().getName());
+		}
+	}
+
+}
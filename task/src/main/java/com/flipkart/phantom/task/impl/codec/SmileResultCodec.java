@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.codec;
+
+import com.flipkart.phantom.task.spi.ResultCodec;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+
+import java.io.OutputStream;
+
+/**
+ * <code>SmileResultCodec</code> is an implementation of {@link ResultCodec} that encodes data as Smile i.e. binary JSON, using the Jackson streaming generator.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class SmileResultCodec implements ResultCodec {
+
+	/** The ObjectMapper for writing data as Smile*/
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(new SmileFactory()); // ObjectMapper is thread-safe once configured
+
+	/**
+	 * Interface method implementation. Writes the data as Smile to the OutputStream. The OutputStream is not closed
+	 * @see com.flipkart.phantom.task.spi.ResultCodec#encode(java.lang.Object, java.io.OutputStream)
+	 */
+	public void encode(Object data, OutputStream outputStream) throws Exception {
+		JsonGenerator generator = OBJECT_MAPPER.getJsonFactory().createJsonGenerator(outputStream, JsonEncoding.UTF8);
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // the OutputStream is owned by the caller
+		OBJECT_MAPPER.writeValue(generator, data);
+		generator.close();
+	}
+
+}
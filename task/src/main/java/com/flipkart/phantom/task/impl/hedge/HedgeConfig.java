@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.hedge;
+
+/**
+ * <code>HedgeConfig</code> holds the configuration of the {@link RequestHedger} of a read-only command : the percentile of recent latency after which a
+ * hedged (duplicate) execution is issued and the hedge budget i.e. the maximum extra load, as a percentage of requests, that hedged executions may add.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class HedgeConfig {
+
+	/** Default values for the hedge configuration*/
+	public static final int DEFAULT_PERCENTILE = 95;
+	public static final int DEFAULT_BUDGET_PERCENTAGE = 5;
+
+	/** The percentile of recent latency after which a hedged execution is issued*/
+	private int percentile = DEFAULT_PERCENTILE;
+
+	/** The maximum number of hedged executions, as a percentage of requests*/
+	private int budgetPercentage = DEFAULT_BUDGET_PERCENTAGE;
+
+	/** Start Getter/Setter methods */
+	public int getPercentile() {
+		return this.percentile;
+	}
+	public void setPercentile(int percentile) {
+		this.percentile = percentile;
+	}
+	public int getBudgetPercentage() {
+		return this.budgetPercentage;
+	}
+	public void setBudgetPercentage(int budgetPercentage) {
+		this.budgetPercentage = budgetPercentage;
+	}
+	/** End Getter/Setter methods */
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.hedge;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <code>RequestHedger</code> decides when a hedged (duplicate) execution of a read-only command is issued. It tracks the latency of the last
+ * {@value #LATENCY_SAMPLES} successful executions of the command and derives the hedge delay i.e. the configured percentile of the latency, once at least
+ * {@value #MIN_SAMPLES} executions have been observed. Hedged executions are limited by a budget : each request earns the configured budget percentage
+ * of a hedge, up to a maximum of {@value #MAX_BUDGET} hedges, and each hedged execution spends one. Hedged executions therefore add at most the budget
+ * percentage of extra load, including during an outage when all executions are slow. This class is thread-safe.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class RequestHedger {
+
+	/** The number of latency samples tracked*/
+	public static final int LATENCY_SAMPLES = 1024;
+
+	/** The minimum number of samples before executions are hedged*/
+	public static final int MIN_SAMPLES = 100;
+
+	/** The number of samples after which the hedge delay is recomputed*/
+	private static final int RECOMPUTE_INTERVAL = 100;
+
+	/** The maximum number of hedges that may be accumulated in the budget*/
+	public static final int MAX_BUDGET = 10;
+
+	/** The budget is tracked in thousandths of a hedge*/
+	private static final long HEDGE_COST = 1000;
+
+	/** The name of the hedger i.e. the command name*/
+	private final String name;
+
+	/** The hedge configuration*/
+	private final HedgeConfig config;
+
+	/** The latency samples, in nanoseconds, and the number of samples recorded*/
+	private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+	private final AtomicLong sampleCount = new AtomicLong();
+
+	/** The delay after which an execution is hedged, negative until enough samples are recorded*/
+	private volatile long hedgeDelayNanos = -1;
+
+	/** The available budget, in thousandths of a hedge*/
+	private final AtomicLong budget = new AtomicLong();
+
+	/** Hedge metrics*/
+	private final AtomicLong hedges = new AtomicLong();
+	private final AtomicLong hedgeWins = new AtomicLong();
+
+	/**
+	 * Constructor for this class
+	 * @param name the name of the hedger i.e. the command name
+	 * @param config the hedge configuration
+	 */
+	public RequestHedger(String name, HedgeConfig config) {
+		this.name = name;
+		this.config = config;
+	}
+
+	/**
+	 * Adds the budget earned by a request. Called once for every request of the command
+	 */
+	public void onRequest() {
+		long earned = this.config.getBudgetPercentage() * HEDGE_COST / 100;
+		while (true) {
+			long current = this.budget.get();
+			long next = Math.min(current + earned, MAX_BUDGET * HEDGE_COST);
+			if (current == next || this.budget.compareAndSet(current, next)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Spends the budget for a hedged execution, if available
+	 * @return true if the execution may be hedged, false if the budget is exhausted
+	 */
+	public boolean tryAcquireHedge() {
+		while (true) {
+			long current = this.budget.get();
+			if (current < HEDGE_COST) {
+				return false;
+			}
+			if (this.budget.compareAndSet(current, current - HEDGE_COST)) {
+				this.hedges.incrementAndGet();
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Records the latency of a successful execution
+	 * @param latencyNanos the latency in nanoseconds
+	 */
+	public void recordLatency(long latencyNanos) {
+		long count = this.sampleCount.getAndIncrement() + 1;
+		this.latencies.set((int)((count - 1) % LATENCY_SAMPLES), latencyNanos);
+		if (count >= MIN_SAMPLES && count % RECOMPUTE_INTERVAL == 0) {
+			int size = (int)Math.min(count, LATENCY_SAMPLES);
+			long[] samples = new long[size];
+			for (int i = 0; i < size; i++) {
+				samples[i] = this.latencies.get(i);
+			}
+			Arrays.sort(samples);
+			int index = (int)Math.ceil(size * this.config.getPercentile() / 100.0) - 1;
+			this.hedgeDelayNanos = samples[Math.max(0, Math.min(index, size - 1))];
+		}
+	}
+
+	/**
+	 * Records that a hedged execution completed successfully before the primary execution
+	 */
+	public void recordHedgeWin() {
+		this.hedgeWins.incrementAndGet();
+	}
+
+	/** Start Getter/Setter methods */
+	public String getName() {
+		return this.name;
+	}
+	public HedgeConfig getConfig() {
+		return this.config;
+	}
+	public long getHedgeDelayNanos() {
+		return this.hedgeDelayNanos;
+	}
+	public long getHedges() {
+		return this.hedges.get();
+	}
+	public long getHedgeWins() {
+		return this.hedgeWins.get();
+	}
+	/** End Getter/Setter methods */
+
+}
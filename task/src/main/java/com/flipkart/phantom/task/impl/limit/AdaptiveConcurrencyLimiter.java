@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>AdaptiveConcurrencyLimiter</code> limits the number of in-flight calls of a command to a limit that is adjusted continuously from the observed
+ * latency of calls, using the configured {@link AdaptiveLimitConfig.Algorithm} :
+ * <ul>
+ *  <li>Vegas : the queue size is estimated as <code>limit * (1 - noLoadLatency / latency)</code>. The limit is increased when the estimated queue is
+ *  	small and decreased when it is large. The no-load latency is the minimum observed latency, reset every {@value #PROBE_INTERVAL_SAMPLES} samples</li>
+ *  <li>Gradient : the limit is set to <code>limit * gradient + sqrt(limit)</code>, where the gradient is the ratio of the long term average latency
+ *  	to the observed latency, bounded to [0.5, 1.0], and smoothed</li>
+ * </ul>
+ * Calls that are dropped i.e. time out or are rejected downstream reduce the limit. The limit is not increased when less than half of it is in use.
+ * Calls in excess of the limit are rejected without waiting. The maximum limit may be changed at runtime, see {@link #setMaxLimit(int)}.
+ * This class is thread-safe.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	/** The number of samples after which the Vegas no-load latency is reset, to track changes in the backend's latency*/
+	public static final int PROBE_INTERVAL_SAMPLES = 1000;
+
+	/** The smoothing factors of the gradient limit and the long term average latency*/
+	private static final double GRADIENT_SMOOTHING = 0.2;
+	private static final double LONG_RTT_SMOOTHING = 2.0 / (600 + 1);
+
+	/** The name of the limiter i.e. the command name*/
+	private final String name;
+
+	/** The limiter configuration*/
+	private final AdaptiveLimitConfig.Algorithm algorithm;
+	private final int minLimit;
+	private final boolean maxLimitConfigured;
+
+	/** The maximum limit, the configured one or the default i.e. the command's thread pool size*/
+	private volatile int maxLimit;
+
+	/** The current limit, updated from the estimated limit*/
+	private volatile int limit;
+
+	/** The number of calls in flight*/
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/** The number of calls rejected*/
+	private final AtomicLong rejections = new AtomicLong();
+
+	/** The algorithm state, guarded by this limiter*/
+	private double estimatedLimit;
+	private long noLoadRttNanos;
+	private double longRttNanos;
+	private int samples;
+
+	/**
+	 * Constructor for this class
+	 * @param name the name of the limiter i.e. the command name
+	 * @param config the limiter configuration
+	 * @param defaultMaxLimit the maximum limit, if none is configured
+	 */
+	public AdaptiveConcurrencyLimiter(String name, AdaptiveLimitConfig config, int defaultMaxLimit) {
+		this.name = name;
+		this.algorithm = config.getAlgorithm();
+		this.minLimit = Math.max(config.getMinLimit(), 1);
+		this.maxLimitConfigured = config.getMaxLimit() > 0;
+		this.maxLimit = Math.max(config.getMaxLimit() > 0 ? config.getMaxLimit() : defaultMaxLimit, this.minLimit);
+		this.estimatedLimit = Math.min(Math.max(config.getInitialLimit(), this.minLimit), this.maxLimit);
+		this.limit = (int)this.estimatedLimit;
+	}
+
+	/**
+	 * Acquires a permit for a call, if the limit has not been reached. Each acquired permit must be released using {@link #release(long, boolean)}
+	 * @return true if the permit was acquired, false if the call must be rejected
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int current = this.inFlight.get();
+			if (current >= this.limit) {
+				this.rejections.incrementAndGet();
+				return false;
+			}
+			if (this.inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases a permit and adjusts the limit from the latency of the call
+	 * @param startNanos the {@link System#nanoTime()} at which the permit was acquired
+	 * @param dropped true if the call timed out or was rejected downstream
+	 */
+	public void release(long startNanos, boolean dropped) {
+		int current = this.inFlight.getAndDecrement();
+		this.update(System.nanoTime() - startNanos, current, dropped);
+	}
+
+	/**
+	 * Helper method to adjust the limit using the latency of a call
+	 */
+	private synchronized void update(long rttNanos, int inFlightCount, boolean dropped) {
+		if (rttNanos <= 0) {
+			return;
+		}
+		double newLimit;
+		if (this.algorithm == AdaptiveLimitConfig.Algorithm.VEGAS) {
+			this.samples++;
+			if (this.noLoadRttNanos == 0 || rttNanos < this.noLoadRttNanos || this.samples % PROBE_INTERVAL_SAMPLES == 0) {
+				this.noLoadRttNanos = rttNanos;
+				return;
+			}
+			double log = Math.max(1, Math.log10(this.estimatedLimit));
+			double queueSize = Math.ceil(this.estimatedLimit * (1 - (double)this.noLoadRttNanos / rttNanos));
+			if (dropped) {
+				newLimit = this.estimatedLimit - log;
+			} else if (inFlightCount * 2 < this.estimatedLimit) {
+				return; // the limit is not in use, latency says nothing about it
+			} else if (queueSize <= log) {
+				newLimit = this.estimatedLimit + 6 * log;
+			} else if (queueSize < 3 * log) {
+				newLimit = this.estimatedLimit + log;
+			} else if (queueSize > 6 * log) {
+				newLimit = this.estimatedLimit - log;
+			} else {
+				return;
+			}
+		} else {
+			this.longRttNanos = (this.longRttNanos == 0 ? rttNanos : this.longRttNanos * (1 - LONG_RTT_SMOOTHING) + rttNanos * LONG_RTT_SMOOTHING);
+			if (this.longRttNanos / rttNanos > 2) { // latency has dropped well below the long term average, let the average catch up quickly
+				this.longRttNanos = this.longRttNanos * 0.95;
+			}
+			if (!dropped && inFlightCount * 2 < this.estimatedLimit) {
+				return; // the limit is not in use, latency says nothing about it
+			}
+			double gradient = dropped ? 0.5 : Math.max(0.5, Math.min(1.0, this.longRttNanos / rttNanos));
+			newLimit = this.estimatedLimit * gradient + Math.sqrt(this.estimatedLimit);
+			newLimit = this.estimatedLimit * (1 - GRADIENT_SMOOTHING) + newLimit * GRADIENT_SMOOTHING;
+		}
+		this.estimatedLimit = Math.max(this.minLimit, Math.min(this.maxLimit, newLimit));
+		this.limit = (int)this.estimatedLimit;
+	}
+
+	/**
+	 * Changes the maximum limit, for e.g. when the thread pool of the command is resized. The current limit is lowered at once if it exceeds the new 
+	 * maximum and is otherwise left to grow up to it
+	 * @param maxLimit the new maximum limit, raised to the minimum limit if lower
+	 */
+	public synchronized void setMaxLimit(int maxLimit) {
+		this.maxLimit = Math.max(maxLimit, this.minLimit);
+		this.estimatedLimit = Math.min(this.estimatedLimit, this.maxLimit);
+		this.limit = (int)this.estimatedLimit;
+	}
+
+	/** Start Getter/Setter methods */
+	public String getName() {
+		return this.name;
+	}
+	public AdaptiveLimitConfig.Algorithm getAlgorithm() {
+		return this.algorithm;
+	}
+	public int getLimit() {
+		return this.limit;
+	}
+	public int getMinLimit() {
+		return this.minLimit;
+	}
+	public int getMaxLimit() {
+		return this.maxLimit;
+	}
+	public boolean isMaxLimitConfigured() {
+		return this.maxLimitConfigured;
+	}
+	public int getInFlight() {
+		return this.inFlight.get();
+	}
+	public long getRejections() {
+		return this.rejections.get();
+	}
+	/** End Getter/Setter methods */
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.limit;
+
+/**
+ * <code>AdaptiveLimitConfig</code> holds the configuration of the {@link AdaptiveConcurrencyLimiter} of a command : the algorithm used to adjust the limit,
+ * the initial limit and the bounds within which the limit is adjusted.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class AdaptiveLimitConfig {
+
+	/** The algorithms supported for adjusting the limit*/
+	public static enum Algorithm {
+		/** Adjusts the limit from the estimated queue size, derived from the ratio of the no-load latency to the observed latency, as in TCP Vegas*/
+		VEGAS,
+		/** Adjusts the limit by the gradient of the long term average latency to the observed latency*/
+		GRADIENT
+	}
+
+	/** Default values for the limiter configuration*/
+	public static final int DEFAULT_INITIAL_LIMIT = 10;
+	public static final int DEFAULT_MIN_LIMIT = 1;
+
+	/** The algorithm used to adjust the limit*/
+	private Algorithm algorithm = Algorithm.VEGAS;
+
+	/** The limit to start with*/
+	private int initialLimit = DEFAULT_INITIAL_LIMIT;
+
+	/** The minimum limit*/
+	private int minLimit = DEFAULT_MIN_LIMIT;
+
+	/** The maximum limit. Defaults to the thread pool size of the command, if not positive*/
+	private int maxLimit;
+
+	/** Start Getter/Setter methods */
+	public Algorithm getAlgorithm() {
+		return this.algorithm;
+	}
+	public void setAlgorithm(Algorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+	public int getInitialLimit() {
+		return this.initialLimit;
+	}
+	public void setInitialLimit(int initialLimit) {
+		this.initialLimit = initialLimit;
+	}
+	public int getMinLimit() {
+		return this.minLimit;
+	}
+	public void setMinLimit(int minLimit) {
+		this.minLimit = minLimit;
+	}
+	public int getMaxLimit() {
+		return this.maxLimit;
+	}
+	public void setMaxLimit(int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+	/** End Getter/Setter methods */
+
+}
@@ -0,0 +1,531 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.priority;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>PriorityLaneQueue</code> is the work queue of a thread pool that keeps a separate FIFO lane per {@link TaskPriority}. Tasks are queued in the lane
+ * of the priority set for the submitting thread using {@link #setSubmitPriority(TaskPriority)}, {@link TaskPriority#NORMAL} if none is set. Lanes are
+ * dequeued using smooth weighted round robin over the non-empty lanes, so that each lane gets a share of the pool's threads in proportion to its weight
+ * and no lane is starved under sustained load. In addition, a task that has waited longer than the starvation threshold is dequeued ahead of the lane
+ * order. The queue is bounded : tasks in excess of its capacity are rejected, as with a full Hystrix thread pool queue.
+ * Queue time metrics are kept per lane. This class is thread-safe.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public class PriorityLaneQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+	/** The default time after which a queued task is dequeued ahead of the lane order*/
+	public static final int DEFAULT_STARVATION_MILLIS = 500;
+
+	/** The number of queue time samples tracked per lane*/
+	private static final int QUEUE_TIME_SAMPLES = 1024;
+
+	/** The priority of tasks submitted by the current thread*/
+	private static final ThreadLocal<TaskPriority> SUBMIT_PRIORITY = new ThreadLocal<TaskPriority>();
+
+	/** The name of the queue i.e. the thread pool name*/
+	private final String name;
+
+	/** The maximum number of queued tasks, guarded by the lock*/
+	private int capacity;
+
+	/** The time after which a queued task is dequeued ahead of the lane order, in nanoseconds*/
+	private final long starvationNanos;
+
+	/** The lanes, in order of TaskPriority*/
+	private final Lane[] lanes;
+
+	/** The number of queued tasks, guarded by the lock*/
+	private int count;
+
+	/** The lock guarding the lanes and its conditions*/
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = this.lock.newCondition();
+	private final Condition notFull = this.lock.newCondition();
+
+	/**
+	 * Constructor for this class
+	 * @param name the name of the queue i.e. the thread pool name
+	 * @param capacity the maximum number of queued tasks
+	 * @param starvationMillis the time after which a queued task is dequeued ahead of the lane order
+	 */
+	public PriorityLaneQueue(String name, int capacity, int starvationMillis) {
+		this.name = name;
+		this.capacity = capacity;
+		this.starvationNanos = TimeUnit.MILLISECONDS.toNanos(starvationMillis);
+		TaskPriority[] priorities = TaskPriority.values();
+		this.lanes = new Lane[priorities.length];
+		for (int i = 0; i < priorities.length; i++) {
+			this.lanes[i] = new Lane(priorities[i]);
+		}
+	}
+
+	/**
+	 * Sets the priority of tasks submitted by the current thread
+	 * @param priority the TaskPriority, may be null for {@link TaskPriority#NORMAL}
+	 * @return the priority that was set previously, to be restored using {@link #restoreSubmitPriority(TaskPriority)} once the task is submitted
+	 */
+	public static TaskPriority setSubmitPriority(TaskPriority priority) {
+		TaskPriority previous = SUBMIT_PRIORITY.get();
+		SUBMIT_PRIORITY.set(priority);
+		return previous;
+	}
+
+	/**
+	 * Restores the priority of tasks submitted by the current thread
+	 * @param previous the priority returned by {@link #setSubmitPriority(TaskPriority)}
+	 */
+	public static void restoreSubmitPriority(TaskPriority previous) {
+		if (previous == null) {
+			SUBMIT_PRIORITY.remove();
+		} else {
+			SUBMIT_PRIORITY.set(previous);
+		}
+	}
+
+	/**
+	 * Interface method implementation. Queues the task in the lane of the current thread's submit priority
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	public boolean offer(Runnable task) {
+		if (task == null) {
+			throw new NullPointerException();
+		}
+		this.lock.lock();
+		try {
+			if (this.count >= this.capacity) {
+				return false;
+			}
+			this.enqueue(task);
+			return true;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. @see java.util.concurrent.BlockingQueue#offer(java.lang.Object, long, java.util.concurrent.TimeUnit)
+	 */
+	public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+		if (task == null) {
+			throw new NullPointerException();
+		}
+		long nanos = unit.toNanos(timeout);
+		this.lock.lockInterruptibly();
+		try {
+			while (this.count >= this.capacity) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = this.notFull.awaitNanos(nanos);
+			}
+			this.enqueue(task);
+			return true;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. @see java.util.concurrent.BlockingQueue#put(java.lang.Object)
+	 */
+	public void put(Runnable task) throws InterruptedException {
+		if (task == null) {
+			throw new NullPointerException();
+		}
+		this.lock.lockInterruptibly();
+		try {
+			while (this.count >= this.capacity) {
+				this.notFull.await();
+			}
+			this.enqueue(task);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. @see java.util.Queue#poll()
+	 */
+	public Runnable poll() {
+		this.lock.lock();
+		try {
+			return this.count == 0 ? null : this.dequeue();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. @see java.util.concurrent.BlockingQueue#poll(long, java.util.concurrent.TimeUnit)
+	 */
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		this.lock.lockInterruptibly();
+		try {
+			while (this.count == 0) {
+				if (nanos <= 0) {
+					return null;
+				}
+				nanos = this.notEmpty.awaitNanos(nanos);
+			}
+			return this.dequeue();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. @see java.util.concurrent.BlockingQueue#take()
+	 */
+	public Runnable take() throws InterruptedException {
+		this.lock.lockInterruptibly();
+		try {
+			while (this.count == 0) {
+				this.notEmpty.await();
+			}
+			return this.dequeue();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. Returns the oldest task of the highest priority non-empty lane, which is not necessarily the task that is dequeued next
+	 * @see java.util.Queue#peek()
+	 */
+	public Runnable peek() {
+		this.lock.lock();
+		try {
+			for (Lane lane : this.lanes) {
+				if (!lane.tasks.isEmpty()) {
+					return lane.tasks.getFirst().task;
+				}
+			}
+			return null;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	public boolean remove(Object task) {
+		this.lock.lock();
+		try {
+			for (Lane lane : this.lanes) {
+				for (Iterator<QueuedTask> iterator = lane.tasks.iterator(); iterator.hasNext();) {
+					if (iterator.next().task.equals(task)) {
+						iterator.remove();
+						this.count--;
+						this.notFull.signal();
+						return true;
+					}
+				}
+			}
+			return false;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection)
+	 */
+	public int drainTo(Collection<? super Runnable> tasks) {
+		return this.drainTo(tasks, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Interface method implementation. Drains tasks in order of priority, without recording their queue time
+	 * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection, int)
+	 */
+	public int drainTo(Collection<? super Runnable> tasks, int maxElements) {
+		this.lock.lock();
+		try {
+			int drained = 0;
+			for (Lane lane : this.lanes) {
+				while (drained < maxElements && !lane.tasks.isEmpty()) {
+					tasks.add(lane.tasks.removeFirst().task);
+					drained++;
+				}
+			}
+			this.count -= drained;
+			this.notFull.signalAll();
+			return drained;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. Returns an iterator over a snapshot of the queued tasks
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	public Iterator<Runnable> iterator() {
+		final List<Runnable> snapshot = new ArrayList<Runnable>();
+		this.lock.lock();
+		try {
+			for (Lane lane : this.lanes) {
+				for (QueuedTask queuedTask : lane.tasks) {
+					snapshot.add(queuedTask.task);
+				}
+			}
+		} finally {
+			this.lock.unlock();
+		}
+		final Iterator<Runnable> iterator = snapshot.iterator();
+		return new Iterator<Runnable>() {
+			private Runnable last;
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+			public Runnable next() {
+				this.last = iterator.next();
+				return this.last;
+			}
+			public void remove() {
+				if (this.last == null) {
+					throw new IllegalStateException();
+				}
+				PriorityLaneQueue.this.remove(this.last);
+				this.last = null;
+			}
+		};
+	}
+
+	/**
+	 * Interface method implementation. @see java.util.AbstractCollection#size()
+	 */
+	public int size() {
+		this.lock.lock();
+		try {
+			return this.count;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Interface method implementation. @see java.util.concurrent.BlockingQueue#remainingCapacity()
+	 */
+	public int remainingCapacity() {
+		this.lock.lock();
+		try {
+			return Math.max(this.capacity - this.count, 0);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the queue time metrics of the lanes of this queue
+	 * @return the LaneMetrics, in order of TaskPriority
+	 */
+	public List<LaneMetrics> getLaneMetrics() {
+		List<LaneMetrics> metrics = new ArrayList<LaneMetrics>(this.lanes.length);
+		this.lock.lock();
+		try {
+			for (Lane lane : this.lanes) {
+				metrics.add(new LaneMetrics(lane));
+			}
+		} finally {
+			this.lock.unlock();
+		}
+		return metrics;
+	}
+
+	/**
+	 * Helper method to queue the specified task. Must be called holding the lock
+	 */
+	private void enqueue(Runnable task) {
+		TaskPriority priority = SUBMIT_PRIORITY.get();
+		Lane lane = this.lanes[(priority == null ? TaskPriority.NORMAL : priority).ordinal()];
+		lane.tasks.addLast(new QueuedTask(task, System.nanoTime()));
+		lane.enqueued++;
+		this.count++;
+		this.notEmpty.signal();
+	}
+
+	/**
+	 * Helper method to dequeue the next task. Must be called holding the lock, when the queue is not empty. Dequeues the oldest task that has waited longer
+	 * than the starvation threshold, if any, else the head of the lane selected by smooth weighted round robin : the current weight of each non-empty lane
+	 * is increased by the lane's weight, the lane with the highest current weight is selected and its current weight is decreased by the total weight.
+	 */
+	private Runnable dequeue() {
+		long now = System.nanoTime();
+		Lane selected = null;
+		for (Lane lane : this.lanes) {
+			if (!lane.tasks.isEmpty() && now - lane.tasks.getFirst().queuedAt >= this.starvationNanos
+					&& (selected == null || lane.tasks.getFirst().queuedAt < selected.tasks.getFirst().queuedAt)) {
+				selected = lane;
+			}
+		}
+		if (selected != null) {
+			selected.promoted++;
+		} else {
+			int totalWeight = 0;
+			for (Lane lane : this.lanes) {
+				if (lane.tasks.isEmpty()) {
+					lane.currentWeight = 0;
+					continue;
+				}
+				lane.currentWeight += lane.priority.getWeight();
+				totalWeight += lane.priority.getWeight();
+				if (selected == null || lane.currentWeight > selected.currentWeight) {
+					selected = lane;
+				}
+			}
+			selected.currentWeight -= totalWeight;
+		}
+		QueuedTask queuedTask = selected.tasks.removeFirst();
+		selected.recordQueueTime(now - queuedTask.queuedAt);
+		this.count--;
+		this.notFull.signal();
+		return queuedTask.task;
+	}
+
+	/** Start Getter/Setter methods */
+	public String getName() {
+		return this.name;
+	}
+	public int getCapacity() {
+		this.lock.lock();
+		try {
+			return this.capacity;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	/**
+	 * Sets the maximum number of queued tasks. Tasks already queued in excess of a lowered capacity remain queued
+	 * @param capacity the maximum number of queued tasks
+	 */
+	public void setCapacity(int capacity) {
+		this.lock.lock();
+		try {
+			this.capacity = capacity;
+			this.notFull.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	/** End Getter/Setter methods */
+
+	/**
+	 * A queued task and the time at which it was queued
+	 */
+	private static class QueuedTask {
+		private final Runnable task;
+		private final long queuedAt;
+		QueuedTask(Runnable task, long queuedAt) {
+			this.task = task;
+			this.queuedAt = queuedAt;
+		}
+	}
+
+	/**
+	 * The lane of a priority class and its queue time metrics, guarded by the queue's lock
+	 */
+	private static class Lane {
+		private final TaskPriority priority;
+		private final LinkedList<QueuedTask> tasks = new LinkedList<QueuedTask>();
+		private int currentWeight;
+		private long enqueued;
+		private long dequeued;
+		private long promoted;
+		private long totalQueueNanos;
+		private long maxQueueNanos;
+		private final long[] queueTimes = new long[QUEUE_TIME_SAMPLES];
+		Lane(TaskPriority priority) {
+			this.priority = priority;
+		}
+		void recordQueueTime(long queueNanos) {
+			this.dequeued++;
+			this.totalQueueNanos += queueNanos;
+			this.maxQueueNanos = Math.max(this.maxQueueNanos, queueNanos);
+			this.queueTimes[(int)((this.dequeued - 1) % QUEUE_TIME_SAMPLES)] = queueNanos;
+		}
+	}
+
+	/**
+	 * The queue time metrics of a lane, as of the time this instance was created
+	 */
+	public static class LaneMetrics {
+		private final TaskPriority priority;
+		private final int queued;
+		private final long enqueued;
+		private final long dequeued;
+		private final long promoted;
+		private final double meanQueueTimeMillis;
+		private final double maxQueueTimeMillis;
+		private final double p99QueueTimeMillis;
+		LaneMetrics(Lane lane) {
+			this.priority = lane.priority;
+			this.queued = lane.tasks.size();
+			this.enqueued = lane.enqueued;
+			this.dequeued = lane.dequeued;
+			this.promoted = lane.promoted;
+			this.meanQueueTimeMillis = lane.dequeued == 0 ? 0 : lane.totalQueueNanos / (lane.dequeued * 1000000.0);
+			this.maxQueueTimeMillis = lane.maxQueueNanos / 1000000.0;
+			int size = (int)Math.min(lane.dequeued, QUEUE_TIME_SAMPLES);
+			long[] samples = Arrays.copyOf(lane.queueTimes, size);
+			Arrays.sort(samples);
+			this.p99QueueTimeMillis = size == 0 ? 0 : samples[Math.max(0, (int)Math.ceil(size * 0.99) - 1)] / 1000000.0;
+		}
+		public TaskPriority getPriority() {
+			return this.priority;
+		}
+		/** The number of tasks currently queued in the lane*/
+		public int getQueued() {
+			return this.queued;
+		}
+		public long getEnqueued() {
+			return this.enqueued;
+		}
+		public long getDequeued() {
+			return this.dequeued;
+		}
+		/** The number of tasks dequeued ahead of the lane order as they waited longer than the starvation threshold*/
+		public long getPromoted() {
+			return this.promoted;
+		}
+		public double getMeanQueueTimeMillis() {
+			return this.meanQueueTimeMillis;
+		}
+		public double getMaxQueueTimeMillis() {
+			return this.maxQueueTimeMillis;
+		}
+		/** The 99th percentile of the queue time of the last 1024 tasks dequeued from the lane*/
+		public double getP99QueueTimeMillis() {
+			return this.p99QueueTimeMillis;
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.priority;
+
+/**
+ * <code>TaskPriority</code> is the priority class of a command. Commands queued for a thread pool that has priority lanes (see {@link PriorityLaneQueue})
+ * are dequeued in proportion to the weight of their priority class.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public enum TaskPriority {
+
+	/** Latency critical commands*/
+	HIGH(6),
+
+	/** The default priority class*/
+	NORMAL(3),
+
+	/** Bulk and batch commands*/
+	LOW(1);
+
+	/** The dequeue weight of the priority class*/
+	private final int weight;
+
+	private TaskPriority(int weight) {
+		this.weight = weight;
+	}
+
+	/**
+	 * Returns the dequeue weight of this priority class
+	 * @return the weight
+	 */
+	public int getWeight() {
+		return this.weight;
+	}
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.task.impl.registry;
+
+import com.flipkart.phantom.task.impl.HystrixTaskHandler;
+import com.flipkart.phantom.task.impl.LightweightCommandExecutor;
+import com.flipkart.phantom.task.impl.StreamingTaskHandler;
+import com.flipkart.phantom.task.impl.TaskHandler;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutor;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
+import com.flipkart.phantom.task.impl.TaskRequestCollapser;
+import com.flipkart.phantom.task.impl.cache.ResultCache;
+import com.flipkart.phantom.task.impl.hedge.RequestHedger;
+import com.flipkart.phantom.task.impl.limit.AdaptiveConcurrencyLimiter;
+import com.flipkart.phantom.task.impl.priority.TaskPriority;
+import com.netflix.hystrix.HystrixCollapser;
+import com.netflix.hystrix.HystrixCollapserKey;
+import com.netflix.hystrix.HystrixCollapserProperties;
+import com.netflix.hystrix.HystrixCommand.Setter;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.HystrixThreadPoolProperties;
+
+/**
+ * <code>CommandDispatchDescriptor</code> holds everything needed to create a {@link TaskHandlerExecutor} for a command and thread pool : the 
+ * {@link TaskHandler}, the Hystrix command and thread pool names sanitized of non alphanumeric characters, the executor timeout, the thread pool size,
+ * the isolation strategy, the call invocation type, the {@link TaskPriority}, the Hystrix {@link Setter}, the Hystrix collapser setter if requests of the command are collapsed
+ * using the {@link TaskRequestCollapser}, the {@link ResultCache} if results of the command are cached, the {@link AdaptiveConcurrencyLimiter} if calls of
+ * the command are limited adaptively, the {@link RequestHedger} if executions of the command are hedged and the {@link LightweightCommandExecutor}, if the
+ * command is executed without Hystrix. Descriptors are immutable and are created by the 
+ * {@link TaskHandlerRegistry} when TaskHandlers are registered, so that these need not be evaluated per request.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public final class CommandDispatchDescriptor {
+
+	private final TaskHandler taskHandler;
+	private final String commandName;
+	private final String threadPoolName;
+	private final int executorTimeout;
+	private final int threadPoolSize;
+	private final ExecutionIsolationStrategy isolationStrategy;
+	private final int callInvocationType;
+	private final TaskPriority priority;
+	private final Setter setter;
+	private final HystrixCollapser.Setter collapserSetter;
+	private final ResultCache resultCache;
+	private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+	private final RequestHedger requestHedger;
+	private final LightweightCommandExecutor lightweightExecutor;
+
+	/**
+	 * Constructor for this class
+	 * @param taskHandler the TaskHandler that executes the command
+	 * @param commandName the command name, as registered by the TaskHandler
+	 * @param threadPoolName the thread pool name
+	 * @param threadPoolSize the thread pool size configured for the thread pool, null if none is configured
+	 */
+	public CommandDispatchDescriptor(TaskHandler taskHandler, String commandName, String threadPoolName, Integer threadPoolSize) {
+		this(taskHandler, commandName, threadPoolName, threadPoolSize, null, null, null);
+	}
+
+	/**
+	 * Constructor for this class
+	 * @param taskHandler the TaskHandler that executes the command
+	 * @param commandName the command name, as registered by the TaskHandler
+	 * @param threadPoolName the thread pool name
+	 * @param threadPoolSize the thread pool size configured for the thread pool, null if none is configured
+	 * @param resultCache the ResultCache of the command, null if results of the command are not cached
+	 * @param concurrencyLimiter the AdaptiveConcurrencyLimiter of the command, null if calls of the command are not limited adaptively
+	 * @param requestHedger the RequestHedger of the command, null if executions of the command are not hedged
+	 */
+	public CommandDispatchDescriptor(TaskHandler taskHandler, String commandName, String threadPoolName, Integer threadPoolSize, ResultCache resultCache,
+			AdaptiveConcurrencyLimiter concurrencyLimiter, RequestHedger requestHedger) {
+		//Hystrix dashboard requires names to be alphanumeric
+		this.commandName = sanitize(commandName);
+		this.threadPoolName = sanitize(threadPoolName);
+		this.taskHandler = taskHandler;
+		if (taskHandler instanceof HystrixTaskHandler) {
+			HystrixTaskHandler hystrixTaskHandler = (HystrixTaskHandler) taskHandler;
+			this.isolationStrategy = hystrixTaskHandler.getIsolationStrategy();
+			this.executorTimeout = hystrixTaskHandler.getExecutorTimeout(commandName);
+			this.threadPoolSize = (threadPoolSize == null ? TaskHandlerExecutor.DEFAULT_HYSTRIX_THREAD_POOL_SIZE : threadPoolSize);
+		} else { //Run everything with defaults
+			this.isolationStrategy = ExecutionIsolationStrategy.THREAD;
+			this.executorTimeout = HystrixTaskHandler.DEFAULT_EXECUTOR_TIMEOUT;
+			this.threadPoolSize = TaskHandlerExecutor.DEFAULT_HYSTRIX_THREAD_POOL_SIZE;
+		}
+		Integer commandInvocationType = (taskHandler.getCallInvocationTypePerCommand() == null ? null : 
+			taskHandler.getCallInvocationTypePerCommand().get(this.commandName));
+		this.callInvocationType = (commandInvocationType == null ? taskHandler.getCallInvocationType() : commandInvocationType);
+		TaskPriority commandPriority = (!(taskHandler instanceof HystrixTaskHandler) || ((HystrixTaskHandler)taskHandler).getPriorityPerCommand() == null ? 
+				null : ((HystrixTaskHandler)taskHandler).getPriorityPerCommand().get(commandName));
+		this.priority = (commandPriority == null ? TaskPriority.NORMAL : commandPriority);
+		if (this.isolationStrategy == ExecutionIsolationStrategy.SEMAPHORE) {
+			this.setter = Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey(taskHandler.getName()))
+					.andCommandKey(HystrixCommandKey.Factory.asKey(this.commandName))
+					.andCommandPropertiesDefaults(HystrixCommandProperties.Setter().withExecutionIsolationStrategy(ExecutionIsolationStrategy.SEMAPHORE));
+		} else {
+			this.setter = Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey(taskHandler.getName()))
+					.andCommandKey(HystrixCommandKey.Factory.asKey(this.commandName))
+					.andThreadPoolKey(HystrixThreadPoolKey.Factory.asKey(this.threadPoolName))
+					.andThreadPoolPropertiesDefaults(HystrixThreadPoolProperties.Setter().withCoreSize(this.threadPoolSize))
+					.andCommandPropertiesDefaults(HystrixCommandProperties.Setter().withExecutionIsolationThreadTimeoutInMilliseconds(this.executorTimeout));
+		}
+		this.collapserSetter = createCollapserSetter(taskHandler, commandName, this.commandName, this.threadPoolName);
+		this.resultCache = resultCache;
+		this.concurrencyLimiter = concurrencyLimiter;
+		this.requestHedger = requestHedger;
+		this.lightweightExecutor = null;
+	}
+
+	/**
+	 * Constructor for this class. Creates a descriptor same as the specified one, that executes the command using the specified LightweightCommandExecutor
+	 * @param descriptor the CommandDispatchDescriptor to copy
+	 * @param lightweightExecutor the LightweightCommandExecutor of the command
+	 */
+	public CommandDispatchDescriptor(CommandDispatchDescriptor descriptor, LightweightCommandExecutor lightweightExecutor) {
+		this.taskHandler = descriptor.taskHandler;
+		this.commandName = descriptor.commandName;
+		this.threadPoolName = descriptor.threadPoolName;
+		this.executorTimeout = descriptor.executorTimeout;
+		this.threadPoolSize = descriptor.threadPoolSize;
+		this.isolationStrategy = descriptor.isolationStrategy;
+		this.callInvocationType = descriptor.callInvocationType;
+		this.priority = descriptor.priority;
+		this.setter = descriptor.setter;
+		this.collapserSetter = descriptor.collapserSetter;
+		this.resultCache = descriptor.resultCache;
+		this.concurrencyLimiter = descriptor.concurrencyLimiter;
+		this.requestHedger = descriptor.requestHedger;
+		this.lightweightExecutor = lightweightExecutor;
+	}
+
+	/**
+	 * Returns true if the command may be executed using a {@link LightweightCommandExecutor}
+	 * @return true if the TaskHandler opted for lightweight execution, uses semaphore isolation and the command is a synchronous call
+	 */
+	public boolean isLightweightExecutable() {
+		return this.taskHandler instanceof HystrixTaskHandler && ((HystrixTaskHandler)this.taskHandler).isLightweightExecution()
+				&& this.isolationStrategy == ExecutionIsolationStrategy.SEMAPHORE && this.callInvocationType == TaskHandler.SYNC_CALL;
+	}
+
+	/**
+	 * Returns true if concurrent requests of the command are collapsed and executed as a batch
+	 * @return true if the TaskHandler configured a collapsing window for the command
+	 */
+	public boolean isCollapsed() {
+		return this.collapserSetter != null;
+	}
+
+	/**
+	 * Helper method to create the Hystrix collapser setter for the specified command. Returns null if requests of the command are not collapsed.
+	 * Collapsers are scoped globally and are keyed by command and thread pool name, so that a batch is always executed on the command's thread pool.
+	 */
+	private static HystrixCollapser.Setter createCollapserSetter(TaskHandler taskHandler, String commandName, String sanitizedCommandName, String threadPoolName) {
+		if (!(taskHandler instanceof HystrixTaskHandler) || taskHandler instanceof StreamingTaskHandler) {
+			return null;
+		}
+		HystrixTaskHandler hystrixTaskHandler = (HystrixTaskHandler) taskHandler;
+		Integer collapserWindow = (hystrixTaskHandler.getCollapserWindows() == null ? null : hystrixTaskHandler.getCollapserWindows().get(commandName));
+		if (collapserWindow == null) {
+			return null;
+		}
+		String collapserName = sanitizedCommandName.equals(threadPoolName) ? sanitizedCommandName : sanitizedCommandName + threadPoolName;
+		return HystrixCollapser.Setter.withCollapserKey(HystrixCollapserKey.Factory.asKey(collapserName))
+				.andScope(HystrixCollapser.Scope.GLOBAL)
+				.andCollapserPropertiesDefaults(HystrixCollapserProperties.Setter().withTimerDelayInMilliseconds(collapserWindow)
+						.withMaxRequestsInBatch(hystrixTaskHandler.getCollapserMaxBatchSize()));
+	}
+
+	/**
+	 * Helper method to remove non alphanumeric characters from the specified name
+	 */
+	static String sanitize(String name) {
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || c == '_')) {
+				return name.replaceAll(TaskHandlerExecutorRepository.ONLY_ALPHANUMERIC_REGEX, "");
+			}
+		}
+		return name;
+	}
+
+	/** Start Getter/Setter methods */
+	public TaskHandler getTaskHandler() {
+		return this.taskHandler;
+	}
+	public String getCommandName() {
+		return this.commandName;
+	}
+	public String getThreadPoolName() {
+		return this.threadPoolName;
+	}
+	public int getExecutorTimeout() {
+		return this.executorTimeout;
+	}
+	public int getThreadPoolSize() {
+		return this.threadPoolSize;
+	}
+	public ExecutionIsolationStrategy getIsolationStrategy() {
+		return this.isolationStrategy;
+	}
+	public int getCallInvocationType() {
+		return this.callInvocationType;
+	}
+	public TaskPriority getPriority() {
+		return this.priority;
+	}
+	public Setter getSetter() {
+		return this.setter;
+	}
+	public HystrixCollapser.Setter getCollapserSetter() {
+		return this.collapserSetter;
+	}
+	public ResultCache getResultCache() {
+		return this.resultCache;
+	}
+	public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+		return this.concurrencyLimiter;
+	}
+	public RequestHedger getRequestHedger() {
+		return this.requestHedger;
+	}
+	public LightweightCommandExecutor getLightweightExecutor() {
+		return this.lightweightExecutor;
+	}
+	/** End Getter/Setter methods */
+
+}
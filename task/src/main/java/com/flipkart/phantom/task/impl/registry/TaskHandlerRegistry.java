@@ -16,12 +16,26 @@
 
 package com.flipkart.phantom.task.impl.registry;
 
+import com.flipkart.phantom.task.impl.ConcurrencyStrategyRegistrar;
 import com.flipkart.phantom.task.impl.HystrixTaskHandler;
+import com.flipkart.phantom.task.impl.LightweightCommandExecutor;
+import com.flipkart.phantom.task.impl.PriorityLaneConcurrencyStrategy;
 import com.flipkart.phantom.task.impl.TaskHandler;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutor;
+import com.flipkart.phantom.task.impl.VirtualThreadConcurrencyStrategy;
+import com.flipkart.phantom.task.impl.cache.ResultCache;
+import com.flipkart.phantom.task.impl.cache.ResultCacheConfig;
+import com.flipkart.phantom.task.impl.hedge.HedgeConfig;
+import com.flipkart.phantom.task.impl.hedge.RequestHedger;
+import com.flipkart.phantom.task.impl.limit.AdaptiveConcurrencyLimiter;
+import com.flipkart.phantom.task.impl.limit.AdaptiveLimitConfig;
+import com.flipkart.phantom.task.impl.priority.PriorityLaneQueue;
 import com.flipkart.phantom.task.spi.AbstractHandler;
 import com.flipkart.phantom.task.spi.TaskContext;
 import com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry;
 import com.flipkart.phantom.task.spi.registry.HandlerConfigInfo;
+import com.netflix.config.ConfigurationManager;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
 import org.trpr.platform.core.PlatformException;
 import org.trpr.platform.core.impl.logging.LogFactory;
 import org.trpr.platform.core.spi.logging.Logger;
@@ -50,6 +64,33 @@ public class TaskHandlerRegistry extends AbstractHandlerRegistry {
 	/** Map storing the mapping of pool Name to its core threadpool size */
 	private Map<String,Integer> poolToThreadPoolSize = new ConcurrentHashMap<String, Integer>();
 
+	/** Immutable dispatch table of command name to the dispatch descriptor for executing the command on its own thread pool */
+	private volatile Map<String,CommandDispatchDescriptor> dispatchTable = Collections.emptyMap();
+
+	/** Immutable dispatch table of command name and configured pool name to the dispatch descriptor for executing the command on the pool */
+	private volatile Map<String,Map<String,CommandDispatchDescriptor>> poolDispatchTable = Collections.emptyMap();
+
+	/** Map storing the mapping of a command name to the cache of its results */
+	private Map<String,ResultCache> resultCaches = new ConcurrentHashMap<String, ResultCache>();
+
+	/** Map storing the mapping of a command name to the adaptive limiter of its in-flight calls */
+	private Map<String,AdaptiveConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<String, AdaptiveConcurrencyLimiter>();
+
+	/** Map storing the mapping of a command name to the hedger of its executions */
+	private Map<String,RequestHedger> requestHedgers = new ConcurrentHashMap<String, RequestHedger>();
+
+	/** Map storing the mapping of a command name to its lightweight executor, retained across rebuilds of the dispatch tables */
+	private Map<String,LightweightCommandExecutor> lightweightExecutors = new ConcurrentHashMap<String, LightweightCommandExecutor>();
+
+	/** Indicator to register the PriorityLaneConcurrencyStrategy, so that thread pools may be resized at runtime, even if no TaskHandler opts for it */
+	private boolean threadPoolResizingEnabled;
+
+	/** Indicator to log unavailability of virtual threads only once */
+	private boolean virtualThreadsUnavailableLogged;
+
+	/** The Hystrix properties set when resizing thread pools and changing executor timeouts at runtime */
+	private Set<String> hystrixPropertyOverrides = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     /**
      * Abstract method implementation
      * @see com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry#init(java.util.List, com.flipkart.phantom.task.spi.TaskContext)
@@ -60,6 +101,9 @@ public class TaskHandlerRegistry extends AbstractHandlerRegistry {
     @Override
     public AbstractHandlerRegistry.InitedHandlerInfo[] init(List<HandlerConfigInfo> handlerConfigInfoList, TaskContext taskContext) throws Exception {
     	List<AbstractHandlerRegistry.InitedHandlerInfo> initedHanlderInfos = new LinkedList<AbstractHandlerRegistry.InitedHandlerInfo>();    	
+        if (this.threadPoolResizingEnabled || this.isConcurrencyStrategyRequired(handlerConfigInfoList)) {
+            ConcurrencyStrategyRegistrar.register(); // register before TaskHandlers create thread pools, so that all thread pools may be resized
+        }
         for (HandlerConfigInfo handlerConfigInfo : handlerConfigInfoList) {
             String[] taskHandlerBeanIds = handlerConfigInfo.getProxyHandlerContext().getBeanNamesForType(TaskHandler.class);
             for (String taskHandlerBeanId : taskHandlerBeanIds) {
@@ -80,6 +124,29 @@ public class TaskHandlerRegistry extends AbstractHandlerRegistry {
         return initedHanlderInfos.toArray(new AbstractHandlerRegistry.InitedHandlerInfo[0]);        
     }
 
+    /**
+     * Helper method to determine if the {@link PriorityLaneConcurrencyStrategy} is required i.e. if any of the configured TaskHandlers opts for priority
+     * lanes or virtual threads. Registering the strategy takes over the JVM wide Hystrix concurrency strategy, see {@link #setThreadPoolResizingEnabled(boolean)}
+     */
+    private boolean isConcurrencyStrategyRequired(List<HandlerConfigInfo> handlerConfigInfoList) {
+        for (HandlerConfigInfo handlerConfigInfo : handlerConfigInfoList) {
+            for (String taskHandlerBeanId : handlerConfigInfo.getProxyHandlerContext().getBeanNamesForType(HystrixTaskHandler.class)) {
+                if (this.isConcurrencyStrategyRequired((HystrixTaskHandler) handlerConfigInfo.getProxyHandlerContext().getBean(taskHandlerBeanId))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper method to determine if the specified TaskHandler opts for priority lanes or virtual threads, which need the {@link PriorityLaneConcurrencyStrategy}
+     */
+    private boolean isConcurrencyStrategyRequired(HystrixTaskHandler taskHandler) {
+        return taskHandler.getIsolationStrategy() == ExecutionIsolationStrategy.THREAD 
+                && (taskHandler.getPriorityLaneQueueSize() > 0 || taskHandler.isVirtualThreadExecution());
+    }
+
     /**
      * Abstract method implementation
      * @see com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry#reinitHandler(String, com.flipkart.phantom.task.spi.TaskContext)
@@ -97,6 +164,10 @@ public class TaskHandlerRegistry extends AbstractHandlerRegistry {
                 LOGGER.error("Error initializing TaskHandler {}. Error is: " + e.getMessage(), name, e);
                 throw new PlatformException("Error reinitialising TaskHandler: " + name, e);
             }
+            this.createResultCaches(handler); // drop results cached before reinit
+            this.createConcurrencyLimiters(handler);
+            this.createRequestHedgers(handler);
+            this.buildDispatchTable(); // handler properties may have changed on reinit
         }
     }
 
@@ -160,6 +231,11 @@ public class TaskHandlerRegistry extends AbstractHandlerRegistry {
             }
             this.commandToTaskHandler.put(commandName, taskHandler);
 		}
+        this.clearHystrixPropertyOverrides(taskHandler); // configured executor timeouts and pool sizes take precedence over those changed at runtime
+        this.createResultCaches(taskHandler);
+        this.createConcurrencyLimiters(taskHandler);
+        this.createRequestHedgers(taskHandler);
+        this.buildDispatchTable();
 
 	}
 
@@ -183,6 +259,192 @@ public class TaskHandlerRegistry extends AbstractHandlerRegistry {
         }
     }
 
+    /**
+     * Resizes the specified thread pool without reinitializing the TaskHandlers whose commands execute on it. The running thread pool is resized at once
+     * and commands dispatched afterwards see the new size. The maximum limit of the command's {@link AdaptiveConcurrencyLimiter}, if any and if not 
+     * configured explicitly, follows the size of the command's own thread pool. The change is not persisted : the size configured for the thread pool applies again when
+     * the TaskHandler configuration is next deployed.
+     * @param threadPoolName the thread pool name i.e. a command name or a pool name configured using {@link HystrixTaskHandler#getThreadPoolSizeParams()}
+     * @param coreSize the new core size of the thread pool
+     * @param queueSize the new maximum number of queued commands, for thread pools that have priority lanes. Null to leave the queue size unchanged
+     * @throws IllegalArgumentException if the thread pool is unknown, if the sizes are not positive or if a queue size is specified for a thread pool that
+     * 	does not queue commands
+     * @throws IllegalStateException if the {@link PriorityLaneConcurrencyStrategy} is not registered, as runtime resizing is not enabled (see 
+     * 	{@link #setThreadPoolResizingEnabled(boolean)}) and no TaskHandler opts for priority lanes or virtual threads, or as another Hystrix concurrency 
+     * 	strategy is registered
+     */
+    public synchronized void resizeThreadPool(String threadPoolName, int coreSize, Integer queueSize) {
+        if (!this.poolToThreadPoolSize.containsKey(threadPoolName) && !this.commandToTaskHandler.containsKey(threadPoolName)) {
+            throw new IllegalArgumentException("Unknown thread pool : " + threadPoolName);
+        }
+        if (coreSize <= 0 || (queueSize != null && queueSize <= 0)) {
+            throw new IllegalArgumentException("Thread pool core size and queue size must be positive. Core size : " + coreSize + ", queue size : " + queueSize);
+        }
+        PriorityLaneConcurrencyStrategy strategy = ConcurrencyStrategyRegistrar.getRegisteredStrategy();
+        if (strategy == null) {
+            throw new IllegalStateException("Thread pools cannot be resized as runtime resizing is not enabled or another Hystrix concurrency strategy is registered");
+        }
+        String hystrixThreadPoolName = CommandDispatchDescriptor.sanitize(threadPoolName);
+        PriorityLaneQueue queue = strategy.getPriorityLaneQueue(hystrixThreadPoolName);
+        if (queueSize != null && queue == null) {
+            throw new IllegalArgumentException("Thread pool " + threadPoolName + " does not queue commands. Only thread pools that have priority lanes do");
+        }
+        LOGGER.info("Resizing thread pool " + threadPoolName + " to core size : " + coreSize + (queueSize == null ? "" : ", queue size : " + queueSize));
+        this.setHystrixProperty("hystrix.threadpool." + hystrixThreadPoolName + ".coreSize", coreSize);
+        strategy.resizeThreadPool(hystrixThreadPoolName, coreSize);
+        if (queueSize != null) {
+            queue.setCapacity(queueSize);
+        }
+        this.poolToThreadPoolSize.put(threadPoolName, coreSize);
+        AdaptiveConcurrencyLimiter limiter = this.concurrencyLimiters.get(threadPoolName);
+        if (limiter != null && !limiter.isMaxLimitConfigured()) { // the limit is bounded by the command's thread pool size
+            limiter.setMaxLimit(coreSize);
+        }
+        this.buildDispatchTable();
+    }
+
+    /**
+     * Returns true if thread pools may be resized at runtime, see {@link #resizeThreadPool(String, int, Integer)}
+     * @return true if the {@link PriorityLaneConcurrencyStrategy} is registered
+     */
+    public boolean isThreadPoolResizable() {
+        return ConcurrencyStrategyRegistrar.getRegisteredStrategy() != null;
+    }
+
+    /**
+     * Changes the executor timeout of the specified command without reinitializing its TaskHandler. Commands dispatched afterwards time out after the 
+     * new timeout. The change is not persisted : the timeout configured for the command applies again when the TaskHandler configuration is next deployed.
+     * @param commandName the command name
+     * @param executorTimeout the new executor timeout in milliseconds
+     * @throws IllegalArgumentException if the timeout is not positive or if the command is not executed by a {@link HystrixTaskHandler}
+     */
+    public synchronized void setExecutorTimeout(String commandName, int executorTimeout) {
+        TaskHandler taskHandler = this.commandToTaskHandler.get(commandName);
+        if (!(taskHandler instanceof HystrixTaskHandler) || executorTimeout <= 0) {
+            throw new IllegalArgumentException("Executor timeout : " + executorTimeout + " cannot be set for command : " + commandName 
+                    + ". The timeout must be positive and the command must be executed by a HystrixTaskHandler");
+        }
+        LOGGER.info("Changing executor timeout of command " + commandName + " to " + executorTimeout + " ms");
+        HystrixTaskHandler hystrixTaskHandler = (HystrixTaskHandler)taskHandler;
+        Map<String,Integer> executorTimeouts = new HashMap<String,Integer>(hystrixTaskHandler.getExecutorTimeouts()); // copied, as it is read without locking
+        executorTimeouts.put(commandName, executorTimeout);
+        hystrixTaskHandler.setExecutorTimeouts(executorTimeouts);
+        this.setHystrixProperty("hystrix.command." + CommandDispatchDescriptor.sanitize(commandName) + ".execution.isolation.thread.timeoutInMilliseconds", 
+                executorTimeout);
+        this.buildDispatchTable();
+    }
+
+    /**
+     * Returns the dispatch descriptors of the registered commands, for their thread pool sizes and executor timeouts
+     * @return map of command name to the CommandDispatchDescriptor for executing the command on its own thread pool
+     */
+    public Map<String,CommandDispatchDescriptor> getDispatchDescriptors() {
+        return this.dispatchTable;
+    }
+
+    /**
+     * Returns the sizes of the thread pools configured using {@link HystrixTaskHandler#getThreadPoolSizeParams()} and 
+     * {@link HystrixTaskHandler#getCommandPoolSizeParams()}, including changes made at runtime
+     * @return map of thread pool name to its core size
+     */
+    public Map<String,Integer> getThreadPoolSizes() {
+        return new TreeMap<String,Integer>(this.poolToThreadPoolSize);
+    }
+
+    /**
+     * Helper method to set the specified Hystrix property. Hystrix applies the changed value to its commands and thread pools dynamically
+     */
+    private void setHystrixProperty(String name, int value) {
+        ConfigurationManager.getConfigInstance().setProperty(name, value);
+        this.hystrixPropertyOverrides.add(name);
+    }
+
+    /**
+     * Helper method to clear the Hystrix properties set at runtime for the commands and thread pools of the specified TaskHandler
+     */
+    private void clearHystrixPropertyOverrides(TaskHandler taskHandler) {
+        if (this.hystrixPropertyOverrides.isEmpty()) {
+            return;
+        }
+        Set<String> threadPoolNames = new HashSet<String>(Arrays.asList(taskHandler.getCommands()));
+        if (taskHandler instanceof HystrixTaskHandler) {
+            threadPoolNames.addAll(((HystrixTaskHandler)taskHandler).getThreadPoolSizeParams().keySet());
+            threadPoolNames.addAll(((HystrixTaskHandler)taskHandler).getCommandPoolSizeParams().keySet());
+        }
+        List<String> names = new LinkedList<String>();
+        for (String commandName : taskHandler.getCommands()) {
+            names.add("hystrix.command." + CommandDispatchDescriptor.sanitize(commandName) + ".execution.isolation.thread.timeoutInMilliseconds");
+        }
+        for (String threadPoolName : threadPoolNames) {
+            names.add("hystrix.threadpool." + CommandDispatchDescriptor.sanitize(threadPoolName) + ".coreSize");
+        }
+        for (String name : names) {
+            if (this.hystrixPropertyOverrides.remove(name)) {
+                ConfigurationManager.getConfigInstance().clearProperty(name);
+            }
+        }
+    }
+
+    /**
+     * Helper method to create the {@link ResultCache} for commands of the specified TaskHandler that have a {@link TaskHandler#getResultCacheConfigPerCommand()}.
+     * Replaces existing caches of the commands, if any.
+     */
+    private void createResultCaches(TaskHandler taskHandler) {
+        for (String commandName : taskHandler.getCommands()) {
+            ResultCacheConfig config = (taskHandler.getResultCacheConfigPerCommand() == null ? null : taskHandler.getResultCacheConfigPerCommand().get(commandName));
+            if (config == null) {
+                this.resultCaches.remove(commandName);
+            } else {
+                LOGGER.info("Caching results of command " + commandName + " for " + config.getTtlMillis() + " ms using " + config.getEvictionPolicy() + " eviction");
+                this.resultCaches.put(commandName, new ResultCache(commandName, config));
+            }
+        }
+    }
+
+    /**
+     * Helper method to create the {@link AdaptiveConcurrencyLimiter} for commands of the specified TaskHandler that have a 
+     * {@link HystrixTaskHandler#getAdaptiveLimitConfigPerCommand()}. The limit is bounded by the command's thread pool size, unless configured otherwise.
+     * Replaces existing limiters of the commands, if any.
+     */
+    private void createConcurrencyLimiters(TaskHandler taskHandler) {
+        Map<String,AdaptiveLimitConfig> configs = (taskHandler instanceof HystrixTaskHandler ? 
+                ((HystrixTaskHandler)taskHandler).getAdaptiveLimitConfigPerCommand() : null);
+        for (String commandName : taskHandler.getCommands()) {
+            AdaptiveLimitConfig config = (configs == null ? null : configs.get(commandName));
+            if (config == null) {
+                this.concurrencyLimiters.remove(commandName);
+            } else {
+                Integer poolSize = this.poolToThreadPoolSize.get(commandName);
+                AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(commandName, config, 
+                        poolSize == null ? TaskHandlerExecutor.DEFAULT_HYSTRIX_THREAD_POOL_SIZE : poolSize);
+                LOGGER.info("Limiting concurrent calls of command " + commandName + " adaptively using " + limiter.getAlgorithm() + ". Maximum limit : " 
+                        + limiter.getMaxLimit());
+                this.concurrencyLimiters.put(commandName, limiter);
+            }
+        }
+    }
+
+    /**
+     * Helper method to create the {@link RequestHedger} for commands of the specified TaskHandler that have a {@link HystrixTaskHandler#getHedgeConfigPerCommand()}.
+     * Replaces existing hedgers of the commands, if any.
+     */
+    private void createRequestHedgers(TaskHandler taskHandler) {
+        Map<String,HedgeConfig> configs = (taskHandler instanceof HystrixTaskHandler ? ((HystrixTaskHandler)taskHandler).getHedgeConfigPerCommand() : null);
+        for (String commandName : taskHandler.getCommands()) {
+            HedgeConfig config = (configs == null ? null : configs.get(commandName));
+            if (config == null) {
+                this.requestHedgers.remove(commandName);
+            } else if (((HystrixTaskHandler)taskHandler).getIsolationStrategy() != ExecutionIsolationStrategy.THREAD) {
+                LOGGER.warn("Executions of command " + commandName + " will not be hedged. Hedging applies to thread isolated TaskHandlers only");
+                this.requestHedgers.remove(commandName);
+            } else {
+                LOGGER.info("Hedging executions of command " + commandName + " at p" + config.getPercentile() + " latency, within a budget of "
+                        + config.getBudgetPercentage() + "%");
+                this.requestHedgers.put(commandName, new RequestHedger(commandName, config));
+            }
+        }
+    }
+
     /**
      * Abstract method implementation
      * @see com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry#unregisterTaskHandler(com.flipkart.phantom.task.spi.AbstractHandler)
@@ -191,7 +453,12 @@ public class TaskHandlerRegistry extends AbstractHandlerRegistry {
 	public void unregisterTaskHandler(AbstractHandler taskHandler) {    	
 		for (String commandName: ((TaskHandler)taskHandler).getCommands()) {
 			this.commandToTaskHandler.remove(commandName);
+			this.resultCaches.remove(commandName);
+			this.concurrencyLimiters.remove(commandName);
+			this.requestHedgers.remove(commandName);
+			this.lightweightExecutors.remove(commandName);
 		}
+		this.buildDispatchTable();
 	}
 	
     /**
@@ -203,6 +470,143 @@ public class TaskHandlerRegistry extends AbstractHandlerRegistry {
         return this.commandToTaskHandler.get(commandString);
     }
 
+    /**
+     * Returns the {@link CommandDispatchDescriptor} for executing the given command on the given thread pool. The descriptor is looked up from the dispatch 
+     * table if the pool is the command's own pool or a configured pool. Otherwise a descriptor for the pool with the default size is created on every call
+     * and is not cached, as clients may name any number of pools.
+     * @param commandName the command name
+     * @param threadPoolName the thread pool name. Defaults to the command name if null or empty
+     * @return the CommandDispatchDescriptor, null if no TaskHandler is registered for the command
+     */
+    public CommandDispatchDescriptor getDispatchDescriptor(String commandName, String threadPoolName) {
+        CommandDispatchDescriptor commandDescriptor = this.dispatchTable.get(commandName);
+        if (commandDescriptor == null || threadPoolName == null || threadPoolName.length() == 0 || threadPoolName.equals(commandName)
+                || commandDescriptor.getIsolationStrategy() == ExecutionIsolationStrategy.SEMAPHORE) { // pools do not apply to semaphore isolated commands
+            return commandDescriptor;
+        }
+        Map<String,CommandDispatchDescriptor> poolDescriptors = this.poolDispatchTable.get(commandName);
+        CommandDispatchDescriptor descriptor = (poolDescriptors == null ? null : poolDescriptors.get(threadPoolName));
+        if (descriptor != null) {
+            return descriptor;
+        }
+        LOGGER.debug("Did not find a predefined pool size for " + threadPoolName + ". Falling back to default value");
+        descriptor = new CommandDispatchDescriptor(commandDescriptor.getTaskHandler(), commandName, threadPoolName, null, commandDescriptor.getResultCache(),
+                commandDescriptor.getConcurrencyLimiter(), commandDescriptor.getRequestHedger());
+        this.selectThreadPool(descriptor);
+        return descriptor;
+    }
+
+    /**
+     * Helper method to build the dispatch tables from the registered commands and configured pool sizes. The tables are replaced, not modified, and 
+     * may therefore be read without locking.
+     */
+    private synchronized void buildDispatchTable() {
+        Map<String,CommandDispatchDescriptor> dispatchTable = new HashMap<String,CommandDispatchDescriptor>();
+        Map<String,Map<String,CommandDispatchDescriptor>> poolDispatchTable = new HashMap<String,Map<String,CommandDispatchDescriptor>>();
+        for (Map.Entry<String,TaskHandler> entry : this.commandToTaskHandler.entrySet()) {
+            String commandName = entry.getKey();
+            ResultCache resultCache = this.resultCaches.get(commandName);
+            AdaptiveConcurrencyLimiter concurrencyLimiter = this.concurrencyLimiters.get(commandName);
+            RequestHedger requestHedger = this.requestHedgers.get(commandName);
+            CommandDispatchDescriptor descriptor = new CommandDispatchDescriptor(entry.getValue(), commandName, commandName, this.poolToThreadPoolSize.get(commandName), 
+                    resultCache, concurrencyLimiter, requestHedger);
+            if (descriptor.isLightweightExecutable()) {
+                descriptor = new CommandDispatchDescriptor(descriptor, this.getLightweightExecutor(commandName, descriptor));
+            } else {
+                this.lightweightExecutors.remove(commandName);
+            }
+            dispatchTable.put(commandName, descriptor);
+            this.selectThreadPool(descriptor);
+            if (descriptor.getIsolationStrategy() == ExecutionIsolationStrategy.SEMAPHORE) {
+                continue; // pools do not apply to semaphore isolated commands
+            }
+            Map<String,CommandDispatchDescriptor> poolDescriptors = new HashMap<String,CommandDispatchDescriptor>();
+            for (Map.Entry<String,Integer> pool : this.poolToThreadPoolSize.entrySet()) {
+                if (!pool.getKey().equals(commandName)) {
+                    CommandDispatchDescriptor poolDescriptor = new CommandDispatchDescriptor(entry.getValue(), commandName, pool.getKey(), pool.getValue(), resultCache, 
+                            concurrencyLimiter, requestHedger);
+                    poolDescriptors.put(pool.getKey(), poolDescriptor);
+                    this.selectThreadPool(poolDescriptor);
+                }
+            }
+            poolDispatchTable.put(commandName, Collections.unmodifiableMap(poolDescriptors));
+        }
+        this.dispatchTable = Collections.unmodifiableMap(dispatchTable);
+        this.poolDispatchTable = Collections.unmodifiableMap(poolDispatchTable);
+    }
+
+    /**
+     * Helper method to get the {@link LightweightCommandExecutor} of the specified command. The existing executor is updated with the 
+     * settings of the descriptor, so that the state of its circuit and its in-flight calls are retained. An executor is created if none exists or if the
+     * command is now executed by another TaskHandler.
+     */
+    private LightweightCommandExecutor getLightweightExecutor(String commandName, CommandDispatchDescriptor descriptor) {
+        LightweightCommandExecutor executor = this.lightweightExecutors.get(commandName);
+        if (executor != null && executor.getTaskHandler() == descriptor.getTaskHandler()) {
+            executor.update(descriptor);
+        } else {
+            executor = new LightweightCommandExecutor(descriptor);
+            this.lightweightExecutors.put(commandName, executor);
+        }
+        return executor;
+    }
+
+    /**
+     * Helper method to select the thread pool of the specified descriptor for execution on virtual threads and for priority lanes, if its TaskHandler 
+     * opted for these. Registers the {@link PriorityLaneConcurrencyStrategy} in that case, or if runtime resizing is enabled, before thread pools are created.
+     */
+    private void selectThreadPool(CommandDispatchDescriptor descriptor) {
+        if (descriptor.getIsolationStrategy() != ExecutionIsolationStrategy.THREAD) {
+            return;
+        }
+        if (this.threadPoolResizingEnabled) {
+            ConcurrencyStrategyRegistrar.register();
+        }
+        if (!(descriptor.getTaskHandler() instanceof HystrixTaskHandler) || !this.isConcurrencyStrategyRequired((HystrixTaskHandler)descriptor.getTaskHandler())) {
+            return;
+        }
+        PriorityLaneConcurrencyStrategy strategy = ConcurrencyStrategyRegistrar.register();
+        HystrixTaskHandler taskHandler = (HystrixTaskHandler)descriptor.getTaskHandler();
+        if (taskHandler.getPriorityLaneQueueSize() > 0 && strategy != null) {
+            strategy.addPriorityLanePool(descriptor.getThreadPoolName(), taskHandler.getPriorityLaneQueueSize(), taskHandler.getPriorityLaneStarvationMillis());
+        }
+        if (taskHandler.isVirtualThreadExecution()) {
+            if (strategy == null || !VirtualThreadConcurrencyStrategy.isSupported()) {
+                if (!this.virtualThreadsUnavailableLogged) {
+                    LOGGER.warn("Virtual threads are not available. Commands of TaskHandler : " + descriptor.getTaskHandler().getName() + " will use platform threads");
+                    this.virtualThreadsUnavailableLogged = true;
+                }
+                return;
+            }
+            strategy.addVirtualThreadPool(descriptor.getThreadPoolName());
+        }
+    }
+
+    /**
+     * Returns the work queues of thread pools that have priority lanes i.e. of TaskHandlers that have a {@link HystrixTaskHandler#getPriorityLaneQueueSize()}
+     * @return the PriorityLaneQueue instances
+     */
+    public Collection<PriorityLaneQueue> getPriorityLaneQueues() {
+        PriorityLaneConcurrencyStrategy strategy = ConcurrencyStrategyRegistrar.getRegisteredStrategy();
+        return strategy == null ? Collections.<PriorityLaneQueue>emptyList() : strategy.getPriorityLaneQueues();
+    }
+
+    /**
+     * Returns the caches of results of commands that have a {@link TaskHandler#getResultCacheConfigPerCommand()}
+     * @return the ResultCache instances
+     */
+    public Collection<ResultCache> getResultCaches() {
+        return Collections.unmodifiableCollection(this.resultCaches.values());
+    }
+
+    /**
+     * Returns the adaptive limiters of in-flight calls of commands that have a {@link HystrixTaskHandler#getAdaptiveLimitConfigPerCommand()}
+     * @return the AdaptiveConcurrencyLimiter instances
+     */
+    public Collection<AdaptiveConcurrencyLimiter> getConcurrencyLimiters() {
+        return Collections.unmodifiableCollection(this.concurrencyLimiters.values());
+    }
+
     /**
      * Get the Thread pool size for a pool/command name.
      * @param poolOrCommandName the pool or command name for which thread pool size is required
@@ -212,4 +616,20 @@ public class TaskHandlerRegistry extends AbstractHandlerRegistry {
         return this.poolToThreadPoolSize.get(poolOrCommandName);
     }
 
+    /** Start Getter/Setter methods */
+    public boolean isThreadPoolResizingEnabled() {
+        return this.threadPoolResizingEnabled;
+    }
+    /**
+     * Enables resizing of thread pools at runtime, see {@link #resizeThreadPool(String, int, Integer)}. Resizing needs the {@link PriorityLaneConcurrencyStrategy},
+     * which is otherwise registered only if a TaskHandler opts for priority lanes or virtual threads. Note that Hystrix allows a single concurrency strategy
+     * per JVM : once registered, the strategy creates all Hystrix thread pools of the JVM, including those of other libraries, and no other strategy
+     * may be registered. Must be set before the registry is initialized.
+     * @param threadPoolResizingEnabled true to enable resizing thread pools at runtime
+     */
+    public void setThreadPoolResizingEnabled(boolean threadPoolResizingEnabled) {
+        this.threadPoolResizingEnabled = threadPoolResizingEnabled;
+    }
+    /** End Getter/Setter methods */
+
 }
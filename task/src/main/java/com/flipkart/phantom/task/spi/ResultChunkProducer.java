@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.spi;
+
+/**
+ * <code>ResultChunkProducer</code> produces the data of a {@link com.flipkart.phantom.task.impl.TaskResult} as a sequence of chunks, for results that are
+ * too large to be held in memory in entirety or are produced incrementally. A TaskHandler returns a producer as the TaskResult data and transports that 
+ * support chunked responses write each chunk as it is produced, fetching the next chunk only after the previous one has been written out.
+ * Chunked results are not supported as the results of the sub-commands of a multi command, the producer is closed without reading any chunk.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public interface ResultChunkProducer {
+
+	/**
+	 * Returns the next chunk of result data. Called by a single thread at a time, but not necessarily the same thread for all chunks. Netty transports
+	 * call this method on a dedicated executor and never on their I/O threads, blocking transports call it on the thread that writes the response.
+	 * @return the next chunk of result data, null when all chunks have been produced
+	 * @throws Exception in case of errors producing the chunk. The response is aborted
+	 */
+	public byte[] nextChunk() throws Exception;
+
+	/**
+	 * Releases resources held by this producer. Called once, when all chunks have been produced or when writing the response has been aborted
+	 */
+	public void close();
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.spi;
+
+import java.io.OutputStream;
+
+/**
+ * <code>ResultCodec</code> encodes the non byte array data of a {@link com.flipkart.phantom.task.impl.TaskResult} when it is written out by a transport.
+ * Codecs may be configured per {@link com.flipkart.phantom.task.impl.TaskHandler} and per command. Java serialization is used when no codec is configured.
+ * Implementations must be thread-safe.
+ *
+ * @version 1.0, 17 Oct 2026
+ */
+public interface ResultCodec {
+
+	/**
+	 * Encodes the specified data and writes it to the specified OutputStream. Implementations should write directly to the stream and must not close it.
+	 * @param data the TaskResult data object, never null
+	 * @param outputStream the OutputStream to write the encoded data to
+	 * @throws Exception in case of encoding errors
+	 */
+	public void encode(Object data, OutputStream outputStream) throws Exception;
+
+}
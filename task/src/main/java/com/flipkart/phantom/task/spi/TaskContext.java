@@ -44,7 +44,8 @@ public interface TaskContext {
 	public String getConfig(String group, String key, int count);
 
 	/**
-	 * Executes a thrift identified by the specified command name. This command executes synchronously
+	 * Executes a thrift identified by the specified command name. This command executes synchronously. The command inherits the deadline, if any, of 
+	 * the command executing on the calling thread (see {@link com.flipkart.phantom.task.impl.CommandDeadline})
 	 * @param commandName the command to execute
 	 * @param data the command processing data
 	 * @param params data parameters
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl;
+
+import com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.netflix.config.ConfigurationManager;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the circuit, the concurrency limit and the retention across dispatch table rebuilds of {@link LightweightCommandExecutor}
+ */
+public class LightweightCommandExecutorTest {
+
+    private static final Map<String, String> NO_PARAMS = Collections.emptyMap();
+
+    private final List<String> properties = new ArrayList<String>();
+
+    @After
+    public void tearDown() {
+        for (String property : this.properties) {
+            ConfigurationManager.getConfigInstance().clearProperty(property);
+        }
+    }
+
+    @Test
+    public void testCircuitOpenAndClose() throws Exception {
+
+        this.setProperty("hystrix.command.lightweightCircuit.circuitBreaker.requestVolumeThreshold", 5);
+        this.setProperty("hystrix.command.lightweightCircuit.circuitBreaker.sleepWindowInMilliseconds", 60000);
+        FailingTaskHandler taskHandler = new FailingTaskHandler("lightweightCircuit");
+        LightweightCommandExecutor executor = register(taskHandler);
+        assertTrue("Command not executed lightweight", executor != null);
+
+        // failures below the request volume threshold do not open the circuit
+        taskHandler.failing = true;
+        for (int i = 0; i < 4; i++) {
+            assertTrue("Fallback not returned", "fallback".equals(executor.execute(null, NO_PARAMS, null).getMessage()));
+        }
+        assertTrue("Circuit opened below request volume threshold", !executor.isCircuitOpen());
+        executor.execute(null, NO_PARAMS, null);
+        assertTrue("Circuit not opened", executor.isCircuitOpen());
+
+        // calls are short-circuited within the sleep window, without executing the command
+        taskHandler.failing = false;
+        int executions = taskHandler.executions.get();
+        assertTrue("Fallback not returned", "fallback".equals(executor.execute(null, NO_PARAMS, null).getMessage()));
+        assertTrue("Short-circuited call executed", taskHandler.executions.get() == executions);
+
+        // a trial call is let through once the sleep window has elapsed, and checking the circuit does not let it through
+        this.setProperty("hystrix.command.lightweightCircuit.circuitBreaker.sleepWindowInMilliseconds", 0);
+        assertTrue("Circuit closed by check", executor.isCircuitOpen() && executor.isCircuitOpen());
+        assertTrue("Trial call failed", executor.execute(null, NO_PARAMS, null).isSuccess());
+        assertTrue("Trial call not executed", taskHandler.executions.get() == executions + 1);
+        assertTrue("Circuit not closed by successful trial call", !executor.isCircuitOpen());
+
+    }
+
+    @Test
+    public void testForcedClosedCircuit() throws Exception {
+
+        this.setProperty("hystrix.command.lightweightForcedClosed.circuitBreaker.requestVolumeThreshold", 1);
+        this.setProperty("hystrix.command.lightweightForcedClosed.circuitBreaker.forceClosed", true);
+        FailingTaskHandler taskHandler = new FailingTaskHandler("lightweightForcedClosed");
+        LightweightCommandExecutor executor = register(taskHandler);
+
+        // failures do not open the circuit while it is forced closed, nor once it no longer is
+        taskHandler.failing = true;
+        for (int i = 0; i < 5; i++) {
+            executor.execute(null, NO_PARAMS, null);
+        }
+        assertTrue("Forced closed circuit opened", !executor.isCircuitOpen());
+        this.setProperty("hystrix.command.lightweightForcedClosed.circuitBreaker.forceClosed", false);
+        assertTrue("Circuit opened by failures while forced closed", !executor.isCircuitOpen());
+        executor.execute(null, NO_PARAMS, null);
+        assertTrue("Circuit not opened", executor.isCircuitOpen());
+
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+
+        this.setProperty("hystrix.command.lightweightLimit.execution.isolation.semaphore.maxConcurrentRequests", 1);
+        final FailingTaskHandler taskHandler = new FailingTaskHandler("lightweightLimit");
+        taskHandler.entered = new CountDownLatch(1);
+        taskHandler.release = new CountDownLatch(1);
+        final LightweightCommandExecutor executor = register(taskHandler);
+        final TaskResult[] blockedResult = new TaskResult[1];
+        Thread blockedCall = new Thread() {
+            public void run() {
+                blockedResult[0] = executor.execute(null, NO_PARAMS, null);
+            }
+        };
+        blockedCall.start();
+        assertTrue("Command not executed", taskHandler.entered.await(5, TimeUnit.SECONDS));
+
+        // calls in excess of the semaphore max concurrent requests are rejected
+        assertTrue("Call not rejected", "fallback".equals(executor.execute(null, NO_PARAMS, null).getMessage()));
+        assertTrue("Rejected call executed: " + taskHandler.executions.get(), taskHandler.executions.get() == 1);
+        taskHandler.release.countDown();
+        blockedCall.join(5000);
+        assertTrue("Blocked call failed", blockedResult[0] != null && blockedResult[0].isSuccess());
+        assertTrue("Call rejected after in-flight call completed", executor.execute(null, NO_PARAMS, null).isSuccess());
+
+    }
+
+    @Test
+    public void testExecutorRetainedOnRebuild() throws Exception {
+
+        this.setProperty("hystrix.command.lightweightRebuild.circuitBreaker.requestVolumeThreshold", 1);
+        this.setProperty("hystrix.command.lightweightRebuild.circuitBreaker.sleepWindowInMilliseconds", 60000);
+        this.properties.add("hystrix.command.lightweightRebuild.execution.isolation.thread.timeoutInMilliseconds");
+        FailingTaskHandler taskHandler = new FailingTaskHandler("lightweightRebuild");
+        TaskHandlerRegistry registry = new TaskHandlerRegistry();
+        registry.registerTaskHandler(taskHandler);
+        LightweightCommandExecutor executor = registry.getDispatchDescriptor("lightweightRebuild", null).getLightweightExecutor();
+        taskHandler.failing = true;
+        executor.execute(null, NO_PARAMS, null);
+        assertTrue("Circuit not opened", executor.isCircuitOpen());
+
+        // changing the timeout rebuilds the dispatch table, and the open circuit is retained
+        registry.setExecutorTimeout("lightweightRebuild", 5000);
+        LightweightCommandExecutor rebuiltExecutor = registry.getDispatchDescriptor("lightweightRebuild", null).getLightweightExecutor();
+        assertTrue("Executor replaced on rebuild", rebuiltExecutor == executor);
+        assertTrue("Circuit closed on rebuild", rebuiltExecutor.isCircuitOpen());
+
+    }
+
+    private void setProperty(String name, Object value) {
+        ConfigurationManager.getConfigInstance().setProperty(name, value);
+        this.properties.add(name);
+    }
+
+    private static LightweightCommandExecutor register(FailingTaskHandler taskHandler) {
+        TaskHandlerRegistry registry = new TaskHandlerRegistry();
+        registry.registerTaskHandler(taskHandler);
+        return registry.getDispatchDescriptor(taskHandler.command, null).getLightweightExecutor();
+    }
+
+    /** A lightweight semaphore isolated handler whose command fails while failing is set, and blocks until released if latches are set */
+    private static class FailingTaskHandler extends HystrixTaskHandler {
+        private final String command;
+        private final AtomicInteger executions = new AtomicInteger();
+        private volatile boolean failing;
+        private volatile CountDownLatch entered;
+        private volatile CountDownLatch release;
+        FailingTaskHandler(String command) {
+            this.command = command;
+            this.setLightweightExecution(true);
+        }
+        public String getName() {
+            return this.command + "Handler";
+        }
+        public String[] getCommands() {
+            return new String[] {this.command};
+        }
+        public ExecutionIsolationStrategy getIsolationStrategy() {
+            return ExecutionIsolationStrategy.SEMAPHORE;
+        }
+        public TaskResult execute(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+            this.executions.incrementAndGet();
+            if (this.entered != null) {
+                this.entered.countDown();
+                try {
+                    this.release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (this.failing) {
+                throw new RuntimeException("failing");
+            }
+            return new TaskResult(true, "success");
+        }
+        public TaskResult getFallBack(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+            return new TaskResult(false, "fallback");
+        }
+        public void shutdown(TaskContext taskContext) {
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl;
+
+import com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry;
+import com.flipkart.phantom.task.spi.ResultCodec;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.netflix.hystrix.HystrixCommandProperties.ExecutionIsolationStrategy;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for setting the {@link ResultCodec} of a {@link TaskResult} without modifying the result returned by the handler
+ */
+public class TaskResultTest {
+
+    private static final ResultCodec CODEC = new ResultCodec() {
+        public void encode(Object data, OutputStream outputStream) throws Exception {
+            outputStream.write(data.toString().getBytes());
+        }
+    };
+
+    @Test
+    public void testWithResultCodec() throws Exception {
+
+        TaskResult result = new TaskResult(true, "message", "data");
+        TaskResult codecResult = result.withResultCodec(CODEC);
+        assertTrue("Result modified", result.getResultCodec() == null);
+        assertTrue("Codec not set", codecResult.getResultCodec() == CODEC);
+        assertTrue("Result not copied", "message".equals(codecResult.getMessage()) && "data".equals(codecResult.getData()) && codecResult.isSuccess());
+
+        // not copied again if the codec is set already
+        assertTrue("Result copied", codecResult.withResultCodec(CODEC) == codecResult);
+
+    }
+
+    @Test
+    public void testSharedResultNotModified() throws Exception {
+
+        final TaskResult sharedResult = new TaskResult(true, null, "shared");
+        HystrixTaskHandler taskHandler = new HystrixTaskHandler() {
+            public String getName() {
+                return "sharedResultHandler";
+            }
+            public String[] getCommands() {
+                return new String[] {"sharedResult"};
+            }
+            public ExecutionIsolationStrategy getIsolationStrategy() {
+                return ExecutionIsolationStrategy.SEMAPHORE;
+            }
+            public TaskResult execute(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                return sharedResult;
+            }
+            public TaskResult getFallBack(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+                return sharedResult;
+            }
+            public void shutdown(TaskContext taskContext) {
+            }
+        };
+        taskHandler.setLightweightExecution(true);
+        taskHandler.setResultCodec(CODEC);
+        TaskHandlerRegistry registry = new TaskHandlerRegistry();
+        registry.registerTaskHandler(taskHandler);
+        LightweightCommandExecutor executor = registry.getDispatchDescriptor("sharedResult", null).getLightweightExecutor();
+
+        // the returned result has the handler's codec, the result returned by the handler is unchanged
+        TaskResult result = executor.execute(null, Collections.<String, String>emptyMap(), null);
+        assertTrue("Codec not set", result.getResultCodec() == CODEC && "shared".equals(result.getData()));
+        assertTrue("Shared result modified", sharedResult.getResultCodec() == null);
+
+    }
+
+}
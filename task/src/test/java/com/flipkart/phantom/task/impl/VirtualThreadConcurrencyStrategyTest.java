@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl;
+
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.strategy.properties.HystrixProperty;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the thread pools created by {@link VirtualThreadConcurrencyStrategy}. Tests of virtual thread execution run on JVMs that support virtual
+ * threads only
+ */
+public class VirtualThreadConcurrencyStrategyTest {
+
+    @Test
+    public void testPlatformThreadPool() throws Exception {
+
+        VirtualThreadConcurrencyStrategy strategy = new VirtualThreadConcurrencyStrategy();
+        strategy.addVirtualThreadPool("virtualPool");
+
+        // thread pools that are not selected are created as usual
+        ThreadPoolExecutor executor = getThreadPool(strategy, "platformPool", 2);
+        try {
+            assertTrue("Thread pool not created as usual: " + executor.getClass(), executor.getClass() == ThreadPoolExecutor.class);
+            assertTrue("Unselected pool reported as virtual", !strategy.isVirtualThreadPool("platformPool"));
+            assertTrue("Selected pool reported as virtual without JVM support", strategy.isVirtualThreadPool("virtualPool") == VirtualThreadConcurrencyStrategy.isSupported());
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+    @Test
+    public void testVirtualThreadPool() throws Exception {
+
+        Assume.assumeTrue(VirtualThreadConcurrencyStrategy.isSupported());
+        VirtualThreadConcurrencyStrategy strategy = new VirtualThreadConcurrencyStrategy();
+        strategy.addVirtualThreadPool("virtualPool");
+        ThreadPoolExecutor executor = getThreadPool(strategy, "virtualPool", 2);
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            final boolean[] virtual = new boolean[1];
+            Runnable blockingTask = new Runnable() {
+                public void run() {
+                    try {
+                        virtual[0] = (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+                        release.await();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+
+            // tasks in excess of the core size are rejected
+            executor.execute(blockingTask);
+            executor.execute(blockingTask);
+            assertRejected(executor, blockingTask);
+            assertTrue("Active count mismatch: " + executor.getActiveCount(), executor.getActiveCount() == 2);
+            release.countDown();
+            awaitCompletion(executor, 2);
+            assertTrue("Task not executed on a virtual thread", virtual[0]);
+            assertTrue("Largest count mismatch: " + executor.getLargestPoolSize(), executor.getLargestPoolSize() == 2);
+
+            // lowering the core size lowers the limit
+            executor.setCorePoolSize(1);
+            final CountDownLatch secondRelease = new CountDownLatch(1);
+            Runnable secondBlockingTask = new Runnable() {
+                public void run() {
+                    try {
+                        secondRelease.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            executor.execute(secondBlockingTask);
+            assertRejected(executor, secondBlockingTask);
+            secondRelease.countDown();
+            awaitCompletion(executor, 3);
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+    private static ThreadPoolExecutor getThreadPool(VirtualThreadConcurrencyStrategy strategy, String threadPoolName, int coreSize) {
+        return strategy.getThreadPool(HystrixThreadPoolKey.Factory.asKey(threadPoolName), HystrixProperty.Factory.asProperty(coreSize), 
+                HystrixProperty.Factory.asProperty(coreSize), HystrixProperty.Factory.asProperty(1), TimeUnit.MINUTES, new SynchronousQueue<Runnable>());
+    }
+
+    private static void assertRejected(ThreadPoolExecutor executor, Runnable task) {
+        try {
+            executor.execute(task);
+            assertTrue("Task accepted over the concurrency limit", false);
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    private static void awaitCompletion(ThreadPoolExecutor executor, long completedTasks) throws Exception {
+        for (int i = 0; i < 100 && executor.getCompletedTaskCount() < completedTasks; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue("Tasks not completed: " + executor.getCompletedTaskCount(), executor.getCompletedTaskCount() == completedTasks);
+        Thread.sleep(50); // the permit of a task is released after the completed count is updated
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.cache;
+
+import com.flipkart.phantom.task.impl.TaskResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for expiry, eviction and single flight loading of results in {@link ResultCache}
+ */
+public class ResultCacheTest {
+
+    @Test
+    public void testTtl() throws Exception {
+
+        ResultCache cache = new ResultCache("ttl", config(50, 1024 * 1024, ResultCacheConfig.EvictionPolicy.LRU, false));
+        CountingLoader loader = new CountingLoader("v1");
+        assertTrue("Result mismatch", "v1".equals(new String((byte[]) cache.get(params("k"), null, loader).getData())));
+        cache.get(params("k"), null, loader);
+        assertTrue("Cached result not served: " + loader.loads.get(), loader.loads.get() == 1 && cache.getHits() == 1);
+
+        // loaded again once expired
+        Thread.sleep(100);
+        cache.get(params("k"), null, loader);
+        assertTrue("Expired result served: " + loader.loads.get(), loader.loads.get() == 2 && cache.getExpirations() == 1);
+
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+
+        // a single entry fits in each segment
+        ResultCache cache = new ResultCache("lru", config(60000, 16 * 160, ResultCacheConfig.EvictionPolicy.LRU, false));
+        CountingLoader loader = new CountingLoader("0123456789");
+        for (int i = 0; i < 200; i++) {
+            cache.get(params("k" + i), null, loader);
+        }
+        assertTrue("Cache not bounded: " + cache.getMemorySize(), cache.getMemorySize() <= 16 * 160);
+        assertTrue("Nothing evicted: " + cache.getEvictions(), cache.getEvictions() > 0);
+        assertTrue("Entry count mismatch: " + cache.getEntryCount(), cache.getEntryCount() + cache.getEvictions() == 200);
+
+    }
+
+    @Test
+    public void testLfuEviction() throws Exception {
+
+        ResultCache cache = new ResultCache("lfu", config(60000, 16 * 1600, ResultCacheConfig.EvictionPolicy.LFU, true));
+        CountingLoader loader = new CountingLoader("0123456789");
+
+        // the frequently used result survives while many results are loaded and evicted
+        for (int i = 0; i < 2000; i++) {
+            cache.get(params("hot"), null, loader);
+            cache.get(params("k" + i), null, loader);
+        }
+        assertTrue("Nothing evicted: " + cache.getEvictions(), cache.getEvictions() > 0);
+        assertTrue("Cache not bounded: " + cache.getMemorySize(), cache.getMemorySize() <= 16 * 1600);
+        int loads = loader.loads.get();
+        cache.get(params("hot"), null, loader);
+        assertTrue("Frequently used result evicted", loader.loads.get() == loads);
+
+    }
+
+    @Test
+    public void testStampede() throws Exception {
+
+        final ResultCache cache = new ResultCache("stampede", config(60000, 1024 * 1024, ResultCacheConfig.EvictionPolicy.LRU, false));
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingLoader loader = new CountingLoader("v") {
+            public TaskResult load() throws Exception {
+                release.await();
+                return super.load();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TaskResult>> results = new ArrayList<Future<TaskResult>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<TaskResult>() {
+                    public TaskResult call() throws Exception {
+                        return cache.get(params("k"), null, loader);
+                    }
+                }));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<TaskResult> result : results) {
+                assertTrue("Result mismatch", "v".equals(new String((byte[]) result.get().getData())));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // concurrent requests wait for the single load in flight
+        assertTrue("Concurrent loads: " + loader.loads.get(), loader.loads.get() == 1);
+
+    }
+
+    @Test
+    public void testCachedDataIsCopied() throws Exception {
+
+        ResultCache cache = new ResultCache("copy", config(60000, 1024 * 1024, ResultCacheConfig.EvictionPolicy.LRU, false));
+        byte[] data = "request".getBytes();
+        TaskResult loaded = cache.get(params("k"), data, new CountingLoader("v"));
+
+        // modifying the arrays passed in and handed out does not change the cached result or its key
+        ((byte[]) loaded.getData())[0] = 'x';
+        data[0] = 'x';
+        CountingLoader loader = new CountingLoader("other");
+        TaskResult cached = cache.get(params("k"), "request".getBytes(), loader);
+        assertTrue("Cached result not served", loader.loads.get() == 0);
+        assertTrue("Cached result modified: " + new String((byte[]) cached.getData()), "v".equals(new String((byte[]) cached.getData())));
+        ((byte[]) cached.getData())[0] = 'x';
+        cached = cache.get(params("k"), "request".getBytes(), loader);
+        assertTrue("Cached result modified: " + new String((byte[]) cached.getData()), "v".equals(new String((byte[]) cached.getData())));
+
+    }
+
+    private static ResultCacheConfig config(long ttlMillis, long maxMemorySize, ResultCacheConfig.EvictionPolicy evictionPolicy, boolean offHeap) {
+        ResultCacheConfig config = new ResultCacheConfig();
+        config.setTtlMillis(ttlMillis);
+        config.setMaxMemorySize(maxMemorySize);
+        config.setEvictionPolicy(evictionPolicy);
+        config.setOffHeap(offHeap);
+        return config;
+    }
+
+    private static Map<String, String> params(String key) {
+        return Collections.singletonMap("key", key);
+    }
+
+    /** Loads a fixed result and counts the loads */
+    private static class CountingLoader implements ResultCache.ResultLoader {
+        private final String value;
+        private final AtomicInteger loads = new AtomicInteger();
+        CountingLoader(String value) {
+            this.value = value;
+        }
+        public TaskResult load() throws Exception {
+            this.loads.incrementAndGet();
+            return new TaskResult(true, null, this.value.getBytes());
+        }
+        public boolean isCacheable() {
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.hedge;
+
+import com.flipkart.phantom.task.impl.HystrixTaskHandler;
+import com.flipkart.phantom.task.impl.TaskContextImpl;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
+import com.flipkart.phantom.task.impl.TaskResult;
+import com.flipkart.phantom.task.impl.registry.TaskHandlerRegistry;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.netflix.config.ConfigurationManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the hedge delay and the hedge budget of {@link RequestHedger}, and its use in hedged command executions
+ */
+public class RequestHedgerTest {
+
+    @Before
+    public void setUpHystrix() {
+        // commands are executed on threads that have no Hystrix request context
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.default.requestLog.enabled", false);
+        ConfigurationManager.getConfigInstance().setProperty("hystrix.command.default.requestCache.enabled", false);
+    }
+
+    @After
+    public void tearDownHystrix() {
+        ConfigurationManager.getConfigInstance().clearProperty("hystrix.command.default.requestLog.enabled");
+        ConfigurationManager.getConfigInstance().clearProperty("hystrix.command.default.requestCache.enabled");
+    }
+
+    @Test
+    public void testHedgeDelay() {
+
+        RequestHedger hedger = new RequestHedger("delay", config(5));
+        for (int i = 1; i < RequestHedger.MIN_SAMPLES; i++) {
+            hedger.recordLatency(i);
+        }
+        assertTrue("Hedge delay set before minimum samples", hedger.getHedgeDelayNanos() < 0);
+
+        // the configured percentile of the recorded latencies
+        hedger.recordLatency(RequestHedger.MIN_SAMPLES);
+        assertTrue("Hedge delay mismatch: " + hedger.getHedgeDelayNanos(), hedger.getHedgeDelayNanos() == 95);
+
+    }
+
+    @Test
+    public void testBudget() {
+
+        // each request earns half a hedge
+        RequestHedger hedger = new RequestHedger("budget", config(50));
+        assertTrue("Hedge acquired without budget", !hedger.tryAcquireHedge());
+        hedger.onRequest();
+        assertTrue("Hedge acquired with partial budget", !hedger.tryAcquireHedge());
+        hedger.onRequest();
+        assertTrue("Hedge not acquired with budget", hedger.tryAcquireHedge());
+        assertTrue("Hedge acquired with spent budget", !hedger.tryAcquireHedge());
+
+        // the budget does not accumulate beyond the maximum
+        for (int i = 0; i < 100; i++) {
+            hedger.onRequest();
+        }
+        int acquired = 0;
+        while (hedger.tryAcquireHedge()) {
+            acquired++;
+        }
+        assertTrue("Budget above maximum: " + acquired, acquired == RequestHedger.MAX_BUDGET);
+        assertTrue("Hedges not counted: " + hedger.getHedges(), hedger.getHedges() == RequestHedger.MAX_BUDGET + 1);
+
+    }
+
+    @Test
+    public void testHedgedExecutionBudgetExhaustion() throws Exception {
+
+        SlowTaskHandler taskHandler = new SlowTaskHandler();
+        taskHandler.setHedgeConfigPerCommand(Collections.singletonMap("hedged", config(5)));
+        taskHandler.activate();
+        TaskHandlerRegistry registry = new TaskHandlerRegistry();
+        registry.registerTaskHandler(taskHandler);
+        TaskHandlerExecutorRepository repository = new TaskHandlerExecutorRepository();
+        repository.setTaskHandlerRegistry(registry);
+        TaskContextImpl taskContext = new TaskContextImpl();
+        taskContext.setExecutorRepository(repository);
+        repository.setTaskContext(taskContext);
+        RequestHedger hedger = registry.getDispatchDescriptor("hedged", null).getRequestHedger();
+
+        // fast executions set the hedge delay and earn a budget of 5 hedges
+        for (int i = 0; i < RequestHedger.MIN_SAMPLES; i++) {
+            assertTrue("Execution failed", repository.executeCommand("hedged", null, Collections.<String, String>emptyMap()).isSuccess());
+        }
+        assertTrue("Hedge delay not set", hedger.getHedgeDelayNanos() >= 0);
+        assertTrue("Fast executions hedged: " + hedger.getHedges(), hedger.getHedges() == 0);
+
+        // slow executions are hedged until the budget is exhausted, and succeed regardless
+        taskHandler.sleepMillis = 50;
+        for (int i = 0; i < 8; i++) {
+            assertTrue("Execution failed", repository.executeCommand("hedged", null, Collections.<String, String>emptyMap()).isSuccess());
+        }
+        assertTrue("Hedges not limited by budget: " + hedger.getHedges(), hedger.getHedges() == 5);
+
+    }
+
+    private static HedgeConfig config(int budgetPercentage) {
+        HedgeConfig config = new HedgeConfig();
+        config.setBudgetPercentage(budgetPercentage);
+        return config;
+    }
+
+    /** Executes a command that sleeps for the set time */
+    private static class SlowTaskHandler extends HystrixTaskHandler {
+        private volatile long sleepMillis;
+        public String getName() {
+            return "hedgeTest";
+        }
+        public String[] getCommands() {
+            return new String[] {"hedged"};
+        }
+        public TaskResult execute(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+            try {
+                Thread.sleep(this.sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new TaskResult(true, null);
+        }
+        public TaskResult getFallBack(TaskContext taskContext, String command, Map<String, String> params, byte[] data) {
+            return new TaskResult(false, null);
+        }
+        public void shutdown(TaskContext taskContext) {
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.limit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the adaptation of the limit of {@link AdaptiveConcurrencyLimiter} to observed latency
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void testRejection() {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("rejection", config(AdaptiveLimitConfig.Algorithm.VEGAS, 2), 100);
+        assertTrue("Permit not acquired", limiter.tryAcquire() && limiter.tryAcquire());
+        assertTrue("Permit acquired over the limit", !limiter.tryAcquire());
+        assertTrue("Rejection not counted: " + limiter.getRejections(), limiter.getRejections() == 1);
+        limiter.release(System.nanoTime(), false);
+        assertTrue("Permit not acquired after release", limiter.tryAcquire());
+
+    }
+
+    @Test
+    public void testVegasAdaptation() {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("vegas", config(AdaptiveLimitConfig.Algorithm.VEGAS, 10), 100);
+
+        // the limit grows while latency stays at the no-load latency and the limit is in use
+        sample(limiter, 10 * MILLIS, false, 5);
+        int grownLimit = limiter.getLimit();
+        assertTrue("Limit not increased: " + grownLimit, grownLimit > 10);
+        assertTrue("Limit above maximum: " + grownLimit, grownLimit <= 100);
+
+        // the limit shrinks when latency rises well above the no-load latency, as calls queue. Fewer samples than the no-load latency probe interval
+        sample(limiter, 100 * MILLIS, false, 2);
+        assertTrue("Limit not decreased: " + limiter.getLimit() + ", was " + grownLimit, limiter.getLimit() < grownLimit);
+
+    }
+
+    @Test
+    public void testGradientAdaptation() {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("gradient", config(AdaptiveLimitConfig.Algorithm.GRADIENT, 10), 100);
+        sample(limiter, 10 * MILLIS, false, 50);
+        int grownLimit = limiter.getLimit();
+        assertTrue("Limit not increased: " + grownLimit, grownLimit > 10);
+
+        // dropped calls halve the gradient
+        sample(limiter, 10 * MILLIS, true, 20);
+        assertTrue("Limit not decreased on drops: " + limiter.getLimit() + ", was " + grownLimit, limiter.getLimit() < grownLimit);
+        assertTrue("Limit below minimum: " + limiter.getLimit(), limiter.getLimit() >= 1);
+
+    }
+
+    @Test
+    public void testMaxLimit() {
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("max", config(AdaptiveLimitConfig.Algorithm.VEGAS, 10), 20);
+        assertTrue("Default maximum not applied: " + limiter.getMaxLimit(), limiter.getMaxLimit() == 20 && !limiter.isMaxLimitConfigured());
+        sample(limiter, 10 * MILLIS, false, 50);
+        assertTrue("Limit above maximum: " + limiter.getLimit(), limiter.getLimit() == 20);
+
+        // lowering the maximum lowers the limit at once, raising it lets the limit grow
+        limiter.setMaxLimit(5);
+        assertTrue("Limit not lowered: " + limiter.getLimit(), limiter.getLimit() == 5);
+        limiter.setMaxLimit(40);
+        sample(limiter, 10 * MILLIS, false, 50);
+        assertTrue("Limit not raised: " + limiter.getLimit(), limiter.getLimit() > 20 && limiter.getLimit() <= 40);
+
+    }
+
+    /** Acquires the full limit and releases each permit with the specified latency, for the specified number of rounds */
+    private static void sample(AdaptiveConcurrencyLimiter limiter, long latencyNanos, boolean dropped, int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int j = 0; j < acquired; j++) {
+                limiter.release(System.nanoTime() - latencyNanos, dropped);
+            }
+        }
+    }
+
+    private static AdaptiveLimitConfig config(AdaptiveLimitConfig.Algorithm algorithm, int initialLimit) {
+        AdaptiveLimitConfig config = new AdaptiveLimitConfig();
+        config.setAlgorithm(algorithm);
+        config.setInitialLimit(initialLimit);
+        return config;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.priority;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the weighted fair dequeue order and starvation promotion of {@link PriorityLaneQueue}
+ */
+public class PriorityLaneQueueTest {
+
+    @After
+    public void tearDown() {
+        PriorityLaneQueue.restoreSubmitPriority(null);
+    }
+
+    @Test
+    public void testWeightedOrder() throws Exception {
+
+        PriorityLaneQueue queue = new PriorityLaneQueue("weighted", 100, 60000);
+        for (TaskPriority priority : TaskPriority.values()) {
+            offer(queue, priority, 10);
+        }
+
+        // each round of 10 dequeues is shared in proportion to the lane weights 6:3:1
+        Map<TaskPriority, Integer> dequeued = dequeue(queue, 10);
+        assertTrue("Weighted share mismatch: " + dequeued, dequeued.get(TaskPriority.HIGH) == 6 && dequeued.get(TaskPriority.NORMAL) == 3
+                && dequeued.get(TaskPriority.LOW) == 1);
+
+        // the high lane does not starve the others once it is drained
+        dequeued = dequeue(queue, 10);
+        assertTrue("Weighted share mismatch: " + dequeued, dequeued.get(TaskPriority.HIGH) == 4 && dequeued.get(TaskPriority.NORMAL) == 4
+                && dequeued.get(TaskPriority.LOW) == 2);
+        assertTrue("Queue size mismatch: " + queue.size(), queue.size() == 10);
+
+    }
+
+    @Test
+    public void testStarvationPromotion() throws Exception {
+
+        PriorityLaneQueue queue = new PriorityLaneQueue("starvation", 100, 50);
+        offer(queue, TaskPriority.LOW, 1);
+        Thread.sleep(100);
+        offer(queue, TaskPriority.HIGH, 5);
+
+        // the low priority task has waited longer than the starvation threshold and is dequeued ahead of the high lane
+        PriorityTask task = (PriorityTask) queue.poll();
+        assertTrue("Starved task not promoted: " + task.priority, task.priority == TaskPriority.LOW);
+        PriorityLaneQueue.LaneMetrics lowMetrics = queue.getLaneMetrics().get(TaskPriority.LOW.ordinal());
+        assertTrue("Promotion not counted: " + lowMetrics.getPromoted(), lowMetrics.getPromoted() == 1);
+        assertTrue("High lane not dequeued next", ((PriorityTask) queue.poll()).priority == TaskPriority.HIGH);
+
+    }
+
+    @Test
+    public void testCapacity() throws Exception {
+
+        PriorityLaneQueue queue = new PriorityLaneQueue("capacity", 2, 60000);
+        offer(queue, TaskPriority.NORMAL, 2);
+        PriorityLaneQueue.setSubmitPriority(TaskPriority.HIGH);
+        assertTrue("Task accepted over capacity", !queue.offer(new PriorityTask(TaskPriority.HIGH)));
+
+        // raising the capacity accepts more tasks
+        queue.setCapacity(3);
+        assertTrue("Task rejected under capacity", queue.offer(new PriorityTask(TaskPriority.HIGH)));
+        assertTrue("Remaining capacity mismatch: " + queue.remainingCapacity(), queue.remainingCapacity() == 0);
+
+    }
+
+    private static void offer(PriorityLaneQueue queue, TaskPriority priority, int count) {
+        TaskPriority previous = PriorityLaneQueue.setSubmitPriority(priority);
+        try {
+            for (int i = 0; i < count; i++) {
+                assertTrue("Task rejected", queue.offer(new PriorityTask(priority)));
+            }
+        } finally {
+            PriorityLaneQueue.restoreSubmitPriority(previous);
+        }
+    }
+
+    private static Map<TaskPriority, Integer> dequeue(PriorityLaneQueue queue, int count) {
+        Map<TaskPriority, Integer> dequeued = new EnumMap<TaskPriority, Integer>(TaskPriority.class);
+        for (TaskPriority priority : TaskPriority.values()) {
+            dequeued.put(priority, 0);
+        }
+        for (int i = 0; i < count; i++) {
+            TaskPriority priority = ((PriorityTask) queue.poll()).priority;
+            dequeued.put(priority, dequeued.get(priority) + 1);
+        }
+        return dequeued;
+    }
+
+    /** A task tagged with the priority it was submitted with */
+    private static class PriorityTask implements Runnable {
+        private final TaskPriority priority;
+        PriorityTask(TaskPriority priority) {
+            this.priority = priority;
+        }
+        public void run() {
+        }
+    }
+
+}